@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import android.text.format.DateFormat;
+
+import org.xml.sax.SAXException;
+
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <p>Services of the recordings in the app, i.e. the Diktofon base directory,
+ * the Android platform calls, and the shared singletons.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class AndroidRecordingServices implements RecordingServices {
+
+	// TODO: pass in the current Locale
+	// TODO: think about timezones
+	private static final CharSequence DATE_FORMAT = "yyyy-MM-dd (EEE) kk:mm";
+
+	private static final AndroidRecordingServices sInstance = new AndroidRecordingServices();
+
+	private AndroidRecordingServices() {}
+
+
+	public static AndroidRecordingServices getInstance() {
+		return sInstance;
+	}
+
+
+	public File getBaseDir() {
+		return Dirs.getBaseDir();
+	}
+
+
+	public String guessMime(File audioFile) {
+		return MyFileUtils.guessMime(audioFile.toURI().toString());
+	}
+
+
+	public int getDuration(File audioFile) {
+		return Utils.getDuration(audioFile.getAbsolutePath());
+	}
+
+
+	public long getTimestamp() {
+		return Utils.getTimestamp();
+	}
+
+
+	public CharSequence formatTimestamp(long timestamp) {
+		return DateFormat.format(DATE_FORMAT, timestamp);
+	}
+
+
+	public String formatMillis(long millis) {
+		return Utils.formatMillis(millis);
+	}
+
+
+	public String formatSize(long size) {
+		return MyFileUtils.getSizeAsString(size);
+	}
+
+
+	public String getPlainText(File transFile) throws SAXException, IOException {
+		return TranscriptionCache.getInstance().get(transFile).getPlainText();
+	}
+
+
+	public void removeTranscription(File transFile) {
+		TranscriptionCache.getInstance().remove(transFile);
+	}
+
+
+	public int getIndexedMatchCount(String query, String id) {
+		return RecordingIndexer.getInstance().getMatchCount(query, id);
+	}
+
+
+	public void index(String id, File transFile) {
+		RecordingIndexer.getInstance().index(id, transFile);
+	}
+
+
+	public void removeFromIndex(String id) {
+		RecordingIndexer.getInstance().remove(id);
+	}
+
+
+	public void putCatalogEntry(CatalogEntry entry) {
+		RecordingCatalog.getInstance().put(entry);
+	}
+
+
+	public void removeCatalogEntry(String id) {
+		RecordingCatalog.getInstance().remove(id);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Size-bounded LRU cache. The size of an entry is given by {@link #sizeOf}
+ * (1 by default, i.e. the bound is on the number of entries). When the total
+ * size exceeds the maximum, the least recently used entries are evicted.
+ * The cache also counts its hits and misses.</p>
+ *
+ * <p>This is similar to android.util.LruCache, which is not available on
+ * the Android versions that Diktofon supports. All the methods are synchronized.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class BoundedCache<K, V> {
+
+	private final LinkedHashMap<K, V> mMap;
+	private final int mMaxSize;
+	private int mSize = 0;
+	private int mHitCount = 0;
+	private int mMissCount = 0;
+	private int mEvictionCount = 0;
+
+
+	public BoundedCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+		mMaxSize = maxSize;
+		// accessOrder = true, i.e. the iteration order is from the least recently used to the most recently used
+		mMap = new LinkedHashMap<K, V>(16, 0.75f, true);
+	}
+
+
+	/**
+	 * @return the cached value or <code>null</code> if there is no value for the given key
+	 */
+	public synchronized V get(K key) {
+		V value = mMap.get(key);
+		if (value == null) {
+			mMissCount++;
+		} else {
+			mHitCount++;
+		}
+		return value;
+	}
+
+
+	/**
+	 * @return the previous value for the given key (or <code>null</code>)
+	 */
+	public synchronized V put(K key, V value) {
+		if (key == null || value == null) {
+			throw new NullPointerException("key == null || value == null");
+		}
+		mSize += sizeOf(key, value);
+		V previous = mMap.put(key, value);
+		if (previous != null) {
+			mSize -= sizeOf(key, previous);
+		}
+		trimToSize(mMaxSize);
+		return previous;
+	}
+
+
+	public synchronized V remove(K key) {
+		V previous = mMap.remove(key);
+		if (previous != null) {
+			mSize -= sizeOf(key, previous);
+		}
+		return previous;
+	}
+
+
+	/**
+	 * <p>Evicts the least recently used entries until the total size is at most the given size.</p>
+	 */
+	public synchronized void trimToSize(int maxSize) {
+		Iterator<Map.Entry<K, V>> it = mMap.entrySet().iterator();
+		while (mSize > maxSize && it.hasNext()) {
+			Map.Entry<K, V> entry = it.next();
+			mSize -= sizeOf(entry.getKey(), entry.getValue());
+			it.remove();
+			mEvictionCount++;
+		}
+	}
+
+
+	public synchronized void evictAll() {
+		trimToSize(-1);
+	}
+
+
+	public synchronized int size() {
+		return mSize;
+	}
+
+
+	public synchronized int maxSize() {
+		return mMaxSize;
+	}
+
+
+	public synchronized int hitCount() {
+		return mHitCount;
+	}
+
+
+	public synchronized int missCount() {
+		return mMissCount;
+	}
+
+
+	public synchronized int evictionCount() {
+		return mEvictionCount;
+	}
+
+
+	/**
+	 * <p>Override this to measure the entries in some other unit than the
+	 * number of entries (e.g. bytes). The size of an entry must not change
+	 * while it is in the cache.</p>
+	 */
+	protected int sizeOf(K key, V value) {
+		return 1;
+	}
+
+
+	@Override
+	public synchronized String toString() {
+		int accesses = mHitCount + mMissCount;
+		int hitPercent = (accesses == 0) ? 0 : (100 * mHitCount / accesses);
+		return String.format("BoundedCache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%,evictions=%d]",
+				mSize, mMaxSize, mHitCount, mMissCount, hitPercent, mEvictionCount);
+	}
+}
@@ -35,6 +35,12 @@ public class Dirs {
 
 	private static final String RECORDINGS = "/recordings/";
 
+	// Cache of the recording metadata, see RecordingCatalog.
+	private static final String CATALOG = "/catalog.dat";
+
+	// Segments of the search index, see RecordingIndexer.
+	private static final String INDEX = "/index/";
+
 	// This directory is used for the files that have been recorded
 	// using the RecorderActivity but that are not part of the Diktofon
 	// collection.
@@ -65,6 +71,14 @@ public class Dirs {
 		return sNomediaFile;
 	}
 
+	public static File getCatalogFile() {
+		return new File(sBaseDir.getAbsolutePath() + CATALOG);
+	}
+
+	public static File getIndexDir() {
+		return new File(sBaseDir.getAbsolutePath() + INDEX);
+	}
+
 	public static File getRecorderDir() {
 		return new File(sBaseDir.getAbsolutePath() + RECORDER);
 	}
@@ -31,9 +31,9 @@ import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import kaljurand_at_gmail_dot_com.diktofon.search.LinearRegex;
+
 import java.util.Collection;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class GuiUtils {
 
@@ -150,7 +150,7 @@ public class GuiUtils {
 	// Note that we cannot reuse the same HighlightSpan-object everywhere, because every setSpan
 	// would move the style-object to the new location.
 	public static int highlightRe(Spannable spannable, String re, int color) {
-		Matcher m = Pattern.compile(re, Pattern.CASE_INSENSITIVE).matcher(spannable);
+		LinearRegex.Matcher m = PatternCache.get(re).matcher(spannable, PatternCache.MAX_STEPS);
 		int count = 0;
 		while (m.find()) {
 			int start = m.start();
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+/**
+ * <p>Shared cache of the number of matches of a query in a transcription.
+ * The key consists of the query, the recording ID and the version of the
+ * transcription (i.e. its modification time), so that a changed transcription
+ * never gets the counts of its previous version. The cache is bounded, the
+ * least recently used counts are evicted first.</p>
+ *
+ * <p>The counts of a recording are not removed when its transcription changes or the
+ * recording is deleted, as finding them would mean scanning the whole cache. The old counts
+ * are simply not looked up any more, i.e. they become the least recently used ones.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class MatchCache {
+
+	private static final int MAX_SIZE = 4096;
+
+	private static final BoundedCache<Key, Integer> sCache = new BoundedCache<Key, Integer>(MAX_SIZE);
+
+	private MatchCache() {}
+
+
+	/**
+	 * @return cached match count or <code>null</code> if the count is not known
+	 */
+	public static Integer get(String query, String id, long version) {
+		return sCache.get(new Key(query, id, version));
+	}
+
+
+	public static void put(String query, String id, long version, int count) {
+		sCache.put(new Key(query, id, version), count);
+	}
+
+
+	public static void evictAll() {
+		sCache.evictAll();
+	}
+
+
+	public static String getStats() {
+		return sCache.toString();
+	}
+
+
+	private static class Key {
+		private final String query;
+		private final String id;
+		private final long version;
+
+		Key(String query, String id, long version) {
+			this.query = query;
+			this.id = id;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (! (o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return version == other.version && id.equals(other.id) && query.equals(other.query);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = query.hashCode();
+			result = 31 * result + id.hashCode();
+			result = 31 * result + (int) (version ^ (version >>> 32));
+			return result;
+		}
+	}
+}
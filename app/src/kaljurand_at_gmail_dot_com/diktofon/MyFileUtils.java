@@ -18,6 +18,8 @@ package kaljurand_at_gmail_dot_com.diktofon;
 
 import org.apache.commons.io.FileUtils;
 
+import kaljurand_at_gmail_dot_com.diktofon.catalog.SidecarFiles;
+
 import java.io.File;
 import java.io.IOException;
 
@@ -66,19 +68,15 @@ public class MyFileUtils {
 
 
 	public static void saveFile(File f, String content) throws IOException {
-		File dir = f.getParentFile();
-		if (!dir.exists() && !dir.mkdirs()) {
-			throw new IOException("Cannot create directory: " + dir);
-		}
-		FileUtils.writeStringToFile(f, content, "UTF8");
+		SidecarFiles.save(f, content);
 	}
 
 	public static String loadFile(File f) throws IOException {
-		return FileUtils.readFileToString(f, "UTF8");
+		return SidecarFiles.load(f);
 	}
 
 	public static void deleteFile(File f) throws IOException {
-		FileUtils.forceDelete(f);
+		SidecarFiles.delete(f);
 	}
 
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.LinearRegex;
+
+/**
+ * <p>Shared cache of compiled case insensitive regular expressions. Sorting the
+ * recordings by the number of matches, counting the matches and highlighting them all
+ * use the same query, which is now compiled only once.</p>
+ *
+ * <p>The query is typed by the user, so it is compiled into a {@link LinearRegex} rather than
+ * a <code>java.util.regex.Pattern</code>, i.e. a query like <code>(a|aa)*b</code> cannot make
+ * the matching backtrack for an unbounded time.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class PatternCache {
+
+	private static final int MAX_SIZE = 64;
+
+	/**
+	 * Maximum number of steps that matching a query against a single transcription
+	 * can take, a few hundred milliseconds on a phone.
+	 */
+	public static final long MAX_STEPS = 20000000;
+
+	private static final BoundedCache<String, LinearRegex> sCache = new BoundedCache<String, LinearRegex>(MAX_SIZE);
+
+	private PatternCache() {}
+
+
+	/**
+	 * @return compiled case insensitive version of the given regular expression
+	 * @throws java.util.regex.PatternSyntaxException if the expression is not valid or is not supported
+	 */
+	public static LinearRegex get(String re) {
+		LinearRegex pattern = sCache.get(re);
+		if (pattern == null) {
+			pattern = LinearRegex.compile(re);
+			sCache.put(re, pattern);
+		}
+		return pattern;
+	}
+
+
+	/**
+	 * <p>Returns the number of case insensitive matches of the given regular expression in
+	 * the given string, or -1 if the matching was aborted because it exceeded {@link #MAX_STEPS}.</p>
+	 */
+	public static int countMatches(String data, String re) {
+		LinearRegex.Matcher m = get(re).matcher(data, MAX_STEPS);
+		int count = 0;
+		while (m.find()) {
+			count++;
+		}
+		if (m.isAborted()) {
+			return -1;
+		}
+		return count;
+	}
+
+
+	public static int hitCount() {
+		return sCache.hitCount();
+	}
+
+
+	public static int missCount() {
+		return sCache.missCount();
+	}
+
+
+	public static String getStats() {
+		return sCache.toString();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.Tokenizer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Blends the relevance scores of the recordings (see {@link RecordingIndexer#getScores(String)})
+ * with the optional ranking features that do not depend on the transcription:</p>
+ *
+ * <ul>
+ * <li>recency: the score of a new recording is boosted by up to RECENCY_WEIGHT,
+ * the boost halves every RECENCY_HALF_LIFE days;</li>
+ * <li>tags: the score of a recording that has a word of the query as a tag
+ * (see {@link Recording#getTagValue(Set)}) is boosted by TAG_WEIGHT.</li>
+ * </ul>
+ *
+ * <p>The features multiply the score, i.e. they reorder the recordings
+ * of similar relevance, but do not lift an irrelevant recording to the top.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Ranker {
+
+	private static final float RECENCY_WEIGHT = 0.5f;
+	private static final long RECENCY_HALF_LIFE = 30L * 24 * 60 * 60 * 1000;
+	private static final float TAG_WEIGHT = 0.5f;
+
+	private final boolean mIsRecency;
+	private final boolean mIsTags;
+
+
+	public Ranker(boolean isRecency, boolean isTags) {
+		mIsRecency = isRecency;
+		mIsTags = isTags;
+	}
+
+
+	/**
+	 * @param idToScore relevance scores of the matching recordings
+	 * @param recordings recordings (at least the ones that have a score)
+	 * @param query text query
+	 * @param now current time (ms since the epoch)
+	 * @return new map from the IDs of the recordings to the blended scores
+	 */
+	public Map<String, Float> rank(Map<String, Float> idToScore, Collection<Recording> recordings, String query, long now) {
+		Map<String, Float> ranked = new HashMap<String, Float>(idToScore);
+		if (! mIsRecency && ! mIsTags) {
+			return ranked;
+		}
+		Set<String> queryTags = getWords(query);
+		for (Recording rec : recordings) {
+			Float score = ranked.get(rec.getId());
+			if (score == null) {
+				continue;
+			}
+			float boost = 1;
+			if (mIsRecency) {
+				long age = Math.max(0, now - rec.getTimestamp());
+				boost += RECENCY_WEIGHT * (float) Math.pow(2, - (double) age / RECENCY_HALF_LIFE);
+			}
+			if (mIsTags && rec.getTagValue(queryTags) > 0) {
+				boost += TAG_WEIGHT;
+			}
+			ranked.put(rec.getId(), score * boost);
+		}
+		return ranked;
+	}
+
+
+	private static Set<String> getWords(String query) {
+		Set<String> words = new HashSet<String>();
+		Tokenizer tokenizer = new Tokenizer(query);
+		while (tokenizer.next()) {
+			words.add(tokenizer.token());
+		}
+		return words;
+	}
+}
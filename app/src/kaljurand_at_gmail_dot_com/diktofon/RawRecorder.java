@@ -23,6 +23,8 @@ import java.io.RandomAccessFile;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
 
+import kaljurand_at_gmail_dot_com.diktofon.audio.WavHeader;
+
 /**
  * <p>Returns raw audio using AudioRecord and saves the result as 16-bit RIFF/WAVE.</p>
  * 
@@ -189,19 +191,7 @@ public class RawRecorder {
 
 					// Set file length to 0, to prevent unexpected behavior in case the file already existed
 					mRAFile.setLength(0);
-					mRAFile.writeBytes("RIFF");
-					mRAFile.writeInt(0); // Final file size not known yet, write 0
-					mRAFile.writeBytes("WAVE");
-					mRAFile.writeBytes("fmt ");
-					mRAFile.writeInt(Integer.reverseBytes(16)); // Sub-chunk size, 16 for PCM
-					mRAFile.writeShort(Short.reverseBytes((short) 1)); // AudioFormat, 1 for PCM
-					mRAFile.writeShort(Short.reverseBytes(mChannels));// Number of channels, 1 for mono, 2 for stereo
-					mRAFile.writeInt(Integer.reverseBytes(mRate)); // Sample rate
-					mRAFile.writeInt(Integer.reverseBytes(mRate * (mResolution/8) * mChannels)); // Byte rate, SampleRate*NumberOfChannels*BitsPerSample/8
-					mRAFile.writeShort(Short.reverseBytes((short)(mChannels * mResolution/8))); // Block align, NumberOfChannels*BitsPerSample/8
-					mRAFile.writeShort(Short.reverseBytes(mResolution)); // Bits per sample
-					mRAFile.writeBytes("data");
-					mRAFile.writeInt(0); // Data chunk size not known yet, write 0
+					mRAFile.write(WavHeader.create(mRate, mChannels, mResolution, 0)); // Sizes are not known yet, write 0
 
 					mBuffer = new byte[mFramePeriod * (mResolution/8) * mChannels];
 					mState = State.READY;
@@ -300,11 +290,7 @@ public class RawRecorder {
 			Log.e(LOG_TAG, "Stopping the recorder...");
 			mRecorder.stop();
 			try {
-				mRAFile.seek(4); // Write size to RIFF header
-				mRAFile.writeInt(Integer.reverseBytes(36+mPayloadSize));
-
-				mRAFile.seek(40); // Write size to Subchunk2Size field
-				mRAFile.writeInt(Integer.reverseBytes(mPayloadSize));
+				WavHeader.writeSizes(mRAFile, mPayloadSize);
 
 				mRAFile.close();
 				mState = State.STOPPED;
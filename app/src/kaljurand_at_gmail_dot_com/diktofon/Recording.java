@@ -16,16 +16,17 @@
 
 package kaljurand_at_gmail_dot_com.diktofon;
 
-import android.text.TextUtils;
-import android.text.format.DateFormat;
-
 import org.xml.sax.SAXException;
 
-import ee.ioc.phon.netspeechapi.trans.Transcription;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.SidecarFiles;
+import kaljurand_at_gmail_dot_com.diktofon.search.Tags;
+import kaljurand_at_gmail_dot_com.diktofon.trans.TransSummarizer;
+import kaljurand_at_gmail_dot_com.diktofon.trans.TransSummary;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.SortedSet;
@@ -36,6 +37,9 @@ import java.util.Map;
 import java.util.Set;
 
 /**
+ * <p>The calls to the Android framework and to the rest of the app go through
+ * the {@link RecordingServices} that the recording is constructed with.</p>
+ *
 TODO: re-think the exception handling in this class
 TODO: localize details and error/warning messages
  */
@@ -55,68 +59,118 @@ public class Recording {
 	public static final String TAGS = "/tags/";
 	public static final String TAG_NOTRANS = ":notrans";
 
-	public static final DurationComparator DURATION_COMPARATOR = new DurationComparator();
-	public static final SizeComparator SIZE_COMPARATOR = new SizeComparator();
-	public static final TimestampComparator TIMESTAMP_COMPARATOR = new TimestampComparator();
-	public static final WordcountComparator WORDCOUNT_COMPARATOR = new WordcountComparator();
-	public static final SpeakercountComparator SPEAKERCOUNT_COMPARATOR = new SpeakercountComparator();
-
-	// TODO: pass in the current Locale
-	// TODO: think about timezones
-	//private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss (E)");
-	//private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss (EEE)");
-	//private static final CharSequence dateFormat = "yyyy-MM-dd (EEE) kk:mm:ss";
-	private static final CharSequence dateFormat = "yyyy-MM-dd (EEE) kk:mm";
+	public static final DurationKey DURATION_KEY = new DurationKey();
+	public static final SizeKey SIZE_KEY = new SizeKey();
+	public static final TimestampKey TIMESTAMP_KEY = new TimestampKey();
+	public static final WordcountKey WORDCOUNT_KEY = new WordcountKey();
+	public static final SpeakercountKey SPEAKERCOUNT_KEY = new SpeakercountKey();
+
 	private static final int MAX_EXCERPT_LENGTH = 500;
 
 	// TODO: enforce this limit in the GUI
 	public static final int MAX_TAG_COUNT = 100;
 
+	// Match count of a regular expression whose matching exceeded the step limit
+	public static final int MATCH_COUNT_ABORTED = -3;
+
+	private final RecordingServices mServices;
 	private final File mAudioFile;
 	private final String mId;
 	private final String mMime;
 	private final long mTimestamp;
+	private final long mSize;
 	private final int mDuration;
 
 	private final Map<State, Long> mStateToTime = new HashMap<State, Long>();
-	private final Map<String, Integer> mMatchCache = new HashMap<String, Integer>();
 	private final List<String> mMessages = new ArrayList<String>();
 
 	private String mExcerpt = null;
-	private String mSearchData = null;
 	private String mToken = null;
 	private int mPollCount = 0;
 	private State mState;
 	//private Set tags = Collections.synchronizedSet(new HashSet<String>());
 	private Set<String> mTags = null;
 	private int mWordCount = -1;
+	private int mSpeakerCount = -1;
+	private int mTurnCount = 0;
+	private long mSpeechTime = 0;
+	// Modification time of the transcription file that the fields above describe
+	private long mTransVersion = 0;
 	private int mWaitingTime = 0;
-	private Transcription mTranscription = null;
+	// Maps the speaker IDs in the transcription to their screen names
+	private Map<String, String> mSpeakers = Collections.emptyMap();
+	// The catalog entry that describes the files of this recording (as of the last load or update)
+	private CatalogEntry mCatalogEntry = null;
 
 
 	// Guessing the mime from the extension
-	public Recording(File voiceFile) {
+	public Recording(File voiceFile, RecordingServices services) {
+		mServices = services;
 		mAudioFile = voiceFile;
 		mTimestamp = voiceFile.lastModified();
+		mSize = voiceFile.length();
 		mId = voiceFile.getName();
-		mMime = MyFileUtils.guessMime(voiceFile.toURI().toString());
-		mDuration = Utils.getDuration(voiceFile.getAbsolutePath());
+		mMime = services.guessMime(voiceFile);
+		mDuration = services.getDuration(voiceFile);
 		init();
 	}
 
 
+	/**
+	 * <p>Constructs the recording from its catalog entry, i.e. without
+	 * probing the audio file and without reading the sidecar files.
+	 * The transcription is parsed only when it is needed, e.g. for searching.</p>
+	 */
+	public Recording(File voiceFile, CatalogEntry entry, RecordingServices services) {
+		mServices = services;
+		mAudioFile = voiceFile;
+		mTimestamp = entry.timestamp;
+		mSize = entry.size;
+		mId = entry.id;
+		mMime = entry.mime;
+		mDuration = entry.duration;
+		mToken = entry.token;
+		mTags = new HashSet<String>();
+		if (entry.tags != null) {
+			for (String tag : Tags.parse(entry.tags)) {
+				mTags.add(tag);
+			}
+		}
+		mWordCount = entry.wordCount;
+		mSpeakerCount = entry.speakerCount;
+		mTurnCount = entry.turnCount;
+		mSpeechTime = entry.speechTime;
+		mTransVersion = entry.transTimestamp;
+		mSpeakers = entry.speakers;
+		mExcerpt = entry.excerpt;
+		mCatalogEntry = entry;
+		State state;
+		try {
+			state = State.valueOf(entry.state);
+		} catch (IllegalArgumentException e) {
+			state = State.INITIAL;
+		}
+		setState(state);
+	}
+
+
 	private void init() {
 		getToken();
 		initTrans();
 		getTags();
+		setState(getInitialState());
+	}
+
+
+	// The state that the recording has after it has been loaded from the disk.
+	private State getInitialState() {
 		if (hasTrans()) {
-			setState(State.SUCCESS);
+			return State.SUCCESS;
 		} else if (hasToken()) {
-			setState(State.INITIAL);
-		} else {
-			// BUG: possibly also FAILURE
-			setState(State.INITIAL);
+			return State.INITIAL;
 		}
+		// BUG: possibly also FAILURE
+		return State.INITIAL;
 	}
 
 
@@ -125,13 +179,8 @@ public class Recording {
 	}
 
 
-	public Transcription getTranscription() {
-		return mTranscription;
-	}
-
-
 	public String getDurationAsString() {
-		return Utils.formatMillis((long) mDuration);
+		return mServices.formatMillis((long) mDuration);
 	}
 
 
@@ -147,7 +196,7 @@ public class Recording {
 
 	public String getTransPath() {
 		if (hasTrans()) {
-			return Dirs.getBaseDir() + TRANS + mId + ".xml";
+			return getTransFile(mServices.getBaseDir(), mId).getPath();
 		}
 		return null;
 	}
@@ -170,13 +219,29 @@ public class Recording {
 	}
 
 
+	/**
+	 * @return modification time of the audio file when the recording was loaded
+	 */
+	public long getTimestamp() {
+		return mTimestamp;
+	}
+
+
 	public CharSequence getTimestampAsString() {
-		return getTimestampAsString(mTimestamp);
+		return mServices.formatTimestamp(mTimestamp);
+	}
+
+
+	/**
+	 * @return size (in bytes) of the audio file when the recording was loaded
+	 */
+	public long getSize() {
+		return mSize;
 	}
 
 
 	public String getSizeAsString() {
-		return MyFileUtils.getSizeAsString(mAudioFile.length());
+		return mServices.formatSize(mSize);
 	}
 
 
@@ -193,7 +258,7 @@ public class Recording {
 				//"AUDIO",
 				"Audio file: " + getAudioFilePath(),
 				"Content type: " + getMime(),
-				"Size in bytes: " + mAudioFile.length(),
+				"Size in bytes: " + mSize,
 				"Duration: " + getDurationAsString(),
 				//"TRANSCRIPTION",
 				"Has transcription: " + hasTrans(),
@@ -201,21 +266,28 @@ public class Recording {
 				"Word count: " + getWordCount(),
 				"Speaker count: " + getSpeakerCount(),
 				"Speakers: " + getSpeakersAsString(),
+				"Turn count: " + getTurnCount(),
+				"Speech time: " + mServices.formatMillis(getSpeechTime()),
 				//"Sync points: " + getSyncPoints(),
 				//"NETWORKING",
 				"Poll count: " + getPollCount(),
 				//"OTHER",
-				"Messages: " + TextUtils.join("\n", getMessages()),
+				"Messages: " + Tags.join(getMessages(), "\n"),
 				"States: " + formatStates(mStateToTime)
 		};
 	}
 
 
 	public String getSpeakersAsString() {
-		if (mTranscription == null) {
-			return "";
-		}
-		return mTranscription.getIdToSpeaker().toString();
+		return mSpeakers.toString();
+	}
+
+
+	/**
+	 * @return unmodifiable map from the speaker IDs to the speaker screen names
+	 */
+	public Map<String, String> getSpeakers() {
+		return mSpeakers;
 	}
 
 
@@ -223,16 +295,16 @@ public class Recording {
 		if (mTags == null) {
 			return "";
 		}
-		return TextUtils.join(", ", mTags);
+		return Tags.join(mTags, ", ");
 	}
 
 
 	private void initTags() {
 		mTags = new HashSet<String>();
-		File f = makeFile(TAGS, mId);
+		File f = getTagsFile(mServices.getBaseDir(), mId);
 		try {
-			String tagsAsString = MyFileUtils.loadFile(f);
-			for (String tag : Utils.parseTagString(tagsAsString)) {
+			String tagsAsString = SidecarFiles.load(f);
+			for (String tag : Tags.parse(tagsAsString)) {
 				mTags.add(tag);
 			}
 		} catch (IOException e) {
@@ -260,9 +332,9 @@ public class Recording {
 
 	public String getToken() {
 		if (mToken == null) {
-			File f = makeFile(TOKENS, mId);
+			File f = getTokenFile(mServices.getBaseDir(), mId);
 			try {
-				mToken = MyFileUtils.loadFile(f);
+				mToken = SidecarFiles.load(f);
 			} catch (IOException e) {
 				addMessage("getToken: I/O error: " + e.getMessage());
 			}
@@ -279,34 +351,69 @@ public class Recording {
 	 *   0 if there are no matches
 	 *  -1 if search data doesn't exist (i.e. there is no transcription) and :notrans-tag is on
 	 *  -2 if search data doesn't exist and :notrans-tag is off
+	 *  -3 if the matching was aborted (see {@link #MATCH_COUNT_ABORTED})
 	 * </pre>
 	 * <p>-1 and -2 group the notrans-recordings and simply untranscribed recordings into two
 	 * separate groups thus simplifying the locating the recordings that _need_ transcription.</p>
+	 * <p>The aborted count is cached like any other count, i.e. the same query
+	 * is not matched again against the same transcription. The count of a word query
+	 * in a recording that has not been indexed yet is not cached, as it is found by
+	 * matching the query as a regular expression, which can differ from the index count.</p>
 	 */
 	public int getMatchCount(String query) {
-		if (mSearchData == null) {
-			if (hasTag(TAG_NOTRANS)) {
-				return -1;
-			} else {
-				return -2;
-			}
+		if (! hasTrans()) {
+			return getNoTransMatchCount();
 		}
 
-		Integer matchCount = mMatchCache.get(query);
+		Integer matchCount = MatchCache.get(query, mId, mTransVersion);
 		if (matchCount == null) {
-			int count = Utils.countRe(mSearchData, query);
-			mMatchCache.put(query, count);
+			// Word, prefix and phrase queries are answered by the index,
+			// regular expressions are matched against the transcription.
+			int indexedCount = mServices.getIndexedMatchCount(query, mId);
+			if (indexedCount >= 0) {
+				MatchCache.put(query, mId, mTransVersion, indexedCount);
+				return indexedCount;
+			}
+			String searchData = getSearchData();
+			if (searchData == null) {
+				return getNoTransMatchCount();
+			}
+			int count = PatternCache.countMatches(searchData, query);
+			if (count == -1) {
+				count = MATCH_COUNT_ABORTED;
+			}
+			if (indexedCount != RecordingServices.NOT_INDEXED) {
+				MatchCache.put(query, mId, mTransVersion, count);
+			}
 			return count;
 		}
 		return matchCount;
 	}
 
 
-	public int getSpeakerCount() {
-		if (mTranscription == null) {
+	private int getNoTransMatchCount() {
+		if (hasTag(TAG_NOTRANS)) {
 			return -1;
 		}
-		return mTranscription.getIdToSpeaker().size();
+		return -2;
+	}
+
+
+	public int getSpeakerCount() {
+		return mSpeakerCount;
+	}
+
+
+	public int getTurnCount() {
+		return mTurnCount;
+	}
+
+
+	/**
+	 * @return total duration (in milliseconds) of the transcribed turns
+	 */
+	public long getSpeechTime() {
+		return mSpeechTime;
 	}
 
 
@@ -320,8 +427,25 @@ public class Recording {
 	}
 
 
+	// The search data is the plain text of the transcription, which is
+	// not retained by the recording but looked up from the cache.
+	private String getSearchData() {
+		if (! hasTrans()) {
+			return null;
+		}
+		try {
+			return mServices.getPlainText(getTransFile(mServices.getBaseDir(), mId));
+		} catch (SAXException e) {
+			addMessage("getTranscription: XML error: " + e.getMessage());
+		} catch (IOException e) {
+			addMessage("getTranscription: I/O error: " + e.getMessage());
+		}
+		return null;
+	}
+
+
 	private void initTrans() {
-		File f = makeFile(TRANS, mId, ".xml");
+		File f = getTransFile(mServices.getBaseDir(), mId);
 		try {
 			initTrans(f);
 		} catch (SAXException e) {
@@ -332,26 +456,20 @@ public class Recording {
 	}
 
 
+	/**
+	 * <p>Streams through the transcription and extracts the fields that the recording keeps
+	 * (counts, excerpt, speakers). The transcription itself is loaded only if it is needed,
+	 * see {@link #getTranscription()}.</p>
+	 */
 	private void initTrans(File xmlFile) throws SAXException, IOException {
-		mTranscription = new Transcription(xmlFile);
-		mSearchData = mTranscription.getPlainText();
-
-		int end = mSearchData.length();
-		if (end > MAX_EXCERPT_LENGTH) {
-			end = MAX_EXCERPT_LENGTH;
-		}
-		// Doing "new String" here allows the large string to be garbage collected.
-		// But we need to large string anyway, it should stay around as long as the excerpt.
-		mExcerpt = new String(mSearchData.substring(0, end));
-
-		// We normalize the whitespace.
-		mExcerpt = mExcerpt.replaceAll("\\s+", " ").trim();
-
-		// TODO: would it be faster (or space efficient) to do it with Matcher/Pattern/find,
-		// i.e. look for all whitespace sequences, the "whitespace" could also include punctuation
-		// To make it faster, this counting can be done at the same time when plain text is generated.
-		//wordCount = searchData.split("\\s+").length;
-		mWordCount = Utils.countRe(mSearchData, "\\s+");
+		TransSummary summary = TransSummarizer.summarize(xmlFile, MAX_EXCERPT_LENGTH);
+		mSpeakers = summary.getSpeakers();
+		mSpeakerCount = summary.getSpeakerCount();
+		mTurnCount = summary.getTurnCount();
+		mSpeechTime = summary.getSpeechTime();
+		mExcerpt = summary.getExcerpt();
+		mWordCount = summary.getWordCount();
+		mTransVersion = xmlFile.lastModified();
 
 		// TODO: implement the usage of sync points to map seek points to scroll offsets.
 		// syncPoints.addAll(TransUtils.getSyncPoints(f));
@@ -362,43 +480,47 @@ public class Recording {
 		if (mTags == null) {
 			return;
 		}
-		File f = makeFile(TAGS, mId);
+		File f = getTagsFile(mServices.getBaseDir(), mId);
 		try {
 			if (mTags.isEmpty()) {
-				MyFileUtils.deleteFile(f);
+				SidecarFiles.delete(f);
 			} else {
-				MyFileUtils.saveFile(f, TextUtils.join(" ", mTags));
+				SidecarFiles.save(f, Tags.join(mTags, " "));
 			}
 		} catch (IOException e) {
 			addMessage("storeTags: I/O error: " + e.getMessage());
 		}
+		updateCatalog();
 	}
 
 
 	public void setToken(String token) {
 		mToken = token;
 		if (token != null) {
-			File f = makeFile(TOKENS, mId);
+			File f = getTokenFile(mServices.getBaseDir(), mId);
 			try {
-				MyFileUtils.saveFile(f, token);
+				SidecarFiles.save(f, token);
 			} catch (IOException e) {
 				addMessage("setToken: I/O error: " + e.getMessage());
 			}
+			updateCatalog();
 		}
 	}
 
 
 	public void setTrans(String xmlString) {
 		if (xmlString != null) {
-			File f = makeFile(TRANS, mId, ".xml");
+			File f = getTransFile(mServices.getBaseDir(), mId);
 			try {
-				MyFileUtils.saveFile(f, xmlString);
+				SidecarFiles.save(f, xmlString);
 				initTrans(f);
+				mServices.index(mId, f);
 			} catch (SAXException e) {
 				addMessage("setTrans: XML error: " + e.getMessage());
 			} catch (IOException e) {
 				addMessage("setTrans: I/O error: " + e.getMessage());
 			}
+			updateCatalog();
 		}
 	}
 
@@ -414,16 +536,67 @@ public class Recording {
 
 
 	public void delete() {
+		File baseDir = mServices.getBaseDir();
 		mAudioFile.delete();
-		makeFile(TOKENS, mId).delete();
-		makeFile(TRANS, mId, ".xml").delete();
-		makeFile(TAGS, mId).delete();
+		getTokenFile(baseDir, mId).delete();
+		getTransFile(baseDir, mId).delete();
+		getTagsFile(baseDir, mId).delete();
+		mServices.removeTranscription(getTransFile(baseDir, mId));
+		mServices.removeFromIndex(mId);
+		mServices.removeCatalogEntry(mId);
+	}
+
+
+	/**
+	 * @return catalog entry that describes the current state of this recording
+	 */
+	public CatalogEntry toCatalogEntry() {
+		String tags = null;
+		if (mTags != null && ! mTags.isEmpty()) {
+			tags = Tags.join(mTags, " ");
+		}
+		File baseDir = mServices.getBaseDir();
+		return new CatalogEntry(
+				mId,
+				mSize,
+				mTimestamp,
+				getTransFile(baseDir, mId).lastModified(),
+				getTagsFile(baseDir, mId).lastModified(),
+				getTokenFile(baseDir, mId).lastModified(),
+				mDuration,
+				mMime,
+				mWordCount,
+				mSpeakerCount,
+				mSpeakers,
+				mTurnCount,
+				mSpeechTime,
+				mExcerpt,
+				mToken,
+				tags,
+				getInitialState().name());
+	}
+
+
+	/**
+	 * @return catalog entry that was stored when this recording was last loaded or
+	 * updated, or <code>null</code> if the recording has never been cataloged
+	 */
+	CatalogEntry getCatalogEntry() {
+		return mCatalogEntry;
+	}
+
+
+	// Called whenever a sidecar file has been rewritten, otherwise the
+	// catalog entry would be considered out of date on the next startup.
+	void updateCatalog() {
+		mCatalogEntry = toCatalogEntry();
+		mServices.putCatalogEntry(mCatalogEntry);
 	}
 
 
 	public void setState(State state) {
 		mState = state;
-		mStateToTime.put(state, Utils.getTimestamp());
+		mStateToTime.put(state, mServices.getTimestamp());
 	}
 
 
@@ -541,104 +714,166 @@ public class Recording {
 	}
 
 
-	public static class TimestampComparator implements Comparator<Recording> {
-		public int compare(Recording n1, Recording n2) {
-			return numberCompare(n1.getAudioFile().lastModified(), n2.getAudioFile().lastModified());
+	/**
+	 * <p>Attribute by which the recordings are sorted, largest first (see {@link RecordingList#sort}).
+	 * The key of each recording is extracted once per sort, i.e. it should be read from the fields
+	 * of the recording rather than from the file system.</p>
+	 */
+	public interface SortKey {
+		long getKey(Recording rec);
+	}
+
+
+	public static class TimestampKey implements SortKey {
+		public long getKey(Recording rec) {
+			return rec.getTimestamp();
 		}
 	}
 
 
-	public static class DurationComparator implements Comparator<Recording> {
-		public int compare(Recording n1, Recording n2) {
-			return numberCompare(n1.getDuration(), n2.getDuration());
+	public static class DurationKey implements SortKey {
+		public long getKey(Recording rec) {
+			return rec.getDuration();
 		}
 	}
 
 
-	public static class SizeComparator implements Comparator<Recording> {
-		public int compare(Recording n1, Recording n2) {
-			return numberCompare(n1.getAudioFile().length(), n2.getAudioFile().length());
+	public static class SizeKey implements SortKey {
+		public long getKey(Recording rec) {
+			return rec.getSize();
 		}
 	}
 
 
-	public static class MatchComparator implements Comparator<Recording> {
-		final String query;
+	/**
+	 * <p>Sorts by the match counts that have been computed in advance (see {@link #getMatchCount(String)}),
+	 * i.e. does not search the transcriptions itself. The recordings whose count is not
+	 * known (yet) go to the end of the list.</p>
+	 */
+	public static class CountKey implements SortKey {
+		// Lower than all the values returned by getMatchCount
+		private static final int UNKNOWN = -4;
 
-		public MatchComparator(String query) {
-			this.query = query;
+		final Map<String, Integer> idToCount;
+
+		public CountKey(Map<String, Integer> idToCount) {
+			this.idToCount = idToCount;
 		}
 
-		public int compare(Recording n1, Recording n2) {
-			return numberCompare(n1.getMatchCount(query), n2.getMatchCount(query));
+		public long getKey(Recording rec) {
+			return getCount(rec);
 		}
 
-		public String getQuery() {
-			return query;
+		private int getCount(Recording rec) {
+			Integer count = idToCount.get(rec.getId());
+			return (count == null) ? UNKNOWN : count;
 		}
 	}
 
 
-	public static class TagComparator implements Comparator<Recording> {
+	/**
+	 * <p>Sorts the matching recordings by their relevance scores (highest first), and the rest
+	 * by the match counts (see {@link CountKey}). A matching recording that has no
+	 * score (e.g. it was not in the index yet) follows the ones that have a score.
+	 * The match count breaks the ties.</p>
+	 *
+	 * <p>The key of a matching recording has the highest bit (below the sign bit) set,
+	 * followed by the 32 bits of the score (in an order-preserving encoding) and 30 bits of
+	 * the match count. The key of a non-matching recording is its match count, i.e. at most 0.</p>
+	 */
+	public static class RelevanceKey implements SortKey {
+		// Lower than all the scores
+		private static final float UNKNOWN = -1;
+		private static final int COUNT_BITS = 30;
+		private static final int MAX_COUNT = (1 << COUNT_BITS) - 1;
+
+		final CountKey countKey;
+		final Map<String, Float> idToScore;
+
+		public RelevanceKey(Map<String, Integer> idToCount, Map<String, Float> idToScore) {
+			this.countKey = new CountKey(idToCount);
+			this.idToScore = idToScore;
+		}
+
+		public long getKey(Recording rec) {
+			int count = countKey.getCount(rec);
+			if (count <= 0) {
+				return count;
+			}
+			return (1L << 62) | (toSortableBits(getScore(rec)) << COUNT_BITS) | Math.min(count, MAX_COUNT);
+		}
+
+		private float getScore(Recording rec) {
+			Float score = idToScore.get(rec.getId());
+			return (score == null) ? UNKNOWN : score;
+		}
+
+		// Maps the float to an unsigned 32-bit value that has the same order
+		private static long toSortableBits(float value) {
+			int bits = Float.floatToIntBits(value);
+			bits ^= (bits >> 31) & 0x7fffffff;
+			return (long) bits - Integer.MIN_VALUE;
+		}
+	}
+
+
+	public static class TagKey implements SortKey {
 		final Set<String> tags;
 
-		public TagComparator(Set<String> tags) {
+		public TagKey(Set<String> tags) {
 			this.tags = tags;
 		}
 
-		public int compare(Recording n1, Recording n2) {
-			return numberCompare(n1.getTagValue(tags), n2.getTagValue(tags));
+		public long getKey(Recording rec) {
+			return rec.getTagValue(tags);
 		}
 	}
 
 
-	public static class WordcountComparator implements Comparator<Recording> {
-		public int compare(Recording n1, Recording n2) {
-			return numberCompare(n1.getWordCount(), n2.getWordCount());
+	public static class WordcountKey implements SortKey {
+		public long getKey(Recording rec) {
+			return rec.getWordCount();
 		}
 	}
 
 
-	public static class SpeakercountComparator implements Comparator<Recording> {
-		public int compare(Recording n1, Recording n2) {
-			return numberCompare(n1.getSpeakerCount(), n2.getSpeakerCount());
+	public static class SpeakercountKey implements SortKey {
+		public long getKey(Recording rec) {
+			return rec.getSpeakerCount();
 		}
 	}
 
 
-	private static int numberCompare(long n1, long n2) {
-		if (n1 < n2) return 1;
-		if (n1 > n2) return -1;
-		return 0;
+	static File getTransFile(File baseDir, String id) {
+		return makeFile(baseDir, TRANS, id, ".xml");
 	}
 
-	private static int numberCompare(int n1, int n2) {
-		if (n1 < n2) return 1;
-		if (n1 > n2) return -1;
-		return 0;
+
+	static File getTagsFile(File baseDir, String id) {
+		return makeFile(baseDir, TAGS, id);
+	}
+
+
+	static File getTokenFile(File baseDir, String id) {
+		return makeFile(baseDir, TOKENS, id);
 	}
 
 
-	private static File makeFile(String dirName, String id, String ext) {
-		return new File(Dirs.getBaseDir() + dirName + id + ext);
+	private static File makeFile(File baseDir, String dirName, String id, String ext) {
+		return new File(baseDir + dirName + id + ext);
 	}
 
 
-	private static File makeFile(String dirName, String id) {
-		return makeFile(dirName, id, ".txt");
+	private static File makeFile(File baseDir, String dirName, String id) {
+		return makeFile(baseDir, dirName, id, ".txt");
 	}
 
 
-	private static String formatStates(Map<State, Long> states) {
+	private String formatStates(Map<State, Long> states) {
 		String str = "\n";
 		for (State state : states.keySet()) {
-			str += state + ": " + Utils.formatMillis(states.get(state)) + "\n";
+			str += state + ": " + mServices.formatMillis(states.get(state)) + "\n";
 		}
 		return str;
 	}
-
-
-	private static CharSequence getTimestampAsString(long timestamp) {
-		return DateFormat.format(dateFormat, timestamp);
-	}
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogFile;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>On-disk catalog of recording metadata. Building a Recording from scratch
+ * means probing the audio file for its duration and parsing the transcription,
+ * the token and the tags files. The catalog remembers the results of this work,
+ * so that only the new or changed recordings need to be probed at startup.</p>
+ *
+ * <p>An entry is keyed by the name, the byte size and the modification time of the
+ * audio file. Also the modification times of the sidecar files (trans, tags, tokens)
+ * are stored so that an externally changed transcription invalidates the entry.</p>
+ *
+ * <p>All the methods are synchronized, i.e. the catalog can be shared by
+ * several loader threads. The file format is defined in {@link CatalogFile}.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class RecordingCatalog {
+
+	private static final String LOG_TAG = RecordingCatalog.class.getName();
+
+	private static RecordingCatalog sInstance;
+
+	private final File mFile;
+	private final Map<String, CatalogEntry> mEntries = new HashMap<String, CatalogEntry>();
+	private boolean mIsDirty = false;
+	// Incremented whenever the entries change
+	private int mModCount = 0;
+
+
+	public RecordingCatalog(File file) {
+		mFile = file;
+	}
+
+
+	/**
+	 * @return catalog that is stored in the Diktofon base directory
+	 * (loaded from the disk on the first call)
+	 */
+	public static synchronized RecordingCatalog getInstance() {
+		if (sInstance == null) {
+			sInstance = new RecordingCatalog(Dirs.getCatalogFile());
+			sInstance.load();
+		}
+		return sInstance;
+	}
+
+
+	/**
+	 * <p>Returns the recording that corresponds to the given audio file.
+	 * If the catalog has an up-to-date entry for the file then the recording is
+	 * constructed from this entry, otherwise the file is probed and the result
+	 * is stored in the catalog.</p>
+	 */
+	public Recording getRecording(File audioFile) {
+		CatalogEntry entry = get(audioFile);
+		if (entry != null) {
+			return new Recording(audioFile, entry, AndroidRecordingServices.getInstance());
+		}
+		Recording rec = new Recording(audioFile, AndroidRecordingServices.getInstance());
+		rec.updateCatalog();
+		return rec;
+	}
+
+
+	/**
+	 * @return entry for the given audio file or <code>null</code> if the catalog
+	 * does not have an entry for the file or if the entry is out of date
+	 */
+	public synchronized CatalogEntry get(File audioFile) {
+		CatalogEntry entry = mEntries.get(audioFile.getName());
+		if (entry == null) {
+			return null;
+		}
+		if (isUpToDate(entry, audioFile)) {
+			return entry;
+		}
+		return null;
+	}
+
+
+	public synchronized void put(CatalogEntry entry) {
+		mEntries.put(entry.id, entry);
+		mIsDirty = true;
+		mModCount++;
+	}
+
+
+	public synchronized void remove(String id) {
+		if (mEntries.remove(id) != null) {
+			mIsDirty = true;
+			mModCount++;
+		}
+	}
+
+
+	/**
+	 * <p>Removes all the entries which do not correspond to the given IDs,
+	 * i.e. forgets the recordings that have been deleted.</p>
+	 */
+	public synchronized void retainAll(Set<String> ids) {
+		Iterator<String> it = mEntries.keySet().iterator();
+		while (it.hasNext()) {
+			if (! ids.contains(it.next())) {
+				it.remove();
+				mIsDirty = true;
+				mModCount++;
+			}
+		}
+	}
+
+
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+
+	/**
+	 * @return number that changes whenever the entries change, i.e. the results
+	 * that are derived from the entries can be reused while it stays the same
+	 */
+	public synchronized int getModCount() {
+		return mModCount;
+	}
+
+
+	/**
+	 * @return map from each tag to the number of recordings that have it
+	 */
+	public synchronized Map<String, Integer> getTagCounts() {
+		Map<String, Integer> tagToCount = new HashMap<String, Integer>();
+		for (CatalogEntry entry : mEntries.values()) {
+			if (entry.tags != null) {
+				for (String tag : Utils.parseTagString(entry.tags)) {
+					if (tag.length() > 0) {
+						Integer count = tagToCount.get(tag);
+						tagToCount.put(tag, (count == null) ? 1 : count + 1);
+					}
+				}
+			}
+		}
+		return tagToCount;
+	}
+
+
+	/**
+	 * <p>Loads the catalog from the disk. A missing, old or broken catalog file
+	 * is not an error, the catalog just starts out empty.</p>
+	 */
+	public synchronized void load() {
+		mEntries.clear();
+		mIsDirty = false;
+		mModCount++;
+		if (! mFile.exists()) {
+			return;
+		}
+		try {
+			Map<String, CatalogEntry> entries = CatalogFile.read(mFile);
+			if (entries == null) {
+				Log.i(LOG_TAG, "Ignoring catalog with unsupported version: " + mFile);
+				return;
+			}
+			mEntries.putAll(entries);
+		} catch (EOFException e) {
+			Log.e(LOG_TAG, "Truncated catalog: " + mFile);
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Failed to load catalog: " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * <p>Stores the catalog on the disk, if it has changed since it was loaded.
+	 * The catalog is first written into a temporary file which then replaces the
+	 * old catalog, so that a crash cannot leave a half-written catalog behind.</p>
+	 */
+	public synchronized void save() {
+		if (! mIsDirty) {
+			return;
+		}
+		File dir = mFile.getParentFile();
+		if (dir != null && ! dir.exists() && ! dir.mkdirs()) {
+			Log.e(LOG_TAG, "Cannot create directory: " + dir);
+			return;
+		}
+		File tmpFile = new File(mFile.getAbsolutePath() + ".tmp");
+		try {
+			CatalogFile.write(tmpFile, mEntries.values());
+			if (tmpFile.renameTo(mFile)) {
+				mIsDirty = false;
+			} else {
+				Log.e(LOG_TAG, "Failed to rename " + tmpFile + " to " + mFile);
+			}
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Failed to save catalog: " + e.getMessage());
+		}
+	}
+
+
+	private static boolean isUpToDate(CatalogEntry entry, File audioFile) {
+		return entry.size == audioFile.length() &&
+				entry.timestamp == audioFile.lastModified() &&
+				entry.transTimestamp == Recording.getTransFile(Dirs.getBaseDir(), entry.id).lastModified() &&
+				entry.tagsTimestamp == Recording.getTagsFile(Dirs.getBaseDir(), entry.id).lastModified() &&
+				entry.tokenTimestamp == Recording.getTokenFile(Dirs.getBaseDir(), entry.id).lastModified();
+	}
+}
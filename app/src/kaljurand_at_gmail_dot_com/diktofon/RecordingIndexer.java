@@ -0,0 +1,259 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import org.xml.sax.SAXException;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.Bm25;
+import kaljurand_at_gmail_dot_com.diktofon.search.IntList;
+import kaljurand_at_gmail_dot_com.diktofon.search.Query;
+import kaljurand_at_gmail_dot_com.diktofon.search.SearchIndex;
+import kaljurand_at_gmail_dot_com.diktofon.search.Snippet;
+import kaljurand_at_gmail_dot_com.diktofon.search.EstonianAnalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Keeps the search index in sync with the recordings: the transcription of a
+ * recording is indexed when it is stored, and the index segments of the existing
+ * recordings are loaded (or built, if missing or out of date) when the recordings are loaded.</p>
+ *
+ * <p>Answers the match count (and relevance score) queries of the recordings. The results of the
+ * latest queries are cached, the cache is cleared whenever the index changes.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class RecordingIndexer {
+
+	private static final String LOG_TAG = RecordingIndexer.class.getName();
+
+	private static final int MAX_CACHED_QUERIES = 16;
+
+	private static RecordingIndexer sInstance;
+
+	private final SearchIndex mIndex;
+	private final Bm25 mBm25 = new Bm25();
+	private final BoundedCache<String, Map<String, Integer>> mResults =
+			new BoundedCache<String, Map<String, Integer>>(MAX_CACHED_QUERIES);
+	// Incremented whenever the index changes, so that a search that overlaps
+	// with the change does not put its (possibly stale) result into the cache.
+	private int mGeneration = 0;
+
+
+	public RecordingIndexer(SearchIndex index) {
+		mIndex = index;
+	}
+
+
+	public static synchronized RecordingIndexer getInstance() {
+		if (sInstance == null) {
+			sInstance = new RecordingIndexer(new SearchIndex(Dirs.getIndexDir(), new EstonianAnalyzer()));
+		}
+		return sInstance;
+	}
+
+
+	public SearchIndex getIndex() {
+		return mIndex;
+	}
+
+
+	/**
+	 * <p>Makes sure that the current transcription of the given recording is in the index.
+	 * This involves disk I/O, and parsing if the segment is missing, i.e. call it in the background.</p>
+	 */
+	public void ensureIndexed(Recording rec) {
+		if (rec.hasTrans()) {
+			ensureIndexed(rec.getId(), Recording.getTransFile(Dirs.getBaseDir(), rec.getId()));
+		}
+	}
+
+
+	private void ensureIndexed(String id, File transFile) {
+		long version = transFile.lastModified();
+		if (mIndex.isIndexed(id, version)) {
+			return;
+		}
+		if (mIndex.load(id, version)) {
+			invalidate(id);
+		} else {
+			index(id, transFile);
+		}
+	}
+
+
+	/**
+	 * <p>(Re)indexes the given transcription, e.g. after it has been downloaded.</p>
+	 */
+	public void index(String id, File transFile) {
+		try {
+			mIndex.index(id, transFile.lastModified(), transFile);
+		} catch (SAXException e) {
+			Log.e(LOG_TAG, "Failed to index " + id + ": " + e.getMessage());
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Failed to index " + id + ": " + e.getMessage());
+		}
+		invalidate(id);
+	}
+
+
+	public void remove(String id) {
+		mIndex.remove(id);
+		invalidate(id);
+	}
+
+
+	public void retainAll(Collection<String> ids) {
+		mIndex.retainAll(ids);
+		invalidate();
+	}
+
+
+	/**
+	 * @return number of matches of the given query in the transcription of the given recording,
+	 * -1 if the index cannot answer the query (i.e. the query is a regular expression),
+	 * or {@link RecordingServices#NOT_INDEXED} if the recording has not been indexed yet
+	 */
+	public int getMatchCount(String query, String id) {
+		if (! mIndex.isIndexed(id)) {
+			return RecordingServices.NOT_INDEXED;
+		}
+		Map<String, Integer> idToCount = getMatchCounts(query);
+		if (idToCount == null) {
+			return -1;
+		}
+		Integer count = idToCount.get(id);
+		return (count == null) ? 0 : count;
+	}
+
+
+	/**
+	 * @return map from the IDs of the matching recordings to the number of matches,
+	 * or <code>null</code> if the query cannot be answered by the index
+	 */
+	public Map<String, Integer> getMatchCounts(String query) {
+		Map<String, Integer> idToCount = mResults.get(query);
+		if (idToCount == null) {
+			Query parsedQuery = Query.parse(query, mIndex.getAnalyzer());
+			if (parsedQuery == null) {
+				return null;
+			}
+			int generation = getGeneration();
+			idToCount = mIndex.search(parsedQuery);
+			synchronized (this) {
+				if (generation == mGeneration) {
+					mResults.put(query, idToCount);
+				}
+			}
+		}
+		return idToCount;
+	}
+
+
+	/**
+	 * @return map from the IDs of the matching recordings to their BM25 scores,
+	 * or <code>null</code> if the query cannot be answered by the index
+	 */
+	public Map<String, Float> getScores(String query) {
+		Query parsedQuery = Query.parse(query, mIndex.getAnalyzer());
+		if (parsedQuery == null) {
+			return null;
+		}
+		return mIndex.getScores(parsedQuery, getMatchCounts(query), mBm25);
+	}
+
+
+	/**
+	 * @return matches of the given query in the given recording, with the start times
+	 * of the enclosing turns, or <code>null</code> if the query cannot be answered by the index
+	 */
+	public List<SearchIndex.Hit> getHits(String query, String id) {
+		Query parsedQuery = Query.parse(query, mIndex.getAnalyzer());
+		if (parsedQuery == null) {
+			return null;
+		}
+		return mIndex.getHits(parsedQuery, id);
+	}
+
+
+	/**
+	 * <p>Finds the matches of the given query in the given recording as token ranges within
+	 * the turns (see {@link SearchIndex#getTurnMatches}), indexing the transcription first
+	 * if needed. This involves disk I/O, i.e. call it in the background.</p>
+	 *
+	 * @return three ints per match (turn, first token, last token), or <code>null</code> if
+	 * the query cannot be answered by the index or the recording has no transcription
+	 */
+	public IntList getTurnMatches(String query, String id) {
+		Query parsedQuery = Query.parse(query, mIndex.getAnalyzer());
+		if (parsedQuery == null) {
+			return null;
+		}
+		File transFile = Recording.getTransFile(Dirs.getBaseDir(), id);
+		if (! transFile.exists()) {
+			return null;
+		}
+		ensureIndexed(id, transFile);
+		return mIndex.getTurnMatches(parsedQuery, id);
+	}
+
+
+	/**
+	 * @return snippet of at most the given number of tokens around the matches of the
+	 * given query in the given recording, or <code>null</code> if the recording does not match
+	 * or the query cannot be answered by the index
+	 */
+	public Snippet getSnippet(String query, String id, int windowLength) {
+		Query parsedQuery = Query.parse(query, mIndex.getAnalyzer());
+		if (parsedQuery == null) {
+			return null;
+		}
+		return mIndex.getSnippet(parsedQuery, id, windowLength);
+	}
+
+
+	/**
+	 * @return at most <code>limit</code> recordings whose transcriptions have a similar
+	 * vocabulary to the transcription of the given recording (most similar first)
+	 */
+	public List<SearchIndex.Similar> getSimilar(String id, int limit) {
+		return mIndex.getSimilar(id, limit);
+	}
+
+
+	private synchronized int getGeneration() {
+		return mGeneration;
+	}
+
+
+	// The match counts of the recording (see MatchCache) do not need to be invalidated:
+	// they are keyed by the version of the transcription, and the counts that were found
+	// before the recording was indexed are not cached (see Recording#getMatchCount).
+	private void invalidate(String id) {
+		invalidate();
+	}
+
+
+	private synchronized void invalidate() {
+		mGeneration++;
+		mResults.evictAll();
+	}
+}
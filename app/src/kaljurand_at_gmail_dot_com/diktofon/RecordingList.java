@@ -17,22 +17,27 @@
 package kaljurand_at_gmail_dot_com.diktofon;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+import kaljurand_at_gmail_dot_com.diktofon.sort.KeySort;
+
 public class RecordingList {
 
 	// List of recordings
 	private final List<Recording> mRecordings = new ArrayList<Recording>();
+	// Map of ID -> recording
+	private final Map<String, Recording> mIdToRecording = new HashMap<String, Recording>();
 	// Map of tag -> frequency (the frequency information is not really used)
 	private final Map<String, Integer> mTags = new HashMap<String, Integer>();
 
 	private Recording mCurrentRecording;
+	// Incremented whenever recordings are added, replaced or removed (but not when they are sorted)
+	private int mModCount = 0;
 
 	public RecordingList() {
 		// Don't transcribe
@@ -60,30 +65,160 @@ public class RecordingList {
 	}
 
 
+	/**
+	 * @return recording with the given ID or <code>null</code> if there is no such recording
+	 */
+	public Recording get(String id) {
+		return mIdToRecording.get(id);
+	}
+
+
 	public void add(int index, Recording rec) {
 		mRecordings.add(index, rec);
+		mIdToRecording.put(rec.getId(), rec);
 		addRecordingTags(rec);
+		mModCount++;
 	}
 
 
 	public void add(Recording rec) {
 		mRecordings.add(rec);
+		mIdToRecording.put(rec.getId(), rec);
 		addRecordingTags(rec);
+		mModCount++;
+	}
+
+
+	/**
+	 * <p>Replaces the recording that has the same ID as the given recording,
+	 * keeping its position in the list. If there is no such recording then
+	 * the given recording is added to the beginning of the list.</p>
+	 */
+	public void replace(Recording rec) {
+		Recording old = mIdToRecording.get(rec.getId());
+		int index = (old == null) ? -1 : mRecordings.indexOf(old);
+		if (index == -1) {
+			add(0, rec);
+		} else {
+			mRecordings.set(index, rec);
+			mIdToRecording.put(rec.getId(), rec);
+			addRecordingTags(rec);
+			mModCount++;
+		}
 	}
 
 
 	public void remove(int index) {
-		mRecordings.remove(index);
+		Recording rec = mRecordings.remove(index);
+		mIdToRecording.remove(rec.getId());
+		mModCount++;
 		// TODO: remove tags
 	}
 
 	public void remove(Recording rec) {
-		mRecordings.remove(rec);
+		if (mRecordings.remove(rec)) {
+			mIdToRecording.remove(rec.getId());
+			mModCount++;
+		}
 		// TODO: remove tags
 	}
 
-	public void sort(Comparator<Recording> c) {
-		Collections.sort(mRecordings, c);
+	/**
+	 * @return map from the ID of each recording to its catalog entry (the
+	 * recordings that have never been cataloged are left out), which can be
+	 * handed over to a RecordingScanner in a background thread
+	 */
+	public Map<String, CatalogEntry> getCatalogEntries() {
+		Map<String, CatalogEntry> entries = new HashMap<String, CatalogEntry>();
+		for (Recording rec : mRecordings) {
+			CatalogEntry entry = rec.getCatalogEntry();
+			if (entry != null) {
+				entries.put(rec.getId(), entry);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * @return number that changes whenever recordings are added, replaced or removed,
+	 * i.e. an order that has been computed from a copy of the list can be applied
+	 * as it is while it stays the same (see {@link #setOrder(List, int)})
+	 */
+	public int getModCount() {
+		return mModCount;
+	}
+
+
+	/**
+	 * <p>Sorts the recordings by the given key, largest first. The keys are extracted
+	 * once, and then sorted as primitives (see {@link KeySort}). The sort is stable,
+	 * i.e. the recordings with equal keys keep their order.</p>
+	 */
+	public void sort(Recording.SortKey sortKey) {
+		List<Recording> sorted = sort(mRecordings, sortKey);
+		for (int i = 0; i < sorted.size(); i++) {
+			mRecordings.set(i, sorted.get(i));
+		}
+	}
+
+
+	/**
+	 * <p>Sorts the given recordings as {@link #sort(Recording.SortKey)} does. The given list
+	 * is not changed, i.e. a copy of the recordings can be sorted in the background,
+	 * and the result then applied with {@link #setOrder(List, int)}.</p>
+	 *
+	 * @return new list of the given recordings sorted by the given key
+	 */
+	public static List<Recording> sort(List<Recording> recordings, Recording.SortKey sortKey) {
+		int size = recordings.size();
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = sortKey.getKey(recordings.get(i));
+		}
+		int[] order = KeySort.sortDescending(keys);
+		List<Recording> sorted = new ArrayList<Recording>(size);
+		for (int i = 0; i < size; i++) {
+			sorted.add(recordings.get(order[i]));
+		}
+		return sorted;
+	}
+
+
+	/**
+	 * <p>Puts the recordings into the given order, which has been computed from a copy
+	 * of this list when its modification count was the given one. If the list has not been
+	 * modified since then, the order is copied as it is. Otherwise the recordings are matched
+	 * by their IDs: the recordings that have been removed in the meantime are skipped,
+	 * and the ones that have been added follow the ordered ones.</p>
+	 */
+	public void setOrder(List<Recording> order, int modCount) {
+		if (modCount == mModCount && order.size() == mRecordings.size()) {
+			for (int i = 0; i < order.size(); i++) {
+				mRecordings.set(i, order.get(i));
+			}
+			return;
+		}
+		List<Recording> ordered = new ArrayList<Recording>(mRecordings.size());
+		for (Recording rec : order) {
+			Recording current = mIdToRecording.get(rec.getId());
+			if (current != null) {
+				ordered.add(current);
+			}
+		}
+		if (ordered.size() < mRecordings.size()) {
+			Set<String> ids = new HashSet<String>();
+			for (Recording rec : ordered) {
+				ids.add(rec.getId());
+			}
+			for (Recording rec : mRecordings) {
+				if (ids.add(rec.getId())) {
+					ordered.add(rec);
+				}
+			}
+		}
+		for (int i = 0; i < ordered.size(); i++) {
+			mRecordings.set(i, ordered.get(i));
+		}
 	}
 
 
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.SearchIndex;
+import kaljurand_at_gmail_dot_com.diktofon.search.StructuredQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>Executes a {@link StructuredQuery} over the recordings. The query is planned so that
+ * the cheap filters narrow down the recordings before the expensive ones are evaluated:
+ * first the tags (which are kept in memory and are usually the most selective),
+ * then the time and the duration ranges, then the speaker names, and finally the text query.
+ * The text query is answered by intersecting the postings of the search index with the
+ * recordings that passed the filters, only a regular expression (or a recording that
+ * has not been indexed yet) is matched against the transcription of each recording.
+ * Each step is only evaluated against the recordings that passed the previous ones.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class RecordingQuery {
+
+	// Match count of a recording that passes the filters of a query without text
+	private static final int MATCH_COUNT_FILTERS_ONLY = 1;
+
+	private final StructuredQuery mQuery;
+
+
+	public RecordingQuery(String query) {
+		mQuery = StructuredQuery.parse(query);
+	}
+
+
+	/**
+	 * @return text query or <code>null</code> if the query consists of the filters only
+	 */
+	public String getText() {
+		return mQuery.getText();
+	}
+
+
+	/**
+	 * <p>Returns the recordings that pass the filters of the query (in the given order).
+	 * The recordings that do not pass are put into the given map with the match count 0.</p>
+	 */
+	public List<Recording> filter(List<Recording> recordings, Map<String, Integer> rejected) {
+		if (! mQuery.hasFilters()) {
+			return recordings;
+		}
+		List<Recording> candidates = recordings;
+		if (! mQuery.getTags().isEmpty()) {
+			candidates = filterTags(candidates, rejected);
+		}
+		if (mQuery.hasTimeFilter() || mQuery.hasDurationFilter()) {
+			candidates = filterRanges(candidates, rejected);
+		}
+		if (! mQuery.getSpeakers().isEmpty()) {
+			candidates = filterSpeakers(candidates, rejected);
+		}
+		return candidates;
+	}
+
+
+	/**
+	 * <p>Answers the text query from the postings of the search index, restricted to
+	 * the given recordings (i.e. the ones that passed the filters). The counts of the
+	 * recordings that the index can answer are put into the given map, recordings that
+	 * are indexed but not among the postings get the count 0 without being looked at.
+	 * Returns the recordings that the index cannot answer (the query is a regular expression,
+	 * the recording has no transcription or has not been indexed yet), their counts
+	 * must be found one by one with {@link #getMatchCount(Recording)}.</p>
+	 *
+	 * <p>If the query has no text then all the given recordings are put into the map
+	 * with the count 1.</p>
+	 */
+	public List<Recording> getIndexedMatchCounts(List<Recording> recordings, RecordingIndexer indexer, Map<String, Integer> counts) {
+		String text = mQuery.getText();
+		if (text == null) {
+			for (Recording rec : recordings) {
+				counts.put(rec.getId(), MATCH_COUNT_FILTERS_ONLY);
+			}
+			return new ArrayList<Recording>();
+		}
+		Map<String, Integer> idToCount = indexer.getMatchCounts(text);
+		if (idToCount == null) {
+			return recordings;
+		}
+		SearchIndex index = indexer.getIndex();
+		List<Recording> unanswered = new ArrayList<Recording>();
+		for (Recording rec : recordings) {
+			String id = rec.getId();
+			if (rec.hasTrans() && index.isIndexed(id)) {
+				Integer count = idToCount.get(id);
+				counts.put(id, (count == null) ? 0 : count);
+			} else {
+				unanswered.add(rec);
+			}
+		}
+		return unanswered;
+	}
+
+
+	/**
+	 * @return number of matches of the text query in the given recording
+	 * that has passed the filters (see {@link Recording#getMatchCount(String)}),
+	 * or 1 if the query has no text
+	 */
+	public int getMatchCount(Recording rec) {
+		if (mQuery.getText() == null) {
+			return MATCH_COUNT_FILTERS_ONLY;
+		}
+		return rec.getMatchCount(mQuery.getText());
+	}
+
+
+	private List<Recording> filterTags(List<Recording> recordings, Map<String, Integer> rejected) {
+		List<Recording> passed = new ArrayList<Recording>();
+		for (Recording rec : recordings) {
+			List<String> tags = new ArrayList<String>();
+			for (String tag : rec.getTags()) {
+				tags.add(tag.toLowerCase(Locale.ENGLISH));
+			}
+			if (tags.containsAll(mQuery.getTags())) {
+				passed.add(rec);
+			} else {
+				rejected.put(rec.getId(), 0);
+			}
+		}
+		return passed;
+	}
+
+
+	private List<Recording> filterRanges(List<Recording> recordings, Map<String, Integer> rejected) {
+		List<Recording> passed = new ArrayList<Recording>();
+		for (Recording rec : recordings) {
+			if (mQuery.acceptsTime(rec.getTimestamp()) && mQuery.acceptsDuration(rec.getDuration())) {
+				passed.add(rec);
+			} else {
+				rejected.put(rec.getId(), 0);
+			}
+		}
+		return passed;
+	}
+
+
+	private List<Recording> filterSpeakers(List<Recording> recordings, Map<String, Integer> rejected) {
+		List<Recording> passed = new ArrayList<Recording>();
+		for (Recording rec : recordings) {
+			if (hasSpeakers(rec)) {
+				passed.add(rec);
+			} else {
+				rejected.put(rec.getId(), 0);
+			}
+		}
+		return passed;
+	}
+
+
+	// Every speaker of the query must be contained in the name of some speaker of the recording
+	private boolean hasSpeakers(Recording rec) {
+		for (String speaker : mQuery.getSpeakers()) {
+			boolean isFound = false;
+			for (String name : rec.getSpeakers().values()) {
+				if (name != null && name.toLowerCase(Locale.ENGLISH).contains(speaker)) {
+					isFound = true;
+					break;
+				}
+			}
+			if (! isFound) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+
+/**
+ * <p>Compares the recordings directory (and the trans, tags and tokens sidecar
+ * directories) against the recordings that are already loaded, and finds out which
+ * recordings have been added, modified or removed in the meantime. This allows a
+ * reload to touch only the recordings that have changed.</p>
+ *
+ * <p>Each directory is listed only once. A recording is considered modified if the size or the
+ * modification time of its audio file, or the modification time of any of its sidecar files,
+ * differs from its catalog entry. A sidecar file that is not in the listing is not stat'ed at all.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class RecordingScanner {
+
+	private final List<File> mAdded = new ArrayList<File>();
+	private final List<File> mModified = new ArrayList<File>();
+	private final List<String> mRemoved = new ArrayList<String>();
+
+
+	/**
+	 * @param audioFiles current content of the recordings directory
+	 * @param known map from the ID of each loaded recording to its catalog entry
+	 */
+	public RecordingScanner(File[] audioFiles, Map<String, CatalogEntry> known) {
+		this(Arrays.asList(audioFiles), known.keySet(), known,
+				listNames(Recording.TRANS), listNames(Recording.TAGS), listNames(Recording.TOKENS));
+	}
+
+
+	/**
+	 * <p>Checks only the recordings with the given IDs (e.g. the ones reported by the
+	 * RecordingsWatcher), without listing any directories.</p>
+	 *
+	 * @param ids IDs of the recordings to check
+	 * @param known map from the ID of each loaded recording to its catalog entry
+	 */
+	public static RecordingScanner forIds(Set<String> ids, Map<String, CatalogEntry> known) {
+		List<File> audioFiles = new ArrayList<File>();
+		Set<String> knownIds = new HashSet<String>();
+		for (String id : ids) {
+			File file = new File(Dirs.getRecordingsDir(), id);
+			if (file.isFile()) {
+				audioFiles.add(file);
+			}
+			if (known.containsKey(id)) {
+				knownIds.add(id);
+			}
+		}
+		return new RecordingScanner(audioFiles, knownIds, known, null, null, null);
+	}
+
+
+	// The name sets are the content of the sidecar directories, if a set
+	// is null then the corresponding file is stat'ed directly.
+	private RecordingScanner(List<File> audioFiles, Set<String> knownIds, Map<String, CatalogEntry> known,
+			Set<String> transNames, Set<String> tagsNames, Set<String> tokenNames) {
+		Set<String> ids = new HashSet<String>();
+		for (File file : audioFiles) {
+			String id = file.getName();
+			ids.add(id);
+			CatalogEntry entry = known.get(id);
+			if (entry == null) {
+				mAdded.add(file);
+			} else if (entry.size != file.length() ||
+					entry.timestamp != file.lastModified() ||
+					entry.transTimestamp != getTimestamp(transNames, Recording.getTransFile(Dirs.getBaseDir(), id)) ||
+					entry.tagsTimestamp != getTimestamp(tagsNames, Recording.getTagsFile(Dirs.getBaseDir(), id)) ||
+					entry.tokenTimestamp != getTimestamp(tokenNames, Recording.getTokenFile(Dirs.getBaseDir(), id))) {
+				mModified.add(file);
+			}
+		}
+
+		for (String id : knownIds) {
+			if (! ids.contains(id)) {
+				mRemoved.add(id);
+			}
+		}
+	}
+
+
+	/**
+	 * @return audio files that do not correspond to any of the loaded recordings
+	 */
+	public List<File> getAdded() {
+		return mAdded;
+	}
+
+
+	/**
+	 * @return audio files whose recordings have changed since they were loaded
+	 */
+	public List<File> getModified() {
+		return mModified;
+	}
+
+
+	/**
+	 * @return IDs of the loaded recordings whose audio file does not exist anymore
+	 */
+	public List<String> getRemoved() {
+		return mRemoved;
+	}
+
+
+	public boolean isEmpty() {
+		return mAdded.isEmpty() && mModified.isEmpty() && mRemoved.isEmpty();
+	}
+
+
+	// The catalog stores 0 as the time stamp of a missing file (as does File.lastModified)
+	private static long getTimestamp(Set<String> names, File file) {
+		if (names == null || names.contains(file.getName())) {
+			return file.lastModified();
+		}
+		return 0;
+	}
+
+
+	private static Set<String> listNames(String dirName) {
+		String[] names = new File(Dirs.getBaseDir() + dirName).list();
+		if (names == null) {
+			return Collections.emptySet();
+		}
+		Set<String> set = new HashSet<String>(names.length);
+		Collections.addAll(set, names);
+		return set;
+	}
+}
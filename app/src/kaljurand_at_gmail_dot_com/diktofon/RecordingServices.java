@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import org.xml.sax.SAXException;
+
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <p>Everything that a {@link Recording} needs from the rest of the app: the location of its
+ * files, the platform calls (duration of an audio file that the header probes do not support,
+ * the clock, date formatting), and the shared caches, the search index and the catalog that
+ * the recording keeps up to date. The recording itself does not depend on the Android framework,
+ * i.e. it can be constructed and sorted outside of the app, e.g. in the benchmarks.</p>
+ *
+ * <p>The implementation that the app uses is {@link AndroidRecordingServices}.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public interface RecordingServices {
+
+	/**
+	 * Indexed match count of a recording that has not been indexed yet
+	 */
+	int NOT_INDEXED = -2;
+
+	/**
+	 * @return directory that contains the sidecar files (see {@link Recording#TRANS}, etc.)
+	 */
+	File getBaseDir();
+
+	String guessMime(File audioFile);
+
+	/**
+	 * @return duration of the given audio file in milliseconds (0 if it cannot be found)
+	 */
+	int getDuration(File audioFile);
+
+	/**
+	 * @return current time (in milliseconds) of the clock that times the states of the recordings
+	 */
+	long getTimestamp();
+
+	CharSequence formatTimestamp(long timestamp);
+
+	String formatMillis(long millis);
+
+	String formatSize(long size);
+
+	/**
+	 * @return plain text of the given transcription file (possibly cached)
+	 */
+	String getPlainText(File transFile) throws SAXException, IOException;
+
+	/**
+	 * <p>Forgets the cached version of the given transcription file.</p>
+	 */
+	void removeTranscription(File transFile);
+
+	/**
+	 * @return number of matches of the query in the indexed transcription of the given recording,
+	 * -1 if the query cannot be answered by the index (i.e. it is a regular expression),
+	 * or {@link #NOT_INDEXED}
+	 */
+	int getIndexedMatchCount(String query, String id);
+
+	void index(String id, File transFile);
+
+	void removeFromIndex(String id);
+
+	void putCatalogEntry(CatalogEntry entry);
+
+	void removeCatalogEntry(String id);
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Watches the recordings directory and the trans, tags and tokens sidecar
+ * directories for files that are added, removed or rewritten by somebody else
+ * (another activity, the file manager, <code>adb push</code>, ...).</p>
+ *
+ * <p>The events arrive on the FileObserver thread, they are mapped to recording IDs
+ * and coalesced. The listener is called on the main thread with the set of changed IDs
+ * once the directories have been quiet for {@link #DEBOUNCE_DELAY} milliseconds, so that
+ * e.g. copying a hundred files results in a single update.</p>
+ *
+ * <p>Only the events that are sent when a file is complete are observed (i.e. closing a
+ * file that was open for writing, moving a file, deleting a file), a recording that is
+ * still being written does not show up before it is finished.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class RecordingsWatcher {
+
+	public interface Listener {
+		/**
+		 * @param ids IDs of the recordings whose audio file or sidecar files have changed
+		 */
+		void onRecordingsChanged(Set<String> ids);
+	}
+
+	private static final String LOG_TAG = RecordingsWatcher.class.getName();
+
+	public static final int DEBOUNCE_DELAY = 500;
+
+	private static final int EVENTS = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO |
+			FileObserver.MOVED_FROM | FileObserver.DELETE;
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final List<FileObserver> mObservers = new ArrayList<FileObserver>();
+	private final Set<String> mPendingIds = new HashSet<String>();
+	private final Listener mListener;
+
+	private final Runnable mNotify = new Runnable() {
+		public void run() {
+			Set<String> ids;
+			synchronized (mPendingIds) {
+				ids = new HashSet<String>(mPendingIds);
+				mPendingIds.clear();
+			}
+			if (! ids.isEmpty()) {
+				mListener.onRecordingsChanged(ids);
+			}
+		}
+	};
+
+
+	public RecordingsWatcher(Listener listener) {
+		mListener = listener;
+		String baseDir = Dirs.getBaseDir().getAbsolutePath();
+		mObservers.add(new DirObserver(Dirs.getRecordingsDir().getAbsolutePath(), ""));
+		mObservers.add(new DirObserver(baseDir + Recording.TRANS, ".xml"));
+		mObservers.add(new DirObserver(baseDir + Recording.TAGS, ".txt"));
+		mObservers.add(new DirObserver(baseDir + Recording.TOKENS, ".txt"));
+	}
+
+
+	/**
+	 * <p>Starts watching. Note that a directory that does not exist
+	 * at this point is not watched even if it is created later.</p>
+	 */
+	public void start() {
+		for (FileObserver observer : mObservers) {
+			observer.startWatching();
+		}
+	}
+
+
+	public void stop() {
+		for (FileObserver observer : mObservers) {
+			observer.stopWatching();
+		}
+		mHandler.removeCallbacks(mNotify);
+		synchronized (mPendingIds) {
+			mPendingIds.clear();
+		}
+	}
+
+
+	private void onChange(String id) {
+		synchronized (mPendingIds) {
+			mPendingIds.add(id);
+		}
+		// Restart the quiet period
+		mHandler.removeCallbacks(mNotify);
+		mHandler.postDelayed(mNotify, DEBOUNCE_DELAY);
+	}
+
+
+	/**
+	 * <p>Maps the names of the files in the given directory to the recording IDs
+	 * by removing the given extension.</p>
+	 */
+	private class DirObserver extends FileObserver {
+
+		private final String mExtension;
+
+		public DirObserver(String path, String extension) {
+			super(path, EVENTS);
+			mExtension = extension;
+		}
+
+		@Override
+		public void onEvent(int event, String path) {
+			if (path == null || ! Dirs.FILENAME_FILTER.accept(null, path)) {
+				return;
+			}
+			String name = new File(path).getName();
+			if (! name.endsWith(mExtension) || name.length() == mExtension.length()) {
+				return;
+			}
+			String id = name.substring(0, name.length() - mExtension.length());
+			Log.i(LOG_TAG, "onEvent: " + event + ": " + id);
+			onChange(id);
+		}
+	}
+}
@@ -16,13 +16,163 @@
 
 package kaljurand_at_gmail_dot_com.diktofon;
 
+import android.app.SearchManager;
 import android.content.SearchRecentSuggestionsProvider;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.StructuredQuery;
+import kaljurand_at_gmail_dot_com.diktofon.search.Suggester;
+import kaljurand_at_gmail_dot_com.diktofon.search.Tokenizer;
+
+/**
+ * <p>Suggests the recent queries that start with the typed text, followed by the
+ * completions of the last word of the typed text, drawn from the words of the transcriptions
+ * (see {@link kaljurand_at_gmail_dot_com.diktofon.search.SearchIndex#getSuggestions})
+ * and from the tags, ranked by the number of recordings that contain the word or have the tag.
+ * The tags are suggested as <code>tag:</code> filters (see {@link StructuredQuery}),
+ * after <code>tag:</code> only the tags are suggested.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
 public class SearchSuggestionsProvider extends SearchRecentSuggestionsProvider {
 	public final static String AUTHORITY = "kaljurand_at_gmail_dot_com.diktofon.SearchSuggestionsProvider";
 	public final static int MODE = DATABASE_MODE_QUERIES;
 
+	private static final int MAX_SUGGESTIONS = 10;
+
+	private static final String[] COLUMNS = {
+		"_id",
+		SearchManager.SUGGEST_COLUMN_TEXT_1,
+		SearchManager.SUGGEST_COLUMN_TEXT_2,
+		SearchManager.SUGGEST_COLUMN_ICON_1,
+		SearchManager.SUGGEST_COLUMN_QUERY
+	};
+
+	// Tag suggestions, rebuilt when the catalog changes
+	private Suggester mTagSuggester = null;
+	private int mTagModCount = -1;
+
 	public SearchSuggestionsProvider() {
 		setupSuggestions(AUTHORITY, MODE);
 	}
+
+
+	@Override
+	public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+		Cursor recent = super.query(uri, projection, selection, selectionArgs, sortOrder);
+		String text = (selectionArgs == null || selectionArgs.length == 0) ? null : selectionArgs[0];
+		int start = getLastWordStart(text);
+		if (recent == null || start == -1) {
+			return recent;
+		}
+
+		MatrixCursor cursor = new MatrixCursor(COLUMNS);
+		Set<String> queries = new HashSet<String>();
+		try {
+			int textColumn = recent.getColumnIndex(SearchManager.SUGGEST_COLUMN_TEXT_1);
+			int iconColumn = recent.getColumnIndex(SearchManager.SUGGEST_COLUMN_ICON_1);
+			int queryColumn = recent.getColumnIndex(SearchManager.SUGGEST_COLUMN_QUERY);
+			while (recent.moveToNext() && queries.size() < MAX_SUGGESTIONS) {
+				String query = recent.getString(queryColumn);
+				queries.add(query);
+				cursor.addRow(new Object[] {
+						queries.size(),
+						recent.getString(textColumn),
+						null,
+						(iconColumn == -1) ? null : recent.getString(iconColumn),
+						query });
+			}
+		} finally {
+			recent.close();
+		}
+
+		String head = text.substring(0, start);
+		String prefix = text.substring(start).toLowerCase(Locale.ENGLISH);
+		boolean isTag = head.toLowerCase(Locale.ENGLISH).endsWith(StructuredQuery.TAG);
+		for (Suggester.Suggestion suggestion : getSuggestions(prefix, MAX_SUGGESTIONS - queries.size(), isTag)) {
+			String query = head + suggestion.word;
+			if (queries.add(query)) {
+				cursor.addRow(new Object[] {
+						queries.size(),
+						query,
+						String.format(getContext().getString(R.string.suggestion_count), suggestion.weight),
+						null,
+						query });
+			}
+		}
+		return cursor;
+	}
+
+
+	/**
+	 * @return words and tags (as <code>tag:</code> filters) that start with the given prefix,
+	 * heaviest first, or only the tags (without the <code>tag:</code>) if the prefix follows
+	 * <code>tag:</code>
+	 */
+	private List<Suggester.Suggestion> getSuggestions(String prefix, int limit, boolean isTag) {
+		List<Suggester.Suggestion> suggestions = new ArrayList<Suggester.Suggestion>();
+		if (limit <= 0) {
+			return suggestions;
+		}
+		if (isTag) {
+			return getTagSuggester().suggest(prefix, limit);
+		}
+		suggestions.addAll(RecordingIndexer.getInstance().getIndex().getSuggestions(prefix, limit));
+		for (Suggester.Suggestion tag : getTagSuggester().suggest(prefix, limit)) {
+			suggestions.add(new Suggester.Suggestion(StructuredQuery.TAG + tag.word, tag.weight));
+		}
+		// Merging the two ranked lists (stable, i.e. the words before the tags of the same weight)
+		List<Suggester.Suggestion> merged = new ArrayList<Suggester.Suggestion>(suggestions.size());
+		for (Suggester.Suggestion suggestion : suggestions) {
+			int i = merged.size();
+			while (i > 0 && merged.get(i - 1).weight < suggestion.weight) {
+				i--;
+			}
+			merged.add(i, suggestion);
+		}
+		return merged.subList(0, Math.min(limit, merged.size()));
+	}
+
+
+	private synchronized Suggester getTagSuggester() {
+		RecordingCatalog catalog = RecordingCatalog.getInstance();
+		int modCount = catalog.getModCount();
+		if (mTagSuggester == null || modCount != mTagModCount) {
+			Map<String, Integer> tagToCount = new HashMap<String, Integer>();
+			for (Map.Entry<String, Integer> entry : catalog.getTagCounts().entrySet()) {
+				String tag = entry.getKey().toLowerCase(Locale.ENGLISH);
+				Integer count = tagToCount.get(tag);
+				tagToCount.put(tag, (count == null) ? entry.getValue() : count + entry.getValue());
+			}
+			mTagSuggester = new Suggester(tagToCount);
+			mTagModCount = modCount;
+		}
+		return mTagSuggester;
+	}
+
+
+	/**
+	 * @return offset of the word at the end of the text, or -1
+	 * if the text does not end with a word (e.g. it ends with a space)
+	 */
+	private static int getLastWordStart(String text) {
+		if (text == null) {
+			return -1;
+		}
+		int start = text.length();
+		while (start > 0 && Tokenizer.isWordChar(text.charAt(start - 1))) {
+			start--;
+		}
+		return (start == text.length()) ? -1 : start;
+	}
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon;
+
+import org.xml.sax.SAXException;
+
+import ee.ioc.phon.netspeechapi.trans.Transcription;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <p>Process-wide cache of parsed transcriptions. The recordings do not hold on to their
+ * transcription (the DOM of a long meeting can take megabytes), they only remember
+ * the derived fields (word count, excerpt, ...) and load the full transcription
+ * through this cache when it is needed (e.g. for searching).</p>
+ *
+ * <p>The cache is bounded by the estimated memory footprint of the entries (in kilobytes),
+ * by default 1/8 of the heap. An entry is reloaded if the transcription file has
+ * been modified after it was cached. The cache should be trimmed whenever the
+ * system reports memory pressure, see {@link #trimMemory(int)}.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class TranscriptionCache {
+
+	private static final String LOG_TAG = TranscriptionCache.class.getName();
+
+	// The values of the ComponentCallbacks2.TRIM_MEMORY_* constants, which
+	// are not available in the Android API level that we compile against.
+	public static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
+	public static final int TRIM_MEMORY_RUNNING_LOW = 10;
+	public static final int TRIM_MEMORY_RUNNING_CRITICAL = 15;
+	public static final int TRIM_MEMORY_UI_HIDDEN = 20;
+	public static final int TRIM_MEMORY_BACKGROUND = 40;
+	public static final int TRIM_MEMORY_MODERATE = 60;
+	public static final int TRIM_MEMORY_COMPLETE = 80;
+
+	// Rough ratio between the size of the DOM and the size of the plain text (in chars)
+	private static final int DOM_OVERHEAD = 8;
+
+	private static TranscriptionCache sInstance;
+
+	private final BoundedCache<String, Item> mCache;
+
+
+	public TranscriptionCache(int maxSizeInKb) {
+		mCache = new BoundedCache<String, Item>(maxSizeInKb) {
+			@Override
+			protected int sizeOf(String key, Item item) {
+				return item.getSizeInKb();
+			}
+		};
+	}
+
+
+	public static synchronized TranscriptionCache getInstance() {
+		if (sInstance == null) {
+			int maxSizeInKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+			sInstance = new TranscriptionCache(Math.max(1, maxSizeInKb));
+		}
+		return sInstance;
+	}
+
+
+	/**
+	 * <p>Returns the parsed transcription from the given file, the file
+	 * is parsed only if the cache does not have an up-to-date entry for it.</p>
+	 */
+	public Item get(File file) throws SAXException, IOException {
+		String key = file.getAbsolutePath();
+		Item item = mCache.get(key);
+		if (item != null && item.mTimestamp == file.lastModified()) {
+			return item;
+		}
+		item = new Item(file);
+		mCache.put(key, item);
+		return item;
+	}
+
+
+	public void remove(File file) {
+		mCache.remove(file.getAbsolutePath());
+	}
+
+
+	/**
+	 * <p>Releases some or all of the cached transcriptions depending on the
+	 * given level (one of the TRIM_MEMORY_* constants).</p>
+	 */
+	public void trimMemory(int level) {
+		if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+			mCache.evictAll();
+		} else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_LOW) {
+			mCache.trimToSize(mCache.maxSize() / 2);
+		}
+		Log.i(LOG_TAG, "trimMemory(" + level + "): " + mCache);
+	}
+
+
+	public void evictAll() {
+		mCache.evictAll();
+	}
+
+
+	@Override
+	public String toString() {
+		return mCache.toString();
+	}
+
+
+	/**
+	 * <p>Transcription together with its plain text (which is needed for searching
+	 * and which would be expensive to regenerate from the DOM).</p>
+	 */
+	public static class Item {
+		private final long mTimestamp;
+		private final Transcription mTranscription;
+		private final String mPlainText;
+
+		private Item(File file) throws SAXException, IOException {
+			mTimestamp = file.lastModified();
+			mTranscription = new Transcription(file);
+			mPlainText = mTranscription.getPlainText();
+		}
+
+		public Transcription getTranscription() {
+			return mTranscription;
+		}
+
+		public String getPlainText() {
+			return mPlainText;
+		}
+
+		private int getSizeInKb() {
+			return 1 + (int) ((long) mPlainText.length() * 2 * DOM_OVERHEAD / 1024);
+		}
+	}
+}
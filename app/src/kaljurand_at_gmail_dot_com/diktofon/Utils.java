@@ -24,17 +24,17 @@ import android.net.Uri;
 import android.os.Environment;
 import android.os.SystemClock;
 import android.provider.MediaStore;
-import android.text.TextUtils.SimpleStringSplitter;
 import android.widget.Toast;
 
+import kaljurand_at_gmail_dot_com.diktofon.audio.DurationProbeEngine;
+import kaljurand_at_gmail_dot_com.diktofon.search.Tags;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * <p>A collection of static convenience methods.</p>
@@ -46,20 +46,6 @@ public class Utils {
 	public static final String[] EMPTY_STRING_ARRAY = new String[0];
 
 
-	/**
-	 * <p>Returns the number of case insensitive regexp matches in
-	 * the given string using the given regexp.</p>
-	 */
-	public static int countRe(String data, String re) {
-		Matcher m = Pattern.compile(re, Pattern.CASE_INSENSITIVE).matcher(data);
-		int count = 0;
-		while (m.find()) {
-			count++;
-		}
-		return count;
-	}
-
-
 	// Returns milliseconds since boot, including time spent in sleep.
 	public static long getTimestamp() {
 		return SystemClock.elapsedRealtime();
@@ -67,12 +53,10 @@ public class Utils {
 
 
 	/**
-	 * Another option: return str.split("\\s+");
+	 * <p>Returns the whitespace-separated tags of the given string (see {@link Tags#parse(String)}).</p>
 	 */
 	public static Iterable<String> parseTagString(String str) {
-		SimpleStringSplitter splitter = new SimpleStringSplitter(' ');
-		splitter.setString(Utils.normalizeWhitespace(str));
-		return splitter;
+		return Tags.parse(str);
 	}
 
 
@@ -98,10 +82,21 @@ public class Utils {
 
 	/**
 	 * <p>Returns the duration (in milliseconds) of the audio file located at the given path.
+	 * The duration is first looked up from the file headers (which is fast), and only if
+	 * the format is not supported by the header probes, then MediaPlayer is used.
 	 * If something happens, e.g. the audio file is not there, the MediaPlayer
 	 * could not be started, etc., then returns 0.</p>
 	 */
 	public static int getDuration(String path) {
+		int duration = DurationProbeEngine.getDefault().getDuration(new File(path));
+		if (duration >= 0) {
+			return duration;
+		}
+		return getDurationUsingMediaPlayer(path);
+	}
+
+
+	private static int getDurationUsingMediaPlayer(String path) {
 		MediaPlayer mp = new MediaPlayer();
 		int duration = 0;
 		try {
@@ -18,10 +18,10 @@ package kaljurand_at_gmail_dot_com.diktofon.activity;
 
 import android.app.Activity;
 import android.app.AlertDialog;
-import android.app.ProgressDialog;
 import android.app.SearchManager;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
@@ -29,27 +29,49 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.provider.MediaStore;
 import android.provider.SearchRecentSuggestions;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
+import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.Window;
+import android.view.inputmethod.InputMethodManager;
 import android.widget.AdapterView;
+import android.widget.EditText;
 import android.widget.ListAdapter;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.ListView;
+import android.widget.TextView;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.PatternSyntaxException;
 
 import ee.ioc.phon.netspeechapi.trans.Transcription;
 
@@ -58,14 +80,30 @@ import kaljurand_at_gmail_dot_com.diktofon.Dirs;
 import kaljurand_at_gmail_dot_com.diktofon.Executable;
 import kaljurand_at_gmail_dot_com.diktofon.GuiUtils;
 import kaljurand_at_gmail_dot_com.diktofon.Log;
+import kaljurand_at_gmail_dot_com.diktofon.MatchCache;
 import kaljurand_at_gmail_dot_com.diktofon.MyFileUtils;
+import kaljurand_at_gmail_dot_com.diktofon.PatternCache;
 import kaljurand_at_gmail_dot_com.diktofon.Recording;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingCatalog;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingIndexer;
 import kaljurand_at_gmail_dot_com.diktofon.RecordingList;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingQuery;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingScanner;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingsWatcher;
 import kaljurand_at_gmail_dot_com.diktofon.R;
+import kaljurand_at_gmail_dot_com.diktofon.Ranker;
 import kaljurand_at_gmail_dot_com.diktofon.SearchSuggestionsProvider;
+import kaljurand_at_gmail_dot_com.diktofon.TranscriptionCache;
 import kaljurand_at_gmail_dot_com.diktofon.Utils;
 import kaljurand_at_gmail_dot_com.diktofon.adapter.RecordingListAdapter;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
 import kaljurand_at_gmail_dot_com.diktofon.provider.Speaker;
+import kaljurand_at_gmail_dot_com.diktofon.search.Analyzer;
+import kaljurand_at_gmail_dot_com.diktofon.search.Query;
+import kaljurand_at_gmail_dot_com.diktofon.search.SearchIndex;
+import kaljurand_at_gmail_dot_com.diktofon.search.Snippet;
+import kaljurand_at_gmail_dot_com.diktofon.search.StructuredQuery;
+import kaljurand_at_gmail_dot_com.diktofon.sort.KeySort;
 
 /**
  * <p>Main activity of the Diktofon app. Displays the list of recordings, allows them
@@ -84,6 +122,9 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 	private static final int ACTIVITY_SELECT_TAGS_FOR_SORT = 4;
 	private static final int ACTIVITY_PICK_AUDIO = 5;
 
+	// Maximum number of recordings in the list of similar recordings
+	private static final int MAX_SIMILAR = 10;
+
 	private static final String LOG_TAG = RecordingListActivity.class.getName();
 
 	private SharedPreferences mPrefs;
@@ -91,18 +132,46 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 	private RecordingList mRecordings;
 
 	private TransHandler mHandler = null;
+	// Either the full load (LoadRecordings) or the rescan (RescanRecordings)
+	private AsyncTask<File, ?, ?> mLoadRecordings = null;
+
+	// Watches the recordings directories for changes made outside of this activity
+	private RecordingsWatcher mWatcher = null;
+	// IDs of the recordings that have changed but have not been rescanned yet
+	private final Set<String> mChangedIds = new HashSet<String>();
 
 	private String mQuery;
+	// Map of recording ID -> number of matches of mQuery (partial while mSearchRecordings is running)
+	private Map<String, Integer> mMatchCounts = new HashMap<String, Integer>();
+	// Map of recording ID -> snippet around the matches of mQuery (empty for a regular expression)
+	private Map<String, Snippet> mMatchSnippets = new HashMap<String, Snippet>();
+	// Builds the snippets of the matching recordings that are shown (null if there is no query)
+	private LoadSnippets mLoadSnippets = null;
+	private SearchRecordings mSearchRecordings = null;
+	// The last query whose search ran to completion and its counts, the search
+	// for a longer version of this query only needs to look at the recordings that matched it.
+	private String mCompletedQuery = null;
+	private Map<String, Integer> mCompletedCounts = null;
+	private EditText mSearchBar;
+
+	// Shared by the searches, so that search-as-you-type does not create a thread pool per keystroke
+	private static ExecutorService sSearchExecutor = null;
+	// Builds the snippets one at a time, so that they do not compete with the search for the cores
+	private static ExecutorService sSnippetExecutor = null;
 
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
+		// Shows the progress of loading the recordings
+		requestWindowFeature(Window.FEATURE_PROGRESS);
+		requestWindowFeature(Window.FEATURE_INDETERMINATE_PROGRESS);
 
 		mHandler = new TransHandler(this);
 
 		mPrefs = PreferenceManager.getDefaultSharedPreferences(getBaseContext());
 		MyFileUtils.createNomedia();
 
+		setContentView(R.layout.recordings);
 		mListView = getListView();
 		mListView.setFastScrollEnabled(true);
 
@@ -116,8 +185,36 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 			}
 		});
 
+		mSearchBar = (EditText) findViewById(R.id.search_bar);
+		mSearchBar.addTextChangedListener(new TextWatcher() {
+			public void afterTextChanged(Editable s) {
+				if (mSearchBar.getVisibility() == View.VISIBLE) {
+					setQuery(s.toString());
+				}
+			}
+			public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+			public void onTextChanged(CharSequence s, int start, int before, int count) {}
+		});
+		mSearchBar.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+			public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
+				if (mQuery != null) {
+					saveRecentQuery(mQuery);
+				}
+				hideKeyboard();
+				return true;
+			}
+		});
+
 		handleIntent(getIntent());
 		registerForContextMenu(mListView);
+
+		mWatcher = new RecordingsWatcher(new RecordingsWatcher.Listener() {
+			public void onRecordingsChanged(Set<String> ids) {
+				mChangedIds.addAll(ids);
+				rescanChangedRecordings();
+			}
+		});
+		mWatcher.start();
 	}
 
 	@Override
@@ -130,13 +227,89 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 	}
 
 
+	/**
+	 * <p>Tagging and transcribing change the catalog entries of the recordings,
+	 * we store the catalog in the background.</p>
+	 */
+	@Override
+	public void onStop() {
+		super.onStop();
+		new Thread() {
+			public void run() {
+				RecordingCatalog.getInstance().save();
+			}
+		}.start();
+	}
+
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
+		mWatcher.stop();
+		if (mLoadRecordings != null) {
+			mLoadRecordings.cancel(true);
+		}
+		if (mSearchRecordings != null) {
+			mSearchRecordings.cancel(true);
+		}
+		if (mLoadSnippets != null) {
+			mLoadSnippets.cancel();
+		}
 		set(mPrefs, getString(R.string.keyRefresh), true);
 	}
 
 
+	/**
+	 * <p>Opens the search bar, which searches the list while the query is being typed.
+	 * If the search bar is already open then the search dialog is opened,
+	 * which offers voice search and the recent queries.</p>
+	 */
+	@Override
+	public boolean onSearchRequested() {
+		if (mSearchBar.getVisibility() == View.VISIBLE) {
+			return super.onSearchRequested();
+		}
+		mSearchBar.setVisibility(View.VISIBLE);
+		mSearchBar.setText(mQuery);
+		mSearchBar.requestFocus();
+		InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+		imm.showSoftInput(mSearchBar, InputMethodManager.SHOW_IMPLICIT);
+		return true;
+	}
+
+
+	/**
+	 * <p>The BACK-key closes the search bar (and clears the query) if it is open.</p>
+	 */
+	@Override
+	public boolean onKeyDown(int keyCode, KeyEvent event) {
+		if (keyCode == KeyEvent.KEYCODE_BACK && mSearchBar.getVisibility() == View.VISIBLE) {
+			hideKeyboard();
+			mSearchBar.setVisibility(View.GONE);
+			setQuery("");
+			return true;
+		}
+		return super.onKeyDown(keyCode, event);
+	}
+
+
+	/**
+	 * <p>Called by Android 4.0+ (API 14) when the system wants the app to release memory.
+	 * Not annotated with @Override because we compile against an older API.</p>
+	 */
+	public void onTrimMemory(int level) {
+		TranscriptionCache.getInstance().trimMemory(level);
+	}
+
+
+	@Override
+	public void onLowMemory() {
+		super.onLowMemory();
+		TranscriptionCache.getInstance().evictAll();
+		MatchCache.evictAll();
+	}
+
+
 
 	/*
 	// TODO: would it be better to use this?
@@ -162,6 +335,12 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 			MenuItem menuItem = menu.findItem(R.id.cm_notes_transcribe);
 			menuItem.setEnabled(false);
 		}
+		if (getTextQuery() == null || mMatchCounts == null || ! isPositive(mMatchCounts.get(note.getId()))) {
+			menu.findItem(R.id.cm_notes_hits).setEnabled(false);
+		}
+		if (! note.hasTrans()) {
+			menu.findItem(R.id.cm_notes_similar).setEnabled(false);
+		}
 	}
 
 
@@ -174,6 +353,12 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 		case R.id.cm_notes_view:
 			viewTrans(note);
 			return true;
+		case R.id.cm_notes_hits:
+			showHits(note);
+			return true;
+		case R.id.cm_notes_similar:
+			showSimilar(note);
+			return true;
 		case R.id.cm_notes_tags:
 			Intent editTags = new Intent(this, TagSelectorActivity.class);
 			editTags.putExtra(TagSelectorActivity.EXTRA_TAGS, Utils.setToArrayList(mRecordings.getTags()));
@@ -242,23 +427,23 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 			onSearchRequested();
 			return true;
 		case R.id.menu_notes_sort_by_timestamp:
-			mRecordings.sort(Recording.TIMESTAMP_COMPARATOR);
+			mRecordings.sort(Recording.TIMESTAMP_KEY);
 			refreshAdapter();
 			return true;
 		case R.id.menu_notes_sort_by_size:
-			mRecordings.sort(Recording.SIZE_COMPARATOR);
+			mRecordings.sort(Recording.SIZE_KEY);
 			refreshAdapter();
 			return true;
 		case R.id.menu_notes_sort_by_duration:
-			mRecordings.sort(Recording.DURATION_COMPARATOR);
+			mRecordings.sort(Recording.DURATION_KEY);
 			refreshAdapter();
 			return true;
 		case R.id.menu_notes_sort_by_wordcount:
-			mRecordings.sort(Recording.WORDCOUNT_COMPARATOR);
+			mRecordings.sort(Recording.WORDCOUNT_KEY);
 			refreshAdapter();
 			return true;
 		case R.id.menu_notes_sort_by_speakercount:
-			mRecordings.sort(Recording.SPEAKERCOUNT_COMPARATOR);
+			mRecordings.sort(Recording.SPEAKERCOUNT_KEY);
 			refreshAdapter();
 			return true;
 			/*		case R.id.menu_recordings_speakers:
@@ -322,7 +507,7 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 			break;
 		case ACTIVITY_SELECT_TAGS_FOR_SORT:
 			String[] selectedTagsForSort = intent.getStringArrayExtra(TagSelectorActivity.EXTRA_TAGS_SELECTED);
-			mRecordings.sort(new Recording.TagComparator(new HashSet<String>(Arrays.asList(selectedTagsForSort))));
+			mRecordings.sort(new Recording.TagKey(new HashSet<String>(Arrays.asList(selectedTagsForSort))));
 			refreshAdapter();
 			break;
 		case ACTIVITY_PICK_AUDIO:
@@ -385,13 +570,14 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 	 * @param file audio file
 	 */
 	private void addRecording(File file) {
-		Recording recording = new Recording(file);
+		Recording recording = RecordingCatalog.getInstance().getRecording(file);
 		if(mRecordings == null) {
 			// FIXME - mRecordings may not have loaded yet
 			Log.e(LOG_TAG, "mRecordings == null, WAV file written successfully but not added to list");
 			return;
 		}
-		mRecordings.add(0, recording);
+		// The watcher might have added it already
+		mRecordings.replace(recording);
 		toast(String.format(getString(R.string.toast_add_recording), recording));
 		refreshGui();
 		if (mPrefs.getBoolean("autotranscribe", false)) {
@@ -421,11 +607,95 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 				note.getTimestampAsString(),
 				note.getAudioFilePath(),
 				note.getTransPath(),
-				mQuery
+				getTextQuery()
 				));
 	}
 
 
+	/**
+	 * <p>Shows the recordings whose transcriptions have a similar vocabulary to the
+	 * transcription of the given recording, selecting a recording opens it.</p>
+	 */
+	private void showSimilar(Recording note) {
+		final List<Recording> recordings = new ArrayList<Recording>();
+		List<String> items = new ArrayList<String>();
+		for (SearchIndex.Similar similar : RecordingIndexer.getInstance().getSimilar(note.getId(), MAX_SIMILAR)) {
+			Recording rec = mRecordings.get(similar.id);
+			if (rec != null) {
+				recordings.add(rec);
+				items.add(String.format(getString(R.string.similar_recording),
+						rec.getTimestampAsString(), Math.round(100 * similar.similarity)));
+			}
+		}
+		if (recordings.isEmpty()) {
+			toast(getString(R.string.message_no_similar));
+			return;
+		}
+		new AlertDialog.Builder(this)
+		.setTitle(String.format(getString(R.string.dialog_title_similar), note.getTimestampAsString()))
+		.setItems(items.toArray(new String[items.size()]), new DialogInterface.OnClickListener() {
+			public void onClick(DialogInterface dialog, int which) {
+				viewTrans(recordings.get(which));
+			}
+		})
+		.create()
+		.show();
+	}
+
+
+	/**
+	 * <p>Shows the start times of the turns that contain the matches of the current query,
+	 * selecting a time opens the recording and starts the playback from this time.
+	 * Several matches in the same turn are shown as a single item.</p>
+	 */
+	private void showHits(final Recording note) {
+		final String textQuery = getTextQuery();
+		List<SearchIndex.Hit> hits = (textQuery == null) ? null : RecordingIndexer.getInstance().getHits(textQuery, note.getId());
+		final List<Integer> times = new ArrayList<Integer>();
+		List<String> items = new ArrayList<String>();
+		if (hits != null) {
+			int i = 0;
+			while (i < hits.size()) {
+				int time = hits.get(i).time;
+				int count = 0;
+				while (i < hits.size() && hits.get(i).time == time) {
+					i++;
+					count++;
+				}
+				if (time >= 0) {
+					times.add(time);
+					items.add(String.format(getString(R.string.hit_time), Utils.formatMillis(time), count));
+				}
+			}
+		}
+		if (times.isEmpty()) {
+			toast(getString(R.string.message_no_hits));
+			return;
+		}
+		new AlertDialog.Builder(this)
+		.setTitle(String.format(getString(R.string.dialog_title_hits), textQuery))
+		.setItems(items.toArray(new String[items.size()]), new DialogInterface.OnClickListener() {
+			public void onClick(DialogInterface dialog, int which) {
+				startActivity(TransActivity.createIntent(
+						RecordingListActivity.this,
+						note.getTimestampAsString(),
+						note.getAudioFilePath(),
+						note.getTransPath(),
+						textQuery,
+						times.get(which)
+						));
+			}
+		})
+		.create()
+		.show();
+	}
+
+
+	private static boolean isPositive(Integer count) {
+		return count != null && count > 0;
+	}
+
+
 	private void refreshGui() {
 		refreshTitle();
 		refreshAdapter();
@@ -442,7 +712,7 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 			toast("ERROR: refreshAdapter() failed: mListView.getAdapter() == null");
 		} else {
 			RecordingListAdapter recordingListAdapter = (RecordingListAdapter) adapter;
-			recordingListAdapter.setSearchQuery(mQuery);
+			recordingListAdapter.setSearchQuery(getTextQuery(), mMatchCounts, mMatchSnippets, mLoadSnippets);
 			recordingListAdapter.refresh();
 		}
 	}
@@ -473,13 +743,16 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 				// broken vertical bar (\u00a6), so we replace it here with
 				// the regular vertical bar.
 				mQuery = mQuery.replace('\u00a6', '|');
-				SearchRecentSuggestions suggestions =
-						new SearchRecentSuggestions(this, SearchSuggestionsProvider.AUTHORITY, SearchSuggestionsProvider.MODE);
-				suggestions.saveRecentQuery(mQuery, null);
+				saveRecentQuery(mQuery);
+				if (mSearchBar.getVisibility() == View.VISIBLE) {
+					mSearchBar.setText(mQuery);
+				}
 
 				Log.i(LOG_TAG, "Query: " + mQuery);
-				mRecordings.sort(new Recording.MatchComparator(mQuery));
-				refreshAdapter();
+				// The recordings are searched once they have been loaded
+				if (mRecordings != null) {
+					searchInBackground();
+				}
 			}
 		} else {
 			Log.i(LOG_TAG, "Intent not handled:" + intent);
@@ -487,6 +760,60 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 	}
 
 
+	/**
+	 * <p>Sets the query that has been typed into the search bar. The empty query
+	 * cancels the search and removes the match counts from the list.</p>
+	 */
+	private void setQuery(String query) {
+		query = query.replace('\u00a6', '|');
+		if (query.trim().length() == 0) {
+			if (mSearchRecordings != null) {
+				mSearchRecordings.cancel(true);
+				mSearchRecordings = null;
+			}
+			mQuery = null;
+			mMatchCounts = new HashMap<String, Integer>();
+			mMatchSnippets = new HashMap<String, Snippet>();
+			if (mLoadSnippets != null) {
+				mLoadSnippets.cancel();
+				mLoadSnippets = null;
+			}
+			setProgressBarIndeterminateVisibility(false);
+			refreshAdapter();
+		} else if (! query.equals(mQuery)) {
+			mQuery = query;
+			if (mRecordings != null) {
+				searchInBackground();
+			}
+		}
+	}
+
+
+	/**
+	 * @return text part of the current query, i.e. without the filters on tags, speakers, etc.,
+	 * or <code>null</code> if there is no query or it consists of the filters only
+	 */
+	private String getTextQuery() {
+		if (mQuery == null) {
+			return null;
+		}
+		return StructuredQuery.parse(mQuery).getText();
+	}
+
+
+	private void saveRecentQuery(String query) {
+		SearchRecentSuggestions suggestions =
+				new SearchRecentSuggestions(this, SearchSuggestionsProvider.AUTHORITY, SearchSuggestionsProvider.MODE);
+		suggestions.saveRecentQuery(query, null);
+	}
+
+
+	private void hideKeyboard() {
+		InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+		imm.hideSoftInputFromWindow(mSearchBar.getWindowToken(), 0);
+	}
+
+
 	private void transcribeAll() {
 		int count = 0;
 		for (Recording note : mRecordings.list()) {
@@ -516,6 +843,7 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 					activity.toast(message);
 					// on final transcription result we update the title
 					activity.refreshTitle();
+					activity.invalidateSearch();
 				}
 				activity.refreshAdapter();
 			}
@@ -523,22 +851,6 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 	}
 
 
-	/**
-	 * <p>The list adapter is set when all the recordings have been
-	 * loaded. If there is a search query then we sort the recordings
-	 * according to the query, otherwise we sort the in temporal order.
-	 * Search query is set e.g. when this activity is launched via the QSB.</p>
-	 */
-	private void setNewListAdapter() {
-		if (mQuery == null) {
-			mRecordings.sort(Recording.TIMESTAMP_COMPARATOR);
-		} else {
-			mRecordings.sort(new Recording.MatchComparator(mQuery));
-		}
-		setListAdapter(new RecordingListAdapter(this, mRecordings));
-	}
-
-
 	/**
 	 * This should update two tables: add a speaker into the speakers table
 	 * and add a mapping from Transcription-server speaker ID to the speaker table ID.
@@ -561,60 +873,662 @@ public class RecordingListActivity extends AbstractDiktofonListActivity {
 	}
 
 
+	/**
+	 * <p>Loads all the recordings if they have not been loaded yet (or if the
+	 * previous full load has not finished), otherwise only rescans the
+	 * recordings directory for the changes.</p>
+	 */
 	void loadRecordingsInBackground() {
 		final File[] files = Dirs.getRecordingsDir().listFiles(Dirs.FILENAME_FILTER);
 		if (files == null) {
 			toast(getString(R.string.error_cant_read_dir) + ": " + Dirs.getRecordingsDir());
 		} else {
-			new LoadRecordings(this, files.length).execute(files);
+			boolean isFullLoad = (mRecordings == null || mLoadRecordings instanceof LoadRecordings);
+			if (mLoadRecordings != null) {
+				mLoadRecordings.cancel(true);
+			}
+			if (isFullLoad) {
+				mLoadRecordings = new LoadRecordings();
+			} else {
+				mLoadRecordings = new RescanRecordings(mRecordings.getCatalogEntries(), null);
+			}
+			mLoadRecordings.execute(files);
 		}
 	}
 
 
-	private class LoadRecordings extends AsyncTask<File[], String, RecordingList> {
+	/**
+	 * <p>Rescans the recordings that the watcher has reported as changed. If the recordings
+	 * are currently being loaded then the rescan is done after the loading has finished.</p>
+	 */
+	private void rescanChangedRecordings() {
+		if (mChangedIds.isEmpty() || mRecordings == null || mLoadRecordings != null) {
+			return;
+		}
+		mLoadRecordings = new RescanRecordings(mRecordings.getCatalogEntries(), new HashSet<String>(mChangedIds));
+		mChangedIds.clear();
+		mLoadRecordings.execute();
+	}
 
-		private final ProgressDialog mProgressDialog;
 
-		LoadRecordings(Context context, int maxProgress) {
-			mProgressDialog = new ProgressDialog(context);
-			mProgressDialog.setTitle(getString(R.string.message_loading_recordings));
-			mProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
-			mProgressDialog.setCancelable(false);
-			mProgressDialog.setProgress(0);
-			mProgressDialog.setMax(maxProgress);
+	/**
+	 * <p>Counts the matches of the current query in all the recordings in the background,
+	 * and sorts the list by the counts. A search that is still running for an older
+	 * query is cancelled.</p>
+	 */
+	private void searchInBackground() {
+		if (mSearchRecordings != null) {
+			mSearchRecordings.cancel(true);
+			mSearchRecordings = null;
+		}
+		Analyzer analyzer = RecordingIndexer.getInstance().getIndex().getAnalyzer();
+		String textQuery = getTextQuery();
+		if (textQuery != null && Query.parse(textQuery, analyzer) == null) {
+			// While a regular expression is being typed it is often incomplete,
+			// we keep showing the previous results until it compiles.
+			try {
+				PatternCache.get(textQuery);
+			} catch (PatternSyntaxException e) {
+				return;
+			}
+		}
+		Map<String, Integer> previousCounts = null;
+		if (mCompletedQuery != null && Query.isRefinement(mCompletedQuery, mQuery, analyzer)) {
+			previousCounts = mCompletedCounts;
+		}
+		Ranker ranker = null;
+		if (mPrefs.getBoolean("rankByRelevance", true)) {
+			ranker = new Ranker(mPrefs.getBoolean("rankByRecency", false), mPrefs.getBoolean("rankByTags", true));
+		}
+		mSearchRecordings = new SearchRecordings(mQuery, new ArrayList<Recording>(mRecordings.list()), mRecordings.getModCount(), previousCounts, ranker);
+		mSearchRecordings.execute();
+	}
+
+
+	/**
+	 * <p>Forgets the last completed search, i.e. the next search looks at all the recordings.
+	 * Call this when the recordings or their transcriptions have changed.</p>
+	 */
+	private void invalidateSearch() {
+		mCompletedQuery = null;
+		mCompletedCounts = null;
+	}
+
+
+	private static synchronized ExecutorService getSearchExecutor() {
+		if (sSearchExecutor == null) {
+			sSearchExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		}
+		return sSearchExecutor;
+	}
+
+
+	private static synchronized ExecutorService getSnippetExecutor() {
+		if (sSnippetExecutor == null) {
+			sSnippetExecutor = Executors.newSingleThreadExecutor();
+		}
+		return sSnippetExecutor;
+	}
+
+
+	/**
+	 * <p>Loads the recordings that correspond to the given files on the given executor,
+	 * and makes sure that their transcriptions are in the search index.</p>
+	 */
+	private static List<Future<Recording>> submitAll(ExecutorService executor, final RecordingCatalog catalog, List<File> files) {
+		final RecordingIndexer indexer = RecordingIndexer.getInstance();
+		List<Future<Recording>> futures = new ArrayList<Future<Recording>>(files.size());
+		for (final File file : files) {
+			futures.add(executor.submit(new Callable<Recording>() {
+				public Recording call() {
+					Recording rec = catalog.getRecording(file);
+					indexer.ensureIndexed(rec);
+					return rec;
+				}
+			}));
+		}
+		return futures;
+	}
+
+
+	/**
+	 * <p>Loads the recordings on a pool of worker threads (one per core).
+	 * The list adapter is set up front and the recordings are published to it
+	 * in batches as they become available, so that the list is usable
+	 * while the rest of the recordings are still loading. The files are
+	 * ordered by their time stamp (i.e. the default sort order) before the
+	 * loading starts, and the results are published in this order, so that
+	 * the already visible items do not jump around.</p>
+	 *
+	 * <p>Only the recordings that are not in the catalog (or have changed since
+	 * they were cataloged) are probed. The catalog is then pruned of the deleted
+	 * recordings and stored.</p>
+	 */
+	private class LoadRecordings extends AsyncTask<File, Recording, Void> {
+
+		// Publish at least this often (ms) ...
+		private static final int PUBLISH_INTERVAL = 100;
+		// ... or whenever this many recordings have been loaded.
+		private static final int PUBLISH_BATCH_SIZE = 64;
+
+		private int mTotal = 0;
+		private int mLoaded = 0;
+		// Number of recordings that could not be loaded
+		private volatile int mFailed = 0;
+
+		protected void onPreExecute() {
+			mRecordings = new RecordingList();
+			setListAdapter(new RecordingListAdapter(RecordingListActivity.this, mRecordings));
+			setProgressBarVisibility(true);
+			setProgress(0);
+		}
+
+		protected Void doInBackground(File... files) {
+			mTotal = files.length;
+			final RecordingCatalog catalog = RecordingCatalog.getInstance();
+
+			// Newest first
+			long[] timestamps = new long[files.length];
+			for (int i = 0; i < files.length; i++) {
+				timestamps[i] = files[i].lastModified();
+			}
+			int[] order = KeySort.sortDescending(timestamps);
+			File[] sortedFiles = new File[files.length];
+			for (int i = 0; i < files.length; i++) {
+				sortedFiles[i] = files[order[i]];
+			}
+			files = sortedFiles;
+
+			ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+			List<Future<Recording>> futures = submitAll(executor, catalog, Arrays.asList(files));
+			executor.shutdown();
+			Set<String> ids = new HashSet<String>();
+			for (File file : files) {
+				ids.add(file.getName());
+			}
+
+			List<Recording> batch = new ArrayList<Recording>();
+			long lastPublishTime = SystemClock.uptimeMillis();
+			for (int i = 0; i < futures.size(); i++) {
+				if (isCancelled()) {
+					executor.shutdownNow();
+					return null;
+				}
+				// A recording that fails to load is skipped, the rest are still loaded
+				try {
+					batch.add(futures.get(i).get());
+				} catch (InterruptedException e) {
+					executor.shutdownNow();
+					return null;
+				} catch (ExecutionException e) {
+					Log.e(LOG_TAG, "Failed to load recording: " + files[i] + ": " + e.getCause());
+					mFailed++;
+				}
+				long now = SystemClock.uptimeMillis();
+				if (batch.size() >= PUBLISH_BATCH_SIZE || now - lastPublishTime >= PUBLISH_INTERVAL) {
+					publishProgress(batch.toArray(new Recording[batch.size()]));
+					batch.clear();
+					lastPublishTime = now;
+				}
+			}
+			publishProgress(batch.toArray(new Recording[batch.size()]));
+
+			catalog.retainAll(ids);
+			catalog.save();
+			RecordingIndexer.getInstance().retainAll(ids);
+			return null;
+		}
+
+		protected void onProgressUpdate(Recording... recordings) {
+			if (isCancelled()) {
+				return;
+			}
+			for (Recording rec : recordings) {
+				mRecordings.add(rec);
+			}
+			mLoaded += recordings.length;
+			if (mTotal > 0) {
+				setProgress(Window.PROGRESS_END * mLoaded / mTotal);
+			}
+			refreshGui();
+		}
+
+		protected void onPostExecute(Void result) {
+			setProgressBarVisibility(false);
+			refreshGui();
+			if (mFailed > 0) {
+				toast(String.format(getString(R.string.error_load_recordings), mFailed));
+			}
+			invalidateSearch();
+			if (mQuery != null) {
+				searchInBackground();
+			}
+			mLoadRecordings = null;
+			rescanChangedRecordings();
+		}
+
+		protected void onCancelled() {
+			setProgressBarVisibility(false);
+		}
+	}
+
+
+	/**
+	 * <p>Applies the changes in the recordings directory (and in the sidecar directories)
+	 * to the already loaded list: only the added and modified recordings are loaded
+	 * (the modified ones replace their old versions in place), the removed ones are dropped.
+	 * A recording that is being transcribed is not replaced, its transcriber
+	 * updates it when it is done.</p>
+	 */
+	private class RescanRecordings extends AsyncTask<File, Void, RescanResult> {
+
+		private final Map<String, CatalogEntry> mKnown;
+		private final Set<String> mIds;
+
+		/**
+		 * @param known catalog entries of the loaded recordings
+		 * @param ids IDs of the recordings to rescan, or <code>null</code> to
+		 * rescan the recordings directory (given as the task arguments)
+		 */
+		RescanRecordings(Map<String, CatalogEntry> known, Set<String> ids) {
+			mKnown = known;
+			mIds = ids;
 		}
 
 		protected void onPreExecute() {
-			mProgressDialog.show();
+			setProgressBarIndeterminateVisibility(true);
 		}
 
-		protected RecordingList doInBackground(File[]... files) {
-			RecordingList recList = new RecordingList();
-			int numberOfFiles = files.length;
-			if (numberOfFiles > 0) {
-				for (File file : files[0]) {
-					recList.add(new Recording(file));
-					publishProgress(file.toString());
+		protected RescanResult doInBackground(File... files) {
+			RecordingScanner scanner;
+			if (mIds == null) {
+				scanner = new RecordingScanner(files, mKnown);
+			} else {
+				scanner = RecordingScanner.forIds(mIds, mKnown);
+			}
+			RescanResult result = new RescanResult();
+			result.removed = scanner.getRemoved();
+			if (scanner.isEmpty()) {
+				return result;
+			}
+
+			// Oldest first, because every new recording goes to the top of the list
+			List<File> added = new ArrayList<File>(scanner.getAdded());
+			long[] timestamps = new long[added.size()];
+			for (int i = 0; i < timestamps.length; i++) {
+				timestamps[i] = added.get(i).lastModified();
+			}
+			int[] order = KeySort.sortDescending(timestamps);
+			List<File> changed = new ArrayList<File>();
+			for (int i = order.length - 1; i >= 0; i--) {
+				changed.add(added.get(order[i]));
+			}
+			changed.addAll(scanner.getModified());
+			Log.i(LOG_TAG, "Rescan: added: " + scanner.getAdded().size() + ", modified: " + scanner.getModified().size() + ", removed: " + result.removed.size());
+
+			RecordingCatalog catalog = RecordingCatalog.getInstance();
+			ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+			List<Future<Recording>> futures = submitAll(executor, catalog, changed);
+			executor.shutdown();
+			for (int i = 0; i < futures.size(); i++) {
+				if (isCancelled()) {
+					executor.shutdownNow();
+					return null;
 				}
+				// A recording that fails to load is skipped, the rest are still loaded
+				try {
+					result.loaded.add(futures.get(i).get());
+				} catch (InterruptedException e) {
+					executor.shutdownNow();
+					return null;
+				} catch (ExecutionException e) {
+					Log.e(LOG_TAG, "Failed to load recording: " + changed.get(i) + ": " + e.getCause());
+				}
+			}
+			for (String id : result.removed) {
+				catalog.remove(id);
+				RecordingIndexer.getInstance().remove(id);
 			}
-			return recList;
+			catalog.save();
+			return result;
 		}
 
-		protected void onProgressUpdate(final String... progress) {
-			if (mProgressDialog != null) {
-				if (mProgressDialog.getProgress() >= mProgressDialog.getMax()) {
-					mProgressDialog.dismiss();
-				} else {
-					mProgressDialog.incrementProgressBy(1);
+		protected void onPostExecute(RescanResult result) {
+			setProgressBarIndeterminateVisibility(false);
+			mLoadRecordings = null;
+			if (result != null && ! (result.loaded.isEmpty() && result.removed.isEmpty())) {
+				applyRescanResult(result);
+			}
+			rescanChangedRecordings();
+		}
+
+		protected void onCancelled() {
+			setProgressBarIndeterminateVisibility(false);
+		}
+
+		private void applyRescanResult(RescanResult result) {
+			for (String id : result.removed) {
+				Recording rec = mRecordings.get(id);
+				if (rec != null) {
+					mRecordings.remove(rec);
 				}
 			}
+			for (Recording rec : result.loaded) {
+				Recording old = mRecordings.get(rec.getId());
+				if (old == null || ! isBusy(old)) {
+					mRecordings.replace(rec);
+				}
+			}
+			refreshGui();
+			invalidateSearch();
+			if (mQuery != null) {
+				searchInBackground();
+			}
 		}
 
-		protected void onPostExecute(RecordingList recList) {
-			mRecordings = recList;
-			mProgressDialog.cancel();
-			setNewListAdapter();
-			refreshTitle();
+		private boolean isBusy(Recording rec) {
+			Recording.State state = rec.getState();
+			return state == Recording.State.UPLOADING || state == Recording.State.WAITING || state == Recording.State.POLLING;
 		}
 	}
+
+
+	/**
+	 * <p>Counts the matches of a query in the given recordings. The recordings are split into
+	 * chunks which are searched in parallel on the search executor (one thread per core).
+	 * The counts are published in batches as the chunks complete (at most once per
+	 * {@link #PUBLISH_INTERVAL}), together with a copy of the list that is sorted
+	 * by the counts that are known so far, i.e. the best matches become visible before
+	 * the search is over. The copy is sorted in the background, the UI thread only puts
+	 * the recordings into its order (see {@link RecordingList#setOrder}). Cancelling the task interrupts the workers, which stop
+	 * before their next recording.</p>
+	 *
+	 * <p>If the query can be answered by the index then the matching recordings can be
+	 * ranked by their relevance (see {@link Ranker}) instead of the number of matches.</p>
+	 *
+	 * <p>The filters of the query (tags, speakers, time, duration) are evaluated first
+	 * (see {@link RecordingQuery}), the recordings that do not pass them get the count 0
+	 * and are not searched. The text of the query is then answered by the postings of
+	 * the search index restricted to the remaining recordings (see
+	 * {@link RecordingQuery#getIndexedMatchCounts}) and published at once, the workers only match
+	 * the recordings that the index cannot answer. The snippets are not built by the search,
+	 * but by {@link LoadSnippets} for the rows that are shown.</p>
+	 *
+	 * <p>If the query refines the previous query (e.g. "koos" after "koo") then only the
+	 * recordings that matched the previous query are searched, the others keep their
+	 * (zero or negative) counts. The recordings where the matching of a regular expression
+	 * was aborted are searched again, as their count is not known.</p>
+	 */
+	private class SearchRecordings extends AsyncTask<Void, SearchProgress, Void> {
+
+		private static final int CHUNK_SIZE = 16;
+		private static final int PUBLISH_INTERVAL = 100;
+
+		private final String mSearchQuery;
+		// Copy of all the recordings, sorted in the background
+		private final List<Recording> mRecordingsCopy;
+		// Modification count of the list of recordings when the copy was made
+		private final int mModCount;
+		private final List<Recording> mSnapshot;
+		private final Map<String, Integer> mCounts = new HashMap<String, Integer>();
+		// Filled by the snippet loader, read by the adapter
+		private final Map<String, Snippet> mSnippets = new ConcurrentHashMap<String, Snippet>();
+		private final Ranker mRanker;
+		// Relevance scores of the recordings, null if the recordings are sorted by the counts
+		private volatile Map<String, Float> mScores;
+		private long mStartTime;
+
+		/**
+		 * @param previousCounts counts of the query that this query refines (or <code>null</code>)
+		 * @param ranker ranks the matching recordings by relevance (or <code>null</code>
+		 * to sort them by the match counts)
+		 */
+		SearchRecordings(String query, List<Recording> recordings, int modCount, Map<String, Integer> previousCounts, Ranker ranker) {
+			mSearchQuery = query;
+			mRecordingsCopy = recordings;
+			mModCount = modCount;
+			mRanker = ranker;
+			if (previousCounts == null) {
+				mSnapshot = recordings;
+			} else {
+				mSnapshot = new ArrayList<Recording>();
+				for (Recording rec : recordings) {
+					Integer count = previousCounts.get(rec.getId());
+					if (count == null || count > 0 || count == Recording.MATCH_COUNT_ABORTED) {
+						mSnapshot.add(rec);
+					} else {
+						mCounts.put(rec.getId(), count);
+					}
+				}
+			}
+		}
+
+		protected void onPreExecute() {
+			mStartTime = SystemClock.uptimeMillis();
+			mMatchCounts = mCounts;
+			mMatchSnippets = mSnippets;
+			if (mLoadSnippets != null) {
+				mLoadSnippets.cancel();
+			}
+			mLoadSnippets = new LoadSnippets(StructuredQuery.parse(mSearchQuery).getText(), mSnippets);
+			setProgressBarIndeterminateVisibility(true);
+		}
+
+		protected Void doInBackground(Void... params) {
+			final RecordingIndexer indexer = RecordingIndexer.getInstance();
+			final RecordingQuery query = new RecordingQuery(mSearchQuery);
+			final String textQuery = query.getText();
+			// The UI thread merges the published counts into mCounts, the background keeps its own copy
+			Map<String, Integer> counts = new HashMap<String, Integer>(mCounts);
+			if (textQuery != null) {
+				if (mRanker != null) {
+					Map<String, Float> scores = indexer.getScores(textQuery);
+					if (scores != null) {
+						mScores = mRanker.rank(scores, mSnapshot, textQuery, System.currentTimeMillis());
+					}
+				}
+			}
+
+			// The filters are cheap, only the recordings that pass them are searched
+			Map<String, Integer> rejected = new HashMap<String, Integer>();
+			List<Recording> candidates = query.filter(mSnapshot, rejected);
+			publish(counts, rejected);
+
+			// The text query is answered by the index for the indexed recordings,
+			// the workers only need to match the rest
+			Map<String, Integer> indexedCounts = new HashMap<String, Integer>();
+			final List<Recording> pending = query.getIndexedMatchCounts(candidates, indexer, indexedCounts);
+			publish(counts, indexedCounts);
+
+			ExecutorService executor = getSearchExecutor();
+			CompletionService<Map<String, Integer>> completionService =
+					new ExecutorCompletionService<Map<String, Integer>>(executor);
+			List<Future<Map<String, Integer>>> futures = new ArrayList<Future<Map<String, Integer>>>();
+			for (int i = 0; i < pending.size(); i += CHUNK_SIZE) {
+				final List<Recording> chunk = pending.subList(i, Math.min(i + CHUNK_SIZE, pending.size()));
+				futures.add(completionService.submit(new Callable<Map<String, Integer>>() {
+					public Map<String, Integer> call() {
+						Map<String, Integer> chunkCounts = new HashMap<String, Integer>();
+						for (Recording rec : chunk) {
+							if (Thread.currentThread().isInterrupted()) {
+								break;
+							}
+							chunkCounts.put(rec.getId(), query.getMatchCount(rec));
+						}
+						return chunkCounts;
+					}
+				}));
+			}
+
+			try {
+				Map<String, Integer> batch = new HashMap<String, Integer>();
+				long lastPublishTime = SystemClock.uptimeMillis();
+				for (int i = 0; i < futures.size(); i++) {
+					if (isCancelled()) {
+						break;
+					}
+					batch.putAll(completionService.take().get());
+					long now = SystemClock.uptimeMillis();
+					if (now - lastPublishTime >= PUBLISH_INTERVAL) {
+						publish(counts, batch);
+						batch = new HashMap<String, Integer>();
+						lastPublishTime = now;
+					}
+				}
+				publish(counts, batch);
+			} catch (InterruptedException e) {
+				// Cancelled
+			} catch (ExecutionException e) {
+				Log.e(LOG_TAG, "Search failed: " + e.getCause());
+			} finally {
+				for (Future<Map<String, Integer>> future : futures) {
+					future.cancel(true);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * <p>Merges the batch into the counts and publishes it with the copy of the recordings
+		 * sorted by the merged counts. Called in the background.</p>
+		 */
+		private void publish(Map<String, Integer> counts, Map<String, Integer> batch) {
+			counts.putAll(batch);
+			Recording.SortKey sortKey;
+			if (mScores == null) {
+				sortKey = new Recording.CountKey(counts);
+			} else {
+				sortKey = new Recording.RelevanceKey(counts, mScores);
+			}
+			publishProgress(new SearchProgress(batch, RecordingList.sort(mRecordingsCopy, sortKey)));
+		}
+
+		protected void onProgressUpdate(SearchProgress... progresses) {
+			if (isCancelled()) {
+				return;
+			}
+			for (SearchProgress progress : progresses) {
+				mCounts.putAll(progress.counts);
+			}
+			mRecordings.setOrder(progresses[progresses.length - 1].order, mModCount);
+			refreshAdapter();
+		}
+
+		protected void onPostExecute(Void result) {
+			setProgressBarIndeterminateVisibility(false);
+			mSearchRecordings = null;
+			mCompletedQuery = mSearchQuery;
+			mCompletedCounts = mCounts;
+			Log.i(LOG_TAG, "Search: " + mSearchQuery + ": searched " + mSnapshot.size() + " of " + mCounts.size() + " recordings in " + (SystemClock.uptimeMillis() - mStartTime) + " ms");
+			int abortedCount = 0;
+			for (Integer count : mCounts.values()) {
+				if (count == Recording.MATCH_COUNT_ABORTED) {
+					abortedCount++;
+				}
+			}
+			if (abortedCount > 0) {
+				toast(String.format(getString(R.string.message_regex_aborted), abortedCount));
+			}
+			Log.i(LOG_TAG, "Pattern cache: " + PatternCache.getStats());
+			Log.i(LOG_TAG, "Match cache: " + MatchCache.getStats());
+		}
+
+		protected void onCancelled() {
+			// The newer search (if any) shows its own progress
+			if (mSearchRecordings == null || mSearchRecordings == this) {
+				setProgressBarIndeterminateVisibility(false);
+			}
+		}
+	}
+
+
+	private static class SearchProgress {
+		// Batch of new counts
+		final Map<String, Integer> counts;
+		// Recordings sorted by all the counts so far
+		final List<Recording> order;
+
+		SearchProgress(Map<String, Integer> counts, List<Recording> order) {
+			this.counts = counts;
+			this.order = order;
+		}
+	}
+
+
+	/**
+	 * <p>Builds the snippets of the matching recordings on demand, i.e. for the rows that the
+	 * adapter shows, so that the search can publish the counts without reading the text of every
+	 * matching recording. The snippets are built one at a time in the background
+	 * (from the positions in the search index), and the list is refreshed at most
+	 * once per {@link #REFRESH_INTERVAL}. The loader of an older query is cancelled,
+	 * its pending requests are then dropped.</p>
+	 */
+	private class LoadSnippets implements RecordingListAdapter.SnippetLoader {
+
+		private static final int REFRESH_INTERVAL = 100;
+		// Maximum number of tokens in a snippet
+		private static final int SNIPPET_LENGTH = 16;
+
+		private final String mTextQuery;
+		private final Map<String, Snippet> mSnippets;
+		// IDs of the recordings whose snippet has been requested (accessed on the UI thread only)
+		private final Set<String> mRequested = new HashSet<String>();
+		private volatile boolean mCancelled = false;
+		private boolean mRefreshPending = false;
+
+		private final Runnable mRefresh = new Runnable() {
+			public void run() {
+				mRefreshPending = false;
+				if (! mCancelled) {
+					refreshAdapter();
+				}
+			}
+		};
+
+		private final Runnable mScheduleRefresh = new Runnable() {
+			public void run() {
+				if (! mRefreshPending && ! mCancelled) {
+					mRefreshPending = true;
+					mListView.postDelayed(mRefresh, REFRESH_INTERVAL);
+				}
+			}
+		};
+
+		/**
+		 * @param textQuery text part of the query (or <code>null</code>, then there are no snippets)
+		 * @param snippets map into which the snippets are put
+		 */
+		LoadSnippets(String textQuery, Map<String, Snippet> snippets) {
+			mTextQuery = textQuery;
+			mSnippets = snippets;
+		}
+
+		public void loadSnippet(final String id) {
+			if (mTextQuery == null || mCancelled || ! mRequested.add(id)) {
+				return;
+			}
+			getSnippetExecutor().execute(new Runnable() {
+				public void run() {
+					if (mCancelled) {
+						return;
+					}
+					Snippet snippet = RecordingIndexer.getInstance().getSnippet(mTextQuery, id, SNIPPET_LENGTH);
+					if (snippet != null && ! mCancelled) {
+						mSnippets.put(id, snippet);
+						runOnUiThread(mScheduleRefresh);
+					}
+				}
+			});
+		}
+
+		void cancel() {
+			mCancelled = true;
+		}
+	}
+
+
+	private static class RescanResult {
+		final List<Recording> loaded = new ArrayList<Recording>();
+		List<String> removed;
+	}
 }
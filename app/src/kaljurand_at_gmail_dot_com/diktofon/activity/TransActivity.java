@@ -19,11 +19,17 @@ package kaljurand_at_gmail_dot_com.diktofon.activity;
 import kaljurand_at_gmail_dot_com.diktofon.Executable;
 import kaljurand_at_gmail_dot_com.diktofon.ExecutableSpan;
 import kaljurand_at_gmail_dot_com.diktofon.GuiUtils;
+import kaljurand_at_gmail_dot_com.diktofon.HighlightSpan;
 import kaljurand_at_gmail_dot_com.diktofon.Log;
+import kaljurand_at_gmail_dot_com.diktofon.PatternCache;
 import kaljurand_at_gmail_dot_com.diktofon.R;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingIndexer;
 import kaljurand_at_gmail_dot_com.diktofon.SearchSuggestionsProvider;
 import kaljurand_at_gmail_dot_com.diktofon.SpeakerColor;
 import kaljurand_at_gmail_dot_com.diktofon.provider.TSpeaker;
+import kaljurand_at_gmail_dot_com.diktofon.search.IntList;
+import kaljurand_at_gmail_dot_com.diktofon.search.LinearRegex;
+import kaljurand_at_gmail_dot_com.diktofon.search.Tokenizer;
 import kaljurand_at_gmail_dot_com.diktofon.service.PlayerService;
 import kaljurand_at_gmail_dot_com.diktofon.view.Player;
 
@@ -41,11 +47,13 @@ import android.database.Cursor;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.preference.PreferenceManager;
 import android.provider.SearchRecentSuggestions;
 import android.text.Spannable;
+import android.text.Layout;
 import android.text.SpannableStringBuilder;
 import android.text.method.LinkMovementMethod;
 import android.text.style.BackgroundColorSpan;
@@ -71,6 +79,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * TODO: maybe rename it to ReadAndListenActivity
@@ -100,8 +109,17 @@ public class TransActivity extends AbstractDiktofonActivity {
 	// in the transcription. It make sense only if the transcription is present.
 	public static final String EXTRA_QUERY = "EXTRA_QUERY";
 
+	// SEEK_TIME is the position (in milliseconds) from which the playback is started
+	// once the activity is up, e.g. the beginning of the turn that contains a search match.
+	public static final String EXTRA_SEEK_TIME = "EXTRA_SEEK_TIME";
+
 	private static final int ACTIVITY_SELECT_SPEAKER = 1;
 
+	// At most this many matches are highlighted, the rest are only counted
+	private static final int MAX_HIGHLIGHTS = 1000;
+	// Number of highlights that are added in one go (after the visible ones)
+	private static final int HIGHLIGHT_BATCH_SIZE = 100;
+
 	private static final Uri tspeakersTableUri = kaljurand_at_gmail_dot_com.diktofon.provider.TSpeaker.Columns.CONTENT_URI;
 
 	private static final String colSpeakerName = kaljurand_at_gmail_dot_com.diktofon.provider.Speaker.Columns.NAME;
@@ -112,8 +130,11 @@ public class TransActivity extends AbstractDiktofonActivity {
 	private String mTransPath;
 	private String mAudioPath;
 	private String mQuery;
+	private int mSeekTime = -1;
 
 	private Transcription mTranscription;
+	// Start and end offsets of the text of each turn in the displayed transcription
+	private IntList mTurnRanges = new IntList();
 	private Player mPlayer;
 
 	private ScrollView mTransScrollView;
@@ -124,6 +145,7 @@ public class TransActivity extends AbstractDiktofonActivity {
 	private String mClickedSpeakerId;
 	private PlayerService mService;
 	private boolean mIsBound = false;
+	private HighlightMatches mHighlightMatches = null;
 
 
 	public static Intent createIntent(Context context, CharSequence title, String audioPath, String transPath, String query) {
@@ -136,6 +158,13 @@ public class TransActivity extends AbstractDiktofonActivity {
 	}
 
 
+	public static Intent createIntent(Context context, CharSequence title, String audioPath, String transPath, String query, int seekTime) {
+		Intent intent = createIntent(context, title, audioPath, transPath, query);
+		intent.putExtra(TransActivity.EXTRA_SEEK_TIME, seekTime);
+		return intent;
+	}
+
+
 	private ServiceConnection mConnection = new ServiceConnection() {
 		public void onServiceConnected(ComponentName className, IBinder service) {
 			// This is called when the connection with the service has been
@@ -162,6 +191,14 @@ public class TransActivity extends AbstractDiktofonActivity {
 			// in onResume that the transcription has been set up.
 			setUpTranscription(mService);
 			highlightMatches();
+
+			// Jumping to the requested position only once, i.e. not when rebinding
+			if (mSeekTime >= 0) {
+				mService.seekTo(mSeekTime);
+				mService.start();
+				mPlayer.start();
+				mSeekTime = -1;
+			}
 		}
 
 		public void onServiceDisconnected(ComponentName className) {
@@ -205,6 +242,7 @@ public class TransActivity extends AbstractDiktofonActivity {
 			mTransPath = extras.getString(EXTRA_TRANS_PATH);
 			mAudioPath = extras.getString(EXTRA_AUDIO_PATH);
 			mQuery = extras.getString(EXTRA_QUERY);
+			mSeekTime = extras.getInt(EXTRA_SEEK_TIME, -1);
 		}
 
 		// If certain inputs are missing then we just stop.
@@ -319,6 +357,11 @@ public class TransActivity extends AbstractDiktofonActivity {
 		super.onDestroy();
 		Log.i(TransActivity.class.getName(), "onDestroy");
 
+		if (mHighlightMatches != null) {
+			mHighlightMatches.cancel(true);
+			mHighlightMatches = null;
+		}
+
 		if (mService != null && mService.isPlaying()) {
 			doUnbindService();
 		} else {
@@ -465,7 +508,10 @@ public class TransActivity extends AbstractDiktofonActivity {
 	}
 
 
-	private Spannable getSpannable(SpeakerColor speakerColor, Transcription transcription, final PlayerService service) {
+	/**
+	 * @param turnRanges filled with the start and end offsets of the text of each turn
+	 */
+	private Spannable getSpannable(SpeakerColor speakerColor, Transcription transcription, final PlayerService service, IntList turnRanges) {
 		final Map<String, Speaker> idToSpeaker = transcription.getIdToSpeaker();
 		Map<String, String> idToLabel = getIdToLabel(idToSpeaker);
 		NodeList turns = transcription.getTurns();
@@ -512,6 +558,8 @@ public class TransActivity extends AbstractDiktofonActivity {
 			ssb.append(' ');
 			ssb.append(turn.getText());
 			int textEnd = ssb.length();
+			turnRanges.add(textBegin + 1);
+			turnRanges.add(textEnd);
 
 			// Creating click-to-sync
 			final int startTime = turn.getStartTime();
@@ -590,7 +638,9 @@ public class TransActivity extends AbstractDiktofonActivity {
 
 
 	private void refreshDisplay(PlayerService service) {
-		Spannable spannable = getSpannable(new SpeakerColor(mRes), mTranscription, service);
+		IntList turnRanges = new IntList();
+		Spannable spannable = getSpannable(new SpeakerColor(mRes), mTranscription, service, turnRanges);
+		mTurnRanges = turnRanges;
 		mTransView.setText(spannable, TextView.BufferType.SPANNABLE);		
 	}
 
@@ -632,16 +682,39 @@ public class TransActivity extends AbstractDiktofonActivity {
 	}
 
 
+	/**
+	 * <p>Starts highlighting the matches of the query. The matches are found in the background,
+	 * and then highlighted starting from the visible part of the transcription.</p>
+	 */
 	private void highlightMatches() {
 		// TODO: Don't do anything if the query has not changed
+		if (mHighlightMatches != null) {
+			mHighlightMatches.cancel(true);
+			mHighlightMatches = null;
+		}
 		if (mQuery == null || mTranscription == null) {
 			setTitle(mTitle);
 		} else {
 			Spannable spannable = (Spannable) mTransView.getText();
 			GuiUtils.removeHighlight(spannable);
-			int count = GuiUtils.highlightRe(spannable, mQuery, mRes.getColor(R.color.highlight));
-			setTitle(String.format(getString(R.string.title_note_view), mTitle, count, mQuery));
+			mHighlightMatches = new HighlightMatches(spannable, mTurnRanges, mQuery, new File(mAudioPath).getName());
+			mHighlightMatches.execute();
+		}
+	}
+
+
+	/**
+	 * @return character offsets of the beginning and the end of the visible part of the transcription
+	 */
+	private int[] getVisibleRange() {
+		Layout layout = mTransView.getLayout();
+		if (layout == null) {
+			return new int[] { 0, 0 };
 		}
+		int top = mTransScrollView.getScrollY() - mTransView.getTop() - mTransView.getTotalPaddingTop();
+		int topLine = layout.getLineForVertical(Math.max(0, top));
+		int bottomLine = layout.getLineForVertical(Math.max(0, top + mTransScrollView.getHeight()));
+		return new int[] { layout.getLineStart(topLine), layout.getLineEnd(bottomLine) };
 	}
 
 
@@ -657,4 +730,200 @@ public class TransActivity extends AbstractDiktofonActivity {
 		}
 		return (turn.getDuration() / numberOfUniqueWords) > 1000;
 	}
-}
\ No newline at end of file
+
+
+	/**
+	 * <p>Finds the matches of the query (in the background), and then highlights them, first the ones in the visible part of the transcription and
+	 * then the ones around it (closest first), in batches which are posted to the UI thread,
+	 * so that the UI is not frozen by a large number of matches. At most
+	 * MAX_HIGHLIGHTS matches are highlighted, the title shows how many were left out.
+	 * If the matching exceeds the step limit then the matches found so far are highlighted.</p>
+	 *
+	 * <p>The matches of the queries that the search index can answer (words, phrases, prefixes,
+	 * fuzzy words) are the ones that the index finds, i.e. the stemmed and the fuzzy matches are
+	 * highlighted, and the number of matches agrees with the match count in the list of recordings.
+	 * The index returns the matches as token ranges within the turns, which are mapped to the
+	 * displayed text by tokenizing the matching turns. Regular expressions (and the queries of
+	 * the transcriptions that are not in the index) are matched against a copy of the text.</p>
+	 */
+	private class HighlightMatches extends AsyncTask<Void, Void, IntList> {
+
+		private final Spannable mSpannable;
+		private final String mText;
+		private final IntList mTurnRanges;
+		private final String mQuery;
+		private final String mId;
+		private int mCount = 0;
+		private boolean mIsAborted = false;
+		private boolean mIsInvalid = false;
+
+		HighlightMatches(Spannable spannable, IntList turnRanges, String query, String id) {
+			mSpannable = spannable;
+			mText = spannable.toString();
+			mTurnRanges = turnRanges;
+			mQuery = query;
+			mId = id;
+		}
+
+		/**
+		 * @return start and end offsets of the (non-empty) matches, in the order of the text,
+		 * or <code>null</code> if the query is not a valid regular expression
+		 */
+		protected IntList doInBackground(Void... params) {
+			IntList turnMatches = RecordingIndexer.getInstance().getTurnMatches(mQuery, mId);
+			if (turnMatches != null) {
+				return getOffsets(turnMatches);
+			}
+			LinearRegex pattern;
+			try {
+				pattern = PatternCache.get(mQuery);
+			} catch (PatternSyntaxException e) {
+				mIsInvalid = true;
+				return null;
+			}
+			IntList offsets = new IntList();
+			LinearRegex.Matcher m = pattern.matcher(mText, PatternCache.MAX_STEPS);
+			while (m.find()) {
+				if (isCancelled()) {
+					return null;
+				}
+				mCount++;
+				if (m.end() > m.start()) {
+					offsets.add(m.start());
+					offsets.add(m.end());
+				}
+			}
+			mIsAborted = m.isAborted();
+			return offsets;
+		}
+
+		/**
+		 * <p>Maps the token ranges of the matches to the offsets in the displayed text.
+		 * The matches are in the order of the turns, i.e. each turn is tokenized once.
+		 * A match that does not fit into the displayed turn is skipped.</p>
+		 */
+		private IntList getOffsets(IntList turnMatches) {
+			IntList offsets = new IntList();
+			int currentTurn = -1;
+			IntList tokens = new IntList();
+			for (int i = 0; i < turnMatches.size(); i += 3) {
+				if (isCancelled()) {
+					return null;
+				}
+				int turn = turnMatches.get(i);
+				if (2 * turn + 1 >= mTurnRanges.size()) {
+					break;
+				}
+				if (turn != currentTurn) {
+					currentTurn = turn;
+					tokens.clear();
+					int turnStart = mTurnRanges.get(2 * turn);
+					Tokenizer tokenizer = new Tokenizer(mText.subSequence(turnStart, mTurnRanges.get(2 * turn + 1)));
+					while (tokenizer.next()) {
+						tokens.add(turnStart + tokenizer.start());
+						tokens.add(turnStart + tokenizer.end());
+					}
+				}
+				int first = turnMatches.get(i + 1);
+				int last = turnMatches.get(i + 2);
+				if (2 * last + 1 < tokens.size()) {
+					offsets.add(tokens.get(2 * first));
+					offsets.add(tokens.get(2 * last + 1));
+				}
+			}
+			mCount = offsets.size() / 2;
+			return offsets;
+		}
+
+		protected void onPostExecute(IntList offsets) {
+			if (isCancelled()) {
+				return;
+			}
+			if (mIsInvalid) {
+				setTitle(mTitle);
+				return;
+			}
+			if (offsets == null) {
+				return;
+			}
+			if (mIsAborted) {
+				toast(getString(R.string.message_regex_aborted_trans));
+			}
+			int matchCount = offsets.size() / 2;
+			if (matchCount > MAX_HIGHLIGHTS) {
+				setTitle(String.format(getString(R.string.title_note_view_more), mTitle, mCount, mQuery, matchCount - MAX_HIGHLIGHTS));
+			} else {
+				setTitle(String.format(getString(R.string.title_note_view), mTitle, mCount, mQuery));
+			}
+			if (matchCount > 0) {
+				new Highlighter(offsets, getVisibleRange()).run();
+			}
+		}
+
+
+		/**
+		 * <p>Adds the highlights batch by batch, each batch reposts the highlighter.
+		 * The highlights are added outwards from the visible range,
+		 * alternating between the matches that follow it and the ones that precede it.</p>
+		 */
+		private class Highlighter implements Runnable {
+
+			private final IntList mOffsets;
+			private final int mColor = mRes.getColor(R.color.highlight);
+			// Next match after the visible range (or in it)
+			private int mNext;
+			// Next match before the visible range
+			private int mPrev;
+			private final int mVisibleEnd;
+			private int mHighlightCount = 0;
+
+			Highlighter(IntList offsets, int[] visibleRange) {
+				mOffsets = offsets;
+				// The first match that ends in the visible range or after it
+				int low = 0;
+				int high = offsets.size() / 2;
+				while (low < high) {
+					int mid = (low + high) >>> 1;
+					if (offsets.get(2 * mid + 1) <= visibleRange[0]) {
+						low = mid + 1;
+					} else {
+						high = mid;
+					}
+				}
+				mNext = low;
+				mPrev = low - 1;
+				mVisibleEnd = visibleRange[1];
+			}
+
+			public void run() {
+				// The task has been replaced by a newer one, or the text has been rebuilt
+				if (mHighlightMatches != HighlightMatches.this || mTransView.getText() != mSpannable) {
+					return;
+				}
+				int matchCount = mOffsets.size() / 2;
+				// All the visible matches go into the first batch
+				while (mNext < matchCount && mOffsets.get(2 * mNext) < mVisibleEnd && mHighlightCount < MAX_HIGHLIGHTS) {
+					highlight(mNext++);
+				}
+				int batchEnd = mHighlightCount + HIGHLIGHT_BATCH_SIZE;
+				while (mHighlightCount < batchEnd && mHighlightCount < MAX_HIGHLIGHTS && (mNext < matchCount || mPrev >= 0)) {
+					if (mNext < matchCount) {
+						highlight(mNext++);
+					}
+					if (mPrev >= 0 && mHighlightCount < batchEnd && mHighlightCount < MAX_HIGHLIGHTS) {
+						highlight(mPrev--);
+					}
+				}
+				if (mHighlightCount < MAX_HIGHLIGHTS && (mNext < matchCount || mPrev >= 0)) {
+					mTransView.post(this);
+				}
+			}
+
+			private void highlight(int match) {
+				mSpannable.setSpan(new HighlightSpan(mColor),
+						mOffsets.get(2 * match), mOffsets.get(2 * match + 1), Spannable.SPAN_INCLUSIVE_EXCLUSIVE);
+				mHighlightCount++;
+			}
+		}
+	}
+}
@@ -26,21 +26,43 @@ import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.TextView;
 
+import java.util.Collections;
+import java.util.Map;
+
 import kaljurand_at_gmail_dot_com.diktofon.GuiUtils;
 import kaljurand_at_gmail_dot_com.diktofon.HighlightSpan;
 import kaljurand_at_gmail_dot_com.diktofon.Recording;
 import kaljurand_at_gmail_dot_com.diktofon.RecordingList;
 import kaljurand_at_gmail_dot_com.diktofon.R;
 import kaljurand_at_gmail_dot_com.diktofon.Utils;
+import kaljurand_at_gmail_dot_com.diktofon.search.Snippet;
 
 public class RecordingListAdapter extends BaseAdapter {
 
+	/**
+	 * <p>Builds the snippet of a matching recording when its row is shown, i.e. the snippets
+	 * of the rows that are never scrolled to are not built at all.</p>
+	 */
+	public interface SnippetLoader {
+		/**
+		 * <p>Called on the UI thread for a matching recording that has no snippet yet.
+		 * The loader builds the snippet in the background, puts it into the map of snippets
+		 * and refreshes the list.</p>
+		 */
+		void loadSnippet(String id);
+	}
+
 	private final Context mContext;
 	private final RecordingList mRecordings;
 	private final LayoutInflater mInflater;
 	private final Resources mRes;
 
 	private String mSearchQuery = null;
+	// Map of recording ID -> number of matches of the search query
+	private Map<String, Integer> mMatchCounts = Collections.emptyMap();
+	// Map of recording ID -> snippet around the matches of the search query
+	private Map<String, Snippet> mMatchSnippets = Collections.emptyMap();
+	private SnippetLoader mSnippetLoader = null;
 
 
 	public RecordingListAdapter(Context context, RecordingList recordings) {
@@ -86,13 +108,28 @@ public class RecordingListAdapter extends BaseAdapter {
 		if (rec.hasTrans()) {
 			holder.list_item_trans.setTextColor(mRes.getColor(R.color.l_fg_text));
 			holder.list_item_trans.setVisibility(View.VISIBLE);
-			if (mSearchQuery != null && rec.getMatchCount(mSearchQuery) > 0) {
+			Integer matchCount = (mSearchQuery == null) ? null : mMatchCounts.get(rec.getId());
+			if (matchCount != null && matchCount > 0) {
 				SpannableStringBuilder ssb = new SpannableStringBuilder();
-				ssb.append(rec.getMatchCount(mSearchQuery) + " x");
+				ssb.append(matchCount + " x");
 				int labelEnd = ssb.length();
 				ssb.setSpan(new HighlightSpan(mRes.getColor(R.color.highlight)), 0, labelEnd, Spannable.SPAN_INCLUSIVE_EXCLUSIVE);
 				ssb.append(' ');
-				ssb.append(rec.getExcerpt());
+				Snippet snippet = mMatchSnippets.get(rec.getId());
+				if (snippet == null) {
+					ssb.append(rec.getExcerpt());
+					if (mSnippetLoader != null) {
+						mSnippetLoader.loadSnippet(rec.getId());
+					}
+				} else {
+					int offset = ssb.length();
+					ssb.append(snippet.getText());
+					int[] highlights = snippet.getHighlights();
+					for (int i = 0; i < highlights.length; i += 2) {
+						ssb.setSpan(new HighlightSpan(mRes.getColor(R.color.highlight)),
+								offset + highlights[i], offset + highlights[i + 1], Spannable.SPAN_INCLUSIVE_EXCLUSIVE);
+					}
+				}
 				holder.list_item_trans.setText(ssb, TextView.BufferType.SPANNABLE);
 			} else {
 				holder.list_item_trans.setText(rec.getExcerpt());
@@ -149,8 +186,19 @@ public class RecordingListAdapter extends BaseAdapter {
 		notifyDataSetChanged();
 	}
 
-	public void setSearchQuery(String searchQuery) {
+	/**
+	 * <p>Sets the search query, the match counts of the recordings, and the snippets
+	 * around the matches (the maps can be partial while the search is still running).
+	 * The counts and the snippets are not computed by the adapter, because searching can be slow.
+	 * The snippets are requested from the given loader (if not <code>null</code>) for the rows
+	 * that are shown. A recording that has no snippet (yet, or because the query is a regular
+	 * expression) is shown with the beginning of its transcription.</p>
+	 */
+	public void setSearchQuery(String searchQuery, Map<String, Integer> matchCounts, Map<String, Snippet> matchSnippets, SnippetLoader snippetLoader) {
 		mSearchQuery = searchQuery;
+		mMatchCounts = matchCounts;
+		mMatchSnippets = matchSnippets;
+		mSnippetLoader = snippetLoader;
 	}
 
 	private String getStateText(Recording rec) {
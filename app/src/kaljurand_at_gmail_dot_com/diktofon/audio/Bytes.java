@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>Helpers for reading and writing the binary fields of audio headers.</p>
+ */
+class Bytes {
+
+	static boolean startsWith(byte[] bytes, int length, int offset, String prefix) {
+		if (offset + prefix.length() > length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (bytes[offset + i] != (byte) prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	static int u8(byte[] bytes, int offset) {
+		return bytes[offset] & 0xFF;
+	}
+
+
+	static int u16le(byte[] bytes, int offset) {
+		return u8(bytes, offset) | (u8(bytes, offset + 1) << 8);
+	}
+
+
+	static long u32le(byte[] bytes, int offset) {
+		return (u16le(bytes, offset) | ((long) u16le(bytes, offset + 2) << 16)) & 0xFFFFFFFFL;
+	}
+
+
+	static long u64le(byte[] bytes, int offset) {
+		return u32le(bytes, offset) | (u32le(bytes, offset + 4) << 32);
+	}
+
+
+	static long u32be(byte[] bytes, int offset) {
+		return ((long) u8(bytes, offset) << 24) | (u8(bytes, offset + 1) << 16) |
+				(u8(bytes, offset + 2) << 8) | u8(bytes, offset + 3);
+	}
+
+
+	static void putAscii(byte[] bytes, int offset, String str) {
+		for (int i = 0; i < str.length(); i++) {
+			bytes[offset + i] = (byte) str.charAt(i);
+		}
+	}
+
+
+	static void put16le(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) value;
+		bytes[offset + 1] = (byte) (value >>> 8);
+	}
+
+
+	static void put32le(byte[] bytes, int offset, int value) {
+		put16le(bytes, offset, value);
+		put16le(bytes, offset + 2, value >>> 16);
+	}
+
+
+	/**
+	 * <p>Reads as many bytes as possible (up to the buffer length) starting from
+	 * the given position.</p>
+	 *
+	 * @return number of bytes read
+	 */
+	static int read(RandomAccessFile raf, long position, byte[] buffer) throws IOException {
+		raf.seek(position);
+		int total = 0;
+		while (total < buffer.length) {
+			int n = raf.read(buffer, total, buffer.length - total);
+			if (n < 0) {
+				break;
+			}
+			total += n;
+		}
+		return total;
+	}
+
+
+	/**
+	 * @return milliseconds corresponding to the given number of samples
+	 */
+	static int toMillis(long samples, long sampleRate) {
+		if (sampleRate <= 0 || samples < 0) {
+			return -1;
+		}
+		long millis = samples * 1000 / sampleRate;
+		if (millis > Integer.MAX_VALUE) {
+			return -1;
+		}
+		return (int) millis;
+	}
+}
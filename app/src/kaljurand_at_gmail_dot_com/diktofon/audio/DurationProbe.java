@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>Determines the duration of an audio file by reading only its headers
+ * (or, as a last resort, its frame headers) rather than by decoding it.
+ * Implementations are pure Java, i.e. they also run on the JVM.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public interface DurationProbe {
+
+	/**
+	 * @param head first bytes of the file (at most {@link DurationProbeEngine#HEAD_LENGTH})
+	 * @param length number of valid bytes in <code>head</code>
+	 * @return <code>true</code> iff the file looks like it is in the format handled by this probe
+	 */
+	boolean accepts(byte[] head, int length);
+
+
+	/**
+	 * @return duration of the audio in milliseconds, or -1 if the headers do not
+	 * contain enough information to determine the duration
+	 */
+	int getDuration(RandomAccessFile file) throws IOException;
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Selects a duration probe based on the magic bytes at the beginning of the
+ * audio file. New formats are supported by adding a probe with {@link #addProbe}.
+ * If none of the probes accepts the file (or the accepting probe fails) then
+ * the caller should fall back to a decoder-based method (e.g. MediaPlayer).</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class DurationProbeEngine {
+
+	// Enough to recognize all the supported formats
+	public static final int HEAD_LENGTH = 16;
+
+	private static final DurationProbeEngine DEFAULT = new DurationProbeEngine();
+
+	static {
+		DEFAULT.addProbe(new WavDurationProbe());
+		DEFAULT.addProbe(new FlacDurationProbe());
+		DEFAULT.addProbe(new OggDurationProbe());
+		DEFAULT.addProbe(new AmrDurationProbe());
+		// MP3 is the last one because its sync word check is the least strict
+		DEFAULT.addProbe(new Mp3DurationProbe());
+	}
+
+	private final List<DurationProbe> mProbes = new ArrayList<DurationProbe>();
+
+
+	/**
+	 * @return engine that knows about RIFF/WAVE, FLAC, Ogg (Vorbis, Opus, Speex), AMR and MP3
+	 */
+	public static DurationProbeEngine getDefault() {
+		return DEFAULT;
+	}
+
+
+	public synchronized void addProbe(DurationProbe probe) {
+		mProbes.add(probe);
+	}
+
+
+	/**
+	 * @return duration of the given audio file in milliseconds, or -1 if
+	 * the duration could not be determined from the headers
+	 */
+	public int getDuration(File file) {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			byte[] head = new byte[HEAD_LENGTH];
+			int length = Bytes.read(raf, 0, head);
+			for (DurationProbe probe : getProbes()) {
+				if (probe.accepts(head, length)) {
+					raf.seek(0);
+					return probe.getDuration(raf);
+				}
+			}
+		} catch (IOException e) {
+			// The file is not there, is truncated, etc.
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) { }
+			}
+		}
+		return -1;
+	}
+
+
+	private synchronized List<DurationProbe> getProbes() {
+		return new ArrayList<DurationProbe>(mProbes);
+	}
+}
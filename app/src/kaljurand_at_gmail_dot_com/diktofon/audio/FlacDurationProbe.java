@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>Native FLAC. The first metadata block is always STREAMINFO which
+ * contains the sample rate (20 bits) and the total number of
+ * samples per channel (36 bits).</p>
+ */
+public class FlacDurationProbe implements DurationProbe {
+
+	private static final int STREAMINFO_TYPE = 0;
+
+	public boolean accepts(byte[] head, int length) {
+		return Bytes.startsWith(head, length, 0, "fLaC");
+	}
+
+
+	public int getDuration(RandomAccessFile file) throws IOException {
+		// "fLaC", metadata block header (4 bytes), STREAMINFO (34 bytes)
+		byte[] bytes = new byte[4 + 4 + 34];
+		if (Bytes.read(file, 0, bytes) < bytes.length) {
+			return -1;
+		}
+		if ((Bytes.u8(bytes, 4) & 0x7F) != STREAMINFO_TYPE) {
+			return -1;
+		}
+		int info = 8;
+		long sampleRate = (Bytes.u8(bytes, info + 10) << 12) |
+				(Bytes.u8(bytes, info + 11) << 4) |
+				(Bytes.u8(bytes, info + 12) >> 4);
+		long totalSamples = ((long) (Bytes.u8(bytes, info + 13) & 0x0F) << 32) |
+				Bytes.u32be(bytes, info + 14);
+		if (totalSamples == 0) {
+			// The encoder did not know the length of the stream
+			return -1;
+		}
+		return Bytes.toMillis(totalSamples, sampleRate);
+	}
+}
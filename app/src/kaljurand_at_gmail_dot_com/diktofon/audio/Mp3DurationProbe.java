@@ -0,0 +1,266 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>MPEG audio (layers I-III, MPEG-1/2/2.5). The probe skips the ID3v2 tag,
+ * finds the first frame and then tries, in this order:</p>
+ *
+ * <ol>
+ * <li>the Xing/Info header (VBR files written by LAME), which contains the number of frames;</li>
+ * <li>the VBRI header (Fraunhofer encoders), which contains the number of frames;</li>
+ * <li>a scan of the first frame headers: if the bitrate does not change then the file
+ * is assumed to be CBR and the duration follows from the file size,
+ * otherwise all the frame headers are scanned.</li>
+ * </ol>
+ */
+public class Mp3DurationProbe implements DurationProbe {
+
+	private static final int VERSION_1 = 3;
+	private static final int VERSION_2 = 2;
+
+	private static final int LAYER_1 = 3;
+	private static final int LAYER_2 = 2;
+	private static final int LAYER_3 = 1;
+
+	// kbps, indexed by the bitrate index
+	private static final int[] BITRATES_V1_L1 = { 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 };
+	private static final int[] BITRATES_V1_L2 = { 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 };
+	private static final int[] BITRATES_V1_L3 = { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 };
+	private static final int[] BITRATES_V2_L1 = { 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 };
+	private static final int[] BITRATES_V2_L23 = { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 };
+
+	private static final int[] SAMPLE_RATES_V1 = { 44100, 48000, 32000 };
+	private static final int[] SAMPLE_RATES_V2 = { 22050, 24000, 16000 };
+	private static final int[] SAMPLE_RATES_V25 = { 11025, 12000, 8000 };
+
+	// How far to look for the first frame after the ID3v2 tag
+	private static final int SYNC_SEARCH_LENGTH = 65536;
+
+	// Number of frames to look at before assuming that the file is CBR
+	private static final int CBR_CHECK_FRAMES = 32;
+
+	private static final int ID3V1_LENGTH = 128;
+
+	public boolean accepts(byte[] head, int length) {
+		if (Bytes.startsWith(head, length, 0, "ID3")) {
+			return true;
+		}
+		return length >= 4 && Header.parse(head, 0) != null;
+	}
+
+
+	public int getDuration(RandomAccessFile file) throws IOException {
+		long fileLength = file.length();
+		long start = getId3v2Length(file);
+
+		// Find the first frame
+		byte[] buffer = new byte[SYNC_SEARCH_LENGTH];
+		int length = Bytes.read(file, start, buffer);
+		Header first = null;
+		int offset = 0;
+		for (; offset + 4 <= length; offset++) {
+			first = Header.parse(buffer, offset);
+			if (first != null) {
+				break;
+			}
+		}
+		if (first == null) {
+			return -1;
+		}
+		long firstFramePosition = start + offset;
+
+		// Xing/Info or VBRI header in the first frame
+		byte[] frame = new byte[first.frameLength];
+		if (Bytes.read(file, firstFramePosition, frame) == frame.length) {
+			long frames = getXingFrames(frame, first);
+			if (frames < 0) {
+				frames = getVbriFrames(frame);
+			}
+			if (frames >= 0) {
+				return Bytes.toMillis(frames * first.samplesPerFrame, first.sampleRate);
+			}
+		}
+
+		long audioEnd = fileLength;
+		byte[] tag = new byte[3];
+		if (fileLength > ID3V1_LENGTH &&
+				Bytes.read(file, fileLength - ID3V1_LENGTH, tag) == tag.length &&
+				Bytes.startsWith(tag, tag.length, 0, "TAG")) {
+			audioEnd -= ID3V1_LENGTH;
+		}
+		return scanFrames(file, firstFramePosition, audioEnd, first);
+	}
+
+
+	private static int scanFrames(RandomAccessFile file, long firstFramePosition, long audioEnd, Header first) throws IOException {
+		byte[] bytes = new byte[4];
+		long position = firstFramePosition;
+		long samples = 0;
+		int frames = 0;
+		boolean isCbr = true;
+		while (position + 4 <= audioEnd) {
+			if (Bytes.read(file, position, bytes) < bytes.length) {
+				break;
+			}
+			Header header = Header.parse(bytes, 0);
+			if (header == null) {
+				// Garbage or a trailing tag
+				break;
+			}
+			if (position + header.frameLength > audioEnd) {
+				// Truncated frame
+				break;
+			}
+			if (header.bitrate != first.bitrate) {
+				isCbr = false;
+			}
+			frames++;
+			if (isCbr && frames == CBR_CHECK_FRAMES) {
+				// Bytes per second = bitrate * 1000 / 8, i.e. milliseconds = bytes * 8 / kbps
+				long millis = (audioEnd - firstFramePosition) * 8 / first.bitrate;
+				return (int) Math.min(millis, Integer.MAX_VALUE);
+			}
+			samples += header.samplesPerFrame;
+			position += header.frameLength;
+		}
+		if (frames == 0) {
+			return -1;
+		}
+		return Bytes.toMillis(samples, first.sampleRate);
+	}
+
+
+	private static long getId3v2Length(RandomAccessFile file) throws IOException {
+		byte[] bytes = new byte[10];
+		if (Bytes.read(file, 0, bytes) < bytes.length || ! Bytes.startsWith(bytes, bytes.length, 0, "ID3")) {
+			return 0;
+		}
+		// Syncsafe integer: 4 x 7 bits
+		long size = ((bytes[6] & 0x7F) << 21) | ((bytes[7] & 0x7F) << 14) | ((bytes[8] & 0x7F) << 7) | (bytes[9] & 0x7F);
+		boolean hasFooter = (bytes[5] & 0x10) != 0;
+		return 10 + size + (hasFooter ? 10 : 0);
+	}
+
+
+	private static long getXingFrames(byte[] frame, Header header) {
+		int offset = 4 + header.getSideInfoLength();
+		if (Bytes.startsWith(frame, frame.length, offset, "Xing") || Bytes.startsWith(frame, frame.length, offset, "Info")) {
+			if (offset + 12 > frame.length) {
+				return -1;
+			}
+			long flags = Bytes.u32be(frame, offset + 4);
+			if ((flags & 1) != 0) {
+				return Bytes.u32be(frame, offset + 8);
+			}
+		}
+		return -1;
+	}
+
+
+	private static long getVbriFrames(byte[] frame) {
+		int offset = 4 + 32;
+		if (Bytes.startsWith(frame, frame.length, offset, "VBRI") && offset + 18 <= frame.length) {
+			return Bytes.u32be(frame, offset + 14);
+		}
+		return -1;
+	}
+
+
+	/**
+	 * <p>Parsed 4-byte MPEG audio frame header.</p>
+	 */
+	static class Header {
+		final int version;
+		final int layer;
+		final int bitrate;
+		final int sampleRate;
+		final int samplesPerFrame;
+		final int frameLength;
+		final boolean isMono;
+
+		private Header(int version, int layer, int bitrate, int sampleRate, boolean isPadded, boolean isMono) {
+			this.version = version;
+			this.layer = layer;
+			this.bitrate = bitrate;
+			this.sampleRate = sampleRate;
+			this.isMono = isMono;
+			if (layer == LAYER_1) {
+				samplesPerFrame = 384;
+				frameLength = (12 * bitrate * 1000 / sampleRate + (isPadded ? 1 : 0)) * 4;
+			} else if (layer == LAYER_3 && version != VERSION_1) {
+				samplesPerFrame = 576;
+				frameLength = 72 * bitrate * 1000 / sampleRate + (isPadded ? 1 : 0);
+			} else {
+				samplesPerFrame = 1152;
+				frameLength = 144 * bitrate * 1000 / sampleRate + (isPadded ? 1 : 0);
+			}
+		}
+
+
+		int getSideInfoLength() {
+			if (version == VERSION_1) {
+				return isMono ? 17 : 32;
+			}
+			return isMono ? 9 : 17;
+		}
+
+
+		/**
+		 * @return parsed header or <code>null</code> if the bytes do not form a valid header
+		 * (free format bitrates are not supported)
+		 */
+		static Header parse(byte[] bytes, int offset) {
+			int b1 = Bytes.u8(bytes, offset + 1);
+			if (Bytes.u8(bytes, offset) != 0xFF || (b1 & 0xE0) != 0xE0) {
+				return null;
+			}
+			int version = (b1 >> 3) & 3;
+			int layer = (b1 >> 1) & 3;
+			if (version == 1 || layer == 0) {
+				return null;
+			}
+			int b2 = Bytes.u8(bytes, offset + 2);
+			int bitrateIndex = (b2 >> 4) & 0x0F;
+			int sampleRateIndex = (b2 >> 2) & 3;
+			if (bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+				return null;
+			}
+			int bitrate;
+			int sampleRate;
+			if (version == VERSION_1) {
+				sampleRate = SAMPLE_RATES_V1[sampleRateIndex];
+				if (layer == LAYER_1) {
+					bitrate = BITRATES_V1_L1[bitrateIndex];
+				} else if (layer == LAYER_2) {
+					bitrate = BITRATES_V1_L2[bitrateIndex];
+				} else {
+					bitrate = BITRATES_V1_L3[bitrateIndex];
+				}
+			} else {
+				sampleRate = (version == VERSION_2) ? SAMPLE_RATES_V2[sampleRateIndex] : SAMPLE_RATES_V25[sampleRateIndex];
+				bitrate = (layer == LAYER_1) ? BITRATES_V2_L1[bitrateIndex] : BITRATES_V2_L23[bitrateIndex];
+			}
+			boolean isPadded = ((b2 >> 1) & 1) == 1;
+			boolean isMono = ((Bytes.u8(bytes, offset + 3) >> 6) & 3) == 3;
+			return new Header(version, layer, bitrate, sampleRate, isPadded, isMono);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>Ogg Vorbis, Opus and Speex. The sample rate is read from the identification
+ * header in the first page, the number of samples is the granule position of
+ * the last page of the same logical stream. Only the tail of the file is read
+ * when looking for the last page.</p>
+ */
+public class OggDurationProbe implements DurationProbe {
+
+	// Maximum size of an Ogg page is about 64k
+	private static final int TAIL_LENGTH = 65536 + 27 + 255;
+
+	private static final int OPUS_GRANULE_RATE = 48000;
+
+	public boolean accepts(byte[] head, int length) {
+		return Bytes.startsWith(head, length, 0, "OggS");
+	}
+
+
+	public int getDuration(RandomAccessFile file) throws IOException {
+		byte[] first = new byte[27 + 255 + 64];
+		int firstLength = Bytes.read(file, 0, first);
+		if (firstLength < 28) {
+			return -1;
+		}
+		long serial = Bytes.u32le(first, 14);
+		int packet = 27 + Bytes.u8(first, 26);
+
+		long sampleRate;
+		long preSkip = 0;
+		if (Bytes.startsWith(first, firstLength, packet, "\u0001vorbis")) {
+			if (packet + 16 > firstLength) {
+				return -1;
+			}
+			sampleRate = Bytes.u32le(first, packet + 12);
+		} else if (Bytes.startsWith(first, firstLength, packet, "OpusHead")) {
+			if (packet + 12 > firstLength) {
+				return -1;
+			}
+			preSkip = Bytes.u16le(first, packet + 10);
+			sampleRate = OPUS_GRANULE_RATE;
+		} else if (Bytes.startsWith(first, firstLength, packet, "Speex   ")) {
+			if (packet + 40 > firstLength) {
+				return -1;
+			}
+			sampleRate = Bytes.u32le(first, packet + 36);
+		} else {
+			return -1;
+		}
+
+		long granule = getLastGranule(file, serial);
+		if (granule < 0) {
+			return -1;
+		}
+		return Bytes.toMillis(Math.max(0, granule - preSkip), sampleRate);
+	}
+
+
+	/**
+	 * <p>Scans the tail of the file backwards for the last page of the given stream
+	 * that has a granule position (pages that do not finish a packet have the
+	 * granule position -1).</p>
+	 */
+	private static long getLastGranule(RandomAccessFile file, long serial) throws IOException {
+		long fileLength = file.length();
+		long start = Math.max(0, fileLength - TAIL_LENGTH);
+		byte[] tail = new byte[(int) (fileLength - start)];
+		int length = Bytes.read(file, start, tail);
+		for (int i = length - 27; i >= 0; i--) {
+			if (Bytes.startsWith(tail, length, i, "OggS") && Bytes.u32le(tail, i + 14) == serial) {
+				long granule = Bytes.u64le(tail, i + 6);
+				if (granule != -1) {
+					return granule;
+				}
+			}
+		}
+		return -1;
+	}
+}
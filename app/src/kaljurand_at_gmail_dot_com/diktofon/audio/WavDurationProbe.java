@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>RIFF/WAVE, e.g. the files written by RawRecorder. Walks the chunk list
+ * until the "fmt " and "data" chunks have been found. The duration is the size
+ * of the data chunk divided by the byte rate.</p>
+ *
+ * <p>If the recorder did not finalize the header (i.e. the data size is 0 or
+ * points beyond the end of the file) then the data is assumed to extend
+ * until the end of the file.</p>
+ */
+public class WavDurationProbe implements DurationProbe {
+
+	private static final int CHUNK_HEADER_LENGTH = 8;
+
+	public boolean accepts(byte[] head, int length) {
+		return Bytes.startsWith(head, length, 0, "RIFF") && Bytes.startsWith(head, length, 8, "WAVE");
+	}
+
+
+	public int getDuration(RandomAccessFile file) throws IOException {
+		long fileLength = file.length();
+		byte[] chunkHeader = new byte[CHUNK_HEADER_LENGTH];
+		byte[] fmt = new byte[16];
+		long byteRate = -1;
+		long position = 12;
+		while (position + CHUNK_HEADER_LENGTH <= fileLength) {
+			if (Bytes.read(file, position, chunkHeader) < CHUNK_HEADER_LENGTH) {
+				return -1;
+			}
+			long chunkSize = Bytes.u32le(chunkHeader, 4);
+			long chunkStart = position + CHUNK_HEADER_LENGTH;
+			if (Bytes.startsWith(chunkHeader, CHUNK_HEADER_LENGTH, 0, "fmt ")) {
+				if (Bytes.read(file, chunkStart, fmt) < fmt.length) {
+					return -1;
+				}
+				byteRate = Bytes.u32le(fmt, 8);
+				if (byteRate == 0) {
+					// Byte rate = sample rate * block align
+					byteRate = Bytes.u32le(fmt, 4) * Bytes.u16le(fmt, 12);
+				}
+			} else if (Bytes.startsWith(chunkHeader, CHUNK_HEADER_LENGTH, 0, "data")) {
+				if (byteRate <= 0) {
+					return -1;
+				}
+				long remaining = fileLength - chunkStart;
+				if (chunkSize == 0 || chunkSize > remaining) {
+					chunkSize = remaining;
+				}
+				return Bytes.toMillis(chunkSize, byteRate);
+			}
+			// Chunks are word-aligned
+			position = chunkStart + chunkSize + (chunkSize & 1);
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>Header of a PCM RIFF/WAVE file. The header is built in memory and written with
+ * a single call, and the two size fields, which are not known until the recording stops,
+ * are then patched in place (see {@link #writeSizes}).</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class WavHeader {
+
+	public static final int SIZE = 44;
+
+	// Offsets of the RIFF chunk size and the data chunk size
+	private static final int RIFF_SIZE_OFFSET = 4;
+	private static final int DATA_SIZE_OFFSET = 40;
+
+	private WavHeader() {}
+
+
+	/**
+	 * @param sampleRate sample rate in Hz
+	 * @param channels number of channels (1 for mono, 2 for stereo)
+	 * @param resolution bits per sample
+	 * @param dataSize size of the audio data in bytes (0 if not known yet)
+	 * @return header of the given format
+	 */
+	public static byte[] create(int sampleRate, int channels, int resolution, int dataSize) {
+		byte[] header = new byte[SIZE];
+		int blockAlign = channels * resolution / 8;
+		Bytes.putAscii(header, 0, "RIFF");
+		Bytes.put32le(header, RIFF_SIZE_OFFSET, SIZE - 8 + dataSize);
+		Bytes.putAscii(header, 8, "WAVE");
+		Bytes.putAscii(header, 12, "fmt ");
+		// Sub-chunk size, 16 for PCM
+		Bytes.put32le(header, 16, 16);
+		// Audio format, 1 for PCM
+		Bytes.put16le(header, 20, 1);
+		Bytes.put16le(header, 22, channels);
+		Bytes.put32le(header, 24, sampleRate);
+		// Byte rate
+		Bytes.put32le(header, 28, sampleRate * blockAlign);
+		Bytes.put16le(header, 32, blockAlign);
+		Bytes.put16le(header, 34, resolution);
+		Bytes.putAscii(header, 36, "data");
+		Bytes.put32le(header, DATA_SIZE_OFFSET, dataSize);
+		return header;
+	}
+
+
+	/**
+	 * <p>Writes the RIFF chunk size and the data chunk size into the header
+	 * at the beginning of the given file.</p>
+	 */
+	public static void writeSizes(RandomAccessFile file, int dataSize) throws IOException {
+		byte[] size = new byte[4];
+		Bytes.put32le(size, 0, SIZE - 8 + dataSize);
+		file.seek(RIFF_SIZE_OFFSET);
+		file.write(size);
+		Bytes.put32le(size, 0, dataSize);
+		file.seek(DATA_SIZE_OFFSET);
+		file.write(size);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.catalog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Metadata of a single recording, as stored in the catalog file (see {@link CatalogFile}).
+ * The sidecar time stamps are 0 if the corresponding file does not exist (which is also
+ * what File.lastModified returns for a missing file). Strings that are not known are stored
+ * as <code>null</code>. The state is the name of a <code>Recording.State</code>.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class CatalogEntry {
+	public final String id;
+	public final long size;
+	public final long timestamp;
+	public final long transTimestamp;
+	public final long tagsTimestamp;
+	public final long tokenTimestamp;
+
+	public final int duration;
+	public final String mime;
+	public final int wordCount;
+	public final int speakerCount;
+	public final Map<String, String> speakers;
+	public final int turnCount;
+	public final long speechTime;
+	public final String excerpt;
+	public final String token;
+	public final String tags;
+	public final String state;
+
+	public CatalogEntry(String id, long size, long timestamp,
+			long transTimestamp, long tagsTimestamp, long tokenTimestamp,
+			int duration, String mime, int wordCount, int speakerCount,
+			Map<String, String> speakers, int turnCount, long speechTime, String excerpt, String token, String tags, String state) {
+		this.id = id;
+		this.size = size;
+		this.timestamp = timestamp;
+		this.transTimestamp = transTimestamp;
+		this.tagsTimestamp = tagsTimestamp;
+		this.tokenTimestamp = tokenTimestamp;
+		this.duration = duration;
+		this.mime = mime;
+		this.wordCount = wordCount;
+		this.speakerCount = speakerCount;
+		this.speakers = speakers;
+		this.turnCount = turnCount;
+		this.speechTime = speechTime;
+		this.excerpt = excerpt;
+		this.token = token;
+		this.tags = tags;
+		this.state = state;
+	}
+
+
+	public void write(DataOutputStream out) throws IOException {
+		out.writeUTF(id);
+		out.writeLong(size);
+		out.writeLong(timestamp);
+		out.writeLong(transTimestamp);
+		out.writeLong(tagsTimestamp);
+		out.writeLong(tokenTimestamp);
+		out.writeInt(duration);
+		writeString(out, mime);
+		out.writeInt(wordCount);
+		out.writeInt(speakerCount);
+		out.writeInt(speakers.size());
+		for (Map.Entry<String, String> speaker : speakers.entrySet()) {
+			writeString(out, speaker.getKey());
+			writeString(out, speaker.getValue());
+		}
+		out.writeInt(turnCount);
+		out.writeLong(speechTime);
+		writeString(out, excerpt);
+		writeString(out, token);
+		writeString(out, tags);
+		out.writeUTF(state);
+	}
+
+
+	public static CatalogEntry read(DataInputStream in) throws IOException {
+		String id = in.readUTF();
+		long size = in.readLong();
+		long timestamp = in.readLong();
+		long transTimestamp = in.readLong();
+		long tagsTimestamp = in.readLong();
+		long tokenTimestamp = in.readLong();
+		int duration = in.readInt();
+		String mime = readString(in);
+		int wordCount = in.readInt();
+		int speakerCount = in.readInt();
+		int speakerMapSize = in.readInt();
+		Map<String, String> speakers = new HashMap<String, String>();
+		for (int i = 0; i < speakerMapSize; i++) {
+			String speakerId = readString(in);
+			speakers.put(speakerId, readString(in));
+		}
+		int turnCount = in.readInt();
+		long speechTime = in.readLong();
+		String excerpt = readString(in);
+		String token = readString(in);
+		String tags = readString(in);
+		String state = in.readUTF();
+		return new CatalogEntry(id, size, timestamp, transTimestamp, tagsTimestamp, tokenTimestamp,
+				duration, mime, wordCount, speakerCount,
+				Collections.unmodifiableMap(speakers), turnCount, speechTime, excerpt, token, tags, state);
+	}
+
+
+	// writeUTF is limited to 64k bytes, the excerpt is much shorter than that,
+	// but we do not want to depend on this.
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = str.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.catalog;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>File format of the recording catalog: the version, the number of entries
+ * and the entries (see {@link CatalogEntry}).</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class CatalogFile {
+
+	// Increase this whenever the file format changes, the old catalog is then ignored.
+	public static final int VERSION = 3;
+
+	private CatalogFile() {}
+
+
+	/**
+	 * @return map from the ID to the entry, or <code>null</code> if the file
+	 * has an unsupported version
+	 * @throws java.io.EOFException if the file is truncated
+	 */
+	public static Map<String, CatalogEntry> read(File file) throws IOException {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != VERSION) {
+				return null;
+			}
+			int count = in.readInt();
+			Map<String, CatalogEntry> entries = new HashMap<String, CatalogEntry>();
+			for (int i = 0; i < count; i++) {
+				CatalogEntry entry = CatalogEntry.read(in);
+				entries.put(entry.id, entry);
+			}
+			return entries;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+
+	public static void write(File file, Collection<CatalogEntry> entries) throws IOException {
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			for (CatalogEntry entry : entries) {
+				entry.write(out);
+			}
+			out.close();
+			out = null;
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+}
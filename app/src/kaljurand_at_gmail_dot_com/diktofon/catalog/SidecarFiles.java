@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.catalog;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <p>Reading and writing the text files that accompany a recording,
+ * i.e. its transcription, tags and token.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class SidecarFiles {
+
+	private SidecarFiles() {}
+
+
+	public static void save(File f, String content) throws IOException {
+		File dir = f.getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Cannot create directory: " + dir);
+		}
+		FileUtils.writeStringToFile(f, content, "UTF8");
+	}
+
+
+	public static String load(File f) throws IOException {
+		return FileUtils.readFileToString(f, "UTF8");
+	}
+
+
+	public static void delete(File f) throws IOException {
+		FileUtils.forceDelete(f);
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+/**
+ * <p>Maps the tokens of the text (and of the query) to the terms of the index.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public interface Analyzer {
+
+	/**
+	 * @param token sequence of letters and digits (see {@link Tokenizer})
+	 * @return index term that corresponds to the token, or <code>null</code>
+	 * if the token should not be indexed
+	 */
+	String normalize(String token);
+
+
+	/**
+	 * @return <code>true</code> iff the index should also match the query terms against the
+	 * heads of compound terms (e.g. "valitsus" against "linnavalitsus")
+	 */
+	boolean splitsCompounds();
+}
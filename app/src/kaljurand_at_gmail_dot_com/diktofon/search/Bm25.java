@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+/**
+ * <p>Okapi BM25 relevance function. The score of a document grows with the frequency of
+ * the query in the document, but saturates (controlled by <code>k1</code>), the frequency
+ * is normalized by the length of the document relative to the average length (controlled by
+ * <code>b</code>), and rare terms weigh more than common ones (the inverse document frequency).
+ * A short recording that is about the query thus beats a long one that mentions it
+ * a few more times.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Bm25 {
+
+	public static final float DEFAULT_K1 = 1.2f;
+	public static final float DEFAULT_B = 0.75f;
+
+	private final float mK1;
+	private final float mB;
+
+
+	public Bm25() {
+		this(DEFAULT_K1, DEFAULT_B);
+	}
+
+
+	public Bm25(float k1, float b) {
+		mK1 = k1;
+		mB = b;
+	}
+
+
+	/**
+	 * @param docFreq number of documents that contain the term
+	 * @param docCount number of documents
+	 * @return inverse document frequency of the term (always positive)
+	 */
+	public static float idf(int docFreq, int docCount) {
+		return (float) Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+	}
+
+
+	/**
+	 * @param idf inverse document frequency of the query
+	 * @param freq frequency of the query in the document
+	 * @param length length of the document (in tokens)
+	 * @param avgLength average length of the documents
+	 * @return score of the document
+	 */
+	public float score(float idf, int freq, int length, float avgLength) {
+		if (freq <= 0) {
+			return 0;
+		}
+		float norm = (avgLength > 0) ? 1 - mB + mB * length / avgLength : 1;
+		return idf * freq * (mK1 + 1) / (freq + mK1 * norm);
+	}
+}
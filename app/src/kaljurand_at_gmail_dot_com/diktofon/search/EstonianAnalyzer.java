@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.util.Locale;
+
+/**
+ * <p>Analyzer for Estonian, which is heavily inflected, e.g. a search for "maja" should
+ * also find "majas", "majja" and "majade". The analysis is applied both to the
+ * transcriptions and to the queries, i.e. inflected forms are matched by an index lookup.
+ * A token is</p>
+ *
+ * <ol>
+ * <li>lowercased;</li>
+ * <li>composed, i.e. a vowel followed by a combining tilde or diaeresis (e.g. "o" + U+0303)
+ * is replaced by the precomposed letter ("õ"), so that both spellings give
+ * the same term. Note that õ, ä, ö and ü are not folded to o, a, o and u, they are
+ * separate letters in Estonian ("saar" and "säär" are different words);</li>
+ * <li>stemmed: a case ending (possibly with the plural marker) is stripped,
+ * then the -se/-s of the nouns in -us, then the stem vowel (a, e, i, u), and finally a double consonant at the end of the
+ * stem is shortened ("majja" and "majas" both give "maj"). At least 3 characters are
+ * always kept, tokens that contain digits are not stemmed.</li>
+ * </ol>
+ *
+ * <p>This is a light stemmer, it does not know the exceptions (e.g. the stem changes
+ * of "jalg", "jala") and it sometimes conflates different words. Compounds
+ * (e.g. "linnavalitsus") are split by the index against its vocabulary
+ * (see {@link #splitsCompounds()}).</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class EstonianAnalyzer implements Analyzer {
+
+	private static final int MIN_STEM_LENGTH = 3;
+
+	// Case endings, with and without the plural marker -de/-te, longest first
+	private static final String[] ENDINGS = {
+		"desse", "tesse",
+		"dega", "tega", "deni", "teni", "dena", "tena", "deta", "teta",
+		"deks", "teks", "dele", "tele", "delt", "telt", "dest", "test",
+		"sse", "des", "tes", "del", "tel",
+		"ga", "ni", "na", "ta", "ks", "le", "lt", "st", "de", "te",
+		"s", "l", "d", "t"
+	};
+
+	private static final String STEM_VOWELS = "aeiu";
+	private static final String VOWELS = "aeiou\u00f5\u00e4\u00f6\u00fcy";
+
+	public String normalize(String token) {
+		String term = compose(token.toLowerCase(Locale.ENGLISH));
+		if (hasDigit(term)) {
+			return term;
+		}
+		return stem(term);
+	}
+
+
+	public boolean splitsCompounds() {
+		return true;
+	}
+
+
+	static String stem(String word) {
+		int end = word.length();
+		for (String ending : ENDINGS) {
+			if (word.endsWith(ending) && end - ending.length() >= MIN_STEM_LENGTH) {
+				end -= ending.length();
+				break;
+			}
+		}
+		// The nouns in -us have the stem -use (otsus, otsuse, otsuste)
+		if (end - 2 > MIN_STEM_LENGTH && word.startsWith("use", end - 3)) {
+			end -= 2;
+		} else if (end - 1 > MIN_STEM_LENGTH && word.startsWith("us", end - 2)) {
+			end -= 1;
+		}
+		if (end > MIN_STEM_LENGTH && STEM_VOWELS.indexOf(word.charAt(end - 1)) != -1) {
+			end--;
+		}
+		if (end > MIN_STEM_LENGTH) {
+			char c = word.charAt(end - 1);
+			if (c == word.charAt(end - 2) && VOWELS.indexOf(c) == -1) {
+				end--;
+			}
+		}
+		return word.substring(0, end);
+	}
+
+
+	// Replaces the decomposed Estonian vowels by the precomposed ones
+	// (java.text.Normalizer is not available on older Androids).
+	private static String compose(String str) {
+		if (str.indexOf('\u0303') == -1 && str.indexOf('\u0308') == -1) {
+			return str;
+		}
+		StringBuilder sb = new StringBuilder(str.length());
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			char composed = 0;
+			if (i + 1 < str.length()) {
+				composed = compose(c, str.charAt(i + 1));
+			}
+			if (composed == 0) {
+				sb.append(c);
+			} else {
+				sb.append(composed);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+
+
+	private static char compose(char base, char mark) {
+		if (mark == '\u0303') {
+			if (base == 'o') return '\u00f5';
+		} else if (mark == '\u0308') {
+			switch (base) {
+			case 'a': return '\u00e4';
+			case 'o': return '\u00f6';
+			case 'u': return '\u00fc';
+			}
+		}
+		return 0;
+	}
+
+
+	private static boolean hasDigit(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			if (Character.isDigit(str.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
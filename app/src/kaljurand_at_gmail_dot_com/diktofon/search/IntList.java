@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+/**
+ * <p>Growable array of ints (to avoid boxing).</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class IntList {
+
+	private int[] mValues;
+	private int mSize = 0;
+
+
+	public IntList() {
+		this(8);
+	}
+
+
+	public IntList(int capacity) {
+		mValues = new int[Math.max(1, capacity)];
+	}
+
+
+	public void add(int value) {
+		if (mSize == mValues.length) {
+			int[] values = new int[mSize * 2];
+			System.arraycopy(mValues, 0, values, 0, mSize);
+			mValues = values;
+		}
+		mValues[mSize++] = value;
+	}
+
+
+	public int get(int index) {
+		return mValues[index];
+	}
+
+
+	public void set(int index, int value) {
+		mValues[index] = value;
+	}
+
+
+	public int size() {
+		return mSize;
+	}
+
+
+	public void clear() {
+		mSize = 0;
+	}
+
+
+	public int[] toArray() {
+		int[] values = new int[mSize];
+		System.arraycopy(mValues, 0, values, 0, mSize);
+		return values;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+/**
+ * <p>Decides if a word is within the given edit distance (insertions, deletions,
+ * substitutions) of the pattern. This simulates the Levenshtein automaton of the
+ * pattern row by row: only the diagonal band of width <code>2 * maxDistance + 1</code>
+ * is computed, and the word is rejected as soon as every state of the band
+ * exceeds the maximum distance, i.e. most of the non-matching words are
+ * rejected after a few characters.</p>
+ *
+ * <p>The matcher keeps its rows between the calls, i.e. it is not thread-safe.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class LevenshteinMatcher {
+
+	private final String mPattern;
+	private final int mMaxDistance;
+	private int[] mPrevious;
+	private int[] mCurrent;
+
+
+	public LevenshteinMatcher(String pattern, int maxDistance) {
+		mPattern = pattern;
+		mMaxDistance = maxDistance;
+		mPrevious = new int[pattern.length() + 1];
+		mCurrent = new int[pattern.length() + 1];
+	}
+
+
+	public String getPattern() {
+		return mPattern;
+	}
+
+
+	public int getMaxDistance() {
+		return mMaxDistance;
+	}
+
+
+	public boolean matches(String word) {
+		return distance(word) <= mMaxDistance;
+	}
+
+
+	/**
+	 * @return edit distance between the pattern and the given word, or
+	 * <code>maxDistance + 1</code> if the distance is larger than the maximum
+	 */
+	public int distance(String word) {
+		int n = mPattern.length();
+		int m = word.length();
+		int tooFar = mMaxDistance + 1;
+		if (Math.abs(n - m) > mMaxDistance) {
+			return tooFar;
+		}
+		for (int j = 0; j <= n; j++) {
+			mPrevious[j] = j;
+		}
+		for (int i = 1; i <= m; i++) {
+			char c = word.charAt(i - 1);
+			int from = Math.max(1, i - mMaxDistance);
+			int to = Math.min(n, i + mMaxDistance);
+			mCurrent[0] = i;
+			if (from > 1) {
+				mCurrent[from - 1] = tooFar;
+			}
+			int rowMin = (from == 1) ? i : tooFar;
+			for (int j = from; j <= to; j++) {
+				int cost = (mPattern.charAt(j - 1) == c) ? 0 : 1;
+				int d = mPrevious[j - 1] + cost;
+				if (j < i + mMaxDistance && mPrevious[j] + 1 < d) {
+					d = mPrevious[j] + 1;
+				}
+				if (mCurrent[j - 1] + 1 < d) {
+					d = mCurrent[j - 1] + 1;
+				}
+				mCurrent[j] = Math.min(d, tooFar);
+				if (mCurrent[j] < rowMin) {
+					rowMin = mCurrent[j];
+				}
+			}
+			if (to < n) {
+				mCurrent[to + 1] = tooFar;
+			}
+			if (rowMin > mMaxDistance) {
+				return tooFar;
+			}
+			int[] tmp = mPrevious;
+			mPrevious = mCurrent;
+			mCurrent = tmp;
+		}
+		return Math.min(mPrevious[n], tooFar);
+	}
+}
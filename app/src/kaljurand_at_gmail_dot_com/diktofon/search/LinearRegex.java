@@ -0,0 +1,898 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * <p>Case insensitive regular expression that is matched in linear time. The expression is
+ * compiled into a program of a nondeterministic automaton, which is then simulated on
+ * the text one character at a time, keeping all the active threads in a list that is ordered
+ * by priority (the Pike VM). The matches are the same as those of
+ * <code>java.util.regex</code> (leftmost, preferring the earlier alternatives and the greedy
+ * repetitions), but no input can make the matcher backtrack, e.g. <code>(a|aa)*b</code>
+ * takes time proportional to the length of the text. As on Android, the predefined classes
+ * and the word boundaries are Unicode-aware, e.g. <code>\w</code> matches "õ" (on other
+ * JVMs this needs <code>Pattern.UNICODE_CHARACTER_CLASS</code>).</p>
+ *
+ * <p>Supported: literals, escapes (<code>\t \n \r \f \xhh \\uhhhh</code> and the escaped
+ * metacharacters), <code>.</code>, character classes with ranges and negation, the predefined
+ * classes <code>\d \D \w \W \s \S</code>, groups (capturing and <code>(?:...)</code>),
+ * alternation, the greedy and the lazy quantifiers <code>* + ? {n} {n,} {n,m}</code>,
+ * and the anchors <code>^ $ \b \B \A \z \Z</code>. Not supported (as they require
+ * backtracking, or are rarely used in queries): back references, lookaround, possessive
+ * quantifiers, inline flags, class intersection and Unicode properties.
+ * An unsupported construct is reported as a syntax error.</p>
+ *
+ * <p>The matching can also be limited by the number of steps (see {@link Matcher}), so
+ * that a huge text combined with a large program cannot block the caller.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class LinearRegex {
+
+	// Maximum number of instructions, the counted repetitions are expanded
+	public static final int MAX_PROGRAM_SIZE = 10000;
+
+	private static final int OP_CHAR = 0;
+	private static final int OP_ANY = 1;
+	private static final int OP_CLASS = 2;
+	private static final int OP_SPLIT = 3;
+	private static final int OP_JMP = 4;
+	private static final int OP_ASSERT = 5;
+	private static final int OP_MATCH = 6;
+
+	private static final int ASSERT_BEGIN = 0;
+	private static final int ASSERT_END = 1;
+	private static final int ASSERT_END_OF_INPUT = 2;
+	private static final int ASSERT_WORD_BOUNDARY = 3;
+	private static final int ASSERT_NOT_WORD_BOUNDARY = 4;
+
+	private final String mRegex;
+	// Program: opcode and two arguments per instruction. The second argument of
+	// the instructions that consume a character is the offset of the next instruction
+	// from the following one (see Compiler#compileIteration).
+	private final int[] mOps;
+	private final int[] mArgs1;
+	private final int[] mArgs2;
+	private final CharClass[] mClasses;
+
+
+	private LinearRegex(String regex, int[] ops, int[] args1, int[] args2, CharClass[] classes) {
+		mRegex = regex;
+		mOps = ops;
+		mArgs1 = args1;
+		mArgs2 = args2;
+		mClasses = classes;
+	}
+
+
+	/**
+	 * @throws PatternSyntaxException if the expression is not valid, uses an unsupported construct,
+	 * or compiles into more than {@link #MAX_PROGRAM_SIZE} instructions
+	 */
+	public static LinearRegex compile(String regex) {
+		Parser parser = new Parser(regex);
+		Node node = parser.parse();
+		Compiler compiler = new Compiler(regex);
+		compiler.compile(node);
+		compiler.emit(OP_MATCH, 0, 0);
+		return compiler.build();
+	}
+
+
+	/**
+	 * @param maxSteps maximum number of steps that the matcher can take (in all the
+	 * calls to find), a step is roughly the processing of one thread at one character
+	 */
+	public Matcher matcher(CharSequence text, long maxSteps) {
+		return new Matcher(this, text, maxSteps);
+	}
+
+
+	@Override
+	public String toString() {
+		return mRegex;
+	}
+
+
+	/**
+	 * <p>Finds the successive matches in the text, like <code>java.util.regex.Matcher.find()</code>.
+	 * If the step limit is exceeded then the search stops, and the matcher is marked as aborted,
+	 * i.e. the caller can tell a text without (further) matches from an incomplete search.</p>
+	 *
+	 * <p>The matcher is not thread-safe.</p>
+	 */
+	public static class Matcher {
+
+		private final LinearRegex mRegex;
+		private final CharSequence mText;
+		private final int mLength;
+		private final long mMaxSteps;
+		private long mSteps = 0;
+		private boolean mIsAborted = false;
+		private int mFrom = 0;
+		private int mStart = -1;
+		private int mEnd = -1;
+
+		// Current and next thread lists: program counters and match start positions
+		private ThreadList mCurrent;
+		private ThreadList mNext;
+		private final int[] mStack;
+
+		private Matcher(LinearRegex regex, CharSequence text, long maxSteps) {
+			mRegex = regex;
+			mText = text;
+			mLength = text.length();
+			mMaxSteps = maxSteps;
+			int size = regex.mOps.length;
+			mCurrent = new ThreadList(size);
+			mNext = new ThreadList(size);
+			mStack = new int[size];
+		}
+
+		/**
+		 * @return <code>true</code> if the next match was found
+		 */
+		public boolean find() {
+			if (mIsAborted || mFrom > mLength) {
+				return false;
+			}
+			int[] ops = mRegex.mOps;
+			int matchStart = -1;
+			int matchEnd = -1;
+			mCurrent.clear();
+			for (int pos = mFrom; ; pos++) {
+				if (matchStart == -1) {
+					// A thread that starts here has a lower priority than the earlier ones
+					addThread(mCurrent, 0, pos, pos);
+				}
+				if (mIsAborted) {
+					break;
+				}
+				if (mCurrent.size == 0) {
+					if (matchStart != -1 || pos >= mLength) {
+						break;
+					}
+					// No thread survived the assertions at this position
+					mCurrent.clear();
+					continue;
+				}
+				int c = (pos < mLength) ? mText.charAt(pos) : -1;
+				mNext.clear();
+				for (int i = 0; i < mCurrent.size; i++) {
+					if (++mSteps > mMaxSteps) {
+						mIsAborted = true;
+						return false;
+					}
+					int pc = mCurrent.pcs[i];
+					int op = ops[pc];
+					if (op == OP_MATCH) {
+						matchStart = mCurrent.starts[i];
+						matchEnd = pos;
+						// The threads of lower priority cannot produce a better match
+						break;
+					} else if (c != -1 && mRegex.matches(pc, (char) c)) {
+						addThread(mNext, pc + 1 + mRegex.mArgs2[pc], mCurrent.starts[i], pos + 1);
+					}
+				}
+				ThreadList tmp = mCurrent;
+				mCurrent = mNext;
+				mNext = tmp;
+				if (pos >= mLength) {
+					break;
+				}
+			}
+			if (mIsAborted || matchStart == -1) {
+				mFrom = mLength + 1;
+				return false;
+			}
+			mStart = matchStart;
+			mEnd = matchEnd;
+			// After an empty match the next search starts one character later
+			mFrom = (matchEnd == matchStart) ? matchEnd + 1 : matchEnd;
+			return true;
+		}
+
+		public int start() {
+			return mStart;
+		}
+
+		public int end() {
+			return mEnd;
+		}
+
+		/**
+		 * @return <code>true</code> if the step limit was exceeded
+		 */
+		public boolean isAborted() {
+			return mIsAborted;
+		}
+
+		/**
+		 * <p>Adds the thread and follows its jumps, splits and assertions (which do not
+		 * consume input) depth first, so that the threads are added in the order of priority.</p>
+		 */
+		private void addThread(ThreadList list, int pc0, int start, int pos) {
+			int[] ops = mRegex.mOps;
+			int top = 0;
+			mStack[top++] = pc0;
+			while (top > 0) {
+				int pc = mStack[--top];
+				if (list.contains(pc)) {
+					continue;
+				}
+				if (++mSteps > mMaxSteps) {
+					mIsAborted = true;
+					return;
+				}
+				list.mark(pc);
+				switch (ops[pc]) {
+				case OP_JMP:
+					mStack[top++] = mRegex.mArgs1[pc];
+					break;
+				case OP_SPLIT:
+					// The second branch is pushed first, i.e. the first branch is followed first
+					mStack[top++] = mRegex.mArgs2[pc];
+					mStack[top++] = mRegex.mArgs1[pc];
+					break;
+				case OP_ASSERT:
+					if (holds(mRegex.mArgs1[pc], pos)) {
+						mStack[top++] = pc + 1;
+					}
+					break;
+				default:
+					list.add(pc, start);
+				}
+			}
+		}
+
+		private boolean holds(int assertion, int pos) {
+			switch (assertion) {
+			case ASSERT_BEGIN:
+				return pos == 0;
+			case ASSERT_END_OF_INPUT:
+				return pos == mLength;
+			case ASSERT_END:
+				// At the end, or before the final line terminator
+				if (pos == mLength) {
+					return true;
+				}
+				if (pos == mLength - 1) {
+					return isLineTerminator(mText.charAt(pos));
+				}
+				return pos == mLength - 2 && mText.charAt(pos) == '\r' && mText.charAt(pos + 1) == '\n';
+			case ASSERT_WORD_BOUNDARY:
+				return isWordBoundary(pos);
+			case ASSERT_NOT_WORD_BOUNDARY:
+				return ! isWordBoundary(pos);
+			default:
+				return false;
+			}
+		}
+
+		private boolean isWordBoundary(int pos) {
+			boolean before = pos > 0 && isWordChar(mText.charAt(pos - 1));
+			boolean after = pos < mLength && isWordChar(mText.charAt(pos));
+			return before != after;
+		}
+	}
+
+
+	private boolean matches(int pc, char c) {
+		switch (mOps[pc]) {
+		case OP_CHAR:
+			return fold(c) == mArgs1[pc];
+		case OP_ANY:
+			return ! isLineTerminator(c);
+		case OP_CLASS:
+			return mClasses[mArgs1[pc]].matches(c);
+		default:
+			return false;
+		}
+	}
+
+
+	/**
+	 * <p>Sparse set of threads, which can be cleared in constant time.</p>
+	 */
+	private static class ThreadList {
+		final int[] pcs;
+		final int[] starts;
+		// Marks the program counters that have been visited at the current position
+		final int[] dense;
+		final int[] sparse;
+		int denseSize = 0;
+		int size = 0;
+
+		ThreadList(int programSize) {
+			pcs = new int[programSize];
+			starts = new int[programSize];
+			dense = new int[programSize];
+			sparse = new int[programSize];
+		}
+
+		boolean contains(int pc) {
+			int i = sparse[pc];
+			return i < denseSize && dense[i] == pc;
+		}
+
+		void mark(int pc) {
+			sparse[pc] = denseSize;
+			dense[denseSize++] = pc;
+		}
+
+		void add(int pc, int start) {
+			pcs[size] = pc;
+			starts[size] = start;
+			size++;
+		}
+
+		void clear() {
+			size = 0;
+			denseSize = 0;
+		}
+	}
+
+
+	// Case folding, as in the case insensitive matching of java.util.regex on Android
+	private static int fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || Character.getType(c) == Character.NON_SPACING_MARK;
+	}
+
+
+	private static boolean isSpace(char c) {
+		return Character.isWhitespace(c) || Character.isSpaceChar(c);
+	}
+
+
+	/**
+	 * <p>Character class: ranges of characters and predefined classes, possibly negated.</p>
+	 */
+	private static class CharClass {
+		static final int DIGIT = 1;
+		static final int NOT_DIGIT = 2;
+		static final int WORD = 4;
+		static final int NOT_WORD = 8;
+		static final int SPACE = 16;
+		static final int NOT_SPACE = 32;
+
+		final IntList ranges = new IntList();
+		int predefined = 0;
+		boolean isNegated = false;
+
+		void addRange(int from, int to) {
+			ranges.add(from);
+			ranges.add(to);
+		}
+
+		boolean matches(char c) {
+			boolean matches = matchesPredefined(c) ||
+					inRanges(c) || inRanges(Character.toLowerCase(c)) || inRanges(Character.toUpperCase(c));
+			return matches != isNegated;
+		}
+
+		private boolean inRanges(char c) {
+			for (int i = 0; i < ranges.size(); i += 2) {
+				if (c >= ranges.get(i) && c <= ranges.get(i + 1)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean matchesPredefined(char c) {
+			if (predefined == 0) {
+				return false;
+			}
+			return ((predefined & DIGIT) != 0 && Character.isDigit(c)) ||
+					((predefined & NOT_DIGIT) != 0 && ! Character.isDigit(c)) ||
+					((predefined & WORD) != 0 && isWordChar(c)) ||
+					((predefined & NOT_WORD) != 0 && ! isWordChar(c)) ||
+					((predefined & SPACE) != 0 && isSpace(c)) ||
+					((predefined & NOT_SPACE) != 0 && ! isSpace(c));
+		}
+	}
+
+
+	/**
+	 * <p>Node of the syntax tree.</p>
+	 */
+	private static class Node {
+		static final int CHAR = 0;
+		static final int ANY = 1;
+		static final int CLASS = 2;
+		static final int ASSERT = 3;
+		static final int CONCAT = 4;
+		static final int ALT = 5;
+		static final int REPEAT = 6;
+
+		final int type;
+		final List<Node> children = new ArrayList<Node>();
+		// Character, assertion type, or the minimum number of repetitions
+		int value;
+		// Maximum number of repetitions (-1 if unbounded)
+		int max;
+		boolean isGreedy = true;
+		CharClass charClass;
+
+		Node(int type) {
+			this.type = type;
+		}
+
+		static Node make(int type, int value) {
+			Node node = new Node(type);
+			node.value = value;
+			return node;
+		}
+	}
+
+
+	/**
+	 * <p>Recursive descent parser of the expression.</p>
+	 */
+	private static class Parser {
+		private final String mRegex;
+		private int mPos = 0;
+
+		Parser(String regex) {
+			mRegex = regex;
+		}
+
+		Node parse() {
+			Node node = parseAlternation();
+			if (mPos < mRegex.length()) {
+				// The only way to stop early is an unmatched ')'
+				throw error("Unmatched closing ')'");
+			}
+			return node;
+		}
+
+		private Node parseAlternation() {
+			Node node = parseSequence();
+			if (peek() != '|') {
+				return node;
+			}
+			Node alt = new Node(Node.ALT);
+			alt.children.add(node);
+			while (peek() == '|') {
+				mPos++;
+				alt.children.add(parseSequence());
+			}
+			return alt;
+		}
+
+		private Node parseSequence() {
+			Node concat = new Node(Node.CONCAT);
+			while (mPos < mRegex.length() && peek() != '|' && peek() != ')') {
+				concat.children.add(parseRepetition());
+			}
+			return concat;
+		}
+
+		private Node parseRepetition() {
+			Node atom = parseAtom();
+			while (mPos < mRegex.length()) {
+				char c = peek();
+				int min;
+				int max;
+				if (c == '*') {
+					min = 0;
+					max = -1;
+					mPos++;
+				} else if (c == '+') {
+					min = 1;
+					max = -1;
+					mPos++;
+				} else if (c == '?') {
+					min = 0;
+					max = 1;
+					mPos++;
+				} else if (c == '{') {
+					mPos++;
+					min = parseNumber();
+					max = min;
+					if (peek() == ',') {
+						mPos++;
+						max = (peek() == '}') ? -1 : parseNumber();
+					}
+					if (peek() != '}' || (max != -1 && max < min)) {
+						throw error("Illegal repetition range");
+					}
+					mPos++;
+				} else {
+					return atom;
+				}
+				if (atom.type == Node.ASSERT) {
+					throw error("Dangling meta character '" + c + "'");
+				}
+				Node repeat = Node.make(Node.REPEAT, min);
+				repeat.max = max;
+				repeat.children.add(atom);
+				if (peek() == '?') {
+					mPos++;
+					repeat.isGreedy = false;
+				} else if (peek() == '+') {
+					throw error("Possessive quantifiers are not supported");
+				}
+				atom = repeat;
+			}
+			return atom;
+		}
+
+		private Node parseAtom() {
+			char c = mRegex.charAt(mPos++);
+			switch (c) {
+			case '(':
+				if (peek() == '?') {
+					if (mPos + 1 < mRegex.length() && mRegex.charAt(mPos + 1) == ':') {
+						mPos += 2;
+					} else {
+						throw error("Lookaround and inline flags are not supported");
+					}
+				}
+				Node group = parseAlternation();
+				if (peek() != ')') {
+					throw error("Unclosed group");
+				}
+				mPos++;
+				return group;
+			case '[':
+				return parseClass();
+			case '.':
+				return new Node(Node.ANY);
+			case '^':
+				return Node.make(Node.ASSERT, ASSERT_BEGIN);
+			case '$':
+				return Node.make(Node.ASSERT, ASSERT_END);
+			case '\\':
+				return parseEscape(false);
+			case '*':
+			case '+':
+			case '?':
+			case '{':
+				mPos--;
+				throw error("Dangling meta character '" + c + "'");
+			default:
+				return Node.make(Node.CHAR, c);
+			}
+		}
+
+		private Node parseClass() {
+			CharClass charClass = new CharClass();
+			if (peek() == '^') {
+				mPos++;
+				charClass.isNegated = true;
+			}
+			boolean isFirst = true;
+			while (true) {
+				if (mPos >= mRegex.length()) {
+					throw error("Unclosed character class");
+				}
+				char c = mRegex.charAt(mPos);
+				if (c == ']' && ! isFirst) {
+					mPos++;
+					break;
+				}
+				if (c == '[' || (c == '&' && mPos + 1 < mRegex.length() && mRegex.charAt(mPos + 1) == '&')) {
+					throw error("Nested classes and class intersection are not supported");
+				}
+				isFirst = false;
+				int from;
+				mPos++;
+				if (c == '\\') {
+					Node escape = parseEscape(true);
+					if (escape.type == Node.CLASS) {
+						charClass.predefined |= escape.charClass.predefined;
+						continue;
+					}
+					from = escape.value;
+				} else {
+					from = c;
+				}
+				int to = from;
+				if (peek() == '-' && mPos + 1 < mRegex.length() && mRegex.charAt(mPos + 1) != ']') {
+					mPos++;
+					char d = mRegex.charAt(mPos++);
+					if (d == '\\') {
+						Node escape = parseEscape(true);
+						if (escape.type != Node.CHAR) {
+							throw error("Illegal character range");
+						}
+						to = escape.value;
+					} else if (d == '[') {
+						throw error("Nested classes and class intersection are not supported");
+					} else {
+						to = d;
+					}
+					if (to < from) {
+						throw error("Illegal character range");
+					}
+				}
+				charClass.addRange(from, to);
+			}
+			Node node = new Node(Node.CLASS);
+			node.charClass = charClass;
+			return node;
+		}
+
+		/**
+		 * <p>Parses the escape sequence that follows the backslash.</p>
+		 */
+		private Node parseEscape(boolean isInClass) {
+			if (mPos >= mRegex.length()) {
+				throw error("Unexpected internal error");
+			}
+			char c = mRegex.charAt(mPos++);
+			switch (c) {
+			case 't': return Node.make(Node.CHAR, '\t');
+			case 'n': return Node.make(Node.CHAR, '\n');
+			case 'r': return Node.make(Node.CHAR, '\r');
+			case 'f': return Node.make(Node.CHAR, '\f');
+			case 'a': return Node.make(Node.CHAR, '\u0007');
+			case 'e': return Node.make(Node.CHAR, '\u001B');
+			case 'x': return Node.make(Node.CHAR, parseHex(2));
+			case 'u': return Node.make(Node.CHAR, parseHex(4));
+			case 'd': return makeClass(CharClass.DIGIT);
+			case 'D': return makeClass(CharClass.NOT_DIGIT);
+			case 'w': return makeClass(CharClass.WORD);
+			case 'W': return makeClass(CharClass.NOT_WORD);
+			case 's': return makeClass(CharClass.SPACE);
+			case 'S': return makeClass(CharClass.NOT_SPACE);
+			default:
+				break;
+			}
+			if (! isInClass) {
+				switch (c) {
+				case 'b': return Node.make(Node.ASSERT, ASSERT_WORD_BOUNDARY);
+				case 'B': return Node.make(Node.ASSERT, ASSERT_NOT_WORD_BOUNDARY);
+				case 'A': return Node.make(Node.ASSERT, ASSERT_BEGIN);
+				case 'z': return Node.make(Node.ASSERT, ASSERT_END_OF_INPUT);
+				case 'Z': return Node.make(Node.ASSERT, ASSERT_END);
+				default:
+					break;
+				}
+			}
+			if (c >= '1' && c <= '9') {
+				throw error("Back references are not supported");
+			}
+			if (Character.isLetterOrDigit(c)) {
+				throw error("Unsupported escape sequence");
+			}
+			return Node.make(Node.CHAR, c);
+		}
+
+		private Node makeClass(int predefined) {
+			Node node = new Node(Node.CLASS);
+			node.charClass = new CharClass();
+			node.charClass.predefined = predefined;
+			return node;
+		}
+
+		private int parseHex(int digits) {
+			if (mPos + digits > mRegex.length()) {
+				throw error("Illegal hexadecimal escape sequence");
+			}
+			int value = 0;
+			for (int i = 0; i < digits; i++) {
+				int digit = Character.digit(mRegex.charAt(mPos++), 16);
+				if (digit == -1) {
+					throw error("Illegal hexadecimal escape sequence");
+				}
+				value = value * 16 + digit;
+			}
+			return value;
+		}
+
+		private int parseNumber() {
+			int start = mPos;
+			int value = 0;
+			while (mPos < mRegex.length() && Character.isDigit(peek()) && value <= MAX_PROGRAM_SIZE) {
+				value = value * 10 + Character.digit(peek(), 10);
+				mPos++;
+			}
+			if (mPos == start) {
+				throw error("Illegal repetition");
+			}
+			return value;
+		}
+
+		private char peek() {
+			return (mPos < mRegex.length()) ? mRegex.charAt(mPos) : '\0';
+		}
+
+		private PatternSyntaxException error(String description) {
+			return new PatternSyntaxException(description, mRegex, mPos);
+		}
+	}
+
+
+	/**
+	 * <p>Compiles the syntax tree into the program.</p>
+	 */
+	private static class Compiler {
+		private final String mRegex;
+		private final IntList mOps = new IntList();
+		private final IntList mArgs1 = new IntList();
+		private final IntList mArgs2 = new IntList();
+		private final List<CharClass> mClasses = new ArrayList<CharClass>();
+
+		Compiler(String regex) {
+			mRegex = regex;
+		}
+
+		void compile(Node node) {
+			switch (node.type) {
+			case Node.CHAR:
+				emit(OP_CHAR, fold((char) node.value), 0);
+				break;
+			case Node.ANY:
+				emit(OP_ANY, 0, 0);
+				break;
+			case Node.CLASS:
+				mClasses.add(node.charClass);
+				emit(OP_CLASS, mClasses.size() - 1, 0);
+				break;
+			case Node.ASSERT:
+				emit(OP_ASSERT, node.value, 0);
+				break;
+			case Node.CONCAT:
+				for (Node child : node.children) {
+					compile(child);
+				}
+				break;
+			case Node.ALT:
+				compileAlternation(node.children, 0);
+				break;
+			case Node.REPEAT:
+				compileRepetition(node);
+				break;
+			}
+		}
+
+		// L1: SPLIT L2, L3; L2: first; JMP END; L3: rest
+		private void compileAlternation(List<Node> alternatives, int i) {
+			if (i == alternatives.size() - 1) {
+				compile(alternatives.get(i));
+				return;
+			}
+			int split = emit(OP_SPLIT, 0, 0);
+			mArgs1.set(split, mOps.size());
+			compile(alternatives.get(i));
+			int jmp = emit(OP_JMP, 0, 0);
+			mArgs2.set(split, mOps.size());
+			compileAlternation(alternatives, i + 1);
+			mArgs1.set(jmp, mOps.size());
+		}
+
+		private void compileRepetition(Node node) {
+			Node body = node.children.get(0);
+			// Jumps of the empty iterations to the end
+			IntList exits = new IntList();
+			for (int i = 0; i < node.value; i++) {
+				compileIteration(body, exits);
+			}
+			if (node.max == -1) {
+				// L: SPLIT body, END; body; JMP L
+				int split = emit(OP_SPLIT, 0, 0);
+				compileIteration(body, exits);
+				emit(OP_JMP, split, 0);
+				setSplit(split, split + 1, mOps.size(), node.isGreedy);
+			} else {
+				// Nested optional bodies: (body (body ...)?)?
+				IntList splits = new IntList();
+				for (int i = node.value; i < node.max; i++) {
+					splits.add(emit(OP_SPLIT, 0, 0));
+					compileIteration(body, exits);
+				}
+				for (int i = 0; i < splits.size(); i++) {
+					setSplit(splits.get(i), splits.get(i) + 1, mOps.size(), node.isGreedy);
+				}
+			}
+			for (int i = 0; i < exits.size(); i++) {
+				mArgs1.set(exits.get(i), mOps.size());
+			}
+		}
+
+
+		/**
+		 * <p>Like in java.util.regex, an iteration that matches the empty string ends
+		 * the repetition, also if the minimum number of iterations has not been reached,
+		 * e.g. <code>(b|^){3}</code> matches the empty string at the beginning of "b".
+		 * If the body can match the empty string then it is compiled twice: the first copy
+		 * is followed until a character is consumed, the consuming instruction continues in
+		 * the second copy. The end of the first copy (i.e. of an empty iteration) jumps to the end
+		 * of the repetition. Nested repetitions double the size of the program.</p>
+		 */
+		private void compileIteration(Node body, IntList exits) {
+			if (! isNullable(body)) {
+				compile(body);
+				return;
+			}
+			int start = mOps.size();
+			compile(body);
+			int end = mOps.size();
+			exits.add(emit(OP_JMP, 0, 0));
+			int offset = mOps.size() - start;
+			for (int pc = start; pc < end; pc++) {
+				int op = mOps.get(pc);
+				if (op == OP_CHAR || op == OP_ANY || op == OP_CLASS) {
+					mArgs2.set(pc, mArgs2.get(pc) + offset);
+				}
+			}
+			compile(body);
+		}
+
+
+		private static boolean isNullable(Node node) {
+			switch (node.type) {
+			case Node.ASSERT:
+				return true;
+			case Node.CONCAT:
+				for (Node child : node.children) {
+					if (! isNullable(child)) {
+						return false;
+					}
+				}
+				return true;
+			case Node.ALT:
+				for (Node child : node.children) {
+					if (isNullable(child)) {
+						return true;
+					}
+				}
+				return false;
+			case Node.REPEAT:
+				return node.value == 0 || isNullable(node.children.get(0));
+			default:
+				return false;
+			}
+		}
+
+		private void setSplit(int split, int body, int exit, boolean isGreedy) {
+			mArgs1.set(split, isGreedy ? body : exit);
+			mArgs2.set(split, isGreedy ? exit : body);
+		}
+
+		int emit(int op, int arg1, int arg2) {
+			if (mOps.size() >= MAX_PROGRAM_SIZE) {
+				throw new PatternSyntaxException("Regular expression is too large", mRegex, -1);
+			}
+			mOps.add(op);
+			mArgs1.add(arg1);
+			mArgs2.add(arg2);
+			return mOps.size() - 1;
+		}
+
+		LinearRegex build() {
+			return new LinearRegex(mRegex, mOps.toArray(), mArgs1.toArray(), mArgs2.toArray(),
+					mClasses.toArray(new CharClass[mClasses.size()]));
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+/**
+ * <p>MinHash signatures of sets of terms. The signature consists of the minimum hash values
+ * of the terms under SIZE different hash functions, the fraction of the positions where two
+ * signatures agree estimates the Jaccard similarity of the two sets (the size of the
+ * intersection divided by the size of the union).</p>
+ *
+ * <p>The signatures are divided into BANDS bands of ROWS values, two sets whose signatures
+ * agree in all the values of some band are candidates for being similar (locality sensitive
+ * hashing). With 32 bands of 2 rows, sets of similarity 0.2 become candidates with the
+ * probability of about 0.73, and sets of similarity 0.5 almost always.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class MinHash {
+
+	public static final int BANDS = 32;
+	public static final int ROWS = 2;
+	public static final int SIZE = BANDS * ROWS;
+
+	private MinHash() {}
+
+
+	/**
+	 * @return signature of the given terms (of the empty set if there are no terms)
+	 */
+	public static int[] getSignature(Iterable<String> terms) {
+		int[] signature = new int[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			signature[i] = Integer.MAX_VALUE;
+		}
+		for (String term : terms) {
+			// The hash functions are derived from two hashes of the term (double hashing)
+			int h1 = mix(term.hashCode());
+			int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+			for (int i = 0; i < SIZE; i++) {
+				int h = mix(h1 + i * h2);
+				if (h < signature[i]) {
+					signature[i] = h;
+				}
+			}
+		}
+		return signature;
+	}
+
+
+	/**
+	 * @return estimated Jaccard similarity of the sets that have the given signatures
+	 */
+	public static float getSimilarity(int[] signature1, int[] signature2) {
+		int count = 0;
+		for (int i = 0; i < SIZE; i++) {
+			if (signature1[i] == signature2[i]) {
+				count++;
+			}
+		}
+		return (float) count / SIZE;
+	}
+
+
+	/**
+	 * @return hash of the given band of the signature
+	 */
+	public static int getBandHash(int[] signature, int band) {
+		int hash = band;
+		for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+			hash = 31 * hash + signature[i];
+		}
+		return mix(hash);
+	}
+
+
+	// Finalizer of MurmurHash3, spreads the bits of the input over the whole output
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
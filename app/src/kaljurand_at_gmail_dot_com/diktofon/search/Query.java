@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>Query that can be answered by the index, i.e. a sequence of words:</p>
+ *
+ * <pre>
+ * koos          all the words that start with "koos"
+ * eelarve koos  the word "eelarve" followed by a word that starts with "koos"
+ * "koos"        the word "koos"
+ * "eelarve on"  the phrase "eelarve on"
+ * eelarve~      the words within edit distance 1 of "eelarve" (e.g. "eelarvw")
+ * eelarve~2     the words within edit distance 2 of "eelarve"
+ * </pre>
+ *
+ * <p>In other words, the last word of an unquoted query is a prefix, so that the
+ * query matches while it is being typed (unless it is fuzzy). The prefix is only lowercased,
+ * not analyzed, as the analyzer (e.g. a stemmer) needs a complete word. It is matched
+ * against the word forms of the transcriptions, e.g. "kass" does not match "kasutama". The fuzzy words tolerate
+ * the errors of the speech recognizer. Queries that contain other characters
+ * than letters, digits, whitespace, the enclosing quotes and the tilde after a word
+ * are regular expressions, these are not parsed (and cannot be answered by the index).</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Query {
+
+	public static final int MAX_DISTANCE = 2;
+
+	private final String[] mTerms;
+	// Maximum edit distance of each term (0 = exact)
+	private final int[] mDistances;
+	private final boolean mIsPrefix;
+
+
+	public Query(String[] terms, boolean isPrefix) {
+		this(terms, new int[terms.length], isPrefix);
+	}
+
+
+	public Query(String[] terms, int[] distances, boolean isPrefix) {
+		mTerms = terms;
+		mDistances = distances;
+		mIsPrefix = isPrefix && distances[terms.length - 1] == 0;
+	}
+
+
+	/**
+	 * @return parsed query or <code>null</code> if the given string
+	 * is a regular expression or does not contain any words
+	 */
+	public static Query parse(String str, Analyzer analyzer) {
+		String body = str.trim();
+		boolean isPrefix = true;
+		if (body.length() >= 2 && body.charAt(0) == '"' && body.charAt(body.length() - 1) == '"') {
+			body = body.substring(1, body.length() - 1);
+			isPrefix = false;
+		}
+		for (int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if (c == '~' && i > 0 && Tokenizer.isWordChar(body.charAt(i - 1))) {
+				continue;
+			}
+			if (! Tokenizer.isWordChar(c) && ! Character.isWhitespace(c)) {
+				return null;
+			}
+		}
+		List<String> terms = new ArrayList<String>();
+		List<String> words = new ArrayList<String>();
+		IntList distances = new IntList();
+		Tokenizer tokenizer = new Tokenizer(body);
+		while (tokenizer.next()) {
+			String token = tokenizer.token();
+			String term = analyzer.normalize(token);
+			int distance = 0;
+			int end = tokenizer.end();
+			if (end < body.length() && body.charAt(end) == '~') {
+				distance = 1;
+				// The optional distance is a single digit
+				if (end + 1 < body.length() && Character.isDigit(body.charAt(end + 1))
+						&& (end + 2 == body.length() || ! Tokenizer.isWordChar(body.charAt(end + 2)))) {
+					distance = Math.min(MAX_DISTANCE, Character.digit(body.charAt(end + 1), 10));
+					tokenizer.next();
+				}
+			}
+			if (term != null) {
+				terms.add(term);
+				words.add(token.toLowerCase(Locale.ENGLISH));
+				distances.add(distance);
+			}
+		}
+		if (terms.isEmpty()) {
+			return null;
+		}
+		int last = terms.size() - 1;
+		if (isPrefix && distances.get(last) == 0) {
+			terms.set(last, words.get(last));
+		}
+		return new Query(terms.toArray(new String[terms.size()]), distances.toArray(), isPrefix);
+	}
+
+
+	/**
+	 * <p>Checks if the query is a refinement of the previous query, i.e. the previous query
+	 * with more text typed at its end, so that everything that matches the query also matches
+	 * the previous query. This holds if both are unquoted word queries, their terms agree
+	 * and the last term of the previous query is a prefix of the corresponding term of the query.
+	 * (The terms are compared after the analysis, as the stemmer can shorten a longer word.
+	 * The prefix is not analyzed.)
+	 * This also holds if the queries are matched as regular expressions (e.g. against
+	 * unindexed transcriptions), as they contain no special characters.</p>
+	 */
+	public static boolean isRefinement(String previous, String query, Analyzer analyzer) {
+		if (! query.startsWith(previous)) {
+			return false;
+		}
+		Query p = parse(previous, analyzer);
+		Query q = parse(query, analyzer);
+		if (p == null || q == null || p.isFuzzy() || q.isFuzzy() ||
+				! p.isPrefix() || ! q.isPrefix() || q.mTerms.length < p.mTerms.length) {
+			return false;
+		}
+		int last = p.mTerms.length - 1;
+		for (int i = 0; i < last; i++) {
+			if (! p.mTerms[i].equals(q.mTerms[i])) {
+				return false;
+			}
+		}
+		return q.mTerms[last].startsWith(p.mTerms[last]);
+	}
+
+
+	/**
+	 * @return analyzed terms, the last one is a lowercased word form if the query is a prefix query
+	 */
+	public String[] getTerms() {
+		return mTerms;
+	}
+
+
+	/**
+	 * @return maximum edit distance of the given term (0 if the term is matched exactly)
+	 */
+	public int getDistance(int index) {
+		return mDistances[index];
+	}
+
+
+	public boolean isFuzzy() {
+		for (int distance : mDistances) {
+			if (distance > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * @return <code>true</code> iff the last term is matched as a prefix
+	 */
+	public boolean isPrefix() {
+		return mIsPrefix;
+	}
+
+
+	public boolean isPhrase() {
+		return mTerms.length > 1;
+	}
+
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < mTerms.length; i++) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(mTerms[i]);
+			if (mDistances[i] > 0) {
+				sb.append('~').append(mDistances[i]);
+			}
+		}
+		if (mIsPrefix) {
+			sb.append('*');
+		}
+		return sb.toString();
+	}
+}
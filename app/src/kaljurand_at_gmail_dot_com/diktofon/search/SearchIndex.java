@@ -0,0 +1,1024 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import org.xml.sax.SAXException;
+
+import kaljurand_at_gmail_dot_com.diktofon.trans.TransParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Positional inverted index over the transcriptions. Every transcription is
+ * indexed into its own segment file (see {@link Segment}) when it is stored, and the
+ * segments are loaded into an in-memory map from each term to the recordings
+ * (documents) that contain it, together with the term frequencies. The positions
+ * stay on the disk and are read only for the candidates of phrase queries.</p>
+ *
+ * <p>Word and prefix queries are answered from the in-memory map alone.
+ * The transcriptions themselves are never touched by the search. A prefix (i.e. the
+ * word that is being typed) is matched against a second map, from the lowercased word
+ * forms to the recordings, as the terms are analyzed (e.g. stemmed) and an incomplete
+ * word cannot be.</p>
+ *
+ * <p>If the analyzer splits compounds then a query term also matches the compound
+ * terms that end with it (e.g. "valitsus" matches "linnavalitsus"), provided that the
+ * rest of the compound ("linna") is itself in the vocabulary of the index.</p>
+ *
+ * <p>The fuzzy query terms are expanded against the vocabulary: the candidate terms
+ * are found in a character trigram index of the vocabulary, and the candidates are
+ * verified by a {@link LevenshteinMatcher}. If the query term has <code>n</code> trigrams
+ * then a term within edit distance <code>d</code> of it shares at least
+ * <code>n - 3d</code> of them (as an edit changes at most 3 trigrams).</p>
+ *
+ * <p>The matching recordings can be ranked by {@link Bm25}, using only the statistics
+ * that the index keeps in memory: the lengths of the documents and the document
+ * frequencies of the terms.</p>
+ *
+ * <p>The similar recordings are found by comparing the {@link MinHash} signatures of
+ * their terms. The signature is computed when the recording is added, the candidates
+ * are the recordings that share a band of the signature with it.</p>
+ *
+ * <p>The search suggestions complete a prefix to the word forms of the terms
+ * (see {@link Suggester}), ranked by the number of recordings that contain them.</p>
+ *
+ * <p>Documents are numbered in the order in which they are added. Removing or
+ * reindexing a recording only marks its old document as deleted, the postings
+ * of the deleted documents are dropped once they make up half of the index.</p>
+ *
+ * <p>The in-memory index is guarded by the lock of this object. The segment files are
+ * read without holding the lock, i.e. verifying the phrases and cutting the snippets
+ * of some recordings does not block the other users of the index (a segment file is
+ * replaced atomically). This class does not depend on the Android framework.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class SearchIndex {
+
+	private static final String EXTENSION = ".idx";
+
+	// Compounds are split into parts of at least this length
+	private static final int MIN_MODIFIER_LENGTH = 3;
+	private static final int MIN_HEAD_LENGTH = 4;
+	// Shorter terms (mostly function words) are left out of the signatures
+	private static final int MIN_SIGNATURE_TERM_LENGTH = 4;
+
+	private final File mDir;
+	private final Analyzer mAnalyzer;
+
+	// Document number -> recording ID (null if the document has been deleted)
+	private final List<String> mDocIds = new ArrayList<String>();
+	// Document number -> number of tokens
+	private final IntList mDocLengths = new IntList();
+	// Sum of the lengths of the documents that have not been deleted
+	private long mTotalLength = 0;
+	// Document number -> MinHash signature of its terms (null if there are no terms)
+	private final List<int[]> mDocSignatures = new ArrayList<int[]>();
+	private final Map<String, Integer> mIdToDoc = new HashMap<String, Integer>();
+	private final Map<String, Long> mIdToVersion = new HashMap<String, Long>();
+	private final SortedMap<String, Postings> mTermToPostings = new TreeMap<String, Postings>();
+	// Lowercased word form -> its postings, for the prefix queries
+	private final SortedMap<String, Postings> mFormToPostings = new TreeMap<String, Postings>();
+	// Head of a compound term -> the compound terms, e.g. "valits" -> ["linnavalits", "riigivalits"].
+	// Built on demand against the current vocabulary, null if out of date.
+	private SortedMap<String, List<String>> mHeadToCompounds = null;
+	// Same for the word forms, e.g. "valitsusele" -> ["linnavalitsusele"]
+	private SortedMap<String, List<String>> mHeadToCompoundForms = null;
+	// Character trigram -> the terms that contain it, for the fuzzy terms.
+	// Built on demand, null if out of date.
+	private Map<String, List<String>> mGramToTerms = null;
+	// Word forms of the terms and their document frequencies, for the suggestions.
+	// Built on demand, null if out of date.
+	private Suggester mSuggester = null;
+	// Band of the signatures -> band hash -> the documents that have it, for the similar
+	// recordings. Built on demand, null if the documents have been renumbered.
+	private List<Map<Integer, IntList>> mBandToBuckets = null;
+	private int mDeletedCount = 0;
+
+
+	/**
+	 * @param dir directory of the segment files
+	 * @param analyzer analyzer that is used for both the transcriptions and the queries
+	 */
+	public SearchIndex(File dir, Analyzer analyzer) {
+		mDir = dir;
+		mAnalyzer = analyzer;
+	}
+
+
+	public Analyzer getAnalyzer() {
+		return mAnalyzer;
+	}
+
+
+	public File getSegmentFile(String id) {
+		return new File(mDir, id + EXTENSION);
+	}
+
+
+	/**
+	 * @return <code>true</code> iff the given version of the given recording is in the index
+	 */
+	public synchronized boolean isIndexed(String id, long version) {
+		Long indexedVersion = mIdToVersion.get(id);
+		return indexedVersion != null && indexedVersion == version;
+	}
+
+
+	public synchronized boolean isIndexed(String id) {
+		return mIdToDoc.containsKey(id);
+	}
+
+
+	/**
+	 * @return number of recordings in the index
+	 */
+	public synchronized int size() {
+		return mIdToDoc.size();
+	}
+
+
+	/**
+	 * <p>Loads the segment of the given recording from the disk.</p>
+	 *
+	 * @return <code>true</code> if the segment exists and was built from the given
+	 * version of the transcription (i.e. the recording is now indexed)
+	 */
+	public boolean load(String id, long version) {
+		File file = getSegmentFile(id);
+		if (! file.exists()) {
+			return false;
+		}
+		try {
+			Segment segment = Segment.readTerms(file);
+			if (segment.getVersion() != version || ! id.equals(segment.getId())) {
+				return false;
+			}
+			add(segment);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * <p>Indexes the given transcription, stores the segment and adds it to the index
+	 * (replacing the previous version of the recording).</p>
+	 *
+	 * @param version version of the transcription (e.g. the modification time of the file)
+	 */
+	public void index(String id, long version, File transFile) throws SAXException, IOException {
+		final Segment.Builder builder = new Segment.Builder(id, version, mAnalyzer);
+		TransParser.parse(transFile, new TransParser.Listener() {
+			public void onTurn(String speakerId, int startTime, int endTime, String text) {
+				builder.addTurn(startTime, text);
+			}
+		});
+		Segment segment = builder.build();
+		if (! mDir.exists()) {
+			mDir.mkdirs();
+		}
+		segment.write(getSegmentFile(id));
+		add(segment);
+	}
+
+
+	/**
+	 * <p>Removes the recording from the index and deletes its segment file.</p>
+	 */
+	public synchronized void remove(String id) {
+		delete(id);
+		getSegmentFile(id).delete();
+		compactIfNeeded();
+	}
+
+
+	/**
+	 * <p>Removes all the recordings that are not among the given IDs, i.e. the ones that have been
+	 * deleted outside of Diktofon. (Their segment files are left alone.)</p>
+	 */
+	public synchronized void retainAll(Collection<String> ids) {
+		for (String id : new ArrayList<String>(mIdToDoc.keySet())) {
+			if (! ids.contains(id)) {
+				delete(id);
+			}
+		}
+		compactIfNeeded();
+	}
+
+
+	/**
+	 * @return map from the ID of each recording that matches the query to the number of matches
+	 */
+	public Map<String, Integer> search(Query query) {
+		List<Slot> slots;
+		List<String> candidateIds = new ArrayList<String>();
+		synchronized (this) {
+			slots = getSlots(query);
+			if (slots == null) {
+				return Collections.emptyMap();
+			}
+
+			if (! query.isPhrase()) {
+				return sumFrequencies(slots.get(0));
+			}
+
+			// Documents that contain some term of every slot
+			Set<Integer> candidates = null;
+			for (Slot slot : slots) {
+				Set<Integer> docs = new HashSet<Integer>();
+				for (String key : slot.keys) {
+					Postings postings = getPostings(slot, key);
+					for (int i = 0; i < postings.size; i++) {
+						docs.add(postings.docs[i]);
+					}
+				}
+				if (candidates == null) {
+					candidates = docs;
+				} else {
+					candidates.retainAll(docs);
+				}
+			}
+			for (int doc : candidates) {
+				String id = mDocIds.get(doc);
+				if (id != null) {
+					candidateIds.add(id);
+				}
+			}
+		}
+
+		// The phrases are verified from the positions in the segments of the candidates,
+		// which are read without holding the lock (like in getSnippet)
+		Map<String, Integer> idToCount = new HashMap<String, Integer>();
+		for (String id : candidateIds) {
+			try {
+				int count = readMatches(slots, getSegmentFile(id)).size();
+				if (count > 0) {
+					idToCount.put(id, count);
+				}
+			} catch (IOException e) {
+				// The segment has disappeared, it will be reindexed on the next load
+			}
+		}
+		return idToCount;
+	}
+
+
+	/**
+	 * <p>Computes the BM25 scores of the recordings that match the query, given their
+	 * match counts (see {@link #search(Query)}). The count is the frequency of the query
+	 * in the document, and the inverse document frequency of the query is the sum of those of
+	 * its slots (the document frequency of a slot, e.g. of a prefix, is the number of documents
+	 * that contain any of its terms). The transcriptions and the segments are not read.</p>
+	 *
+	 * @return map from the ID of each recording in the given map
+	 * that is in the index to its score
+	 */
+	public synchronized Map<String, Float> getScores(Query query, Map<String, Integer> idToCount, Bm25 bm25) {
+		Map<String, Float> idToScore = new HashMap<String, Float>();
+		List<Slot> slots = getSlots(query);
+		int docCount = mIdToDoc.size();
+		if (slots == null || docCount == 0) {
+			return idToScore;
+		}
+		float idf = 0;
+		for (Slot slot : slots) {
+			Set<Integer> docs = new HashSet<Integer>();
+			for (String key : slot.keys) {
+				Postings postings = getPostings(slot, key);
+				for (int i = 0; i < postings.size; i++) {
+					if (mDocIds.get(postings.docs[i]) != null) {
+						docs.add(postings.docs[i]);
+					}
+				}
+			}
+			idf += Bm25.idf(docs.size(), docCount);
+		}
+		float avgLength = (float) mTotalLength / docCount;
+		for (Map.Entry<String, Integer> entry : idToCount.entrySet()) {
+			Integer doc = mIdToDoc.get(entry.getKey());
+			if (doc != null) {
+				idToScore.put(entry.getKey(), bm25.score(idf, entry.getValue(), mDocLengths.get(doc), avgLength));
+			}
+		}
+		return idToScore;
+	}
+
+
+	/**
+	 * <p>Finds the matches of the query in the given recording, and the start times
+	 * of the turns that contain them. This reads the positions and the turn table
+	 * from the segment, i.e. the transcription is not parsed.</p>
+	 *
+	 * @return matches in the order of the transcription (empty if the recording
+	 * does not match or is not indexed)
+	 */
+	public synchronized List<Hit> getHits(Query query, String id) {
+		List<Hit> hits = new ArrayList<Hit>();
+		if (! mIdToDoc.containsKey(id)) {
+			return hits;
+		}
+		List<Slot> slots = getSlots(query);
+		if (slots == null) {
+			return hits;
+		}
+		try {
+			File file = getSegmentFile(id);
+			IntList matches = readMatches(slots, file);
+			if (matches.size() > 0) {
+				Segment.Turns turns = Segment.readTurns(file);
+				for (int i = 0; i < matches.size(); i++) {
+					int position = matches.get(i);
+					hits.add(new Hit(id, position, turns.getStartTime(position)));
+				}
+			}
+		} catch (IOException e) {
+			// The segment has disappeared, it will be reindexed on the next load
+		}
+		return hits;
+	}
+
+
+	/**
+	 * <p>Finds the matches of the query in the given recording, as token ranges within
+	 * the turns. This allows the matches to be highlighted in a view of the transcription
+	 * that renders it turn by turn, even if the view does not use the stored text (which
+	 * can differ from it in whitespace), by tokenizing the text of each turn.</p>
+	 *
+	 * @return for each match (in the order of the transcription) the index of the turn,
+	 * and the indices of the first and the last token of the match in the turn, i.e. three
+	 * ints per match, or <code>null</code> if the recording is not indexed
+	 */
+	public IntList getTurnMatches(Query query, String id) {
+		List<Slot> slots;
+		synchronized (this) {
+			if (! mIdToDoc.containsKey(id)) {
+				return null;
+			}
+			slots = getSlots(query);
+		}
+		IntList turnMatches = new IntList();
+		if (slots == null) {
+			return turnMatches;
+		}
+		try {
+			File file = getSegmentFile(id);
+			IntList matches = readMatches(slots, file);
+			if (matches.size() > 0) {
+				Segment.Turns turns = Segment.readTurns(file);
+				for (int i = 0; i < matches.size(); i++) {
+					int position = matches.get(i);
+					int turn = turns.getTurn(position);
+					if (turn >= 0) {
+						int first = position - turns.getPosition(turn);
+						turnMatches.add(turn);
+						turnMatches.add(first);
+						turnMatches.add(first + slots.size() - 1);
+					}
+				}
+			}
+		} catch (IOException e) {
+			// The segment has disappeared, it will be reindexed on the next load
+			return null;
+		}
+		return turnMatches;
+	}
+
+
+	/**
+	 * <p>Cuts a snippet around the matches of the query in the given recording,
+	 * from the text stored in the segment.</p>
+	 *
+	 * @param windowLength maximum number of tokens in the snippet
+	 * @return snippet or <code>null</code> if the recording does not match or is not indexed
+	 */
+	public Snippet getSnippet(Query query, String id, int windowLength) {
+		List<Slot> slots;
+		// Only the in-memory index is locked, the snippets of several recordings
+		// can be read in parallel (a segment file is replaced atomically)
+		synchronized (this) {
+			if (! mIdToDoc.containsKey(id)) {
+				return null;
+			}
+			slots = getSlots(query);
+		}
+		if (slots == null) {
+			return null;
+		}
+		try {
+			File file = getSegmentFile(id);
+			IntList matches = readMatches(slots, file);
+			if (matches.size() > 0) {
+				return Snippet.create(Segment.readText(file), matches, slots.size(), windowLength);
+			}
+		} catch (IOException e) {
+			// The segment has disappeared, it will be reindexed on the next load
+		}
+		return null;
+	}
+
+
+	/**
+	 * @return index terms that start with the given prefix (in the lexicographic order)
+	 */
+	public synchronized List<String> getTermsWithPrefix(String prefix) {
+		return new ArrayList<String>(mTermToPostings.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+	}
+
+
+	/**
+	 * @param prefix lowercased beginning of a word
+	 * @return at most <code>limit</code> words of the transcriptions that start with the prefix,
+	 * weighted by the number of recordings that contain them (heaviest first)
+	 */
+	public synchronized List<Suggester.Suggestion> getSuggestions(String prefix, int limit) {
+		return getSuggester().suggest(prefix, limit);
+	}
+
+
+	/**
+	 * <p>Finds the recordings that have a similar vocabulary to the given recording, i.e. whose
+	 * signatures share a band with its signature, and ranks them by the estimated
+	 * similarity. This does not depend on the number of the recordings that do not share a band.</p>
+	 *
+	 * @return at most <code>limit</code> most similar recordings (most similar first),
+	 * empty if the given recording is not in the index
+	 */
+	public synchronized List<Similar> getSimilar(String id, int limit) {
+		List<Similar> similars = new ArrayList<Similar>();
+		Integer doc = mIdToDoc.get(id);
+		if (doc == null) {
+			return similars;
+		}
+		int[] signature = mDocSignatures.get(doc);
+		if (signature == null) {
+			return similars;
+		}
+		List<Map<Integer, IntList>> bandToBuckets = getBandToBuckets();
+		Set<Integer> candidates = new HashSet<Integer>();
+		for (int band = 0; band < MinHash.BANDS; band++) {
+			IntList bucket = bandToBuckets.get(band).get(MinHash.getBandHash(signature, band));
+			if (bucket == null) {
+				continue;
+			}
+			for (int i = 0; i < bucket.size(); i++) {
+				int candidate = bucket.get(i);
+				if (candidate != doc && mDocIds.get(candidate) != null) {
+					candidates.add(candidate);
+				}
+			}
+		}
+		for (int candidate : candidates) {
+			similars.add(new Similar(mDocIds.get(candidate), MinHash.getSimilarity(signature, mDocSignatures.get(candidate))));
+		}
+		Collections.sort(similars, new Comparator<Similar>() {
+			public int compare(Similar s1, Similar s2) {
+				return Float.compare(s2.similarity, s1.similarity);
+			}
+		});
+		return similars.subList(0, Math.min(limit, similars.size()));
+	}
+
+
+	/**
+	 * @return the terms that can occur at each position of the query,
+	 * or <code>null</code> if some position cannot be matched
+	 */
+	private List<Slot> getSlots(Query query) {
+		String[] terms = query.getTerms();
+		int last = terms.length - 1;
+		List<Slot> slots = new ArrayList<Slot>(terms.length);
+		for (int i = 0; i <= last; i++) {
+			Slot slot;
+			if (query.getDistance(i) > 0) {
+				slot = new Slot(getFuzzyTerms(terms[i], query.getDistance(i)), false);
+			} else if (i == last && query.isPrefix()) {
+				slot = new Slot(getFormsWithPrefix(terms[i]), true);
+			} else {
+				slot = new Slot(getMatchingTerms(terms[i]), false);
+			}
+			if (slot.keys.isEmpty()) {
+				return null;
+			}
+			slots.add(slot);
+		}
+		return slots;
+	}
+
+
+	private Postings getPostings(Slot slot, String key) {
+		return slot.isForms ? mFormToPostings.get(key) : mTermToPostings.get(key);
+	}
+
+
+	private Collection<String> getMatchingTerms(String term) {
+		Set<String> matchingTerms = new HashSet<String>();
+		if (mTermToPostings.containsKey(term)) {
+			matchingTerms.add(term);
+		}
+		if (mAnalyzer.splitsCompounds()) {
+			List<String> compounds = getHeadToCompounds().get(term);
+			if (compounds != null) {
+				matchingTerms.addAll(compounds);
+			}
+		}
+		return matchingTerms;
+	}
+
+
+	/**
+	 * @return word forms that start with the given prefix, and the compound
+	 * word forms whose head starts with it
+	 */
+	private Collection<String> getFormsWithPrefix(String prefix) {
+		Set<String> forms = new HashSet<String>(mFormToPostings.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+		if (mAnalyzer.splitsCompounds()) {
+			if (mHeadToCompoundForms == null) {
+				mHeadToCompoundForms = splitCompounds(mFormToPostings.keySet());
+			}
+			for (List<String> compounds : mHeadToCompoundForms.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+				forms.addAll(compounds);
+			}
+		}
+		return forms;
+	}
+
+
+	/**
+	 * @return index terms that are within the given edit distance of the given term
+	 */
+	public synchronized Set<String> getFuzzyTerms(String term, int maxDistance) {
+		LevenshteinMatcher matcher = new LevenshteinMatcher(term, maxDistance);
+		Set<String> grams = getGrams(term);
+		int minShared = grams.size() - 3 * maxDistance;
+		Set<String> fuzzyTerms = new HashSet<String>();
+		if (minShared <= 0) {
+			// Short term, every term of a similar length is a candidate
+			for (String candidate : mTermToPostings.keySet()) {
+				if (matcher.matches(candidate)) {
+					fuzzyTerms.add(candidate);
+				}
+			}
+			return fuzzyTerms;
+		}
+		Map<String, Integer> sharedCounts = new HashMap<String, Integer>();
+		Map<String, List<String>> gramToTerms = getGramToTerms();
+		for (String gram : grams) {
+			List<String> gramTerms = gramToTerms.get(gram);
+			if (gramTerms != null) {
+				for (String candidate : gramTerms) {
+					Integer count = sharedCounts.get(candidate);
+					sharedCounts.put(candidate, (count == null) ? 1 : count + 1);
+				}
+			}
+		}
+		for (Map.Entry<String, Integer> entry : sharedCounts.entrySet()) {
+			if (entry.getValue() >= minShared && matcher.matches(entry.getKey())) {
+				fuzzyTerms.add(entry.getKey());
+			}
+		}
+		return fuzzyTerms;
+	}
+
+
+	private Map<String, List<String>> getGramToTerms() {
+		if (mGramToTerms == null) {
+			mGramToTerms = new HashMap<String, List<String>>();
+			for (String term : mTermToPostings.keySet()) {
+				for (String gram : getGrams(term)) {
+					List<String> terms = mGramToTerms.get(gram);
+					if (terms == null) {
+						terms = new ArrayList<String>();
+						mGramToTerms.put(gram, terms);
+					}
+					terms.add(term);
+				}
+			}
+		}
+		return mGramToTerms;
+	}
+
+
+	// Distinct trigrams of the term, padded with a non-word character at both ends
+	private static Set<String> getGrams(String term) {
+		String padded = "$" + term + "$";
+		Set<String> grams = new HashSet<String>();
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			grams.add(padded.substring(i, i + 3));
+		}
+		return grams;
+	}
+
+
+	private Suggester getSuggester() {
+		if (mSuggester == null) {
+			Map<String, Integer> wordToWeight = new HashMap<String, Integer>();
+			for (Postings postings : mTermToPostings.values()) {
+				int docCount = 0;
+				for (int i = 0; i < postings.size; i++) {
+					if (mDocIds.get(postings.docs[i]) != null) {
+						docCount++;
+					}
+				}
+				if (docCount > 0) {
+					wordToWeight.put(postings.word, docCount);
+				}
+			}
+			mSuggester = new Suggester(wordToWeight);
+		}
+		return mSuggester;
+	}
+
+
+	private List<Map<Integer, IntList>> getBandToBuckets() {
+		if (mBandToBuckets == null) {
+			mBandToBuckets = new ArrayList<Map<Integer, IntList>>(MinHash.BANDS);
+			for (int band = 0; band < MinHash.BANDS; band++) {
+				mBandToBuckets.add(new HashMap<Integer, IntList>());
+			}
+			for (int doc = 0; doc < mDocSignatures.size(); doc++) {
+				if (mDocIds.get(doc) != null) {
+					addToBuckets(doc);
+				}
+			}
+		}
+		return mBandToBuckets;
+	}
+
+
+	private void addToBuckets(int doc) {
+		int[] signature = mDocSignatures.get(doc);
+		if (signature == null) {
+			return;
+		}
+		for (int band = 0; band < MinHash.BANDS; band++) {
+			Map<Integer, IntList> buckets = mBandToBuckets.get(band);
+			int hash = MinHash.getBandHash(signature, band);
+			IntList bucket = buckets.get(hash);
+			if (bucket == null) {
+				bucket = new IntList();
+				buckets.put(hash, bucket);
+			}
+			bucket.add(doc);
+		}
+	}
+
+
+	// The vocabulary has changed, the structures that are derived from it are rebuilt when needed
+	private void vocabularyChanged() {
+		mHeadToCompounds = null;
+		mHeadToCompoundForms = null;
+		mGramToTerms = null;
+	}
+
+
+	private SortedMap<String, List<String>> getHeadToCompounds() {
+		if (mHeadToCompounds == null) {
+			mHeadToCompounds = splitCompounds(mTermToPostings.keySet());
+		}
+		return mHeadToCompounds;
+	}
+
+
+	/**
+	 * <p>Splits every given term (or word form) into a modifier and a head in all possible ways,
+	 * and keeps the splits where the modifier (or its analyzed form, e.g. "linna" -> "lin")
+	 * is in the vocabulary.</p>
+	 *
+	 * @return map from each head to the terms that end with it
+	 */
+	private SortedMap<String, List<String>> splitCompounds(Collection<String> terms) {
+		SortedMap<String, List<String>> headToCompounds = new TreeMap<String, List<String>>();
+		for (String term : terms) {
+			for (int i = MIN_MODIFIER_LENGTH; i <= term.length() - MIN_HEAD_LENGTH; i++) {
+				if (isModifier(term.substring(0, i))) {
+					String head = term.substring(i);
+					List<String> compounds = headToCompounds.get(head);
+					if (compounds == null) {
+						compounds = new ArrayList<String>(1);
+						headToCompounds.put(head, compounds);
+					}
+					compounds.add(term);
+				}
+			}
+		}
+		return headToCompounds;
+	}
+
+
+	private boolean isModifier(String str) {
+		if (mTermToPostings.containsKey(str)) {
+			return true;
+		}
+		String term = mAnalyzer.normalize(str);
+		return term != null && mTermToPostings.containsKey(term);
+	}
+
+
+	private synchronized void add(Segment segment) {
+		String id = segment.getId();
+		delete(id);
+		int doc = mDocIds.size();
+		mDocIds.add(id);
+		mDocLengths.add(segment.getLength());
+		mTotalLength += segment.getLength();
+		mIdToDoc.put(id, doc);
+		mIdToVersion.put(id, segment.getVersion());
+		// The document frequencies change even if the vocabulary does not
+		mSuggester = null;
+		String[] terms = segment.getTerms();
+		String[] words = segment.getWords();
+		int[] frequencies = segment.getFrequencies();
+		List<String> signatureTerms = new ArrayList<String>();
+		for (String term : terms) {
+			if (term.length() >= MIN_SIGNATURE_TERM_LENGTH) {
+				signatureTerms.add(term);
+			}
+		}
+		mDocSignatures.add(signatureTerms.isEmpty() ? null : MinHash.getSignature(signatureTerms));
+		if (mBandToBuckets != null) {
+			addToBuckets(doc);
+		}
+		for (int i = 0; i < terms.length; i++) {
+			Postings postings = mTermToPostings.get(terms[i]);
+			if (postings == null) {
+				postings = new Postings();
+				mTermToPostings.put(terms[i], postings);
+				vocabularyChanged();
+			}
+			postings.add(doc, frequencies[i]);
+			postings.addWord(words[i], frequencies[i]);
+		}
+		String[] forms = segment.getForms();
+		int[] formFrequencies = segment.getFormFrequencies();
+		for (int i = 0; i < forms.length; i++) {
+			Postings postings = mFormToPostings.get(forms[i]);
+			if (postings == null) {
+				postings = new Postings();
+				mFormToPostings.put(forms[i], postings);
+				vocabularyChanged();
+			}
+			postings.add(doc, formFrequencies[i]);
+		}
+		compactIfNeeded();
+	}
+
+
+	private void delete(String id) {
+		Integer doc = mIdToDoc.remove(id);
+		mIdToVersion.remove(id);
+		if (doc != null) {
+			mDocIds.set(doc, null);
+			mTotalLength -= mDocLengths.get(doc);
+			mDeletedCount++;
+			mSuggester = null;
+		}
+	}
+
+
+	private Map<String, Integer> sumFrequencies(Slot slot) {
+		Map<String, Integer> idToCount = new HashMap<String, Integer>();
+		for (String key : slot.keys) {
+			Postings postings = getPostings(slot, key);
+			for (int i = 0; i < postings.size; i++) {
+				String id = mDocIds.get(postings.docs[i]);
+				if (id != null) {
+					Integer count = idToCount.get(id);
+					idToCount.put(id, (count == null) ? postings.freqs[i] : count + postings.freqs[i]);
+				}
+			}
+		}
+		return idToCount;
+	}
+
+
+	private static IntList readMatches(List<Slot> slots, File file) throws IOException {
+		Set<String> terms = new HashSet<String>();
+		Set<String> forms = new HashSet<String>();
+		for (Slot slot : slots) {
+			(slot.isForms ? forms : terms).addAll(slot.keys);
+		}
+		List<Map<String, int[]>> positions = Segment.readPositions(file, terms, forms);
+		return findMatches(slots, positions.get(0), positions.get(1));
+	}
+
+
+	/**
+	 * @return start positions (in the ascending order) of the sequences of positions
+	 * where each position has a term (or a word form) of the corresponding slot
+	 */
+	private static IntList findMatches(List<Slot> slots, Map<String, int[]> termToPositions, Map<String, int[]> formToPositions) {
+		int[][] slotPositions = new int[slots.size()][];
+		for (int i = 0; i < slotPositions.length; i++) {
+			Slot slot = slots.get(i);
+			Map<String, int[]> keyToPositions = slot.isForms ? formToPositions : termToPositions;
+			IntList list = new IntList();
+			for (String key : slot.keys) {
+				int[] positions = keyToPositions.get(key);
+				if (positions != null) {
+					for (int position : positions) {
+						list.add(position);
+					}
+				}
+			}
+			slotPositions[i] = list.toArray();
+			Arrays.sort(slotPositions[i]);
+		}
+		IntList matches = new IntList();
+		for (int start : slotPositions[0]) {
+			int i = 1;
+			while (i < slotPositions.length && Arrays.binarySearch(slotPositions[i], start + i) >= 0) {
+				i++;
+			}
+			if (i == slotPositions.length) {
+				matches.add(start);
+			}
+		}
+		return matches;
+	}
+
+
+	// Renumbers the documents, dropping the deleted ones
+	private void compactIfNeeded() {
+		if (mDeletedCount == 0 || mDeletedCount * 2 < mDocIds.size()) {
+			return;
+		}
+		int[] oldToNew = new int[mDocIds.size()];
+		List<String> docIds = new ArrayList<String>(mIdToDoc.size());
+		IntList docLengths = new IntList(mIdToDoc.size());
+		List<int[]> docSignatures = new ArrayList<int[]>(mIdToDoc.size());
+		for (int doc = 0; doc < mDocIds.size(); doc++) {
+			String id = mDocIds.get(doc);
+			if (id == null) {
+				oldToNew[doc] = -1;
+			} else {
+				oldToNew[doc] = docIds.size();
+				mIdToDoc.put(id, docIds.size());
+				docIds.add(id);
+				docLengths.add(mDocLengths.get(doc));
+				docSignatures.add(mDocSignatures.get(doc));
+			}
+		}
+		boolean termsRemoved = renumber(mTermToPostings, oldToNew);
+		boolean formsRemoved = renumber(mFormToPostings, oldToNew);
+		if (termsRemoved || formsRemoved) {
+			vocabularyChanged();
+		}
+		mDocIds.clear();
+		mDocIds.addAll(docIds);
+		mDocLengths.clear();
+		for (int i = 0; i < docLengths.size(); i++) {
+			mDocLengths.add(docLengths.get(i));
+		}
+		mDocSignatures.clear();
+		mDocSignatures.addAll(docSignatures);
+		mBandToBuckets = null;
+		mDeletedCount = 0;
+	}
+
+
+	/**
+	 * <p>Renumbers the documents of the postings, and drops the postings that become empty.</p>
+	 *
+	 * @return <code>true</code> iff some postings were dropped
+	 */
+	private static boolean renumber(Map<String, Postings> keyToPostings, int[] oldToNew) {
+		List<String> emptyKeys = new ArrayList<String>();
+		for (Map.Entry<String, Postings> entry : keyToPostings.entrySet()) {
+			Postings postings = entry.getValue();
+			postings.renumber(oldToNew);
+			if (postings.size == 0) {
+				emptyKeys.add(entry.getKey());
+			}
+		}
+		for (String key : emptyKeys) {
+			keyToPostings.remove(key);
+		}
+		return ! emptyKeys.isEmpty();
+	}
+
+
+	/**
+	 * <p>Terms (or word forms) of which one must occur at a position of a match.</p>
+	 */
+	private static class Slot {
+		final Collection<String> keys;
+		// The keys are lowercased word forms (the prefix slot), not terms
+		final boolean isForms;
+
+		Slot(Collection<String> keys, boolean isForms) {
+			this.keys = keys;
+			this.isForms = isForms;
+		}
+	}
+
+
+	/**
+	 * <p>Match of a query in a recording.</p>
+	 */
+	public static class Hit {
+		public final String id;
+		// Token position of the (first word of the) match
+		public final int position;
+		// Start time (ms) of the turn that contains the match, -1 if not known
+		public final int time;
+
+		public Hit(String id, int position, int time) {
+			this.id = id;
+			this.position = position;
+			this.time = time;
+		}
+	}
+
+
+	/**
+	 * <p>Recording that is similar to a given recording.</p>
+	 */
+	public static class Similar {
+		public final String id;
+		// Estimated Jaccard similarity of the vocabularies (between 0 and 1)
+		public final float similarity;
+
+		public Similar(String id, float similarity) {
+			this.id = id;
+			this.similarity = similarity;
+		}
+	}
+
+
+	/**
+	 * <p>Documents that contain a term, and the frequency of the term in each document.</p>
+	 */
+	private static class Postings {
+		int[] docs = new int[2];
+		int[] freqs = new int[2];
+		int size = 0;
+		// Word form of the term, the one that has the highest frequency in a single document
+		String word;
+		int wordFreq = 0;
+
+		void add(int doc, int freq) {
+			if (size == docs.length) {
+				docs = grow(docs);
+				freqs = grow(freqs);
+			}
+			docs[size] = doc;
+			freqs[size] = freq;
+			size++;
+		}
+
+		void addWord(String word, int freq) {
+			if (freq > wordFreq) {
+				this.word = word;
+				wordFreq = freq;
+			}
+		}
+
+		void renumber(int[] oldToNew) {
+			int j = 0;
+			for (int i = 0; i < size; i++) {
+				int doc = oldToNew[docs[i]];
+				if (doc != -1) {
+					docs[j] = doc;
+					freqs[j] = freqs[i];
+					j++;
+				}
+			}
+			size = j;
+		}
+
+		private static int[] grow(int[] array) {
+			int[] newArray = new int[array.length * 2];
+			System.arraycopy(array, 0, newArray, 0, array.length);
+			return newArray;
+		}
+	}
+}
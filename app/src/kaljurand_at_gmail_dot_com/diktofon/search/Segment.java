@@ -0,0 +1,692 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Positional index of a single transcription. A segment is built when the
+ * transcription is stored, and it is written into its own file, so that
+ * (re)indexing a recording does not touch the other recordings.</p>
+ *
+ * <p>File format (big-endian):</p>
+ *
+ * <pre>
+ * int     MAGIC
+ * int     FORMAT_VERSION
+ * UTF     recording ID
+ * long    version of the transcription (modification time of the trans file)
+ * int     length (number of tokens)
+ * int     number of turns
+ * for each turn (in the order of the transcription):
+ *   int   position of the first token of the turn
+ *   int   start time of the turn (ms)
+ * int     byte length of the text
+ * bytes   text of the turns (UTF-8), separated by newlines
+ * int     number of positions (including the gaps between the turns)
+ * int     byte length of the offsets
+ * bytes   for each position: start offset (relative to the end offset of the
+ *         previous position) and length of the token in the text, as varints
+ * int     number of terms
+ * for each term (in the lexicographic order):
+ *   UTF   term
+ *   UTF   most frequent (lowercased) word form of the term
+ *   int   term frequency
+ *   int   byte length of the positions
+ *   bytes positions as delta encoded varints
+ * int     number of word forms
+ * for each word form (in the lexicographic order):
+ *   UTF   lowercased word form (i.e. not analyzed)
+ *   int   frequency
+ *   int   byte length of the positions
+ *   bytes positions as delta encoded varints
+ * </pre>
+ *
+ * <p>The in-memory index needs only the terms, the word forms and their frequencies,
+ * i.e. the positions can be skipped. The positions are read only for the recordings that
+ * are candidates for a phrase query. The word forms answer the prefix of a word that is
+ * still being typed, which cannot be analyzed (e.g. stemmed) as a complete word.</p>
+ *
+ * <p>The turn table maps a token position to the start time of the turn that contains it
+ * (see {@link Turns}), i.e. a search hit can be played without parsing the transcription.
+ * Similarly, the stored text and the character offsets of the tokens (see {@link Text})
+ * allow a snippet to be cut around the hits.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Segment {
+
+	private static final int MAGIC = 0x44494458; // DIDX
+	// Increase this whenever the file format or the analysis of the terms changes,
+	// the old segments are then rebuilt.
+	private static final int FORMAT_VERSION = 6;
+
+	private final String mId;
+	private final long mVersion;
+	private final int mLength;
+	private final String[] mTerms;
+	// Word form of each term, for the search suggestions
+	private final String[] mWords;
+	private final int[] mFrequencies;
+	// Positions of each term, null if only the terms were read from the file
+	private final int[][] mPositions;
+	// Lowercased word forms in the lexicographic order, their frequencies and positions
+	private final String[] mForms;
+	private final int[] mFormFrequencies;
+	private final int[][] mFormPositions;
+	// Turn table, null if only the terms were read from the file
+	private final Turns mTurns;
+	// Stored text, null if only the terms were read from the file
+	private final Text mText;
+
+
+	private Segment(String id, long version, int length, String[] terms, String[] words, int[] frequencies, int[][] positions,
+			String[] forms, int[] formFrequencies, int[][] formPositions, Turns turns, Text text) {
+		mId = id;
+		mVersion = version;
+		mLength = length;
+		mTerms = terms;
+		mWords = words;
+		mFrequencies = frequencies;
+		mPositions = positions;
+		mForms = forms;
+		mFormFrequencies = formFrequencies;
+		mFormPositions = formPositions;
+		mTurns = turns;
+		mText = text;
+	}
+
+
+	public String getId() {
+		return mId;
+	}
+
+
+	public long getVersion() {
+		return mVersion;
+	}
+
+
+	/**
+	 * @return number of tokens in the transcription
+	 */
+	public int getLength() {
+		return mLength;
+	}
+
+
+	/**
+	 * @return terms in the lexicographic order
+	 */
+	public String[] getTerms() {
+		return mTerms;
+	}
+
+
+	/**
+	 * @return most frequent word form of each term (in the order of the terms)
+	 */
+	public String[] getWords() {
+		return mWords;
+	}
+
+
+	public int[] getFrequencies() {
+		return mFrequencies;
+	}
+
+
+	/**
+	 * @return lowercased word forms in the lexicographic order
+	 */
+	public String[] getForms() {
+		return mForms;
+	}
+
+
+	public int[] getFormFrequencies() {
+		return mFormFrequencies;
+	}
+
+
+	public void write(File file) throws IOException {
+		File tmpFile = new File(file.getAbsolutePath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(mId);
+			out.writeLong(mVersion);
+			out.writeInt(mLength);
+			out.writeInt(mTurns.size());
+			for (int i = 0; i < mTurns.size(); i++) {
+				out.writeInt(mTurns.mPositions[i]);
+				out.writeInt(mTurns.mTimes[i]);
+			}
+			byte[] textBytes = mText.mText.getBytes("UTF-8");
+			out.writeInt(textBytes.length);
+			out.write(textBytes);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			int previousEnd = 0;
+			for (int i = 0; i < mText.size(); i++) {
+				writeVarInt(bytes, mText.mStarts[i] - previousEnd);
+				writeVarInt(bytes, mText.mEnds[i] - mText.mStarts[i]);
+				previousEnd = mText.mEnds[i];
+			}
+			out.writeInt(mText.size());
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+			out.writeInt(mTerms.length);
+			for (int i = 0; i < mTerms.length; i++) {
+				out.writeUTF(mTerms[i]);
+				out.writeUTF(mWords[i]);
+				out.writeInt(mFrequencies[i]);
+				writePositions(out, bytes, mPositions[i]);
+			}
+			out.writeInt(mForms.length);
+			for (int i = 0; i < mForms.length; i++) {
+				out.writeUTF(mForms[i]);
+				out.writeInt(mFormFrequencies[i]);
+				writePositions(out, bytes, mFormPositions[i]);
+			}
+		} finally {
+			out.close();
+		}
+		if (! tmpFile.renameTo(file)) {
+			tmpFile.delete();
+			throw new IOException("Failed to rename " + tmpFile + " to " + file);
+		}
+	}
+
+
+	/**
+	 * <p>Reads the segment without the positions.</p>
+	 */
+	public static Segment readTerms(File file) throws IOException {
+		DataInputStream in = open(file);
+		try {
+			String id = in.readUTF();
+			long version = in.readLong();
+			int length = in.readInt();
+			skipFully(in, 8 * in.readInt());
+			skipText(in);
+			int termCount = in.readInt();
+			String[] terms = new String[termCount];
+			String[] words = new String[termCount];
+			int[] frequencies = new int[termCount];
+			for (int i = 0; i < termCount; i++) {
+				terms[i] = in.readUTF();
+				words[i] = in.readUTF();
+				frequencies[i] = in.readInt();
+				skipFully(in, in.readInt());
+			}
+			int formCount = in.readInt();
+			String[] forms = new String[formCount];
+			int[] formFrequencies = new int[formCount];
+			for (int i = 0; i < formCount; i++) {
+				forms[i] = in.readUTF();
+				formFrequencies[i] = in.readInt();
+				skipFully(in, in.readInt());
+			}
+			return new Segment(id, version, length, terms, words, frequencies, null, forms, formFrequencies, null, null, null);
+		} finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * <p>Reads the positions of the given terms.</p>
+	 *
+	 * @return map from term to its positions (in the ascending order),
+	 * the terms that do not occur in the segment are not in the map
+	 */
+	public static Map<String, int[]> readPositions(File file, Set<String> terms) throws IOException {
+		return readPositions(file, terms, Collections.<String>emptySet()).get(0);
+	}
+
+
+	/**
+	 * <p>Reads the positions of the given terms and of the given word forms.
+	 * The word forms follow the terms, i.e. they are skipped if no form is needed.</p>
+	 *
+	 * @return list of two maps, from term to its positions and from word form to its
+	 * positions (in the ascending order), the terms and the forms that do not occur in
+	 * the segment are not in the maps
+	 */
+	public static List<Map<String, int[]>> readPositions(File file, Set<String> terms, Set<String> forms) throws IOException {
+		Map<String, int[]> termToPositions = new HashMap<String, int[]>();
+		Map<String, int[]> formToPositions = new HashMap<String, int[]>();
+		DataInputStream in = open(file);
+		try {
+			in.readUTF();
+			in.readLong();
+			in.readInt();
+			skipFully(in, 8 * in.readInt());
+			skipText(in);
+			int termCount = in.readInt();
+			int i = 0;
+			for (; i < termCount && termToPositions.size() < terms.size(); i++) {
+				String term = in.readUTF();
+				in.readUTF();
+				int frequency = in.readInt();
+				readPositions(in, frequency, terms.contains(term) ? term : null, termToPositions);
+			}
+			if (! forms.isEmpty()) {
+				for (; i < termCount; i++) {
+					in.readUTF();
+					in.readUTF();
+					in.readInt();
+					skipFully(in, in.readInt());
+				}
+				int formCount = in.readInt();
+				for (int j = 0; j < formCount && formToPositions.size() < forms.size(); j++) {
+					String form = in.readUTF();
+					int frequency = in.readInt();
+					readPositions(in, frequency, forms.contains(form) ? form : null, formToPositions);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		List<Map<String, int[]>> maps = new ArrayList<Map<String, int[]>>(2);
+		maps.add(termToPositions);
+		maps.add(formToPositions);
+		return maps;
+	}
+
+
+	// Reads the positions into the map under the given key, or skips them if the key is null
+	private static void readPositions(DataInputStream in, int frequency, String key, Map<String, int[]> keyToPositions) throws IOException {
+		int byteLength = in.readInt();
+		if (key == null) {
+			skipFully(in, byteLength);
+			return;
+		}
+		int[] positions = new int[frequency];
+		int previous = 0;
+		for (int j = 0; j < frequency; j++) {
+			previous += readVarInt(in);
+			positions[j] = previous;
+		}
+		keyToPositions.put(key, positions);
+	}
+
+
+	/**
+	 * <p>Reads the turn table, which follows the header.</p>
+	 */
+	public static Turns readTurns(File file) throws IOException {
+		DataInputStream in = open(file);
+		try {
+			in.readUTF();
+			in.readLong();
+			in.readInt();
+			int turnCount = in.readInt();
+			int[] positions = new int[turnCount];
+			int[] times = new int[turnCount];
+			for (int i = 0; i < turnCount; i++) {
+				positions[i] = in.readInt();
+				times[i] = in.readInt();
+			}
+			return new Turns(positions, times);
+		} finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * <p>Reads the stored text, which follows the turn table.</p>
+	 */
+	public static Text readText(File file) throws IOException {
+		DataInputStream in = open(file);
+		try {
+			in.readUTF();
+			in.readLong();
+			in.readInt();
+			skipFully(in, 8 * in.readInt());
+			byte[] textBytes = new byte[in.readInt()];
+			in.readFully(textBytes);
+			int positionCount = in.readInt();
+			in.readInt();
+			int[] starts = new int[positionCount];
+			int[] ends = new int[positionCount];
+			int previousEnd = 0;
+			for (int i = 0; i < positionCount; i++) {
+				starts[i] = previousEnd + readVarInt(in);
+				ends[i] = starts[i] + readVarInt(in);
+				previousEnd = ends[i];
+			}
+			return new Text(new String(textBytes, "UTF-8"), starts, ends);
+		} finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * <p>Reads just the header of the segment.</p>
+	 *
+	 * @return version of the transcription that the segment was built from
+	 */
+	public static long readVersion(File file) throws IOException {
+		DataInputStream in = open(file);
+		try {
+			in.readUTF();
+			return in.readLong();
+		} finally {
+			in.close();
+		}
+	}
+
+
+	private static DataInputStream open(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			in.close();
+			throw new IOException("Unsupported segment: " + file);
+		}
+		return in;
+	}
+
+
+	private static void skipText(DataInputStream in) throws IOException {
+		skipFully(in, in.readInt());
+		in.readInt();
+		skipFully(in, in.readInt());
+	}
+
+
+	private static void skipFully(DataInputStream in, int length) throws IOException {
+		int skipped = 0;
+		while (skipped < length) {
+			int n = in.skipBytes(length - skipped);
+			if (n <= 0) {
+				throw new IOException("Truncated segment");
+			}
+			skipped += n;
+		}
+	}
+
+
+	private static void writePositions(DataOutputStream out, ByteArrayOutputStream bytes, int[] positions) throws IOException {
+		bytes.reset();
+		int previous = 0;
+		for (int position : positions) {
+			writeVarInt(bytes, position - previous);
+			previous = position;
+		}
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+
+	/**
+	 * <p>Start positions and start times of the turns.</p>
+	 */
+	public static class Turns {
+		private final int[] mPositions;
+		private final int[] mTimes;
+
+		Turns(int[] positions, int[] times) {
+			mPositions = positions;
+			mTimes = times;
+		}
+
+		public int size() {
+			return mPositions.length;
+		}
+
+		/**
+		 * @return position of the first token of the given turn
+		 */
+		public int getPosition(int turn) {
+			return mPositions[turn];
+		}
+
+		/**
+		 * <p>Finds the turn by binary search over the start positions of the turns.</p>
+		 *
+		 * @return index of the turn that contains the given token position, or -1 if
+		 * the position precedes the first turn
+		 */
+		public int getTurn(int position) {
+			// The start positions are distinct, as there is a gap after every turn
+			int index = Arrays.binarySearch(mPositions, position);
+			if (index < 0) {
+				// The turn before the insertion point
+				index = -index - 2;
+			}
+			return index;
+		}
+
+		/**
+		 * @return start time (ms) of the turn that contains the given token position,
+		 * or -1 if it is not known
+		 */
+		public int getStartTime(int position) {
+			int turn = getTurn(position);
+			return (turn < 0) ? -1 : mTimes[turn];
+		}
+	}
+
+
+	/**
+	 * <p>Text of the turns, and the character offsets of the token at each position.
+	 * A gap position (between two turns) has an empty range at the newline that
+	 * separates the turns.</p>
+	 */
+	public static class Text {
+		private final String mText;
+		private final int[] mStarts;
+		private final int[] mEnds;
+
+		Text(String text, int[] starts, int[] ends) {
+			mText = text;
+			mStarts = starts;
+			mEnds = ends;
+		}
+
+		public String getText() {
+			return mText;
+		}
+
+		/**
+		 * @return number of positions
+		 */
+		public int size() {
+			return mStarts.length;
+		}
+
+		public int getStart(int position) {
+			return mStarts[position];
+		}
+
+		public int getEnd(int position) {
+			return mEnds[position];
+		}
+	}
+
+
+	/**
+	 * <p>Builds a segment from the text of the transcription. The text can be
+	 * added in pieces (e.g. turn by turn), the token positions run through all the pieces.
+	 * There is a gap of one position between the pieces, so that a phrase cannot
+	 * span two turns.</p>
+	 */
+	public static class Builder {
+
+		private final String mId;
+		private final long mVersion;
+		private final Analyzer mAnalyzer;
+		private final SortedMap<String, IntList> mTermToPositions = new TreeMap<String, IntList>();
+		// Lowercased word form -> its term and its positions
+		private final Map<String, String> mWordToTerm = new HashMap<String, String>();
+		private final SortedMap<String, IntList> mWordToPositions = new TreeMap<String, IntList>();
+		private final IntList mTurnPositions = new IntList();
+		private final IntList mTurnTimes = new IntList();
+		private final StringBuilder mText = new StringBuilder();
+		private final IntList mStarts = new IntList();
+		private final IntList mEnds = new IntList();
+		private int mPosition = 0;
+		private int mLength = 0;
+
+		public Builder(String id, long version, Analyzer analyzer) {
+			mId = id;
+			mVersion = version;
+			mAnalyzer = analyzer;
+		}
+
+		/**
+		 * <p>Adds the text of a turn, and the turn to the turn table.</p>
+		 */
+		public Builder addTurn(int startTime, CharSequence text) {
+			mTurnPositions.add(mPosition);
+			mTurnTimes.add(startTime);
+			return addText(text);
+		}
+
+		public Builder addText(CharSequence text) {
+			int offset = mText.length();
+			mText.append(text);
+			Tokenizer tokenizer = new Tokenizer(text);
+			while (tokenizer.next()) {
+				mStarts.add(offset + tokenizer.start());
+				mEnds.add(offset + tokenizer.end());
+				String token = tokenizer.token();
+				String term = mAnalyzer.normalize(token);
+				if (term != null) {
+					String word = token.toLowerCase(Locale.ENGLISH);
+					mWordToTerm.put(word, term);
+					addPosition(mWordToPositions, word, mPosition);
+					addPosition(mTermToPositions, term, mPosition);
+				}
+				mPosition++;
+				mLength++;
+			}
+			// The gap between the pieces
+			mStarts.add(mText.length());
+			mEnds.add(mText.length());
+			mText.append('\n');
+			mPosition++;
+			return this;
+		}
+
+		public Segment build() {
+			int size = mTermToPositions.size();
+			String[] terms = new String[size];
+			String[] words = new String[size];
+			int[] frequencies = new int[size];
+			int[][] positions = new int[size][];
+			Map<String, String> termToWord = getTermToWord();
+			int i = 0;
+			for (Map.Entry<String, IntList> entry : mTermToPositions.entrySet()) {
+				terms[i] = entry.getKey();
+				words[i] = termToWord.get(terms[i]);
+				positions[i] = entry.getValue().toArray();
+				frequencies[i] = positions[i].length;
+				i++;
+			}
+			int formCount = mWordToPositions.size();
+			String[] forms = new String[formCount];
+			int[] formFrequencies = new int[formCount];
+			int[][] formPositions = new int[formCount][];
+			i = 0;
+			for (Map.Entry<String, IntList> entry : mWordToPositions.entrySet()) {
+				forms[i] = entry.getKey();
+				formPositions[i] = entry.getValue().toArray();
+				formFrequencies[i] = formPositions[i].length;
+				i++;
+			}
+			return new Segment(mId, mVersion, mLength, terms, words, frequencies, positions,
+					forms, formFrequencies, formPositions,
+					new Turns(mTurnPositions.toArray(), mTurnTimes.toArray()),
+					new Text(mText.toString(), mStarts.toArray(), mEnds.toArray()));
+		}
+
+		// The most frequent word form of each term (the smallest one if there is a tie)
+		private Map<String, String> getTermToWord() {
+			Map<String, String> termToWord = new HashMap<String, String>();
+			for (Map.Entry<String, String> entry : mWordToTerm.entrySet()) {
+				String word = entry.getKey();
+				String term = entry.getValue();
+				String best = termToWord.get(term);
+				if (best == null) {
+					termToWord.put(term, word);
+				} else {
+					int count = mWordToPositions.get(word).size();
+					int bestCount = mWordToPositions.get(best).size();
+					if (count > bestCount || (count == bestCount && word.compareTo(best) < 0)) {
+						termToWord.put(term, word);
+					}
+				}
+			}
+			return termToWord;
+		}
+
+		private static void addPosition(Map<String, IntList> keyToPositions, String key, int position) {
+			IntList positions = keyToPositions.get(key);
+			if (positions == null) {
+				positions = new IntList();
+				keyToPositions.put(key, positions);
+			}
+			positions.add(position);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.util.Locale;
+
+/**
+ * <p>Lowercases the tokens, i.e. the search is case insensitive as the regular
+ * expression based search was.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class SimpleAnalyzer implements Analyzer {
+
+	public String normalize(String token) {
+		return token.toLowerCase(Locale.ENGLISH);
+	}
+
+
+	public boolean splitsCompounds() {
+		return false;
+	}
+}
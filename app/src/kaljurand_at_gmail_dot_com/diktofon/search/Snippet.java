@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+/**
+ * <p>Keyword-in-context snippet: a short window of the transcription around the
+ * matches of a query, and the character ranges of the matches in the window.</p>
+ *
+ * <p>The window is chosen from the token positions of the matches, i.e. the window
+ * of the given number of tokens which contains the largest number of matches (the
+ * first such window if there are several). It is then cut from the stored text of
+ * the segment, so that the transcription does not need to be scanned.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Snippet {
+
+	private static final String ELLIPSIS = "\u2026";
+
+	private final String mText;
+	private final int[] mHighlights;
+
+
+	private Snippet(String text, int[] highlights) {
+		mText = text;
+		mHighlights = highlights;
+	}
+
+
+	public String getText() {
+		return mText;
+	}
+
+
+	/**
+	 * @return start and end offsets (in the snippet text) of the matches,
+	 * i.e. the array contains pairs of offsets
+	 */
+	public int[] getHighlights() {
+		return mHighlights;
+	}
+
+
+	/**
+	 * @param text stored text of the segment
+	 * @param matches start positions of the matches (in the ascending order, not empty)
+	 * @param matchLength number of tokens in a match
+	 * @param windowLength maximum number of tokens in the snippet
+	 */
+	public static Snippet create(Segment.Text text, IntList matches, int matchLength, int windowLength) {
+		windowLength = Math.max(windowLength, matchLength);
+
+		// The matches first..last fit into the window and there are as many of them as possible
+		int first = 0;
+		int last = 0;
+		int j = 0;
+		for (int i = 0; i < matches.size(); i++) {
+			if (j < i) {
+				j = i;
+			}
+			while (j + 1 < matches.size() && matches.get(j + 1) + matchLength <= matches.get(i) + windowLength) {
+				j++;
+			}
+			if (j - i > last - first) {
+				first = i;
+				last = j;
+			}
+		}
+
+		// Centers the matches in the window
+		int matchesStart = matches.get(first);
+		int matchesEnd = matches.get(last) + matchLength;
+		int from = Math.max(0, matchesStart - (windowLength - (matchesEnd - matchesStart)) / 2);
+		int to = Math.min(text.size(), from + windowLength);
+		from = Math.max(0, to - windowLength);
+
+		String str = text.getText();
+		int start = text.getStart(from);
+		int end = text.getEnd(to - 1);
+		// The window can start or end at the gap between two turns
+		while (start < end && Character.isWhitespace(str.charAt(start))) {
+			start++;
+		}
+		while (end > start && Character.isWhitespace(str.charAt(end - 1))) {
+			end--;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		if (hasTextBefore(str, start)) {
+			sb.append(ELLIPSIS);
+		}
+		// Runs of whitespace (e.g. the newlines between the turns) become single spaces,
+		// offsetMap maps the offsets in the text to the offsets in the snippet
+		int[] offsetMap = new int[end - start + 1];
+		for (int i = start; i < end; i++) {
+			offsetMap[i - start] = sb.length();
+			char c = str.charAt(i);
+			if (! Character.isWhitespace(c)) {
+				sb.append(c);
+			} else if (! Character.isWhitespace(str.charAt(i - 1))) {
+				// The window starts and ends with a non-whitespace character, i.e. i > start
+				sb.append(' ');
+			}
+		}
+		offsetMap[end - start] = sb.length();
+		if (hasText(str, end)) {
+			sb.append(ELLIPSIS);
+		}
+
+		int[] highlights = new int[2 * (last - first + 1)];
+		for (int i = first; i <= last; i++) {
+			int position = matches.get(i);
+			highlights[2 * (i - first)] = offsetMap[text.getStart(position) - start];
+			highlights[2 * (i - first) + 1] = offsetMap[text.getEnd(position + matchLength - 1) - start];
+		}
+		return new Snippet(sb.toString(), highlights);
+	}
+
+
+	private static boolean hasTextBefore(String str, int end) {
+		for (int i = end - 1; i >= 0; i--) {
+			if (! Character.isWhitespace(str.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	private static boolean hasText(String str, int from) {
+		for (int i = from; i < str.length(); i++) {
+			if (! Character.isWhitespace(str.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
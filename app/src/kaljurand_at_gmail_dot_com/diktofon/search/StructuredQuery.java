@@ -0,0 +1,326 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>Search query that combines the text query with filters on the metadata of the recordings:</p>
+ *
+ * <pre>
+ * tag:meeting       has the tag "meeting" (case insensitive)
+ * speaker:mari      has a speaker whose name contains "mari" (case insensitive)
+ * dur&gt;10m          is longer than 10 minutes (units: s, m, h; seconds by default)
+ * dur&lt;90s          is shorter than 90 seconds
+ * after:2026-01     was recorded in January 2026 or later (year, month or day)
+ * before:2026-01-15 was recorded before January 15, 2026
+ * </pre>
+ *
+ * <p>The filter values can be quoted, e.g. <code>speaker:"Mari Maasikas"</code>.
+ * Everything else is the text query (see {@link Query}), e.g. in
+ * <code>tag:meeting speaker:Mari dur&gt;10m after:2026-01 "eelarve"</code> the text query is
+ * <code>"eelarve"</code>. A token that looks like a filter but does not have a valid value
+ * (e.g. <code>dur&gt;long</code>) is part of the text query. The remaining tokens are joined
+ * by single spaces. A query without filters is kept as it is, i.e. a regular expression
+ * that happens to contain <code>tag:</code> must not be separated from it by whitespace.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class StructuredQuery {
+
+	public static final String TAG = "tag:";
+	public static final String SPEAKER = "speaker:";
+	public static final String AFTER = "after:";
+	public static final String BEFORE = "before:";
+	public static final String DURATION = "dur";
+
+	private final List<String> mTags = new ArrayList<String>();
+	private final List<String> mSpeakers = new ArrayList<String>();
+	// Duration bounds in milliseconds (exclusive)
+	private long mMinDuration = Long.MIN_VALUE;
+	private long mMaxDuration = Long.MAX_VALUE;
+	// Time bounds in milliseconds since the epoch (after is inclusive, before is exclusive)
+	private long mAfter = Long.MIN_VALUE;
+	private long mBefore = Long.MAX_VALUE;
+	private String mText;
+
+
+	private StructuredQuery() {}
+
+
+	/**
+	 * @return parsed query (never <code>null</code>)
+	 */
+	public static StructuredQuery parse(String str) {
+		StructuredQuery query = new StructuredQuery();
+		StringBuilder text = new StringBuilder();
+		for (String token : split(str)) {
+			if (! query.addFilter(token)) {
+				if (text.length() > 0) {
+					text.append(' ');
+				}
+				text.append(token);
+			}
+		}
+		if (! query.hasFilters()) {
+			query.mText = str.trim();
+		} else {
+			query.mText = text.toString();
+		}
+		if (query.mText.length() == 0) {
+			query.mText = null;
+		}
+		return query;
+	}
+
+
+	/**
+	 * @return <code>true</code> if the query has at least one filter
+	 */
+	public boolean hasFilters() {
+		return ! mTags.isEmpty() || ! mSpeakers.isEmpty() ||
+				mMinDuration != Long.MIN_VALUE || mMaxDuration != Long.MAX_VALUE ||
+				mAfter != Long.MIN_VALUE || mBefore != Long.MAX_VALUE;
+	}
+
+
+	/**
+	 * @return text query, or <code>null</code> if the query consists of the filters only
+	 */
+	public String getText() {
+		return mText;
+	}
+
+
+	/**
+	 * @return lowercase tags that the recording must have
+	 */
+	public List<String> getTags() {
+		return Collections.unmodifiableList(mTags);
+	}
+
+
+	/**
+	 * @return lowercase substrings of the speaker names that the recording must have
+	 */
+	public List<String> getSpeakers() {
+		return Collections.unmodifiableList(mSpeakers);
+	}
+
+
+	/**
+	 * @return <code>true</code> if the given duration (in milliseconds) satisfies the duration filters
+	 */
+	public boolean acceptsDuration(long duration) {
+		return duration > mMinDuration && duration < mMaxDuration;
+	}
+
+
+	/**
+	 * @return <code>true</code> if the given time (in milliseconds since the epoch) satisfies the date filters
+	 */
+	public boolean acceptsTime(long time) {
+		return time >= mAfter && time < mBefore;
+	}
+
+
+	public boolean hasDurationFilter() {
+		return mMinDuration != Long.MIN_VALUE || mMaxDuration != Long.MAX_VALUE;
+	}
+
+
+	public boolean hasTimeFilter() {
+		return mAfter != Long.MIN_VALUE || mBefore != Long.MAX_VALUE;
+	}
+
+
+	private boolean addFilter(String token) {
+		String lower = token.toLowerCase(Locale.ENGLISH);
+		if (lower.startsWith(TAG)) {
+			String tag = unquote(lower.substring(TAG.length()));
+			if (tag.length() > 0) {
+				mTags.add(tag);
+				return true;
+			}
+		} else if (lower.startsWith(SPEAKER)) {
+			String speaker = unquote(lower.substring(SPEAKER.length()));
+			if (speaker.length() > 0) {
+				mSpeakers.add(speaker);
+				return true;
+			}
+		} else if (lower.startsWith(AFTER)) {
+			long time = parseDate(unquote(lower.substring(AFTER.length())));
+			if (time != -1) {
+				mAfter = Math.max(mAfter, time);
+				return true;
+			}
+		} else if (lower.startsWith(BEFORE)) {
+			long time = parseDate(unquote(lower.substring(BEFORE.length())));
+			if (time != -1) {
+				mBefore = Math.min(mBefore, time);
+				return true;
+			}
+		} else if (lower.startsWith(DURATION) && lower.length() > DURATION.length() + 1) {
+			char op = lower.charAt(DURATION.length());
+			long duration = parseDuration(unquote(lower.substring(DURATION.length() + 1)));
+			if (duration >= 0) {
+				if (op == '>') {
+					mMinDuration = Math.max(mMinDuration, duration);
+					return true;
+				} else if (op == '<') {
+					mMaxDuration = Math.min(mMaxDuration, duration);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * <p>Splits the query at whitespace that is not between double quotes.</p>
+	 */
+	private static List<String> split(String str) {
+		List<String> tokens = new ArrayList<String>();
+		StringBuilder token = new StringBuilder();
+		boolean isQuoted = false;
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == '"') {
+				isQuoted = ! isQuoted;
+			} else if (! isQuoted && Character.isWhitespace(c)) {
+				if (token.length() > 0) {
+					tokens.add(token.toString());
+					token.setLength(0);
+				}
+				continue;
+			}
+			token.append(c);
+		}
+		if (token.length() > 0) {
+			tokens.add(token.toString());
+		}
+		return tokens;
+	}
+
+
+	/**
+	 * <p>Removes the quotes around the value. A quote that is not closed
+	 * extends to the end of the query.</p>
+	 */
+	static String unquote(String str) {
+		if (str.length() > 0 && str.charAt(0) == '"') {
+			int end = str.length();
+			if (end >= 2 && str.charAt(end - 1) == '"') {
+				end--;
+			}
+			return str.substring(1, end).trim();
+		}
+		return str;
+	}
+
+
+	/**
+	 * @return duration in milliseconds, e.g. "90" (seconds), "90s", "10m", "1h",
+	 * or -1 if the string is not a duration
+	 */
+	static long parseDuration(String str) {
+		int end = 0;
+		while (end < str.length() && str.charAt(end) >= '0' && str.charAt(end) <= '9') {
+			end++;
+		}
+		// At most 9 digits, so that the number fits into an int
+		if (end == 0 || end > 9) {
+			return -1;
+		}
+		long number = Integer.parseInt(str.substring(0, end));
+		String unit = str.substring(end);
+		if (unit.length() == 0 || unit.equals("s")) {
+			return number * 1000;
+		} else if (unit.equals("m")) {
+			return number * 60 * 1000;
+		} else if (unit.equals("h")) {
+			return number * 60 * 60 * 1000;
+		}
+		return -1;
+	}
+
+
+	/**
+	 * @return start of the given year ("2026"), month ("2026-01") or day ("2026-01-15")
+	 * in the default time zone, or -1 if the string is not a date
+	 */
+	static long parseDate(String str) {
+		String[] parts = str.split("-", -1);
+		if (parts.length > 3 || parts[0].length() != 4) {
+			return -1;
+		}
+		int[] numbers = new int[] { 0, 1, 1 };
+		for (int i = 0; i < parts.length; i++) {
+			String part = parts[i];
+			// Four digits in the year, one or two in the month and the day
+			if (part.length() == 0 || (i > 0 && part.length() > 2)) {
+				return -1;
+			}
+			for (int j = 0; j < part.length(); j++) {
+				char c = part.charAt(j);
+				if (c < '0' || c > '9') {
+					return -1;
+				}
+			}
+			numbers[i] = Integer.parseInt(part);
+		}
+		if (numbers[1] < 1 || numbers[1] > 12 || numbers[2] < 1) {
+			return -1;
+		}
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(numbers[0], numbers[1] - 1, 1);
+		// E.g. 2026-02-30 is not a date (a lenient calendar would roll it over to March)
+		if (numbers[2] > calendar.getActualMaximum(Calendar.DAY_OF_MONTH)) {
+			return -1;
+		}
+		calendar.set(Calendar.DAY_OF_MONTH, numbers[2]);
+		return calendar.getTimeInMillis();
+	}
+
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (String tag : mTags) {
+			sb.append(TAG).append(tag).append(' ');
+		}
+		for (String speaker : mSpeakers) {
+			sb.append(SPEAKER).append(speaker).append(' ');
+		}
+		if (hasDurationFilter()) {
+			sb.append("dur(").append(mMinDuration).append(',').append(mMaxDuration).append(") ");
+		}
+		if (hasTimeFilter()) {
+			sb.append("time[").append(mAfter).append(',').append(mBefore).append(") ");
+		}
+		if (mText != null) {
+			sb.append(mText);
+		}
+		return sb.toString().trim();
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * <p>Completes a prefix to the words that have the largest weights (e.g. document frequencies).</p>
+ *
+ * <p>The words are kept in a sorted array, so that the words with a given prefix form
+ * a range of the array, found by binary search. A segment tree over the weights
+ * gives the heaviest word of any range in logarithmic time. The top <code>k</code> words
+ * are then extracted best-first: the heaviest word splits its range into two, which are
+ * queued by their own heaviest words. A lookup thus takes <code>O(k log n)</code> time,
+ * independent of the number of words that share the prefix. The structure takes
+ * three arrays of size <code>n</code>, i.e. much less than a trie with a top-k list per node.</p>
+ *
+ * <p>The structure is immutable, a changed vocabulary requires a new one.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Suggester {
+
+	private final String[] mWords;
+	private final int[] mWeights;
+	// Segment tree: node i has children 2i and 2i+1, the leaves are at n..2n-1,
+	// every node stores the index of the heaviest word under it
+	private final int[] mTree;
+
+
+	/**
+	 * @param wordToWeight words and their (non-negative) weights
+	 */
+	public Suggester(Map<String, Integer> wordToWeight) {
+		int n = wordToWeight.size();
+		mWords = wordToWeight.keySet().toArray(new String[n]);
+		Arrays.sort(mWords);
+		mWeights = new int[n];
+		for (int i = 0; i < n; i++) {
+			mWeights[i] = wordToWeight.get(mWords[i]);
+		}
+		mTree = new int[2 * n];
+		for (int i = 0; i < n; i++) {
+			mTree[n + i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			mTree[i] = heavier(mTree[2 * i], mTree[2 * i + 1]);
+		}
+	}
+
+
+	public int size() {
+		return mWords.length;
+	}
+
+
+	/**
+	 * @return at most <code>limit</code> words that start with the given prefix,
+	 * heaviest first (words of equal weight in the lexicographic order)
+	 */
+	public List<Suggestion> suggest(String prefix, int limit) {
+		List<Suggestion> suggestions = new ArrayList<Suggestion>();
+		int from = lowerBound(prefix);
+		int to = lowerBound(prefix + Character.MAX_VALUE);
+		if (from >= to || limit <= 0) {
+			return suggestions;
+		}
+		PriorityQueue<int[]> queue = new PriorityQueue<int[]>(11, new Comparator<int[]>() {
+			public int compare(int[] r1, int[] r2) {
+				return compareWords(r1[2], r2[2]);
+			}
+		});
+		queue.add(new int[] { from, to, getHeaviest(from, to) });
+		while (! queue.isEmpty() && suggestions.size() < limit) {
+			int[] range = queue.poll();
+			int best = range[2];
+			suggestions.add(new Suggestion(mWords[best], mWeights[best]));
+			if (range[0] < best) {
+				queue.add(new int[] { range[0], best, getHeaviest(range[0], best) });
+			}
+			if (best + 1 < range[1]) {
+				queue.add(new int[] { best + 1, range[1], getHeaviest(best + 1, range[1]) });
+			}
+		}
+		return suggestions;
+	}
+
+
+	/**
+	 * @return index of the heaviest word in the range <code>[from, to)</code> (which is not empty)
+	 */
+	private int getHeaviest(int from, int to) {
+		int n = mWords.length;
+		int best = from;
+		for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+			if ((l & 1) == 1) {
+				best = heavier(best, mTree[l++]);
+			}
+			if ((r & 1) == 1) {
+				best = heavier(best, mTree[--r]);
+			}
+		}
+		return best;
+	}
+
+
+	private int heavier(int i, int j) {
+		return (compareWords(i, j) <= 0) ? i : j;
+	}
+
+
+	// Heavier words first, ties are broken by the position in the sorted array
+	private int compareWords(int i, int j) {
+		if (mWeights[i] != mWeights[j]) {
+			return (mWeights[i] > mWeights[j]) ? -1 : 1;
+		}
+		return (i < j) ? -1 : ((i == j) ? 0 : 1);
+	}
+
+
+	// Index of the first word that is not smaller than the given string
+	private int lowerBound(String str) {
+		int low = 0;
+		int high = mWords.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (mWords[mid].compareTo(str) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+
+	public static class Suggestion {
+		public final String word;
+		public final int weight;
+
+		public Suggestion(String word, int weight) {
+			this.word = word;
+			this.weight = weight;
+		}
+	}
+}
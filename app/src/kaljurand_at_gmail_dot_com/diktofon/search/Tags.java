@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Parser of the tags files, which list the tags of a recording separated by whitespace.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Tags {
+
+	private Tags() {}
+
+
+	/**
+	 * <p>Splits the string at whitespace in a single pass, i.e. without
+	 * normalizing the whitespace by a regular expression first.</p>
+	 *
+	 * @return tags in the order of the string (without empty tags)
+	 */
+	public static List<String> parse(String str) {
+		List<String> tags = new ArrayList<String>();
+		int length = str.length();
+		int i = 0;
+		while (i < length) {
+			while (i < length && Character.isWhitespace(str.charAt(i))) {
+				i++;
+			}
+			int start = i;
+			while (i < length && ! Character.isWhitespace(str.charAt(i))) {
+				i++;
+			}
+			if (i > start) {
+				tags.add(str.substring(start, i));
+			}
+		}
+		return tags;
+	}
+
+
+	/**
+	 * @return tags joined by the given separator, e.g. a single space gives the
+	 * content of a tags file
+	 */
+	public static String join(Iterable<String> tags, String separator) {
+		StringBuilder sb = new StringBuilder();
+		for (String tag : tags) {
+			if (sb.length() > 0) {
+				sb.append(separator);
+			}
+			sb.append(tag);
+		}
+		return sb.toString();
+	}
+}
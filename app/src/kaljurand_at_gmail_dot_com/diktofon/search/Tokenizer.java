@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+/**
+ * <p>Splits text into tokens, i.e. maximal sequences of letters and digits.
+ * The character offsets of the current token are available, so that the
+ * token can be mapped back to the text.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class Tokenizer {
+
+	private final CharSequence mText;
+	private final int mLength;
+	private int mStart = -1;
+	private int mEnd = 0;
+
+
+	public Tokenizer(CharSequence text) {
+		mText = text;
+		mLength = text.length();
+	}
+
+
+	/**
+	 * @return <code>true</code> if there is another token (which then becomes the current token)
+	 */
+	public boolean next() {
+		int pos = mEnd;
+		while (pos < mLength && ! isWordChar(mText.charAt(pos))) {
+			pos++;
+		}
+		if (pos == mLength) {
+			return false;
+		}
+		mStart = pos;
+		while (pos < mLength && isWordChar(mText.charAt(pos))) {
+			pos++;
+		}
+		mEnd = pos;
+		return true;
+	}
+
+
+	public int start() {
+		return mStart;
+	}
+
+
+	public int end() {
+		return mEnd;
+	}
+
+
+	public String token() {
+		return mText.subSequence(mStart, mEnd).toString();
+	}
+
+
+	/**
+	 * <p>Letters, digits and combining marks (which belong to the preceding letter).</p>
+	 */
+	public static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK;
+	}
+}
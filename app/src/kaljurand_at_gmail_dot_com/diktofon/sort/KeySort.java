@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.sort;
+
+import java.util.Arrays;
+
+/**
+ * <p>Sorts items by primitive keys that have been extracted from the items in advance,
+ * i.e. the keys are not recomputed (or looked up from the file system) in every comparison
+ * as with a Comparator, and no keys are boxed. The result is a permutation of the indices
+ * of the items, which the caller applies to its list.</p>
+ *
+ * <p>The sort is stable, i.e. items with equal keys keep their relative order, as with
+ * <code>Collections.sort</code>. If the range of the keys leaves enough bits for the
+ * index (e.g. for time stamps, sizes and counts), then each key is packed together
+ * with its index into a single long, and the longs are sorted by <code>Arrays.sort</code>,
+ * the index in the low bits making the order stable. Otherwise the keys are sorted
+ * by a merge sort that moves the keys along with the indices, so that the merges
+ * read the memory sequentially.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class KeySort {
+
+	// Runs of this length are sorted by insertion before merging
+	private static final int RUN_LENGTH = 32;
+
+	private KeySort() {}
+
+
+	/**
+	 * @param keys sort key of each item
+	 * @return indices of the items, ordered by the keys, largest key first
+	 */
+	public static int[] sortDescending(long[] keys) {
+		int n = keys.length;
+		if (n == 0) {
+			return new int[0];
+		}
+		long min = keys[0];
+		long max = keys[0];
+		for (long key : keys) {
+			if (key < min) {
+				min = key;
+			} else if (key > max) {
+				max = key;
+			}
+		}
+		int indexBits = 64 - Long.numberOfLeadingZeros(n - 1);
+		long range = max - min;
+		// The range does not overflow and leaves room for the index
+		if (range >= 0 && (indexBits == 0 || range >>> (63 - indexBits) == 0)) {
+			return sortPacked(keys, max, indexBits);
+		}
+		return sortMerge(keys);
+	}
+
+
+	/**
+	 * <p>Sorts the longs <code>(max - key) << indexBits | index</code> in ascending order,
+	 * i.e. the keys in descending order and the equal keys by their index.</p>
+	 */
+	private static int[] sortPacked(long[] keys, long max, int indexBits) {
+		int n = keys.length;
+		long[] packed = new long[n];
+		for (int i = 0; i < n; i++) {
+			packed[i] = ((max - keys[i]) << indexBits) | i;
+		}
+		Arrays.sort(packed);
+		long mask = (1L << indexBits) - 1;
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = (int) (packed[i] & mask);
+		}
+		return order;
+	}
+
+
+	private static int[] sortMerge(long[] keys) {
+		int n = keys.length;
+		int[] order = new int[n];
+		long[] sortedKeys = keys.clone();
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		for (int start = 0; start < n; start += RUN_LENGTH) {
+			insertionSort(sortedKeys, order, start, Math.min(start + RUN_LENGTH, n));
+		}
+		if (n <= RUN_LENGTH) {
+			return order;
+		}
+		int[] srcOrder = order;
+		long[] srcKeys = sortedKeys;
+		int[] dstOrder = new int[n];
+		long[] dstKeys = new long[n];
+		for (int width = RUN_LENGTH; width < n; width *= 2) {
+			for (int start = 0; start < n; start += 2 * width) {
+				int mid = Math.min(start + width, n);
+				int end = Math.min(start + 2 * width, n);
+				merge(srcKeys, srcOrder, dstKeys, dstOrder, start, mid, end);
+			}
+			int[] tmpOrder = srcOrder;
+			srcOrder = dstOrder;
+			dstOrder = tmpOrder;
+			long[] tmpKeys = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = tmpKeys;
+		}
+		return srcOrder;
+	}
+
+
+	private static void insertionSort(long[] keys, int[] order, int start, int end) {
+		for (int i = start + 1; i < end; i++) {
+			long key = keys[i];
+			int index = order[i];
+			int j = i - 1;
+			while (j >= start && keys[j] < key) {
+				keys[j + 1] = keys[j];
+				order[j + 1] = order[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			order[j + 1] = index;
+		}
+	}
+
+
+	/**
+	 * <p>Merges the runs [start, mid) and [mid, end) of the source arrays into
+	 * [start, end) of the destination arrays. On equal keys the left run goes first,
+	 * which keeps the sort stable. Runs that are already in order are just copied.</p>
+	 */
+	private static void merge(long[] srcKeys, int[] srcOrder, long[] dstKeys, int[] dstOrder, int start, int mid, int end) {
+		if (mid >= end || srcKeys[mid - 1] >= srcKeys[mid]) {
+			System.arraycopy(srcKeys, start, dstKeys, start, end - start);
+			System.arraycopy(srcOrder, start, dstOrder, start, end - start);
+			return;
+		}
+		int i = start;
+		int j = mid;
+		for (int k = start; k < end; k++) {
+			if (j >= end || (i < mid && srcKeys[i] >= srcKeys[j])) {
+				dstKeys[k] = srcKeys[i];
+				dstOrder[k] = srcOrder[i++];
+			} else {
+				dstKeys[k] = srcKeys[j];
+				dstOrder[k] = srcOrder[j++];
+			}
+		}
+	}
+}
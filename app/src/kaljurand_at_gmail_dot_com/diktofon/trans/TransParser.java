@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.trans;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * <p>Streams through a transcription (in the Transcriber XML format) and reports
+ * its turns one by one, e.g. to the search indexer. The text of a turn is reported
+ * as it is in the XML, i.e. without whitespace normalization.</p>
+ *
+ * <p>This class does not depend on the Android framework.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class TransParser extends DefaultHandler {
+
+	public interface Listener {
+		/**
+		 * @param speakerId ID of the speaker of the turn (or <code>null</code>)
+		 * @param startTime start time of the turn in milliseconds
+		 * @param endTime end time of the turn in milliseconds
+		 * @param text text of the turn
+		 */
+		void onTurn(String speakerId, int startTime, int endTime, String text);
+	}
+
+	private static final String EL_TURN = "Turn";
+
+	private final Listener mListener;
+	private final StringBuilder mText = new StringBuilder();
+	private boolean mInTurn = false;
+	private String mSpeakerId;
+	private int mStartTime;
+	private int mEndTime;
+
+
+	public TransParser(Listener listener) {
+		mListener = listener;
+	}
+
+
+	public static void parse(File file, Listener listener) throws SAXException, IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(file));
+		try {
+			parse(is, listener);
+		} finally {
+			is.close();
+		}
+	}
+
+
+	public static void parse(InputStream is, Listener listener) throws SAXException, IOException {
+		try {
+			SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(is), new TransParser(listener));
+		} catch (ParserConfigurationException e) {
+			throw new SAXException(e);
+		}
+	}
+
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) {
+		if (EL_TURN.equals(qName)) {
+			mInTurn = true;
+			mText.setLength(0);
+			mSpeakerId = attributes.getValue("speaker");
+			mStartTime = parseTime(attributes.getValue("startTime"));
+			mEndTime = parseTime(attributes.getValue("endTime"));
+		} else if (mInTurn) {
+			// Elements inside turns (Sync, Event, Comment, ...) separate words
+			mText.append(' ');
+		}
+	}
+
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+		if (EL_TURN.equals(qName)) {
+			mInTurn = false;
+			mListener.onTurn(mSpeakerId, mStartTime, mEndTime, mText.toString());
+		}
+	}
+
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		if (mInTurn) {
+			mText.append(ch, start, length);
+		}
+	}
+
+
+	// Time is given in seconds, returns milliseconds (or 0 if the time is missing or broken)
+	static int parseTime(String str) {
+		if (str == null) {
+			return 0;
+		}
+		try {
+			return (int) (Double.parseDouble(str) * 1000);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
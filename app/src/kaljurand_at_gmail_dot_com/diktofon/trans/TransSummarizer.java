@@ -0,0 +1,193 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.trans;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * <p>Summarizes a transcription (in the Transcriber XML format) in a single
+ * streaming pass, i.e. without building the DOM, without generating the plain text
+ * and without running regular expressions over it. The summary contains the word count,
+ * the speakers, the number of turns, the total speech time and an excerpt.</p>
+ *
+ * <pre>
+ * &lt;Trans&gt;
+ *   &lt;Speakers&gt;&lt;Speaker id="spk1" name="..."/&gt;&lt;/Speakers&gt;
+ *   &lt;Episode&gt;&lt;Section&gt;
+ *     &lt;Turn speaker="spk1" startTime="0.0" endTime="2.5"&gt;&lt;Sync time="0.0"/&gt; text ...&lt;/Turn&gt;
+ *   &lt;/Section&gt;&lt;/Episode&gt;
+ * &lt;/Trans&gt;
+ * </pre>
+ *
+ * <p>This class does not depend on the Android framework.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class TransSummarizer extends DefaultHandler {
+
+	private static final String EL_SPEAKER = "Speaker";
+	private static final String EL_TURN = "Turn";
+	private static final String ATTR_ID = "id";
+	private static final String ATTR_NAME = "name";
+	private static final String ATTR_START_TIME = "startTime";
+	private static final String ATTR_END_TIME = "endTime";
+
+	private final int mMaxExcerptLength;
+	private final StringBuilder mExcerpt = new StringBuilder();
+	private final Map<String, String> mSpeakers = new HashMap<String, String>();
+
+	private int mWordCount = 0;
+	private int mTurnCount = 0;
+	private long mSpeechTime = 0;
+
+	private boolean mInTurn = false;
+	private boolean mInWord = false;
+	private boolean mTurnHasText = false;
+	private long mTurnDuration = 0;
+
+
+	public TransSummarizer(int maxExcerptLength) {
+		mMaxExcerptLength = maxExcerptLength;
+	}
+
+
+	public static TransSummary summarize(File file, int maxExcerptLength) throws SAXException, IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return summarize(is, maxExcerptLength);
+		} finally {
+			is.close();
+		}
+	}
+
+
+	public static TransSummary summarize(InputStream is, int maxExcerptLength) throws SAXException, IOException {
+		TransSummarizer summarizer = new TransSummarizer(maxExcerptLength);
+		getParser().parse(new InputSource(is), summarizer);
+		return summarizer.getSummary();
+	}
+
+
+	public TransSummary getSummary() {
+		// Drop the trailing space (if any)
+		int length = mExcerpt.length();
+		if (length > 0 && mExcerpt.charAt(length - 1) == ' ') {
+			length--;
+		}
+		return new TransSummary(mWordCount, mTurnCount, mSpeechTime,
+				mExcerpt.substring(0, length),
+				Collections.unmodifiableMap(new HashMap<String, String>(mSpeakers)));
+	}
+
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) {
+		if (EL_TURN.equals(qName)) {
+			mInTurn = true;
+			mInWord = false;
+			mTurnHasText = false;
+			mTurnCount++;
+			mTurnDuration = TransParser.parseTime(attributes.getValue(ATTR_END_TIME)) - TransParser.parseTime(attributes.getValue(ATTR_START_TIME));
+		} else if (EL_SPEAKER.equals(qName)) {
+			String id = attributes.getValue(ATTR_ID);
+			if (id != null) {
+				String name = attributes.getValue(ATTR_NAME);
+				mSpeakers.put(id, name == null ? id : name);
+			}
+		} else if (mInTurn) {
+			// Elements inside turns (Sync, Event, Comment, ...) separate words
+			if (mInWord) {
+				mInWord = false;
+				appendSpace();
+			}
+		}
+	}
+
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+		if (EL_TURN.equals(qName)) {
+			mInTurn = false;
+			mInWord = false;
+			if (mTurnHasText && mTurnDuration > 0) {
+				mSpeechTime += mTurnDuration;
+			}
+			appendSpace();
+		}
+	}
+
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		if (! mInTurn) {
+			return;
+		}
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			char c = ch[i];
+			if (Character.isWhitespace(c)) {
+				if (mInWord) {
+					mInWord = false;
+					appendSpace();
+				}
+			} else {
+				if (! mInWord) {
+					mInWord = true;
+					mTurnHasText = true;
+					mWordCount++;
+				}
+				if (mExcerpt.length() < mMaxExcerptLength) {
+					mExcerpt.append(c);
+				}
+			}
+		}
+	}
+
+
+	// Appends a single space to the excerpt, i.e. all whitespace sequences are normalized.
+	private void appendSpace() {
+		int length = mExcerpt.length();
+		if (length > 0 && length < mMaxExcerptLength && mExcerpt.charAt(length - 1) != ' ') {
+			mExcerpt.append(' ');
+		}
+	}
+
+
+	private static SAXParser getParser() throws SAXException {
+		try {
+			return SAXParserFactory.newInstance().newSAXParser();
+		} catch (ParserConfigurationException e) {
+			throw new SAXException(e);
+		}
+	}
+}
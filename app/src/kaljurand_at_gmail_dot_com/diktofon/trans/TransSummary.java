@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.trans;
+
+import java.util.Map;
+
+/**
+ * <p>Compact summary of a transcription, i.e. everything that the recording list
+ * needs to know about the transcription without keeping the transcription itself.</p>
+ *
+ * @author Kaarel Kaljurand
+ */
+public class TransSummary {
+
+	private final int mWordCount;
+	private final int mTurnCount;
+	private final long mSpeechTime;
+	private final String mExcerpt;
+	private final Map<String, String> mSpeakers;
+
+	TransSummary(int wordCount, int turnCount, long speechTime, String excerpt, Map<String, String> speakers) {
+		mWordCount = wordCount;
+		mTurnCount = turnCount;
+		mSpeechTime = speechTime;
+		mExcerpt = excerpt;
+		mSpeakers = speakers;
+	}
+
+
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+
+	public int getSpeakerCount() {
+		return mSpeakers.size();
+	}
+
+
+	public int getTurnCount() {
+		return mTurnCount;
+	}
+
+
+	/**
+	 * @return total duration (in milliseconds) of the turns that contain some text
+	 */
+	public long getSpeechTime() {
+		return mSpeechTime;
+	}
+
+
+	/**
+	 * @return beginning of the plain text of the transcription (with normalized whitespace)
+	 */
+	public String getExcerpt() {
+		return mExcerpt;
+	}
+
+
+	/**
+	 * @return unmodifiable map from the speaker IDs to the speaker names
+	 */
+	public Map<String, String> getSpeakers() {
+		return mSpeakers;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Writes synthetic (silent) audio files that have valid headers, for
+ * benchmarking the duration probes.</p>
+ */
+public class AudioFixtures {
+
+	private AudioFixtures() {}
+
+
+	/**
+	 * <p>16-bit mono RIFF/WAVE, i.e. what RawRecorder writes.</p>
+	 */
+	public static File writeWav(File file, int sampleRate, int seconds) throws IOException {
+		int dataLength = sampleRate * 2 * seconds;
+		OutputStream out = open(file);
+		try {
+			out.write(ascii("RIFF"));
+			out.write(le32(36 + dataLength));
+			out.write(ascii("WAVEfmt "));
+			out.write(le32(16));
+			out.write(le16(1));
+			out.write(le16(1));
+			out.write(le32(sampleRate));
+			out.write(le32(sampleRate * 2));
+			out.write(le16(2));
+			out.write(le16(16));
+			out.write(ascii("data"));
+			out.write(le32(dataLength));
+			writeZeros(out, dataLength);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	/**
+	 * <p>FLAC with only the STREAMINFO block (the probe does not look further).</p>
+	 */
+	public static File writeFlac(File file, int sampleRate, int seconds) throws IOException {
+		long samples = (long) sampleRate * seconds;
+		byte[] info = new byte[34];
+		info[10] = (byte) (sampleRate >> 12);
+		info[11] = (byte) (sampleRate >> 4);
+		// Mono, 16 bits per sample (the bits per sample field is split between the bytes)
+		info[12] = (byte) ((sampleRate & 0x0F) << 4);
+		info[13] = (byte) ((15 << 4) | ((samples >> 32) & 0x0F));
+		info[14] = (byte) (samples >> 24);
+		info[15] = (byte) (samples >> 16);
+		info[16] = (byte) (samples >> 8);
+		info[17] = (byte) samples;
+		OutputStream out = open(file);
+		try {
+			out.write(ascii("fLaC"));
+			out.write(new byte[] { (byte) 0x80, 0, 0, 34 });
+			out.write(info);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	/**
+	 * <p>CBR MPEG-1 Layer III, 128 kbps, 44.1 kHz, without a Xing header,
+	 * i.e. the probe has to fall back to scanning the frame headers.</p>
+	 */
+	public static File writeMp3(File file, int seconds) throws IOException {
+		int frameLength = 144 * 128000 / 44100;
+		byte[] frame = new byte[frameLength];
+		frame[0] = (byte) 0xFF;
+		frame[1] = (byte) 0xFB;
+		frame[2] = (byte) 0x90;
+		frame[3] = (byte) 0x64;
+		int frames = seconds * 44100 / 1152;
+		OutputStream out = open(file);
+		try {
+			for (int i = 0; i < frames; i++) {
+				out.write(frame);
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	/**
+	 * <p>Ogg Vorbis with an identification header page and a number of
+	 * data pages, the last of which carries the final granule position.</p>
+	 */
+	public static File writeOgg(File file, int sampleRate, int seconds) throws IOException {
+		byte[] id = new byte[30];
+		System.arraycopy(ascii("\u0001vorbis"), 0, id, 0, 7);
+		id[11] = 1;
+		System.arraycopy(le32(sampleRate), 0, id, 12, 4);
+		OutputStream out = open(file);
+		try {
+			out.write(oggPage(0, id));
+			byte[] data = new byte[255];
+			for (int i = 1; i <= seconds; i++) {
+				out.write(oggPage((long) i * sampleRate, data));
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	/**
+	 * <p>AMR-NB 12.2 kbps, i.e. 50 frames of 32 bytes per second.</p>
+	 */
+	public static File writeAmr(File file, int seconds) throws IOException {
+		byte[] frame = new byte[32];
+		frame[0] = (byte) ((7 << 3) | 4);
+		OutputStream out = open(file);
+		try {
+			out.write(ascii("#!AMR\n"));
+			for (int i = 0; i < seconds * 50; i++) {
+				out.write(frame);
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	private static byte[] oggPage(long granule, byte[] data) {
+		byte[] page = new byte[27 + 1 + data.length];
+		System.arraycopy(ascii("OggS"), 0, page, 0, 4);
+		page[5] = 2;
+		for (int i = 0; i < 8; i++) {
+			page[6 + i] = (byte) (granule >> (8 * i));
+		}
+		page[14] = 7;
+		page[26] = 1;
+		page[27] = (byte) data.length;
+		System.arraycopy(data, 0, page, 28, data.length);
+		return page;
+	}
+
+
+	private static OutputStream open(File file) throws IOException {
+		return new BufferedOutputStream(new FileOutputStream(file));
+	}
+
+
+	private static void writeZeros(OutputStream out, int length) throws IOException {
+		byte[] zeros = new byte[8192];
+		while (length > 0) {
+			int n = Math.min(length, zeros.length);
+			out.write(zeros, 0, n);
+			length -= n;
+		}
+	}
+
+
+	private static byte[] ascii(String str) {
+		byte[] bytes = new byte[str.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) str.charAt(i);
+		}
+		return bytes;
+	}
+
+
+	private static byte[] le16(int value) {
+		return new byte[] { (byte) value, (byte) (value >> 8) };
+	}
+
+
+	private static byte[] le32(int value) {
+		return new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24) };
+	}
+}
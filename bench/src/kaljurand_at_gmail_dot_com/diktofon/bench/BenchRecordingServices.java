@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import kaljurand_at_gmail_dot_com.diktofon.RecordingServices;
+import kaljurand_at_gmail_dot_com.diktofon.audio.DurationProbeEngine;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.SidecarFiles;
+
+/**
+ * <p>Services of the recordings outside of the app, i.e. of a collection that has been generated by
+ * {@link CorpusGenerator}. The durations are probed from the headers (there is no MediaPlayer to
+ * fall back to), the match counts are looked up from the given map (as if the index had answered
+ * them), and the index and the catalog are not updated.</p>
+ */
+public class BenchRecordingServices implements RecordingServices {
+
+	private final File mBaseDir;
+	private final Map<String, Integer> mIndexedCounts;
+	private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd (EEE) HH:mm");
+
+	public BenchRecordingServices(File baseDir) {
+		this(baseDir, new HashMap<String, Integer>());
+	}
+
+	/**
+	 * @param indexedCounts map of recording ID -> match count of any query
+	 */
+	public BenchRecordingServices(File baseDir, Map<String, Integer> indexedCounts) {
+		mBaseDir = baseDir;
+		mIndexedCounts = indexedCounts;
+	}
+
+	public File getBaseDir() {
+		return mBaseDir;
+	}
+
+	public String guessMime(File audioFile) {
+		return audioFile.getName().endsWith(".wav") ? "audio/wav" : "audio/mpeg";
+	}
+
+	public int getDuration(File audioFile) {
+		return Math.max(0, DurationProbeEngine.getDefault().getDuration(audioFile));
+	}
+
+	public long getTimestamp() {
+		return System.nanoTime() / 1000000;
+	}
+
+	public CharSequence formatTimestamp(long timestamp) {
+		return mDateFormat.format(new Date(timestamp));
+	}
+
+	public String formatMillis(long millis) {
+		return millis / 60000 + ":" + millis / 1000 % 60;
+	}
+
+	public String formatSize(long size) {
+		return size / 1024 + "kB";
+	}
+
+	public String getPlainText(File transFile) throws IOException {
+		return SidecarFiles.load(transFile);
+	}
+
+	public void removeTranscription(File transFile) {
+	}
+
+	public int getIndexedMatchCount(String query, String id) {
+		Integer count = mIndexedCounts.get(id);
+		return (count == null) ? 0 : count;
+	}
+
+	public void index(String id, File transFile) {
+	}
+
+	public void removeFromIndex(String id) {
+	}
+
+	public void putCatalogEntry(CatalogEntry entry) {
+	}
+
+	public void removeCatalogEntry(String id) {
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogFile;
+
+/**
+ * <p>Time to load and to save the recording catalog (see <code>RecordingCatalog</code>),
+ * i.e. the work that replaces probing the audio files and parsing the sidecar files of the
+ * recordings at startup. An entry has two speakers, an excerpt of 30 words and three tags.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CatalogBenchmark {
+
+	@Param({ "100", "10000" })
+	public int recordings;
+
+	private File mDir;
+	private File mFile;
+	private File mOutFile;
+	private List<CatalogEntry> mEntries;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mDir = File.createTempFile("diktofon-bench", "");
+		mDir.delete();
+		mDir.mkdirs();
+		mFile = new File(mDir, "catalog");
+		mOutFile = new File(mDir, "catalog.out");
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		mEntries = new ArrayList<CatalogEntry>();
+		for (int i = 0; i < recordings; i++) {
+			Map<String, String> speakers = new HashMap<String, String>();
+			speakers.put("S1", "Speaker 1");
+			speakers.put("S2", "Speaker 2");
+			long timestamp = now - random.nextInt(1000000000);
+			mEntries.add(new CatalogEntry(
+					now + i + ".wav",
+					random.nextInt(10 * 1024 * 1024),
+					timestamp,
+					timestamp + 60000,
+					timestamp + 1000,
+					0,
+					random.nextInt(600000),
+					"audio/wav",
+					random.nextInt(2000),
+					speakers.size(),
+					speakers,
+					random.nextInt(50),
+					random.nextInt(600000),
+					TransFixtures.makeText(30, i),
+					null,
+					"koosolek eelarve Tartu",
+					"SUCCESS"));
+		}
+		CatalogFile.write(mFile, mEntries);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mFile.delete();
+		mOutFile.delete();
+		mDir.delete();
+	}
+
+	@Benchmark
+	public Map<String, CatalogEntry> load() throws IOException {
+		return CatalogFile.read(mFile);
+	}
+
+	@Benchmark
+	public File save() throws IOException {
+		CatalogFile.write(mOutFile, mEntries);
+		return mOutFile;
+	}
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import kaljurand_at_gmail_dot_com.diktofon.audio.WavHeader;
+
+/**
+ * <p>Generates a synthetic collection of recordings in the layout of the Diktofon
+ * base directory (see <code>Dirs</code> and <code>Recording</code>):</p>
+ *
+ * <pre>
+ * recordings/ID          16-bit mono RIFF/WAVE
+ * trans/ID.xml           transcription in the Transcriber XML format
+ * tags/ID.txt            space-separated tags
+ * tokens/ID.txt          transcription server token
+ * </pre>
+ *
+ * <p>The audio data is silence which is not written but left as a hole in a sparse file,
+ * i.e. a collection of 100k one-minute recordings takes little disk space and little time
+ * to generate, while the file sizes and the headers are the real ones.
+ * The tags are drawn from a Zipf distribution, i.e. a few tags are very frequent and most
+ * tags are rare. The modification times are spread over the given number of days.
+ * The output is reproducible, given the seed.</p>
+ *
+ * <p>Usage:</p>
+ *
+ * <pre>
+ * ant corpus -Dcorpus.args="/tmp/diktofon 10000 -seconds 60 -turns 20"
+ * </pre>
+ */
+public class CorpusGenerator {
+
+	private static final long DAY = 24L * 60 * 60 * 1000;
+
+	private int mSampleRate = 16000;
+	private int mMinSeconds = 10;
+	private int mMaxSeconds = 300;
+	private int mMinTurns = 1;
+	private int mMaxTurns = 40;
+	private int mWordsPerTurn = 30;
+	private int mSpeakers = 3;
+	private int mVocabularySize = 5000;
+	private double mTransRatio = 0.8;
+	private double mTagsRatio = 0.5;
+	private int mTagVocabularySize = 300;
+	private int mMaxTags = 5;
+	private double mTagExponent = 1.0;
+	private int mDays = 3 * 365;
+	private long mNow = System.currentTimeMillis();
+	private long mSeed = 42;
+
+
+	public CorpusGenerator setSampleRate(int sampleRate) {
+		mSampleRate = sampleRate;
+		return this;
+	}
+
+
+	/**
+	 * <p>The length of each recording is drawn uniformly from the given range.</p>
+	 */
+	public CorpusGenerator setSeconds(int minSeconds, int maxSeconds) {
+		mMinSeconds = minSeconds;
+		mMaxSeconds = maxSeconds;
+		return this;
+	}
+
+
+	/**
+	 * <p>The number of turns of each transcription is drawn uniformly from the given range.</p>
+	 */
+	public CorpusGenerator setTurns(int minTurns, int maxTurns) {
+		mMinTurns = minTurns;
+		mMaxTurns = maxTurns;
+		return this;
+	}
+
+
+	public CorpusGenerator setWordsPerTurn(int wordsPerTurn) {
+		mWordsPerTurn = wordsPerTurn;
+		return this;
+	}
+
+
+	public CorpusGenerator setSpeakers(int speakers) {
+		mSpeakers = speakers;
+		return this;
+	}
+
+
+	public CorpusGenerator setVocabularySize(int vocabularySize) {
+		mVocabularySize = vocabularySize;
+		return this;
+	}
+
+
+	/**
+	 * @param transRatio fraction of the recordings that have a transcription (and a token)
+	 */
+	public CorpusGenerator setTransRatio(double transRatio) {
+		mTransRatio = transRatio;
+		return this;
+	}
+
+
+	/**
+	 * @param tagsRatio fraction of the recordings that have tags
+	 */
+	public CorpusGenerator setTagsRatio(double tagsRatio) {
+		mTagsRatio = tagsRatio;
+		return this;
+	}
+
+
+	public CorpusGenerator setTagVocabularySize(int tagVocabularySize) {
+		mTagVocabularySize = tagVocabularySize;
+		return this;
+	}
+
+
+	public CorpusGenerator setMaxTags(int maxTags) {
+		mMaxTags = maxTags;
+		return this;
+	}
+
+
+	/**
+	 * @param exponent exponent of the Zipf distribution of the tags,
+	 * larger values make the tail shorter
+	 */
+	public CorpusGenerator setTagExponent(double exponent) {
+		mTagExponent = exponent;
+		return this;
+	}
+
+
+	/**
+	 * <p>The modification times of the recordings are spread uniformly over
+	 * the given number of days before the given time.</p>
+	 */
+	public CorpusGenerator setTime(long now, int days) {
+		mNow = now;
+		mDays = days;
+		return this;
+	}
+
+
+	public CorpusGenerator setSeed(long seed) {
+		mSeed = seed;
+		return this;
+	}
+
+
+	/**
+	 * <p>Generates the given number of recordings into the given base directory.
+	 * Existing files with the same names are overwritten.</p>
+	 *
+	 * @return IDs (i.e. audio file names) of the generated recordings
+	 */
+	public String[] generate(File baseDir, int count) throws IOException {
+		File recordingsDir = mkdirs(new File(baseDir, "recordings"));
+		File transDir = mkdirs(new File(baseDir, "trans"));
+		File tagsDir = mkdirs(new File(baseDir, "tags"));
+		File tokensDir = mkdirs(new File(baseDir, "tokens"));
+
+		Random random = new Random(mSeed);
+		String[] words = TransFixtures.makeVocabulary(mVocabularySize, mSeed);
+		String[] tags = TransFixtures.makeVocabulary(mTagVocabularySize, mSeed + 1);
+		double[] tagWeights = makeZipfCumulativeWeights(tags.length, mTagExponent);
+
+		String[] ids = new String[count];
+		for (int i = 0; i < count; i++) {
+			String id = String.format("rec-%06d.wav", i);
+			ids[i] = id;
+			long timestamp = mNow - (long) (random.nextDouble() * mDays * DAY);
+
+			int seconds = between(random, mMinSeconds, mMaxSeconds);
+			File audioFile = writeSilentWav(new File(recordingsDir, id), mSampleRate, seconds);
+
+			if (random.nextDouble() < mTransRatio) {
+				File transFile = TransFixtures.writeTrans(new File(transDir, id + ".xml"),
+						between(random, mMinTurns, mMaxTurns), mWordsPerTurn, mSpeakers, words, random.nextLong());
+				transFile.setLastModified(timestamp);
+				File tokenFile = write(new File(tokensDir, id + ".txt"), Long.toHexString(random.nextLong()));
+				tokenFile.setLastModified(timestamp);
+			}
+
+			if (random.nextDouble() < mTagsRatio) {
+				int tagCount = between(random, 1, mMaxTags);
+				Set<String> recTags = new LinkedHashSet<String>();
+				for (int j = 0; j < tagCount; j++) {
+					recTags.add(tags[sample(random, tagWeights)]);
+				}
+				StringBuilder sb = new StringBuilder();
+				for (String tag : recTags) {
+					if (sb.length() > 0) {
+						sb.append(' ');
+					}
+					sb.append(tag);
+				}
+				File tagsFile = write(new File(tagsDir, id + ".txt"), sb.toString());
+				tagsFile.setLastModified(timestamp);
+			}
+
+			audioFile.setLastModified(timestamp);
+		}
+		return ids;
+	}
+
+
+	/**
+	 * <p>Writes the header of a 16-bit mono RIFF/WAVE file and extends the file
+	 * to its full length without writing the (silent) audio data.</p>
+	 */
+	public static File writeSilentWav(File file, int sampleRate, int seconds) throws IOException {
+		int dataSize = sampleRate * 2 * seconds;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.write(WavHeader.create(sampleRate, 1, 16, dataSize));
+			raf.setLength(WavHeader.SIZE + dataSize);
+		} finally {
+			raf.close();
+		}
+		return file;
+	}
+
+
+	/**
+	 * @return cumulative (unnormalized) weights of the ranks 1..n, the weight
+	 * of rank r being 1/r^exponent
+	 */
+	static double[] makeZipfCumulativeWeights(int n, double exponent) {
+		double[] weights = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			weights[i] = sum;
+		}
+		return weights;
+	}
+
+
+	/**
+	 * @return index drawn from the distribution given by the cumulative weights
+	 */
+	static int sample(Random random, double[] cumulativeWeights) {
+		double value = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+		int index = Arrays.binarySearch(cumulativeWeights, value);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return Math.min(index, cumulativeWeights.length - 1);
+	}
+
+
+	private static int between(Random random, int min, int max) {
+		return min + random.nextInt(max - min + 1);
+	}
+
+
+	private static File mkdirs(File dir) throws IOException {
+		if (! dir.isDirectory() && ! dir.mkdirs()) {
+			throw new IOException("Cannot create directory: " + dir);
+		}
+		return dir;
+	}
+
+
+	private static File write(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	/**
+	 * <p>Command line interface, the arguments are the base directory, the number of
+	 * recordings, and optionally any of:</p>
+	 *
+	 * <pre>
+	 * -seconds MIN-MAX     length of a recording (default 10-300)
+	 * -turns MIN-MAX       number of turns of a transcription (default 1-40)
+	 * -words N             number of words per turn (default 30)
+	 * -speakers N          number of speakers of a transcription (default 3)
+	 * -vocabulary N        number of distinct words (default 5000)
+	 * -trans RATIO         fraction of the recordings with a transcription (default 0.8)
+	 * -tags RATIO          fraction of the recordings with tags (default 0.5)
+	 * -tagVocabulary N     number of distinct tags (default 300)
+	 * -maxTags N           maximum number of tags of a recording (default 5)
+	 * -days N              time span of the recordings (default 1095)
+	 * -seed N              random seed (default 42)
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length % 2 != 0) {
+			usage();
+			return;
+		}
+		CorpusGenerator generator = new CorpusGenerator();
+		try {
+			for (int i = 2; i < args.length; i += 2) {
+				String name = args[i];
+				String value = args[i + 1];
+				if ("-seconds".equals(name)) {
+					int[] range = parseRange(value);
+					generator.setSeconds(range[0], range[1]);
+				} else if ("-turns".equals(name)) {
+					int[] range = parseRange(value);
+					generator.setTurns(range[0], range[1]);
+				} else if ("-words".equals(name)) {
+					generator.setWordsPerTurn(Integer.parseInt(value));
+				} else if ("-speakers".equals(name)) {
+					generator.setSpeakers(Integer.parseInt(value));
+				} else if ("-vocabulary".equals(name)) {
+					generator.setVocabularySize(Integer.parseInt(value));
+				} else if ("-trans".equals(name)) {
+					generator.setTransRatio(Double.parseDouble(value));
+				} else if ("-tags".equals(name)) {
+					generator.setTagsRatio(Double.parseDouble(value));
+				} else if ("-tagVocabulary".equals(name)) {
+					generator.setTagVocabularySize(Integer.parseInt(value));
+				} else if ("-maxTags".equals(name)) {
+					generator.setMaxTags(Integer.parseInt(value));
+				} else if ("-days".equals(name)) {
+					generator.setTime(System.currentTimeMillis(), Integer.parseInt(value));
+				} else if ("-seed".equals(name)) {
+					generator.setSeed(Long.parseLong(value));
+				} else {
+					usage();
+					return;
+				}
+			}
+			int count = Integer.parseInt(args[1]);
+			long start = System.currentTimeMillis();
+			generator.generate(new File(args[0]), count);
+			System.out.println("Generated " + count + " recordings into " + args[0] +
+					" in " + (System.currentTimeMillis() - start) + " ms");
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid number: " + e.getMessage());
+			usage();
+		}
+	}
+
+
+	// "N" or "MIN-MAX"
+	private static int[] parseRange(String str) {
+		int dash = str.indexOf('-');
+		if (dash == -1) {
+			int value = Integer.parseInt(str);
+			return new int[] { value, value };
+		}
+		return new int[] { Integer.parseInt(str.substring(0, dash)), Integer.parseInt(str.substring(dash + 1)) };
+	}
+
+
+	private static void usage() {
+		System.err.println("Usage: CorpusGenerator DIR COUNT [-seconds MIN-MAX] [-turns MIN-MAX] [-words N] [-speakers N]" +
+				" [-vocabulary N] [-trans RATIO] [-tags RATIO] [-tagVocabulary N] [-maxTags N] [-days N] [-seed N]");
+		System.exit(1);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.audio.DurationProbeEngine;
+
+/**
+ * <p>Time to determine the duration of a single audio file using the header probes.
+ * (The MediaPlayer fallback that these probes replace cannot be run on the JVM,
+ * on a device it takes tens of milliseconds per file.)</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DurationProbeBenchmark {
+
+	@Param({ "wav", "flac", "mp3", "ogg", "amr" })
+	public String format;
+
+	// Length of the audio in seconds
+	@Param({ "60", "3600" })
+	public int seconds;
+
+	private File mFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mFile = File.createTempFile("diktofon-bench", "." + format);
+		if ("wav".equals(format)) {
+			AudioFixtures.writeWav(mFile, 16000, seconds);
+		} else if ("flac".equals(format)) {
+			AudioFixtures.writeFlac(mFile, 16000, seconds);
+		} else if ("mp3".equals(format)) {
+			AudioFixtures.writeMp3(mFile, seconds);
+		} else if ("ogg".equals(format)) {
+			AudioFixtures.writeOgg(mFile, 16000, seconds);
+		} else {
+			AudioFixtures.writeAmr(mFile, seconds);
+		}
+		// The synthetic MP3 frames are never padded, i.e. the CBR estimate is slightly off
+		int duration = DurationProbeEngine.getDefault().getDuration(mFile);
+		if (Math.abs(duration - seconds * 1000) > seconds * 10) {
+			throw new IllegalStateException("Wrong duration for " + format + ": " + duration);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mFile.delete();
+	}
+
+	@Benchmark
+	public int getDuration() {
+		return DurationProbeEngine.getDefault().getDuration(mFile);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.EstonianAnalyzer;
+import kaljurand_at_gmail_dot_com.diktofon.search.Query;
+import kaljurand_at_gmail_dot_com.diktofon.search.SearchIndex;
+
+/**
+ * <p>Latency of the index lookups: an exact word vs the same word within
+ * edit distance 1 and 2 (trigram candidates verified by the Levenshtein matcher).
+ * The index has 500 recordings over a vocabulary of 20000 pseudo-words. The queries
+ * are built once, i.e. the fuzzy query is matched against the trigrams of the vocabulary
+ * (which are built in the set-up) on every call.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FuzzySearchBenchmark {
+
+	private static final int RECORDINGS = 500;
+	private static final int VOCABULARY_SIZE = 20000;
+
+	@Param({ "0", "1", "2" })
+	public int distance;
+
+	private File mDir;
+	private SearchIndex mIndex;
+	private Query mQuery;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		mDir = File.createTempFile("diktofon-bench", "");
+		mDir.delete();
+		mDir.mkdirs();
+		String[] words = TransFixtures.makeVocabulary(VOCABULARY_SIZE, 42);
+		EstonianAnalyzer analyzer = new EstonianAnalyzer();
+		mIndex = new SearchIndex(new File(mDir, "index"), analyzer);
+		for (int i = 0; i < RECORDINGS; i++) {
+			File trans = TransFixtures.writeTrans(new File(mDir, i + ".xml"), 20, 60, 2, words, i);
+			mIndex.index(Integer.toString(i), trans.lastModified(), trans);
+		}
+		String word = words[0];
+		mQuery = Query.parse("\"" + word + (distance == 0 ? "" : "~" + distance) + "\"", analyzer);
+		// Builds the trigrams
+		mIndex.search(Query.parse("\"" + word + "~\"", analyzer));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(mDir);
+	}
+
+	@Benchmark
+	public Map<String, Integer> search() {
+		return mIndex.search(mQuery);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import kaljurand_at_gmail_dot_com.diktofon.sort.KeySort;
+
+/**
+ * <p>Time to re-sort the list of recordings (see <code>RecordingList.sort</code>) by
+ * the time stamps, whose range allows the keys to be packed together with the indices,
+ * and by relevance-like keys, which use the whole range of a long and are therefore
+ * merge sorted. The baseline is <code>Collections.sort</code> with a Comparator that
+ * reads the keys from the fields of the items, i.e. even without the file system calls
+ * that the comparators used to make (see {@link RecordingSortBenchmark} for the sort of
+ * the actual recordings by the keys and by the old comparators).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeySortBenchmark {
+
+	private static final long DAY = 24L * 60 * 60 * 1000;
+
+	@Param({ "1000", "50000" })
+	public int recordings;
+
+	private long[] mTimestamps;
+	private long[] mRelevanceKeys;
+	private List<Item> mItems;
+
+	private static class Item {
+		final long key;
+
+		Item(long key) {
+			this.key = key;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		mTimestamps = new long[recordings];
+		mRelevanceKeys = new long[recordings];
+		mItems = new ArrayList<Item>();
+		for (int i = 0; i < recordings; i++) {
+			mTimestamps[i] = now - (long) (random.nextDouble() * 3 * 365 * DAY);
+			mRelevanceKeys[i] = (1L << 62) | ((random.nextLong() >>> 32) << 30) | random.nextInt(100);
+			mItems.add(new Item(mTimestamps[i]));
+		}
+	}
+
+	@Benchmark
+	public int[] keySortTimestamps() {
+		return KeySort.sortDescending(mTimestamps);
+	}
+
+	@Benchmark
+	public int[] keySortRelevance() {
+		return KeySort.sortDescending(mRelevanceKeys);
+	}
+
+	@Benchmark
+	public List<Item> comparatorSort() {
+		List<Item> items = new ArrayList<Item>(mItems);
+		Collections.sort(items, new Comparator<Item>() {
+			public int compare(Item i1, Item i2) {
+				if (i1.key < i2.key) return 1;
+				if (i1.key > i2.key) return -1;
+				return 0;
+			}
+		});
+		return items;
+	}
+}
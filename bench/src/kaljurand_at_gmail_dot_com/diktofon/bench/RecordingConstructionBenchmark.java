@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.Recording;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogEntry;
+import kaljurand_at_gmail_dot_com.diktofon.catalog.CatalogFile;
+
+/**
+ * <p>Time to construct the recordings of a collection at startup (see
+ * <code>RecordingCatalog.getRecording</code>): from the disk, i.e. probing the duration of the
+ * audio file (<code>DurationProbeEngine</code>), summarizing the transcription
+ * (<code>TransSummarizer</code>) and reading the token and the tags (<code>SidecarFiles</code>),
+ * and from the catalog, i.e. reading the catalog file and checking that each entry is up to date.
+ * The collection is generated by {@link CorpusGenerator} (80% of the recordings are transcribed,
+ * 50% have tags), the Android-only calls go through {@link BenchRecordingServices}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecordingConstructionBenchmark {
+
+	@Param({ "100", "1000" })
+	public int recordings;
+
+	@Param({ "10" })
+	public int turns;
+
+	private File mBaseDir;
+	private File mRecordingsDir;
+	private File mCatalogFile;
+	private List<File> mAudioFiles;
+	private BenchRecordingServices mServices;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mBaseDir = File.createTempFile("diktofon-bench", "");
+		mBaseDir.delete();
+		mBaseDir.mkdirs();
+		String[] ids = new CorpusGenerator().setSeconds(10, 600).setTurns(1, turns).generate(mBaseDir, recordings);
+		mRecordingsDir = new File(mBaseDir, "recordings");
+		mCatalogFile = new File(mBaseDir, "catalog.dat");
+		mServices = new BenchRecordingServices(mBaseDir);
+		mAudioFiles = new ArrayList<File>();
+		List<CatalogEntry> entries = new ArrayList<CatalogEntry>();
+		for (String id : ids) {
+			File audioFile = new File(mRecordingsDir, id);
+			mAudioFiles.add(audioFile);
+			entries.add(new Recording(audioFile, mServices).toCatalogEntry());
+		}
+		CatalogFile.write(mCatalogFile, entries);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(mBaseDir);
+	}
+
+	@Benchmark
+	public List<Recording> fromDisk() {
+		List<Recording> recs = new ArrayList<Recording>(mAudioFiles.size());
+		for (File audioFile : mAudioFiles) {
+			Recording rec = new Recording(audioFile, mServices);
+			// The new entry is put into the catalog
+			rec.toCatalogEntry();
+			recs.add(rec);
+		}
+		return recs;
+	}
+
+	@Benchmark
+	public List<Recording> fromCatalog() throws IOException {
+		Map<String, CatalogEntry> entries = CatalogFile.read(mCatalogFile);
+		List<Recording> recs = new ArrayList<Recording>(mAudioFiles.size());
+		for (File audioFile : mAudioFiles) {
+			CatalogEntry entry = entries.get(audioFile.getName());
+			if (entry != null && isUpToDate(entry, audioFile)) {
+				recs.add(new Recording(audioFile, entry, mServices));
+			} else {
+				recs.add(new Recording(audioFile, mServices));
+			}
+		}
+		return recs;
+	}
+
+	// Same checks as RecordingCatalog.isUpToDate
+	private boolean isUpToDate(CatalogEntry entry, File audioFile) {
+		return entry.size == audioFile.length() &&
+				entry.timestamp == audioFile.lastModified() &&
+				entry.transTimestamp == new File(mBaseDir, "trans/" + entry.id + ".xml").lastModified() &&
+				entry.tagsTimestamp == new File(mBaseDir, "tags/" + entry.id + ".txt").lastModified() &&
+				entry.tokenTimestamp == new File(mBaseDir, "tokens/" + entry.id + ".txt").lastModified();
+	}
+}
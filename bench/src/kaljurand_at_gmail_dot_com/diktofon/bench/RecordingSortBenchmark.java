@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.Recording;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingList;
+
+/**
+ * <p>Time to sort the list of recordings by each of the sort keys (see <code>RecordingList.sort</code>
+ * and <code>Recording.*Key</code>) compared to <code>Collections.sort</code> with the comparators
+ * that the keys replaced. The comparators are copied from <code>Recording</code> as they were,
+ * i.e. the timestamp and the size comparators stat the audio file in every comparison, and the
+ * match comparator looks up the count of both recordings from the match cache (which is smaller
+ * than the larger collection) in every comparison. The match key sorts by counts that have been
+ * computed in advance, as the search does.</p>
+ *
+ * <p>The recordings are generated by {@link CorpusGenerator}, the list is shuffled
+ * before each sort (the shuffled copy is made in both benchmarks).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecordingSortBenchmark {
+
+	private static final String QUERY = "eelarve";
+
+	@Param({ "1000", "10000" })
+	public int recordings;
+
+	@Param({ "timestamp", "duration", "size", "match", "tag", "wordcount", "speakercount" })
+	public String key;
+
+	private File mBaseDir;
+	private List<Recording> mShuffled;
+	private RecordingList mList;
+	private Recording.SortKey mSortKey;
+	private Comparator<Recording> mComparator;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mBaseDir = File.createTempFile("diktofon-bench", "");
+		mBaseDir.delete();
+		mBaseDir.mkdirs();
+		String[] ids = new CorpusGenerator().setTurns(1, 2).generate(mBaseDir, recordings);
+		Random random = new Random(42);
+		Map<String, Integer> indexedCounts = new HashMap<String, Integer>();
+		for (String id : ids) {
+			indexedCounts.put(id, random.nextInt(20));
+		}
+		BenchRecordingServices services = new BenchRecordingServices(mBaseDir, indexedCounts);
+		File recordingsDir = new File(mBaseDir, "recordings");
+		mShuffled = new ArrayList<Recording>();
+		for (String id : ids) {
+			mShuffled.add(new Recording(new File(recordingsDir, id), services));
+		}
+		Collections.shuffle(mShuffled, random);
+		mList = new RecordingList();
+		for (Recording rec : mShuffled) {
+			mList.add(rec);
+		}
+
+		if ("timestamp".equals(key)) {
+			mSortKey = Recording.TIMESTAMP_KEY;
+			mComparator = new TimestampComparator();
+		} else if ("duration".equals(key)) {
+			mSortKey = Recording.DURATION_KEY;
+			mComparator = new DurationComparator();
+		} else if ("size".equals(key)) {
+			mSortKey = Recording.SIZE_KEY;
+			mComparator = new SizeComparator();
+		} else if ("match".equals(key)) {
+			Map<String, Integer> counts = new HashMap<String, Integer>();
+			for (Recording rec : mShuffled) {
+				counts.put(rec.getId(), rec.getMatchCount(QUERY));
+			}
+			mSortKey = new Recording.CountKey(counts);
+			mComparator = new MatchComparator(QUERY);
+		} else if ("tag".equals(key)) {
+			Set<String> tags = getFrequentTags(3);
+			mSortKey = new Recording.TagKey(tags);
+			mComparator = new TagComparator(tags);
+		} else if ("wordcount".equals(key)) {
+			mSortKey = Recording.WORDCOUNT_KEY;
+			mComparator = new WordcountComparator();
+		} else if ("speakercount".equals(key)) {
+			mSortKey = Recording.SPEAKERCOUNT_KEY;
+			mComparator = new SpeakercountComparator();
+		} else {
+			throw new IllegalArgumentException("Unknown key: " + key);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(mBaseDir);
+	}
+
+	@Benchmark
+	public RecordingList keySort() {
+		List<Recording> list = mList.list();
+		list.clear();
+		list.addAll(mShuffled);
+		mList.sort(mSortKey);
+		return mList;
+	}
+
+	@Benchmark
+	public List<Recording> comparatorSort() {
+		List<Recording> list = new ArrayList<Recording>(mShuffled);
+		Collections.sort(list, mComparator);
+		return list;
+	}
+
+	private Set<String> getFrequentTags(int count) {
+		final Map<String, Integer> tagToCount = new HashMap<String, Integer>();
+		for (Recording rec : mShuffled) {
+			for (String tag : rec.getTags()) {
+				Integer c = tagToCount.get(tag);
+				tagToCount.put(tag, (c == null) ? 1 : c + 1);
+			}
+		}
+		List<String> tags = new ArrayList<String>(tagToCount.keySet());
+		Collections.sort(tags, new Comparator<String>() {
+			public int compare(String t1, String t2) {
+				return tagToCount.get(t2) - tagToCount.get(t1);
+			}
+		});
+		return new HashSet<String>(tags.subList(0, Math.min(count, tags.size())));
+	}
+
+
+	// The comparators below are the ones that Recording had before the sort keys
+
+	public static class TimestampComparator implements Comparator<Recording> {
+		public int compare(Recording n1, Recording n2) {
+			return numberCompare(n1.getAudioFile().lastModified(), n2.getAudioFile().lastModified());
+		}
+	}
+
+
+	public static class DurationComparator implements Comparator<Recording> {
+		public int compare(Recording n1, Recording n2) {
+			return numberCompare(n1.getDuration(), n2.getDuration());
+		}
+	}
+
+
+	public static class SizeComparator implements Comparator<Recording> {
+		public int compare(Recording n1, Recording n2) {
+			return numberCompare(n1.getAudioFile().length(), n2.getAudioFile().length());
+		}
+	}
+
+
+	public static class MatchComparator implements Comparator<Recording> {
+		final String query;
+
+		public MatchComparator(String query) {
+			this.query = query;
+		}
+
+		public int compare(Recording n1, Recording n2) {
+			return numberCompare(n1.getMatchCount(query), n2.getMatchCount(query));
+		}
+
+		public String getQuery() {
+			return query;
+		}
+	}
+
+
+	public static class TagComparator implements Comparator<Recording> {
+		final Set<String> tags;
+
+		public TagComparator(Set<String> tags) {
+			this.tags = tags;
+		}
+
+		public int compare(Recording n1, Recording n2) {
+			return numberCompare(n1.getTagValue(tags), n2.getTagValue(tags));
+		}
+	}
+
+
+	public static class WordcountComparator implements Comparator<Recording> {
+		public int compare(Recording n1, Recording n2) {
+			return numberCompare(n1.getWordCount(), n2.getWordCount());
+		}
+	}
+
+
+	public static class SpeakercountComparator implements Comparator<Recording> {
+		public int compare(Recording n1, Recording n2) {
+			return numberCompare(n1.getSpeakerCount(), n2.getSpeakerCount());
+		}
+	}
+
+
+	private static int numberCompare(long n1, long n2) {
+		if (n1 < n2) return 1;
+		if (n1 > n2) return -1;
+		return 0;
+	}
+
+	private static int numberCompare(int n1, int n2) {
+		if (n1 < n2) return 1;
+		if (n1 > n2) return -1;
+		return 0;
+	}
+}
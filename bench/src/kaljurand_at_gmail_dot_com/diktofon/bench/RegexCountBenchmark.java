@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.LinearRegex;
+
+/**
+ * <p>Time to count the matches of a regular expression query in the text of a transcription,
+ * i.e. the work of <code>Utils.countRe</code> for a recording that the index cannot answer
+ * (<code>Utils</code> itself depends on Android). The linear-time matcher that the app uses is
+ * compared with <code>java.util.regex</code>. (On a text with long runs of "a", the query
+ * <code>(a|aa)*b</code> would make the latter backtrack exponentially, here it shows the cost
+ * of an alternation under a star.)</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegexCountBenchmark {
+
+	// Number of words in the transcription
+	@Param({ "1000", "100000" })
+	public int words;
+
+	@Param({ "eelarve", "ee\\w*ve", "\\bk\\w+s\\b", "(a|aa)*b" })
+	public String regex;
+
+	private String mText;
+	private LinearRegex mLinearRegex;
+	private Pattern mPattern;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		mText = TransFixtures.makeText(words, 42);
+		mLinearRegex = LinearRegex.compile(regex);
+		mPattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+	}
+
+	@Benchmark
+	public int linearRegex() {
+		LinearRegex.Matcher m = mLinearRegex.matcher(mText, Long.MAX_VALUE);
+		int count = 0;
+		while (m.find()) {
+			count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int javaUtilRegex() {
+		Matcher m = mPattern.matcher(mText);
+		int count = 0;
+		while (m.find()) {
+			count++;
+		}
+		return count;
+	}
+}
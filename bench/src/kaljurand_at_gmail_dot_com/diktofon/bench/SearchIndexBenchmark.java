@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.Bm25;
+import kaljurand_at_gmail_dot_com.diktofon.search.EstonianAnalyzer;
+import kaljurand_at_gmail_dot_com.diktofon.search.LinearRegex;
+import kaljurand_at_gmail_dot_com.diktofon.search.Query;
+import kaljurand_at_gmail_dot_com.diktofon.search.SearchIndex;
+import kaljurand_at_gmail_dot_com.diktofon.trans.TransParser;
+
+/**
+ * <p>Latency of the queries that answer <code>Recording.getMatchCount</code> for the
+ * indexed recordings (word, prefix and phrase queries, i.e. the match counts of all the
+ * recordings at once), of the BM25 scores of the matches, and of the similar recordings,
+ * over an index of the given number of recordings. A recording has 20 turns of 60 words,
+ * drawn from a vocabulary of 2000 pseudo-words. The baseline of the word query is
+ * <code>Utils.countRe</code> over the text of every recording, i.e. how the counts were
+ * computed before the index (and still are, for regular expressions).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchIndexBenchmark {
+
+	private static final int VOCABULARY_SIZE = 2000;
+
+	@Param({ "100", "1000" })
+	public int recordings;
+
+	private File mDir;
+	private SearchIndex mIndex;
+	private Query mWordQuery;
+	private Query mPrefixQuery;
+	private Query mPhraseQuery;
+	private Map<String, Integer> mWordCounts;
+	private List<String> mTexts;
+	private LinearRegex mWordRegex;
+	private final Bm25 mBm25 = new Bm25();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		mDir = File.createTempFile("diktofon-bench", "");
+		mDir.delete();
+		mDir.mkdirs();
+		String[] words = TransFixtures.makeVocabulary(VOCABULARY_SIZE, 42);
+		EstonianAnalyzer analyzer = new EstonianAnalyzer();
+		mIndex = new SearchIndex(new File(mDir, "index"), analyzer);
+		mTexts = new ArrayList<String>();
+		for (int i = 0; i < recordings; i++) {
+			File trans = TransFixtures.writeTrans(new File(mDir, i + ".xml"), 20, 60, 2, words, i);
+			mIndex.index(Integer.toString(i), trans.lastModified(), trans);
+			final StringBuilder text = new StringBuilder();
+			TransParser.parse(trans, new TransParser.Listener() {
+				public void onTurn(String speakerId, int startTime, int endTime, String turnText) {
+					text.append(turnText).append('\n');
+				}
+			});
+			mTexts.add(text.toString());
+		}
+		mWordQuery = Query.parse("\"" + words[0] + "\"", analyzer);
+		mPrefixQuery = Query.parse(words[1].substring(0, 3), analyzer);
+		// The first two words of the recording 0 (see TransFixtures.writeTrans),
+		// i.e. a phrase that occurs at least once
+		Random random = new Random(0);
+		random.nextInt(2);
+		String w1 = words[random.nextInt(words.length)];
+		String w2 = words[random.nextInt(words.length)];
+		mPhraseQuery = Query.parse("\"" + w1 + " " + w2 + "\"", analyzer);
+		mWordCounts = mIndex.search(mWordQuery);
+		mWordRegex = LinearRegex.compile("\\b" + words[0] + "\\b");
+		// Builds the buckets of the similar recordings
+		mIndex.getSimilar("0", 10);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(mDir);
+	}
+
+	@Benchmark
+	public Map<String, Integer> searchWord() {
+		return mIndex.search(mWordQuery);
+	}
+
+	@Benchmark
+	public Map<String, Integer> scanWord() {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < mTexts.size(); i++) {
+			LinearRegex.Matcher m = mWordRegex.matcher(mTexts.get(i), Long.MAX_VALUE);
+			int count = 0;
+			while (m.find()) {
+				count++;
+			}
+			if (count > 0) {
+				counts.put(Integer.toString(i), count);
+			}
+		}
+		return counts;
+	}
+
+	@Benchmark
+	public Map<String, Integer> searchPrefix() {
+		return mIndex.search(mPrefixQuery);
+	}
+
+	@Benchmark
+	public Map<String, Integer> searchPhrase() {
+		return mIndex.search(mPhraseQuery);
+	}
+
+	@Benchmark
+	public Map<String, Float> getScores() {
+		return mIndex.getScores(mWordQuery, mWordCounts, mBm25);
+	}
+
+	@Benchmark
+	public List<SearchIndex.Similar> getSimilar() {
+		return mIndex.getSimilar("0", 10);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
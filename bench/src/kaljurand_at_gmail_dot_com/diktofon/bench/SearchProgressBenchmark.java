@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.Recording;
+import kaljurand_at_gmail_dot_com.diktofon.RecordingList;
+
+/**
+ * <p>Work that the search does per publish of the counts, summed over a search whose counts
+ * arrive in the given number of batches. Before, the UI thread merged each batch and re-sorted
+ * the whole list (<code>resortPerBatch</code>). Now the background merges the batch and sorts
+ * a copy of the list (<code>sortInBackground</code>), and the UI thread only puts the list into
+ * the order of the copy, either by copying it (<code>applyOrder</code>) or, if recordings were added
+ * or removed during the search, by matching the IDs (<code>applyOrderAfterChange</code>).</p>
+ *
+ * <p>The recordings are generated by {@link CorpusGenerator}, the list is shuffled
+ * before each search.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchProgressBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int recordings;
+
+	@Param({ "10" })
+	public int batches;
+
+	private File mBaseDir;
+	private List<Recording> mShuffled;
+	private RecordingList mList;
+	private List<Map<String, Integer>> mBatches;
+	// Copies of the list sorted by the counts after each batch
+	private List<List<Recording>> mOrders;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mBaseDir = File.createTempFile("diktofon-bench", "");
+		mBaseDir.delete();
+		mBaseDir.mkdirs();
+		String[] ids = new CorpusGenerator().setTurns(1, 2).generate(mBaseDir, recordings);
+		BenchRecordingServices services = new BenchRecordingServices(mBaseDir);
+		File recordingsDir = new File(mBaseDir, "recordings");
+		mShuffled = new ArrayList<Recording>();
+		for (String id : ids) {
+			mShuffled.add(new Recording(new File(recordingsDir, id), services));
+		}
+		Random random = new Random(42);
+		Collections.shuffle(mShuffled, random);
+		mList = new RecordingList();
+		for (Recording rec : mShuffled) {
+			mList.add(rec);
+		}
+
+		// The chunks complete in a random order
+		List<Recording> completed = new ArrayList<Recording>(mShuffled);
+		Collections.shuffle(completed, random);
+		mBatches = new ArrayList<Map<String, Integer>>();
+		for (int i = 0; i < batches; i++) {
+			mBatches.add(new HashMap<String, Integer>());
+		}
+		for (int i = 0; i < completed.size(); i++) {
+			mBatches.get(i * batches / completed.size()).put(completed.get(i).getId(), random.nextInt(20));
+		}
+
+		mOrders = new ArrayList<List<Recording>>();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (Map<String, Integer> batch : mBatches) {
+			counts.putAll(batch);
+			mOrders.add(RecordingList.sort(mShuffled, new Recording.CountKey(counts)));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(mBaseDir);
+	}
+
+	@Benchmark
+	public RecordingList resortPerBatch() {
+		restore();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (Map<String, Integer> batch : mBatches) {
+			counts.putAll(batch);
+			mList.sort(new Recording.CountKey(counts));
+		}
+		return mList;
+	}
+
+	@Benchmark
+	public List<Recording> sortInBackground() {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		List<Recording> sorted = null;
+		for (Map<String, Integer> batch : mBatches) {
+			counts.putAll(batch);
+			sorted = RecordingList.sort(mShuffled, new Recording.CountKey(counts));
+		}
+		return sorted;
+	}
+
+	@Benchmark
+	public RecordingList applyOrder() {
+		restore();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < mBatches.size(); i++) {
+			counts.putAll(mBatches.get(i));
+			mList.setOrder(mOrders.get(i), mList.getModCount());
+		}
+		return mList;
+	}
+
+	@Benchmark
+	public RecordingList applyOrderAfterChange() {
+		restore();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < mBatches.size(); i++) {
+			counts.putAll(mBatches.get(i));
+			mList.setOrder(mOrders.get(i), mList.getModCount() - 1);
+		}
+		return mList;
+	}
+
+	private void restore() {
+		List<Recording> list = mList.list();
+		list.clear();
+		list.addAll(mShuffled);
+	}
+}
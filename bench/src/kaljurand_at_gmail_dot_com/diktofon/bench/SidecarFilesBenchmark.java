@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.catalog.SidecarFiles;
+
+/**
+ * <p>Time to load and to save a sidecar file of a recording (see <code>MyFileUtils.loadFile</code>
+ * and <code>saveFile</code>): a tags file, and a transcription of 20 or 200 turns of 60 words.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SidecarFilesBenchmark {
+
+	@Param({ "tags", "trans20", "trans200" })
+	public String file;
+
+	private File mDir;
+	private File mFile;
+	private File mOutFile;
+	private String mContent;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mDir = File.createTempFile("diktofon-bench", "");
+		mDir.delete();
+		mDir.mkdirs();
+		mFile = new File(mDir, file);
+		mOutFile = new File(mDir, file + ".out");
+		if ("tags".equals(file)) {
+			SidecarFiles.save(mFile, "koosolek eelarve Tartu");
+		} else {
+			TransFixtures.writeTrans(mFile, Integer.parseInt(file.substring("trans".length())), 60, 2, 42);
+		}
+		mContent = SidecarFiles.load(mFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mFile.delete();
+		mOutFile.delete();
+		mDir.delete();
+	}
+
+	@Benchmark
+	public String load() throws IOException {
+		return SidecarFiles.load(mFile);
+	}
+
+	@Benchmark
+	public File save() throws IOException {
+		SidecarFiles.save(mOutFile, mContent);
+		return mOutFile;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import kaljurand_at_gmail_dot_com.diktofon.search.Tags;
+
+/**
+ * <p>Time to parse the content of a tags file (see <code>Utils.parseTagString</code>),
+ * compared with normalizing the whitespace by a regular expression and splitting,
+ * which is what the parser used to do. The tags are separated by runs of spaces,
+ * tabs and newlines.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TagParserBenchmark {
+
+	private static final String[] SEPARATORS = { " ", "  ", "\t", "\n", " \n" };
+
+	// Number of tags in the file
+	@Param({ "3", "100" })
+	public int tags;
+
+	private String mText;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		String[] words = TransFixtures.makeVocabulary(tags, 42);
+		StringBuilder sb = new StringBuilder();
+		for (String word : words) {
+			sb.append(word);
+			sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+		}
+		mText = sb.toString();
+	}
+
+	@Benchmark
+	public List<String> parse() {
+		return Tags.parse(mText);
+	}
+
+	@Benchmark
+	public String[] normalizeAndSplit() {
+		return mText.replaceAll("\\s+", " ").split(" ");
+	}
+}
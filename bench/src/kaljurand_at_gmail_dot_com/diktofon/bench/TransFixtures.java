@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>Writes synthetic transcriptions in the Transcriber XML format, i.e. in the
+ * format that the transcription server returns.</p>
+ */
+public class TransFixtures {
+
+	private static final String[] WORDS = {
+		"ja", "et", "see", "on", "ei", "ka", "oli", "aga", "kui", "mis",
+		"koosolek", "eelarve", "projekt", "otsus", "arutelu", "ettepanek",
+		"järgmine", "nädal", "tähtaeg", "küsimus", "vastus", "kokkuvõte",
+		"Tallinn", "Tartu", "ülikool", "instituut", "kõnetuvastus", "salvestus"
+	};
+
+	private static final String[] CONSONANTS = { "k", "l", "m", "n", "p", "r", "s", "t", "v", "h", "j", "kk", "ll", "ss", "tt" };
+	private static final String[] VOWELS = { "a", "e", "i", "o", "u", "õ", "ä", "ö", "ü", "aa", "ee", "ii", "uu" };
+
+	private TransFixtures() {}
+
+
+	/**
+	 * <p>Writes a transcription with the given number of turns, each turn has
+	 * <code>wordsPerTurn</code> words and lasts <code>wordsPerTurn / 2</code> seconds.
+	 * The content is pseudo-random but reproducible (given the seed).</p>
+	 */
+	public static File writeTrans(File file, int turns, int wordsPerTurn, int speakers, long seed) throws IOException {
+		return writeTrans(file, turns, wordsPerTurn, speakers, WORDS, seed);
+	}
+
+
+	/**
+	 * <p>Writes a transcription whose words are drawn from the given vocabulary.</p>
+	 */
+	public static File writeTrans(File file, int turns, int wordsPerTurn, int speakers, String[] words, long seed) throws IOException {
+		Random random = new Random(seed);
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<Trans scribe=\"bench\" audio_filename=\"bench\" version=\"1\">\n");
+			out.write("<Speakers>\n");
+			for (int i = 1; i <= speakers; i++) {
+				out.write("<Speaker id=\"S" + i + "\" name=\"Speaker " + i + "\" check=\"no\" dialect=\"native\" accent=\"\" scope=\"local\"/>\n");
+			}
+			out.write("</Speakers>\n");
+			out.write("<Episode>\n");
+			double total = turns * wordsPerTurn / 2.0;
+			out.write("<Section type=\"report\" startTime=\"0\" endTime=\"" + total + "\">\n");
+			double time = 0;
+			for (int i = 0; i < turns; i++) {
+				double end = time + wordsPerTurn / 2.0;
+				out.write("<Turn speaker=\"S" + (1 + random.nextInt(speakers)) + "\" startTime=\"" + time + "\" endTime=\"" + end + "\">\n");
+				out.write("<Sync time=\"" + time + "\"/>\n");
+				for (int j = 0; j < wordsPerTurn; j++) {
+					if (j > 0) {
+						out.write(j % 12 == 0 ? '\n' : ' ');
+					}
+					out.write(words[random.nextInt(words.length)]);
+				}
+				out.write("\n</Turn>\n");
+				time = end;
+			}
+			out.write("</Section>\n");
+			out.write("</Episode>\n");
+			out.write("</Trans>\n");
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	/**
+	 * <p>Makes the plain text of a transcription, i.e. the given number of words
+	 * separated by spaces (and every 12th by a newline, as in {@link #writeTrans}).</p>
+	 */
+	public static String makeText(int length, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				sb.append(i % 12 == 0 ? '\n' : ' ');
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * <p>Makes a vocabulary of pseudo-words that consist of 2-5 Estonian-like syllables,
+	 * e.g. for the search index benchmarks which need a realistically large vocabulary.</p>
+	 */
+	public static String[] makeVocabulary(int size, long seed) {
+		Random random = new Random(seed);
+		Set<String> words = new HashSet<String>();
+		while (words.size() < size) {
+			StringBuilder sb = new StringBuilder();
+			int syllables = 2 + random.nextInt(4);
+			for (int i = 0; i < syllables; i++) {
+				sb.append(CONSONANTS[random.nextInt(CONSONANTS.length)]);
+				sb.append(VOWELS[random.nextInt(VOWELS.length)]);
+			}
+			words.add(sb.toString());
+		}
+		return words.toArray(new String[words.size()]);
+	}
+}
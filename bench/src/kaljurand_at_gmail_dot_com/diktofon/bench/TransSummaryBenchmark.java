@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import kaljurand_at_gmail_dot_com.diktofon.trans.TransSummarizer;
+
+/**
+ * <p>Time to extract the recording fields (word count, speaker count, excerpt) from
+ * a transcription: the streaming summarizer vs the old path, i.e. DOM, plain text,
+ * regular expression based word count and whitespace normalization of the excerpt.
+ * (The old path used the DOM of the net-speech-api Transcription, which is not
+ * available here, the baseline uses the JDK DOM in the same way.)</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransSummaryBenchmark {
+
+	private static final int MAX_EXCERPT_LENGTH = 500;
+
+	// Number of turns with 60 words each, 2000 turns is about 16 hours of speech
+	@Param({ "100", "2000" })
+	public int turns;
+
+	private File mFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mFile = TransFixtures.writeTrans(File.createTempFile("diktofon-bench", ".xml"), turns, 60, 4, 42);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mFile.delete();
+	}
+
+	@Benchmark
+	public int summarize() throws Exception {
+		return TransSummarizer.summarize(mFile, MAX_EXCERPT_LENGTH).getWordCount();
+	}
+
+	@Benchmark
+	public int domPlainTextRegex() throws Exception {
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(mFile);
+		int speakerCount = doc.getElementsByTagName("Speaker").getLength();
+		NodeList turnList = doc.getElementsByTagName("Turn");
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < turnList.getLength(); i++) {
+			sb.append(turnList.item(i).getTextContent()).append('\n');
+		}
+		String searchData = sb.toString();
+		String excerpt = searchData.substring(0, Math.min(MAX_EXCERPT_LENGTH, searchData.length()));
+		excerpt = excerpt.replaceAll("\\s+", " ").trim();
+		return countRe(searchData, "\\s+") + speakerCount + excerpt.length();
+	}
+
+	// Same as Utils.countRe
+	private static int countRe(String data, String re) {
+		Matcher m = Pattern.compile(re, Pattern.CASE_INSENSITIVE).matcher(data);
+		int count = 0;
+		while (m.find()) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kaljurand_at_gmail_dot_com.diktofon.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import kaljurand_at_gmail_dot_com.diktofon.audio.WavHeader;
+
+/**
+ * <p>Time to write the header of a new recording and to patch its sizes at the end, as
+ * <code>RawRecorder</code> does around the audio data. The header is written with a single
+ * call, compared with writing it field by field into the (unbuffered) RandomAccessFile,
+ * which is what the recorder used to do, i.e. a system call per field.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WavHeaderBenchmark {
+
+	private static final int RATE = 16000;
+	private static final short CHANNELS = 1;
+	private static final short RESOLUTION = 16;
+	// One minute of audio
+	private static final int DATA_SIZE = 60 * RATE * CHANNELS * RESOLUTION / 8;
+
+	private File mFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mFile = File.createTempFile("diktofon-bench", ".wav");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mFile.delete();
+	}
+
+	@Benchmark
+	public byte[] create() {
+		return WavHeader.create(RATE, CHANNELS, RESOLUTION, 0);
+	}
+
+	@Benchmark
+	public long writeHeader() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+		try {
+			raf.setLength(0);
+			raf.write(WavHeader.create(RATE, CHANNELS, RESOLUTION, 0));
+			WavHeader.writeSizes(raf, DATA_SIZE);
+			return raf.length();
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Benchmark
+	public long writeHeaderFieldByField() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+		try {
+			raf.setLength(0);
+			raf.writeBytes("RIFF");
+			raf.writeInt(0);
+			raf.writeBytes("WAVE");
+			raf.writeBytes("fmt ");
+			raf.writeInt(Integer.reverseBytes(16));
+			raf.writeShort(Short.reverseBytes((short) 1));
+			raf.writeShort(Short.reverseBytes(CHANNELS));
+			raf.writeInt(Integer.reverseBytes(RATE));
+			raf.writeInt(Integer.reverseBytes(RATE * (RESOLUTION / 8) * CHANNELS));
+			raf.writeShort(Short.reverseBytes((short) (CHANNELS * RESOLUTION / 8)));
+			raf.writeShort(Short.reverseBytes(RESOLUTION));
+			raf.writeBytes("data");
+			raf.writeInt(0);
+			raf.seek(4);
+			raf.writeInt(Integer.reverseBytes(36 + DATA_SIZE));
+			raf.seek(40);
+			raf.writeInt(Integer.reverseBytes(DATA_SIZE));
+			return raf.length();
+		} finally {
+			raf.close();
+		}
+	}
+}
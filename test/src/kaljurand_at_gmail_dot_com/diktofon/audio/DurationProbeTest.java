@@ -0,0 +1,252 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.audio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * <p>Durations of the fixtures in <code>res/audio</code> (see the README there),
+ * and of their truncated and corrupted copies.</p>
+ */
+public class DurationProbeTest {
+
+	private static final File AUDIO_DIR = new File(System.getProperty("test.res.dir", "res"), "audio");
+
+	private final DurationProbeEngine mEngine = DurationProbeEngine.getDefault();
+	private final List<File> mTempFiles = new ArrayList<File>();
+
+	@After
+	public void tearDown() {
+		for (File file : mTempFiles) {
+			file.delete();
+		}
+	}
+
+
+	@Test
+	public void testWav() throws IOException {
+		assertEquals(750, getDuration("silence.wav"));
+	}
+
+
+	@Test
+	public void testWavTruncatedData() throws IOException {
+		// The data chunk declares more bytes than there are, i.e. the recording is still being written
+		assertEquals(500, mEngine.getDuration(truncate("silence.wav", 70 + 8000)));
+	}
+
+
+	@Test
+	public void testWavTruncatedHeader() throws IOException {
+		assertEquals(-1, mEngine.getDuration(truncate("silence.wav", 30)));
+		// fmt-chunk is complete, the data chunk is missing
+		assertEquals(-1, mEngine.getDuration(truncate("silence.wav", 36)));
+	}
+
+
+	@Test
+	public void testWavCorruptHeader() throws IOException {
+		// Byte rate and block align are 0
+		byte[] bytes = read("silence.wav");
+		put(bytes, 28, 0, 0, 0, 0);
+		put(bytes, 32, 0, 0);
+		assertEquals(-1, mEngine.getDuration(write(bytes)));
+		// No fmt-chunk
+		bytes = read("silence.wav");
+		put(bytes, 12, 'j', 'u', 'n', 'k');
+		assertEquals(-1, mEngine.getDuration(write(bytes)));
+	}
+
+
+	@Test
+	public void testFlac() throws IOException {
+		assertEquals(1500, getDuration("silence.flac"));
+	}
+
+
+	@Test
+	public void testFlacTruncatedHeader() throws IOException {
+		assertEquals(-1, mEngine.getDuration(truncate("silence.flac", 41)));
+	}
+
+
+	@Test
+	public void testFlacCorruptHeader() throws IOException {
+		// The first metadata block is not STREAMINFO
+		byte[] bytes = read("silence.flac");
+		put(bytes, 4, 0x84);
+		assertEquals(-1, mEngine.getDuration(write(bytes)));
+		// Unknown number of samples
+		bytes = read("silence.flac");
+		put(bytes, 8 + 14, 0, 0, 0, 0);
+		assertEquals(-1, mEngine.getDuration(write(bytes)));
+	}
+
+
+	@Test
+	public void testMp3Cbr() throws IOException {
+		assertEquals(1042, getDuration("cbr.mp3"));
+	}
+
+
+	@Test
+	public void testMp3Vbr() throws IOException {
+		assertEquals(2612, getDuration("vbr.mp3"));
+	}
+
+
+	@Test
+	public void testMp3Truncated() throws IOException {
+		// Only the ID3v2 tag
+		assertEquals(-1, mEngine.getDuration(truncate("cbr.mp3", 110)));
+		// Half of the Xing frame
+		assertEquals(-1, mEngine.getDuration(truncate("vbr.mp3", 200)));
+	}
+
+
+	@Test
+	public void testMp3CorruptHeader() throws IOException {
+		// Bitrate index 15 is invalid, i.e. there is no frame header
+		byte[] bytes = read("vbr.mp3");
+		put(bytes, 2, 0xF0);
+		assertEquals(-1, mEngine.getDuration(write(bytes)));
+	}
+
+
+	@Test
+	public void testOggVorbis() throws IOException {
+		assertEquals(1500, getDuration("silence.ogg"));
+	}
+
+
+	@Test
+	public void testOggOpus() throws IOException {
+		assertEquals(1000, getDuration("silence.opus"));
+	}
+
+
+	@Test
+	public void testOggTruncatedHeader() throws IOException {
+		assertEquals(-1, mEngine.getDuration(truncate("silence.ogg", 27)));
+		// The identification header ends before the sample rate
+		assertEquals(-1, mEngine.getDuration(truncate("silence.ogg", 40)));
+	}
+
+
+	@Test
+	public void testOggCorruptHeader() throws IOException {
+		// Unknown codec
+		byte[] bytes = read("silence.ogg");
+		put(bytes, 29, 'x');
+		assertEquals(-1, mEngine.getDuration(write(bytes)));
+	}
+
+
+	@Test
+	public void testAmrNb() throws IOException {
+		assertEquals(1000, getDuration("silence.amr"));
+	}
+
+
+	@Test
+	public void testAmrWb() throws IOException {
+		assertEquals(500, getDuration("silence.awb"));
+	}
+
+
+	@Test
+	public void testAmrTruncated() throws IOException {
+		// The magic number is incomplete
+		assertEquals(-1, mEngine.getDuration(truncate("silence.amr", 5)));
+		// 10 complete frames and a part of the 11th
+		assertEquals(220, mEngine.getDuration(truncate("silence.amr", 6 + 10 * 32 + 5)));
+	}
+
+
+	@Test
+	public void testUnknown() throws IOException {
+		assertEquals(-1, mEngine.getDuration(new File(AUDIO_DIR, "README.txt")));
+		assertEquals(-1, mEngine.getDuration(write(new byte[0])));
+		assertEquals(-1, mEngine.getDuration(new File(AUDIO_DIR, "missing.wav")));
+	}
+
+
+	private int getDuration(String name) {
+		return mEngine.getDuration(new File(AUDIO_DIR, name));
+	}
+
+
+	private File truncate(String name, int length) throws IOException {
+		byte[] bytes = read(name);
+		byte[] prefix = new byte[length];
+		System.arraycopy(bytes, 0, prefix, 0, length);
+		return write(prefix);
+	}
+
+
+	private File write(byte[] bytes) throws IOException {
+		File file = File.createTempFile("diktofon", ".audio");
+		mTempFiles.add(file);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+
+	private static byte[] read(String name) throws IOException {
+		File file = new File(AUDIO_DIR, name);
+		byte[] bytes = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while (offset < bytes.length) {
+				int n = in.read(bytes, offset, bytes.length - offset);
+				if (n < 0) {
+					throw new IOException("Unexpected end of " + file);
+				}
+				offset += n;
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+
+	private static void put(byte[] bytes, int offset, int... values) {
+		for (int i = 0; i < values.length; i++) {
+			bytes[offset + i] = (byte) values[i];
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EstonianAnalyzerTest {
+
+	private final EstonianAnalyzer mAnalyzer = new EstonianAnalyzer();
+
+	@Test
+	public void testCaseForms() {
+		assertSameTerm("maja",
+				"maja", "majja", "majas", "majast", "majale", "majal", "majalt", "majaks",
+				"majani", "majana", "majata", "majaga");
+	}
+
+
+	@Test
+	public void testPluralForms() {
+		assertSameTerm("maja",
+				"majad", "majade", "maju", "majadesse", "majades", "majadest", "majadele",
+				"majadel", "majadelt", "majadeks", "majadeni", "majadena", "majadeta", "majadega");
+	}
+
+
+	@Test
+	public void testNounsInUs() {
+		assertSameTerm("otsus", "otsuse", "otsust", "otsusesse", "otsuses", "otsuste", "otsustega");
+	}
+
+
+	@Test
+	public void testDoubleConsonant() {
+		assertSameTerm("kass", "kassi", "kassid", "kassiga");
+		assertEquals("maj", mAnalyzer.normalize("majja"));
+	}
+
+
+	@Test
+	public void testCase() {
+		assertEquals(mAnalyzer.normalize("eelarve"), mAnalyzer.normalize("EELARVE"));
+		assertEquals(mAnalyzer.normalize("\u00f5un"), mAnalyzer.normalize("\u00d5UN"));
+	}
+
+
+	@Test
+	public void testComposition() {
+		// Vowel followed by a combining tilde or diaeresis
+		assertEquals(mAnalyzer.normalize("\u00f5un"), mAnalyzer.normalize("o\u0303un"));
+		assertEquals(mAnalyzer.normalize("s\u00e4\u00e4r"), mAnalyzer.normalize("sa\u0308a\u0308r"));
+		assertEquals(mAnalyzer.normalize("\u00f6\u00f6"), mAnalyzer.normalize("O\u0308o\u0308"));
+		assertEquals(mAnalyzer.normalize("\u00fcks"), mAnalyzer.normalize("u\u0308ks"));
+		// Only the Estonian letters are composed
+		assertEquals("e\u0303e", mAnalyzer.normalize("e\u0303e"));
+	}
+
+
+	@Test
+	public void testLettersAreNotFolded() {
+		assertFalse(mAnalyzer.normalize("saar").equals(mAnalyzer.normalize("s\u00e4\u00e4r")));
+		assertFalse(mAnalyzer.normalize("tore").equals(mAnalyzer.normalize("t\u00f5re")));
+	}
+
+
+	@Test
+	public void testMinStemLength() {
+		assertEquals("tee", mAnalyzer.normalize("tee"));
+		assertEquals("tee", mAnalyzer.normalize("teed"));
+		assertEquals("ta", mAnalyzer.normalize("ta"));
+		assertEquals("ema", mAnalyzer.normalize("ema"));
+		assertEquals("", mAnalyzer.normalize(""));
+	}
+
+
+	@Test
+	public void testDigits() {
+		assertEquals("2013", mAnalyzer.normalize("2013"));
+		assertEquals("2013st", mAnalyzer.normalize("2013st"));
+		assertEquals("ab12de", mAnalyzer.normalize("AB12de"));
+	}
+
+
+	@Test
+	public void testSplitsCompounds() {
+		assertTrue(mAnalyzer.splitsCompounds());
+	}
+
+
+	private void assertSameTerm(String lemma, String... forms) {
+		String expected = mAnalyzer.normalize(lemma);
+		for (String form : forms) {
+			assertEquals(form, expected, mAnalyzer.normalize(form));
+		}
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+/**
+ * <p>Compares the matches of {@link LinearRegex} to the matches of <code>java.util.regex</code>
+ * with the flags <code>CASE_INSENSITIVE | UNICODE_CASE</code>, on handpicked and on
+ * random expressions. The predefined classes of LinearRegex are Unicode-aware (as the ones
+ * of Android), so the texts that contain non-ASCII letters are compared with the
+ * <code>UNICODE_CHARACTER_CLASS</code> flag added.</p>
+ */
+public class LinearRegexTest {
+
+	// Same as PatternCache.MAX_STEPS, which the app uses for all the matching
+	private static final long MAX_STEPS = 20000000;
+
+	private static final int RANDOM_EXPRESSIONS = 20000;
+
+	private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+	private static final int UNICODE_FLAGS = FLAGS | Pattern.UNICODE_CHARACTER_CLASS;
+
+	private static final String ASCII_LITERALS = "abcA ";
+	private static final String ASCII_TEXT_CHARS = "abcAB \n1_";
+	private static final String LITERALS = "abcAä õ";
+	private static final String TEXT_CHARS = "abcAB \n1_äÄõ";
+
+	private static final String[][] CASES = {
+		{ "eelarve", "Riigi EELARVE ja eelarvet" },
+		{ "õun", "Õun, ÕUN ja õunad" },
+		{ "[äö]+", "ÄÖÄ äxö" },
+		{ "[^a-z ]+", "abc ÄÕ 123 def" },
+		{ "σ", "Σσς" },
+		{ "(a|ab)(c|bcd)(d*)", "abcd" },
+		{ "(a|aa)*b", "aaaaaaab aab" },
+		{ "a*?b", "aaab" },
+		{ "a{2,3}", "aaaaaaa" },
+		{ "a{2,}?", "aaaaa" },
+		{ "\\bkoos", "koos Koosolek ühiskoos" },
+		{ "koos\\B", "koos Koosolek" },
+		{ "^\\w+", "Tere maailm" },
+		{ "\\w+$", "Tere maailm" },
+		{ "\\s+", "a \t\n b" },
+		{ "\\d+|\\D", "a12b345" },
+		{ "x*", "axxb" },
+		{ "", "abc" },
+		{ "\\x41\\u00e4", "aÄ" },
+		{ "\\.\\*\\(", "a.*(b" },
+		{ "\\Aa|b\\z|c\\Z", "abc\nab\nc\n" },
+		{ ".+", "ab\ncd" },
+		{ "[a-c-]+", "a-b-x" },
+		{ "[]a]+", "]a]b" },
+	};
+
+	private static final String[] UNSUPPORTED = {
+		"(a)\\1",
+		"(?=a)",
+		"(?!a)",
+		"(?<=a)b",
+		"(?<!a)b",
+		"(?i)a",
+		"(?<name>a)",
+		"a++",
+		"a*+",
+		"[a[b]]",
+		"[a-z&&[^b]]",
+		"\\p{L}",
+		"\\P{Lu}",
+		"\\G",
+		"\\Qa\\E",
+	};
+
+	private static final String[] INVALID = {
+		"(",
+		")",
+		"(a",
+		"a)",
+		"*a",
+		"+",
+		"a{2,1}",
+		"[a-",
+		"[b-a]",
+		"[",
+		"\\",
+		"\\xg0",
+		"\\u12",
+	};
+
+
+	@Test
+	public void testCases() {
+		for (String[] c : CASES) {
+			assertSameMatches(c[0], c[1], UNICODE_FLAGS);
+		}
+	}
+
+
+	@Test
+	public void testRandomAscii() {
+		testRandom(new RandomRegex(new Random(7), ASCII_LITERALS, ASCII_TEXT_CHARS), FLAGS);
+	}
+
+
+	@Test
+	public void testRandomUnicode() {
+		testRandom(new RandomRegex(new Random(11), LITERALS, TEXT_CHARS), UNICODE_FLAGS);
+	}
+
+
+	@Test
+	public void testUnsupported() {
+		for (String regex : UNSUPPORTED) {
+			// Valid in java.util.regex
+			Pattern.compile(regex);
+			assertSyntaxError(regex);
+		}
+	}
+
+
+	@Test
+	public void testInvalid() {
+		for (String regex : INVALID) {
+			assertSyntaxError(regex);
+		}
+	}
+
+
+	@Test
+	public void testTooLarge() {
+		assertSyntaxError("a{100}{100}{100}");
+	}
+
+
+	@Test
+	public void testStepLimit() {
+		LinearRegex regex = LinearRegex.compile("(a|aa)*b");
+
+		// Linear time without a limit, java.util.regex would backtrack here
+		LinearRegex.Matcher m = regex.matcher(repeat('a', 200000), Long.MAX_VALUE);
+		assertFalse(m.find());
+		assertFalse(m.isAborted());
+
+		m = regex.matcher(repeat('a', 5000000), MAX_STEPS);
+		assertFalse(m.find());
+		assertTrue(m.isAborted());
+		// An aborted matcher does not continue
+		assertFalse(m.find());
+		assertTrue(m.isAborted());
+	}
+
+
+	@Test
+	public void testStepLimitAfterMatches() {
+		// The limit covers all the calls to find
+		LinearRegex.Matcher m = LinearRegex.compile("a").matcher(repeat('a', 1000), 100);
+		int count = 0;
+		while (m.find()) {
+			count++;
+		}
+		assertTrue(count > 0);
+		assertTrue(count < 1000);
+		assertTrue(m.isAborted());
+	}
+
+
+	private static void testRandom(RandomRegex generator, int flags) {
+		int tested = 0;
+		for (int i = 0; i < RANDOM_EXPRESSIONS; i++) {
+			String regex = generator.regex(0);
+			try {
+				Pattern.compile(regex);
+			} catch (PatternSyntaxException e) {
+				continue;
+			}
+			assertSameMatches(regex, generator.text(12), flags);
+			tested++;
+		}
+		assertTrue(tested > RANDOM_EXPRESSIONS / 2);
+	}
+
+
+	private static void assertSameMatches(String regex, String text, int flags) {
+		java.util.regex.Matcher expected = Pattern.compile(regex, flags).matcher(text);
+		LinearRegex.Matcher actual = LinearRegex.compile(regex).matcher(text, Long.MAX_VALUE);
+		String message = regex + " on \"" + text.replace("\n", "\\n") + "\"";
+		while (expected.find()) {
+			assertTrue(message, actual.find());
+			assertEquals(message + " (start)", expected.start(), actual.start());
+			assertEquals(message + " (end)", expected.end(), actual.end());
+		}
+		assertFalse(message, actual.find());
+		assertFalse(message, actual.isAborted());
+	}
+
+
+	private static void assertSyntaxError(String regex) {
+		try {
+			LinearRegex.compile(regex);
+			fail("Accepted: " + regex);
+		} catch (PatternSyntaxException e) {
+			assertEquals(regex, e.getPattern());
+		}
+	}
+
+
+	private static String repeat(char c, int count) {
+		StringBuilder sb = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * <p>Random expressions over a small alphabet, using all the supported constructs.
+	 * The nesting depth of the groups is limited, so that the expressions stay below
+	 * {@link LinearRegex#MAX_PROGRAM_SIZE}, and java.util.regex does not backtrack for too long
+	 * on the short texts.</p>
+	 */
+	private static class RandomRegex {
+
+		private static final int MAX_DEPTH = 2;
+		private static final String[] ASSERTIONS = { "\\b", "\\B", "^", "$" };
+		private static final String[] CLASSES = { "\\w", "\\W", "\\s", "\\S", "\\d", "\\D", "." };
+		private final Random mRandom;
+		private final String mLiterals;
+		private final String mTextChars;
+
+		RandomRegex(Random random, String literals, String textChars) {
+			mRandom = random;
+			mLiterals = literals;
+			mTextChars = textChars;
+		}
+
+		String regex(int depth) {
+			StringBuilder sb = new StringBuilder(sequence(depth));
+			while (mRandom.nextInt(3) == 0) {
+				sb.append('|').append(sequence(depth));
+			}
+			return sb.toString();
+		}
+
+		String text(int maxLength) {
+			StringBuilder sb = new StringBuilder();
+			int length = mRandom.nextInt(maxLength + 1);
+			for (int i = 0; i < length; i++) {
+				sb.append(mTextChars.charAt(mRandom.nextInt(mTextChars.length())));
+			}
+			return sb.toString();
+		}
+
+		private String sequence(int depth) {
+			StringBuilder sb = new StringBuilder();
+			int length = mRandom.nextInt(4);
+			for (int i = 0; i < length; i++) {
+				sb.append(repetition(depth));
+			}
+			return sb.toString();
+		}
+
+		private String repetition(int depth) {
+			if (mRandom.nextInt(10) == 0) {
+				return ASSERTIONS[mRandom.nextInt(ASSERTIONS.length)];
+			}
+			String atom = atom(depth);
+			switch (mRandom.nextInt(10)) {
+			case 0: return atom + "*";
+			case 1: return atom + "+";
+			case 2: return atom + "?";
+			case 3: return atom + "*?";
+			case 4: return atom + "+?";
+			case 5: return atom + "{" + mRandom.nextInt(3) + "," + (2 + mRandom.nextInt(2)) + "}";
+			case 6: return atom + "{2}";
+			default: return atom;
+			}
+		}
+
+		private String atom(int depth) {
+			switch (mRandom.nextInt(depth < MAX_DEPTH ? 10 : 8) + (depth < MAX_DEPTH ? 0 : 2)) {
+			case 0: return "(" + regex(depth + 1) + ")";
+			case 1: return "(?:" + regex(depth + 1) + ")";
+			case 2: return "[" + (mRandom.nextBoolean() ? "^" : "") + mLiterals.substring(0, 2) + (mRandom.nextBoolean() ? "b-c" : "") + "]";
+			case 3: return CLASSES[mRandom.nextInt(CLASSES.length)];
+			default: return String.valueOf(mLiterals.charAt(mRandom.nextInt(mLiterals.length())));
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MinHashTest {
+
+	private final Random mRandom = new Random(22);
+
+	@Test
+	public void testIdentical() {
+		List<String> terms = makeTerms("a", 0, 100);
+		List<String> shuffled = new ArrayList<String>(terms);
+		Collections.shuffle(shuffled, mRandom);
+		int[] signature = MinHash.getSignature(terms);
+		// The order and the duplicates of the terms do not matter
+		shuffled.addAll(terms.subList(0, 10));
+		assertArrayEquals(signature, MinHash.getSignature(shuffled));
+		assertEquals(1f, MinHash.getSimilarity(signature, MinHash.getSignature(shuffled)), 0f);
+	}
+
+
+	@Test
+	public void testEmpty() {
+		int[] signature = MinHash.getSignature(Collections.<String>emptyList());
+		assertEquals(MinHash.SIZE, signature.length);
+		for (int value : signature) {
+			assertEquals(Integer.MAX_VALUE, value);
+		}
+	}
+
+
+	@Test
+	public void testEstimate() {
+		// Sets of 100 terms with the given overlaps, i.e. the Jaccard similarities 0, 1/3, 0.6 and 1
+		int[] overlaps = { 0, 50, 75, 100 };
+		for (int overlap : overlaps) {
+			float expected = overlap / (200f - overlap);
+			float sum = 0;
+			int trials = 200;
+			for (int trial = 0; trial < trials; trial++) {
+				String prefix = "t" + trial + "-";
+				int[] signature1 = MinHash.getSignature(makeTerms(prefix, 0, 100));
+				int[] signature2 = MinHash.getSignature(makeTerms(prefix, 100 - overlap, 200 - overlap));
+				sum += MinHash.getSimilarity(signature1, signature2);
+			}
+			assertEquals("overlap " + overlap, expected, sum / trials, 0.02);
+		}
+	}
+
+
+	@Test
+	public void testBands() {
+		// Similar sets share a band (are LSH candidates), dissimilar ones rarely do
+		int similarCandidates = 0;
+		int dissimilarCandidates = 0;
+		int trials = 200;
+		for (int trial = 0; trial < trials; trial++) {
+			String prefix = "b" + trial + "-";
+			int[] signature = MinHash.getSignature(makeTerms(prefix, 0, 100));
+			// Jaccard similarity 0.6
+			if (shareBand(signature, MinHash.getSignature(makeTerms(prefix, 25, 125)))) {
+				similarCandidates++;
+			}
+			// Jaccard similarity 0.01
+			if (shareBand(signature, MinHash.getSignature(makeTerms(prefix, 98, 198)))) {
+				dissimilarCandidates++;
+			}
+		}
+		assertTrue("similar: " + similarCandidates, similarCandidates >= trials * 0.98);
+		assertTrue("dissimilar: " + dissimilarCandidates, dissimilarCandidates <= trials * 0.1);
+	}
+
+
+	@Test
+	public void testBandHash() {
+		int[] signature = MinHash.getSignature(Arrays.asList("maja", "mari", "eelarve"));
+		int[] other = signature.clone();
+		// Change the second band only
+		other[MinHash.ROWS]++;
+		assertEquals(MinHash.getBandHash(signature, 0), MinHash.getBandHash(other, 0));
+		assertTrue(MinHash.getBandHash(signature, 1) != MinHash.getBandHash(other, 1));
+		// Equal rows in different bands do not collide
+		int[] constant = new int[MinHash.SIZE];
+		assertTrue(MinHash.getBandHash(constant, 0) != MinHash.getBandHash(constant, 1));
+	}
+
+
+	private static boolean shareBand(int[] signature1, int[] signature2) {
+		for (int band = 0; band < MinHash.BANDS; band++) {
+			boolean isEqual = true;
+			for (int i = band * MinHash.ROWS; i < (band + 1) * MinHash.ROWS; i++) {
+				isEqual &= signature1[i] == signature2[i];
+			}
+			if (isEqual) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	private static List<String> makeTerms(String prefix, int from, int to) {
+		List<String> terms = new ArrayList<String>();
+		for (int i = from; i < to; i++) {
+			terms.add(prefix + i);
+		}
+		return terms;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Index of segments that are built from plain text (instead of transcription files).</p>
+ */
+public class SearchIndexTest {
+
+	private static final long VERSION = 1;
+
+	private File mDir;
+	private SearchIndex mIndex;
+
+	@Before
+	public void setUp() throws IOException {
+		mDir = File.createTempFile("index", "");
+		mDir.delete();
+		mDir.mkdir();
+		mIndex = new SearchIndex(mDir, new SimpleAnalyzer());
+	}
+
+
+	@After
+	public void tearDown() {
+		for (File file : mDir.listFiles()) {
+			file.delete();
+		}
+		mDir.delete();
+	}
+
+
+	@Test
+	public void testSimilar() throws IOException {
+		add("a", words("sona", 0, 100));
+		// Jaccard similarity 90/110
+		add("b", words("sona", 0, 90) + words("muu", 0, 10));
+		// Jaccard similarity 50/150
+		add("c", words("sona", 50, 150));
+		add("d", words("teine", 0, 100));
+		List<SearchIndex.Similar> similars = mIndex.getSimilar("a", 10);
+		assertTrue(similars.size() >= 1);
+		assertEquals("b", similars.get(0).id);
+		assertEquals(90f / 110, similars.get(0).similarity, 0.15);
+		for (SearchIndex.Similar similar : similars) {
+			assertTrue(! similar.id.equals("a") && ! similar.id.equals("d"));
+		}
+		for (int i = 1; i < similars.size(); i++) {
+			assertTrue(similars.get(i - 1).similarity >= similars.get(i).similarity);
+		}
+		assertEquals(1, mIndex.getSimilar("a", 1).size());
+	}
+
+
+	@Test
+	public void testSimilarAfterRemove() throws IOException {
+		add("a", words("sona", 0, 100));
+		add("b", words("sona", 0, 100));
+		assertEquals("b", mIndex.getSimilar("a", 10).get(0).id);
+		mIndex.remove("b");
+		assertTrue(mIndex.getSimilar("a", 10).isEmpty());
+		assertTrue(mIndex.getSimilar("b", 10).isEmpty());
+		// Reindexing replaces the old signature
+		add("b", words("sona", 0, 100));
+		add("a", words("teine", 0, 100));
+		assertTrue(mIndex.getSimilar("b", 10).isEmpty());
+	}
+
+
+	@Test
+	public void testSimilarWithoutSignature() throws IOException {
+		// Terms shorter than 4 characters are not in the signature
+		add("a", "ja ei see on");
+		add("b", "ja ei see on");
+		assertTrue(mIndex.getSimilar("a", 10).isEmpty());
+		assertTrue(mIndex.getSimilar("puudub", 10).isEmpty());
+	}
+
+
+	@Test
+	public void testSuggestions() throws IOException {
+		add("a", "maja maja majas mari");
+		add("b", "maja mari");
+		add("c", "maja");
+		List<Suggester.Suggestion> suggestions = mIndex.getSuggestions("ma", 10);
+		assertEquals(3, suggestions.size());
+		// Weighted by the number of documents, not by the number of occurrences
+		assertEquals("maja", suggestions.get(0).word);
+		assertEquals(3, suggestions.get(0).weight);
+		assertEquals("mari", suggestions.get(1).word);
+		assertEquals(2, suggestions.get(1).weight);
+		assertEquals("majas", suggestions.get(2).word);
+		assertEquals(1, suggestions.get(2).weight);
+		mIndex.remove("a");
+		suggestions = mIndex.getSuggestions("ma", 10);
+		assertEquals(2, suggestions.size());
+		assertEquals("maja", suggestions.get(0).word);
+		assertEquals(2, suggestions.get(0).weight);
+		assertEquals("mari", suggestions.get(1).word);
+		assertEquals(1, suggestions.get(1).weight);
+		assertTrue(mIndex.getSuggestions("x", 10).isEmpty());
+	}
+
+
+	@Test
+	public void testPrefixIsNotStemmed() throws IOException {
+		mIndex = new SearchIndex(mDir, new EstonianAnalyzer());
+		add("a", "kas kasutama");
+		// The prefix "kass" would be stemmed to "kas"
+		assertTrue(count("kass").isEmpty());
+		assertEquals(2, (int) count("kas").get("a"));
+		assertEquals(1, (int) count("kasu").get("a"));
+		assertEquals(1, (int) count("kas kasu").get("a"));
+		assertTrue(count("kas kass").isEmpty());
+		// A complete (quoted) word is stemmed
+		assertEquals(1, (int) count("\"kasutame\"").get("a"));
+	}
+
+
+	@Test
+	public void testPrefixOfCompound() throws IOException {
+		mIndex = new SearchIndex(mDir, new EstonianAnalyzer());
+		add("a", "linn ja linnavalitsusele");
+		assertEquals(1, (int) count("valitsus").get("a"));
+		assertTrue(count("valitsuss").isEmpty());
+	}
+
+
+	private Map<String, Integer> count(String query) {
+		return mIndex.search(Query.parse(query, mIndex.getAnalyzer()));
+	}
+
+
+	private void add(String id, String text) throws IOException {
+		new Segment.Builder(id, VERSION, mIndex.getAnalyzer()).addTurn(0, text).build().write(mIndex.getSegmentFile(id));
+		assertTrue(mIndex.load(id, VERSION));
+	}
+
+
+	// Distinct words that consist of letters only, e.g. "sonaab" (at most 676 of them)
+	private static String words(String prefix, int from, int to) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = from; i < to; i++) {
+			sb.append(prefix).append((char) ('a' + i / 26)).append((char) ('a' + i % 26)).append(' ');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Round trip of a segment through its file.</p>
+ */
+public class SegmentTest {
+
+	private static final long VERSION = 1357000000000L;
+
+	private File mFile;
+
+	@Before
+	public void setUp() throws IOException {
+		mFile = File.createTempFile("segment", ".idx");
+	}
+
+
+	@After
+	public void tearDown() {
+		mFile.delete();
+	}
+
+
+	@Test
+	public void testTerms() throws IOException {
+		build().write(mFile);
+		Segment segment = Segment.readTerms(mFile);
+		assertEquals("rec-1.wav", segment.getId());
+		assertEquals(VERSION, segment.getVersion());
+		assertEquals(8, segment.getLength());
+		assertArrayEquals(new String[] { "ja", "maja", "maju", "mari", "tere", "õun" }, segment.getTerms());
+		assertArrayEquals(new int[] { 1, 2, 1, 2, 1, 1 }, segment.getFrequencies());
+		// Most frequent word form of each term
+		assertArrayEquals(new String[] { "ja", "maja", "maju", "mari", "tere", "õun" }, segment.getWords());
+	}
+
+
+	@Test
+	public void testPositions() throws IOException {
+		build().write(mFile);
+		Map<String, int[]> positions = Segment.readPositions(mFile, new HashSet<String>(Arrays.asList("maja", "mari", "puudub")));
+		assertEquals(2, positions.size());
+		// Turn 1 has the positions 0..2, the gap is 3, turn 2 has 4..8
+		assertArrayEquals(new int[] { 1, 4 }, positions.get("maja"));
+		assertArrayEquals(new int[] { 2, 8 }, positions.get("mari"));
+		assertNull(positions.get("puudub"));
+	}
+
+
+	@Test
+	public void testForms() throws IOException {
+		new Segment.Builder("rec", VERSION, new EstonianAnalyzer()).addTurn(0, "Majas on maja ja majas").build().write(mFile);
+		Segment segment = Segment.readTerms(mFile);
+		// Both forms have the same term
+		assertArrayEquals(new String[] { "ja", "maj", "on" }, segment.getTerms());
+		assertArrayEquals(new String[] { "ja", "maja", "majas", "on" }, segment.getForms());
+		assertArrayEquals(new int[] { 1, 1, 2, 1 }, segment.getFormFrequencies());
+		List<Map<String, int[]>> positions = Segment.readPositions(mFile,
+				new HashSet<String>(Arrays.asList("maj")), new HashSet<String>(Arrays.asList("majas", "puudub")));
+		assertArrayEquals(new int[] { 0, 2, 4 }, positions.get(0).get("maj"));
+		assertEquals(1, positions.get(1).size());
+		assertArrayEquals(new int[] { 0, 4 }, positions.get(1).get("majas"));
+	}
+
+
+	@Test
+	public void testTurns() throws IOException {
+		build().write(mFile);
+		Segment.Turns turns = Segment.readTurns(mFile);
+		assertEquals(2, turns.size());
+		assertEquals(0, turns.getPosition(0));
+		assertEquals(4, turns.getPosition(1));
+		assertEquals(0, turns.getTurn(2));
+		// The gap belongs to the preceding turn
+		assertEquals(0, turns.getTurn(3));
+		assertEquals(1, turns.getTurn(4));
+		assertEquals(1, turns.getTurn(100));
+		assertEquals(1500, turns.getStartTime(0));
+		assertEquals(62000, turns.getStartTime(8));
+	}
+
+
+	@Test
+	public void testText() throws IOException {
+		build().write(mFile);
+		Segment.Text text = Segment.readText(mFile);
+		assertEquals("Tere, maja Mari!\nMaja ja maju, õun  Mari\n", text.getText());
+		assertEquals(10, text.size());
+		assertToken(text, 0, "Tere");
+		assertToken(text, 2, "Mari");
+		// Gap at the newline
+		assertEquals(16, text.getStart(3));
+		assertEquals(16, text.getEnd(3));
+		assertToken(text, 4, "Maja");
+		assertToken(text, 7, "õun");
+		assertToken(text, 8, "Mari");
+		assertEquals(text.getText().length() - 1, text.getStart(9));
+	}
+
+
+	@Test
+	public void testLargeDeltas() throws IOException {
+		// Positions and offsets that need multi-byte varints
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("sõna ");
+		}
+		sb.append("lõpp");
+		sb.append(spaces(300));
+		sb.append("lõpp");
+		new Segment.Builder("rec", VERSION, new SimpleAnalyzer()).addTurn(0, sb).build().write(mFile);
+		Map<String, int[]> positions = Segment.readPositions(mFile, new HashSet<String>(Arrays.asList("lõpp")));
+		assertArrayEquals(new int[] { 20000, 20001 }, positions.get("lõpp"));
+		Segment.Text text = Segment.readText(mFile);
+		assertEquals(20000 * 5, text.getStart(20000));
+		assertEquals(20000 * 5 + 4 + 300, text.getStart(20001));
+		assertEquals("lõpp", text.getText().substring(text.getStart(20001), text.getEnd(20001)));
+	}
+
+
+	@Test
+	public void testEmpty() throws IOException {
+		new Segment.Builder("rec", VERSION, new SimpleAnalyzer()).build().write(mFile);
+		Segment segment = Segment.readTerms(mFile);
+		assertEquals(0, segment.getLength());
+		assertEquals(0, segment.getTerms().length);
+		assertEquals(0, Segment.readTurns(mFile).size());
+		assertEquals(-1, Segment.readTurns(mFile).getStartTime(0));
+		assertEquals("", Segment.readText(mFile).getText());
+	}
+
+
+	@Test
+	public void testVersion() throws IOException {
+		build().write(mFile);
+		assertEquals(VERSION, Segment.readVersion(mFile));
+	}
+
+
+	@Test
+	public void testUnsupportedFormat() throws IOException {
+		build().write(mFile);
+		RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+		try {
+			// Format version 4
+			raf.seek(4);
+			raf.writeInt(4);
+		} finally {
+			raf.close();
+		}
+		assertReadFails();
+	}
+
+
+	@Test
+	public void testTruncated() throws IOException {
+		build().write(mFile);
+		RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+		try {
+			raf.setLength(raf.length() / 2);
+		} finally {
+			raf.close();
+		}
+		assertReadFails();
+	}
+
+
+	@Test
+	public void testNoTempFileLeft() throws IOException {
+		build().write(mFile);
+		assertTrue(mFile.exists());
+		assertFalse(new File(mFile.getAbsolutePath() + ".tmp").exists());
+	}
+
+
+	private static Segment build() {
+		return new Segment.Builder("rec-1.wav", VERSION, new SimpleAnalyzer())
+				.addTurn(1500, "Tere, maja Mari!")
+				.addTurn(62000, "Maja ja maju, õun  Mari")
+				.build();
+	}
+
+
+	private void assertReadFails() {
+		try {
+			Segment.readTerms(mFile);
+			fail("Read a broken segment");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+
+	private static void assertToken(Segment.Text text, int position, String token) {
+		assertEquals(token, text.getText().substring(text.getStart(position), text.getEnd(position)));
+	}
+
+
+	private static String spaces(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			sb.append(' ');
+		}
+		return sb.toString();
+	}
+}
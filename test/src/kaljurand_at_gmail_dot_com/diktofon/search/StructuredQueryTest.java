@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+import org.junit.Test;
+
+public class StructuredQueryTest {
+
+	@Test
+	public void testParseDuration() {
+		assertEquals(90000, StructuredQuery.parseDuration("90"));
+		assertEquals(90000, StructuredQuery.parseDuration("90s"));
+		assertEquals(600000, StructuredQuery.parseDuration("10m"));
+		assertEquals(3600000, StructuredQuery.parseDuration("1h"));
+		assertEquals(0, StructuredQuery.parseDuration("0"));
+	}
+
+
+	@Test
+	public void testParseDurationInvalid() {
+		assertEquals(-1, StructuredQuery.parseDuration(""));
+		assertEquals(-1, StructuredQuery.parseDuration("m"));
+		assertEquals(-1, StructuredQuery.parseDuration("10x"));
+		assertEquals(-1, StructuredQuery.parseDuration("10mm"));
+		assertEquals(-1, StructuredQuery.parseDuration("-10"));
+		assertEquals(-1, StructuredQuery.parseDuration("1.5h"));
+	}
+
+
+	@Test
+	public void testParseDurationDigits() {
+		// 9 digits fit into an int, and in hours still into a long
+		assertEquals(999999999000L, StructuredQuery.parseDuration("999999999"));
+		assertEquals(999999999L * 60 * 60 * 1000, StructuredQuery.parseDuration("999999999h"));
+		assertEquals(-1, StructuredQuery.parseDuration("1000000000"));
+		assertEquals(-1, StructuredQuery.parseDuration("99999999999999999999s"));
+	}
+
+
+	@Test
+	public void testParseDate() {
+		assertEquals(getTime(2026, 1, 1), StructuredQuery.parseDate("2026"));
+		assertEquals(getTime(2026, 3, 1), StructuredQuery.parseDate("2026-03"));
+		assertEquals(getTime(2026, 3, 1), StructuredQuery.parseDate("2026-3"));
+		assertEquals(getTime(2026, 1, 15), StructuredQuery.parseDate("2026-01-15"));
+		assertEquals(getTime(2024, 2, 29), StructuredQuery.parseDate("2024-02-29"));
+		assertEquals(getTime(2026, 12, 31), StructuredQuery.parseDate("2026-12-31"));
+	}
+
+
+	@Test
+	public void testParseDateBadMonth() {
+		assertEquals(-1, StructuredQuery.parseDate("2026-00"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-13"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-001"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-jan"));
+	}
+
+
+	@Test
+	public void testParseDateBadDay() {
+		assertEquals(-1, StructuredQuery.parseDate("2026-01-00"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-01-32"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-02-29"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-04-31"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-01-015"));
+	}
+
+
+	@Test
+	public void testParseDateInvalid() {
+		assertEquals(-1, StructuredQuery.parseDate(""));
+		assertEquals(-1, StructuredQuery.parseDate("26"));
+		assertEquals(-1, StructuredQuery.parseDate("20260"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-"));
+		assertEquals(-1, StructuredQuery.parseDate("2026--01"));
+		assertEquals(-1, StructuredQuery.parseDate("2026-01-01-01"));
+		assertEquals(-1, StructuredQuery.parseDate("+026"));
+		assertEquals(-1, StructuredQuery.parseDate("999999999"));
+	}
+
+
+	@Test
+	public void testFilters() {
+		StructuredQuery query = StructuredQuery.parse("tag:Meeting speaker:Mari dur>10m dur<1h after:2026-01 before:2026-02 eelarve");
+		assertEquals(Arrays.asList("meeting"), query.getTags());
+		assertEquals(Arrays.asList("mari"), query.getSpeakers());
+		assertEquals("eelarve", query.getText());
+		assertFalse(query.acceptsDuration(600000));
+		assertTrue(query.acceptsDuration(600001));
+		assertFalse(query.acceptsDuration(3600000));
+		assertTrue(query.acceptsTime(getTime(2026, 1, 1)));
+		assertTrue(query.acceptsTime(getTime(2026, 1, 31)));
+		assertFalse(query.acceptsTime(getTime(2026, 2, 1)));
+	}
+
+
+	@Test
+	public void testQuotedValues() {
+		StructuredQuery query = StructuredQuery.parse("speaker:\"Mari Maasikas\" tag:\" kohtumine  nr 2 \" \"riigi eelarve\"");
+		assertEquals(Arrays.asList("mari maasikas"), query.getSpeakers());
+		assertEquals(Arrays.asList("kohtumine  nr 2"), query.getTags());
+		// Quotes of the text query are kept, they make it a phrase query
+		assertEquals("\"riigi eelarve\"", query.getText());
+	}
+
+
+	@Test
+	public void testQuotedDateAndDuration() {
+		StructuredQuery query = StructuredQuery.parse("after:\"2026-01-15\" dur>\"90s\"");
+		assertTrue(query.hasTimeFilter());
+		assertTrue(query.hasDurationFilter());
+		assertNull(query.getText());
+		assertFalse(query.acceptsTime(getTime(2026, 1, 14)));
+		assertTrue(query.acceptsTime(getTime(2026, 1, 15)));
+	}
+
+
+	@Test
+	public void testUnclosedQuote() {
+		StructuredQuery query = StructuredQuery.parse("eelarve speaker:\"Mari Maasikas");
+		assertEquals(Arrays.asList("mari maasikas"), query.getSpeakers());
+		assertEquals("eelarve", query.getText());
+	}
+
+
+	@Test
+	public void testInvalidFilterIsText() {
+		StructuredQuery query = StructuredQuery.parse("dur>long after:2026-13 tag: eelarve");
+		assertFalse(query.hasFilters());
+		assertEquals("dur>long after:2026-13 tag: eelarve", query.getText());
+
+		query = StructuredQuery.parse("tag:a  dur>1234567890  eelarve");
+		assertEquals("dur>1234567890 eelarve", query.getText());
+	}
+
+
+	@Test
+	public void testNoFilters() {
+		// The query is kept as it is, e.g. the whitespace of a regular expression
+		assertEquals("a  b", StructuredQuery.parse(" a  b ").getText());
+		assertNull(StructuredQuery.parse("   ").getText());
+		assertNull(StructuredQuery.parse("tag:a").getText());
+	}
+
+
+	private static long getTime(int year, int month, int day) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, month - 1, day);
+		return calendar.getTimeInMillis();
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.search;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * <p>Compares the suggestions to a brute force scan of the vocabulary.</p>
+ */
+public class SuggesterTest {
+
+	private static final String LETTERS = "aeklmsõä";
+
+	@Test
+	public void testSuggest() {
+		Map<String, Integer> wordToWeight = new HashMap<String, Integer>();
+		wordToWeight.put("maja", 5);
+		wordToWeight.put("majad", 2);
+		wordToWeight.put("majas", 5);
+		wordToWeight.put("mari", 9);
+		wordToWeight.put("eelarve", 1);
+		Suggester suggester = new Suggester(wordToWeight);
+		assertEquals(5, suggester.size());
+		assertWords(suggester.suggest("ma", 10), "mari", "maja", "majas", "majad");
+		assertWords(suggester.suggest("maj", 2), "maja", "majas");
+		assertWords(suggester.suggest("majas", 10), "majas");
+		assertWords(suggester.suggest("", 1), "mari");
+		assertWords(suggester.suggest("x", 10));
+		assertWords(suggester.suggest("ma", 0));
+		assertEquals(9, suggester.suggest("m", 1).get(0).weight);
+	}
+
+
+	@Test
+	public void testSmall() {
+		Suggester empty = new Suggester(new HashMap<String, Integer>());
+		assertEquals(0, empty.size());
+		assertWords(empty.suggest("", 10));
+		Map<String, Integer> wordToWeight = new HashMap<String, Integer>();
+		wordToWeight.put("üks", 0);
+		Suggester one = new Suggester(wordToWeight);
+		assertWords(one.suggest("ü", 10), "üks");
+		assertWords(one.suggest("üksi", 10));
+	}
+
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(18);
+		for (int trial = 0; trial < 50; trial++) {
+			Map<String, Integer> wordToWeight = new HashMap<String, Integer>();
+			int size = random.nextInt(500);
+			for (int i = 0; i < size; i++) {
+				// Few distinct weights, i.e. many ties
+				wordToWeight.put(makeWord(random, 1 + random.nextInt(6)), random.nextInt(5));
+			}
+			Suggester suggester = new Suggester(wordToWeight);
+			for (int i = 0; i < 20; i++) {
+				String prefix = makeWord(random, random.nextInt(3));
+				int limit = random.nextInt(15);
+				assertEquals(prefix + " " + limit, suggest(wordToWeight, prefix, limit), getWords(suggester.suggest(prefix, limit)));
+			}
+		}
+	}
+
+
+	private static List<String> suggest(final Map<String, Integer> wordToWeight, String prefix, int limit) {
+		List<String> words = new ArrayList<String>();
+		for (String word : wordToWeight.keySet()) {
+			if (word.startsWith(prefix)) {
+				words.add(word);
+			}
+		}
+		Collections.sort(words, new Comparator<String>() {
+			public int compare(String w1, String w2) {
+				int weight1 = wordToWeight.get(w1);
+				int weight2 = wordToWeight.get(w2);
+				if (weight1 != weight2) {
+					return (weight1 > weight2) ? -1 : 1;
+				}
+				return w1.compareTo(w2);
+			}
+		});
+		return words.subList(0, Math.min(limit, words.size()));
+	}
+
+
+	private static String makeWord(Random random, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+		}
+		return sb.toString();
+	}
+
+
+	private static List<String> getWords(List<Suggester.Suggestion> suggestions) {
+		List<String> words = new ArrayList<String>();
+		for (Suggester.Suggestion suggestion : suggestions) {
+			words.add(suggestion.word);
+		}
+		return words;
+	}
+
+
+	private static void assertWords(List<Suggester.Suggestion> suggestions, String... expected) {
+		List<String> words = getWords(suggestions);
+		assertEquals(expected.length, words.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], words.get(i));
+		}
+	}
+}
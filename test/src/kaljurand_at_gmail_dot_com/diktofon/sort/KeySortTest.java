@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013, Institute of Cybernetics at Tallinn University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package kaljurand_at_gmail_dot_com.diktofon.sort;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * <p>Compares both of the sorts (packed and merge) to a stable <code>Collections.sort</code>.</p>
+ */
+public class KeySortTest {
+
+	private static final int[] LENGTHS = { 0, 1, 2, 3, 31, 32, 33, 63, 64, 65, 100, 1000, 4097 };
+
+	private final Random mRandom = new Random(25);
+
+	@Test
+	public void testSmallRange() {
+		// Packed sort, many equal keys
+		for (int n : LENGTHS) {
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = mRandom.nextInt(10);
+			}
+			assertSorted(keys);
+		}
+	}
+
+
+	@Test
+	public void testTimestamps() {
+		// Packed sort
+		for (int n : LENGTHS) {
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = 1262304000000L + (long) (mRandom.nextDouble() * 1e11);
+			}
+			assertSorted(keys);
+		}
+	}
+
+
+	@Test
+	public void testFullRange() {
+		// Merge sort, the range does not leave room for the index
+		for (int n : LENGTHS) {
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = mRandom.nextLong();
+			}
+			assertSorted(keys);
+		}
+	}
+
+
+	@Test
+	public void testFullRangeWithDuplicates() {
+		for (int n : LENGTHS) {
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = (mRandom.nextInt(5) - 2) * (Long.MAX_VALUE / 2);
+			}
+			assertSorted(keys);
+		}
+	}
+
+
+	@Test
+	public void testExtremes() {
+		assertSorted(new long[] { Long.MAX_VALUE, Long.MIN_VALUE, 0, Long.MIN_VALUE, Long.MAX_VALUE, -1 });
+		assertSorted(new long[] { Long.MIN_VALUE, Long.MIN_VALUE });
+		assertSorted(new long[] { -5, -5, -3, -9 });
+		// The range just fits with 2 index bits
+		assertSorted(new long[] { 0, (1L << 61) - 1, 5, 0 });
+		assertSorted(new long[] { 0, 1L << 61, 5, 0 });
+	}
+
+
+	@Test
+	public void testOrdered() {
+		for (int n : LENGTHS) {
+			long[] ascending = new long[n];
+			long[] descending = new long[n];
+			for (int i = 0; i < n; i++) {
+				ascending[i] = i * (Long.MAX_VALUE / 8192);
+				descending[i] = -ascending[i];
+			}
+			assertSorted(ascending);
+			assertSorted(descending);
+		}
+	}
+
+
+	private static void assertSorted(final long[] keys) {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < keys.length; i++) {
+			expected.add(i);
+		}
+		Collections.sort(expected, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				long k1 = keys[i1];
+				long k2 = keys[i2];
+				return (k1 > k2) ? -1 : ((k1 == k2) ? 0 : 1);
+			}
+		});
+		int[] expectedOrder = new int[keys.length];
+		for (int i = 0; i < expectedOrder.length; i++) {
+			expectedOrder[i] = expected.get(i);
+		}
+		long[] copy = keys.clone();
+		assertArrayEquals("n = " + keys.length, expectedOrder, KeySort.sortDescending(keys));
+		// The keys are not modified
+		assertArrayEquals(copy, keys);
+	}
+}